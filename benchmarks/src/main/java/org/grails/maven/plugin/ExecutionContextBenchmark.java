@@ -0,0 +1,52 @@
+/*
+ * Copyright 2007 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.grails.maven.plugin;
+
+import org.apache.maven.plugin.MojoExecutionException;
+import org.grails.maven.plugin.tools.AbstractGrailsRuntime;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@link AbstractGrailsMojo#createExecutionContext(String, String)} against stubbed
+ * dependency resolution: merging the scopes, de-duplicating the test class path and picking the
+ * logging jars.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ExecutionContextBenchmark {
+
+    @Param({"50", "200", "800"})
+    public int dependencyCount;
+
+    private StubGrailsMojo mojo;
+
+    @Setup
+    public void setUp() {
+        mojo = new StubGrailsMojo(new File(System.getProperty("java.io.tmpdir"), "grails-benchmark-app"), dependencyCount);
+    }
+
+    @Benchmark
+    public AbstractGrailsRuntime.ExecutionContext createExecutionContext() throws MojoExecutionException {
+        return mojo.createExecutionContext("War", null);
+    }
+}
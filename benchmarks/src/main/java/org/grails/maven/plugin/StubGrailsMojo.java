@@ -0,0 +1,103 @@
+/*
+ * Copyright 2007 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.grails.maven.plugin;
+
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.project.MavenProject;
+import org.eclipse.aether.artifact.DefaultArtifact;
+import org.eclipse.aether.graph.Dependency;
+import org.eclipse.aether.graph.DependencyFilter;
+
+import java.io.File;
+import java.util.*;
+
+/**
+ * A mojo whose dependency resolution is answered from synthetic, in-memory dependency graphs, so
+ * that the work done around resolution can be measured without Aether or a local repository.
+ *
+ * The graphs overlap the way real ones do: the runtime scope contains the compile scope and the
+ * test scope repeats both.
+ */
+public class StubGrailsMojo extends AbstractGrailsMojo {
+
+    private final Map<String, List<Dependency>> graphs = new HashMap<String, List<Dependency>>();
+    private final List<File> buildDependencies;
+
+    public StubGrailsMojo(File baseDir, int dependencyCount) {
+        project = new MavenProject();
+        project.setFile(new File(baseDir, "pom.xml"));
+        project.getBuild().setDirectory(new File(baseDir, "target").getPath());
+        grailsWorkDir = new File(baseDir, "target/work").getPath();
+        pluginsDir = new File(baseDir, "plugins");
+        grailsEnv = "development";
+
+        List<Dependency> compile = dependencies("compile", "org.example.compile", dependencyCount);
+        compile.add(dependency("compile", "org.slf4j", "slf4j-api", "1.7.5"));
+        compile.add(dependency("compile", "org.slf4j", "slf4j-log4j12", "1.7.5"));
+        compile.add(dependency("compile", "log4j", "log4j", "1.2.17"));
+        List<Dependency> runtime = new ArrayList<Dependency>(compile);
+        runtime.addAll(dependencies("runtime", "org.example.runtime", dependencyCount / 2));
+        List<Dependency> test = new ArrayList<Dependency>(runtime);
+        test.addAll(dependencies("test", "org.example.test", dependencyCount / 4));
+
+        graphs.put("compile", compile);
+        graphs.put("provided", dependencies("provided", "org.example.provided", dependencyCount / 10));
+        graphs.put("runtime", runtime);
+        graphs.put("test", test);
+
+        buildDependencies = new ArrayList<File>();
+        for (Dependency d : dependencies("compile", "org.example.build", dependencyCount)) {
+            buildDependencies.add(d.getArtifact().getFile());
+        }
+    }
+
+    /**
+     * Does nothing, the benchmarks only call {@link #createExecutionContext(String, String)}.
+     */
+    public void execute() {
+    }
+
+    @Override
+    protected List<Dependency> resolveDependencies(MavenProject mavenProject, Collection<String> scopes, DependencyFilter filter) throws MojoExecutionException {
+        // the widest requested scope contains all narrower ones
+        List<Dependency> widest = Collections.emptyList();
+        for (String scope : scopes) {
+            List<Dependency> graph = graphs.get(scope);
+            if (graph != null && graph.size() > widest.size()) {
+                widest = graph;
+            }
+        }
+        return widest;
+    }
+
+    @Override
+    protected List<File> resolveBuildDependencies() {
+        return new ArrayList<File>(buildDependencies);
+    }
+
+    private static List<Dependency> dependencies(String scope, String groupId, int count) {
+        List<Dependency> dependencies = new ArrayList<Dependency>(count);
+        for (int i = 0; i < count; i++) {
+            dependencies.add(dependency(scope, groupId, "artifact-" + i, "1.0." + i));
+        }
+        return dependencies;
+    }
+
+    private static Dependency dependency(String scope, String groupId, String artifactId, String version) {
+        File file = new File("/repository/" + groupId.replace('.', '/') + "/" + artifactId + "/" + version + "/" + artifactId + "-" + version + ".jar");
+        return new Dependency(new DefaultArtifact(groupId, artifactId, "jar", version).setFile(file), scope);
+    }
+}
@@ -0,0 +1,96 @@
+/*
+ * Copyright 2007 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.grails.maven.plugin.tools;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the work done by {@link ForkedGrailsRuntime} before and after forking: building the
+ * class path string and writing and reading the serialized {@link AbstractGrailsRuntime.ExecutionContext}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ForkedRuntimeBenchmark {
+
+    @Param({"50", "200", "800"})
+    public int dependencyCount;
+
+    private AbstractGrailsRuntime.ExecutionContext executionContext;
+    private byte[] serialized;
+
+    @Setup
+    public void setUp() throws IOException {
+        executionContext = new AbstractGrailsRuntime.ExecutionContext();
+        executionContext.setBuildDependencies(files("build", dependencyCount));
+        executionContext.setCompileDependencies(files("compile", dependencyCount));
+        executionContext.setRuntimeDependencies(files("runtime", dependencyCount + dependencyCount / 2));
+        executionContext.setTestDependencies(files("test", dependencyCount * 2));
+        executionContext.setProvidedDependencies(files("provided", dependencyCount / 10));
+        executionContext.setBaseDir(new File("/projects/app"));
+        executionContext.setGrailsWorkDir(new File("/projects/app/target/work"));
+        executionContext.setProjectWorkDir(new File("/projects/app/target"));
+        executionContext.setClassesDir(new File("/projects/app/target/classes"));
+        executionContext.setTestClassesDir(new File("/projects/app/target/test-classes"));
+        executionContext.setResourcesDir(new File("/projects/app/target/resources"));
+        executionContext.setProjectPluginsDir(new File("/projects/app/plugins"));
+        executionContext.setScriptName("War");
+        executionContext.setArgs("--plain-output --non-interactive");
+        executionContext.setEnv("production");
+        executionContext.getSystemProperties().put("grails.console.enable.terminal", "false");
+        executionContext.getSystemProperties().put("grails.console.enable.interactive", "false");
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ForkedGrailsRuntime.writeExecutionContext(executionContext, out);
+        serialized = out.toByteArray();
+    }
+
+    @Benchmark
+    public String buildClassPath() {
+        return ForkedGrailsRuntime.buildClassPath("/repository/grails-maven-plugin-2.4.6.jar", executionContext.getBuildDependencies());
+    }
+
+    @Benchmark
+    public byte[] writeExecutionContext() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(serialized.length);
+        ForkedGrailsRuntime.writeExecutionContext(executionContext, out);
+        return out.toByteArray();
+    }
+
+    @Benchmark
+    public AbstractGrailsRuntime.ExecutionContext readExecutionContext() throws IOException, ClassNotFoundException {
+        return ForkedGrailsRuntime.readExecutionContext(new ByteArrayInputStream(serialized));
+    }
+
+    private static List<File> files(String scope, int count) {
+        List<File> files = new ArrayList<File>(count);
+        for (int i = 0; i < count; i++) {
+            files.add(new File("/repository/org/example/" + scope + "/artifact-" + i + "/1.0." + i + "/artifact-" + i + "-1.0." + i + ".jar"));
+        }
+        return files;
+    }
+}
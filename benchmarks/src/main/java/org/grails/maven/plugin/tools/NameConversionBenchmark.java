@@ -0,0 +1,81 @@
+/*
+ * Copyright 2007 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.grails.maven.plugin.tools;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the name conversions of {@link DefaultGrailsServices} used when reading plugin
+ * descriptors and mapping artifact ids to plugin names.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class NameConversionBenchmark {
+
+    private static final String[] CLASS_NAMES = {
+            "SpringSecurityCoreGrailsPlugin", "Hibernate4GrailsPlugin", "AssetPipelineGrailsPlugin",
+            "DatabaseMigrationGrailsPlugin", "FooNASAGrailsPlugin", "ResourcesGrailsPlugin"
+    };
+
+    private static final String[] HYPHENATED_NAMES = {
+            "spring-security-core", "hibernate4", "asset-pipeline", "database-migration", "foo-nasa", "resources"
+    };
+
+    private static final List<String> BULK_CLASS_NAMES = new ArrayList<String>();
+    private static final List<String> BULK_HYPHENATED_NAMES = new ArrayList<String>();
+
+    static {
+        for (int i = 0; i < 100; i++) {
+            BULK_CLASS_NAMES.addAll(Arrays.asList(CLASS_NAMES));
+            BULK_HYPHENATED_NAMES.addAll(Arrays.asList(HYPHENATED_NAMES));
+        }
+    }
+
+    @Benchmark
+    public void getLowerCaseHyphenSeparatedName(Blackhole blackhole) {
+        for (String name : CLASS_NAMES) {
+            blackhole.consume(DefaultGrailsServices.getLowerCaseHyphenSeparatedName(
+                    DefaultGrailsServices.getLogicalName(name, "GrailsPlugin")));
+        }
+    }
+
+    @Benchmark
+    public void getClassNameForLowerCaseHyphenSeparatedName(Blackhole blackhole) {
+        for (String name : HYPHENATED_NAMES) {
+            blackhole.consume(DefaultGrailsServices.getClassNameForLowerCaseHyphenSeparatedName(name));
+        }
+    }
+
+    @Benchmark
+    public List<String> getLowerCaseHyphenSeparatedNames() {
+        return DefaultGrailsServices.getLowerCaseHyphenSeparatedNames(BULK_CLASS_NAMES);
+    }
+
+    @Benchmark
+    public List<String> getClassNamesForLowerCaseHyphenSeparatedNames() {
+        return DefaultGrailsServices.getClassNamesForLowerCaseHyphenSeparatedNames(BULK_HYPHENATED_NAMES);
+    }
+}
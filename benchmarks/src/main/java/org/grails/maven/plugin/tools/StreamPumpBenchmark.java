@@ -0,0 +1,98 @@
+/*
+ * Copyright 2007 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.grails.maven.plugin.tools;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the throughput of the stream copying done between Maven and the Grails JVM:
+ * {@link RawStreamPumper} for run-app and the line based {@link ForkedGrailsRuntime.TextDumper}
+ * for forked builds. Both copy one megabyte of console output into a discarding sink.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class StreamPumpBenchmark {
+
+    private static final int OUTPUT_SIZE = 1024 * 1024;
+
+    private byte[] output;
+
+    @Setup
+    public void setUp() {
+        StringBuilder text = new StringBuilder(OUTPUT_SIZE);
+        int line = 0;
+        while (text.length() < OUTPUT_SIZE) {
+            text.append("| Compiling ").append(line++).append(" source files to target/classes.....\n");
+        }
+        output = text.toString().getBytes();
+    }
+
+    @Benchmark
+    public long rawStreamPumper() {
+        CountingOutputStream sink = new CountingOutputStream();
+        new RawStreamPumper(new ByteArrayInputStream(output), sink).run();
+        return sink.count;
+    }
+
+    @Benchmark
+    public long textDumper() {
+        CountingAppendable sink = new CountingAppendable();
+        new ForkedGrailsRuntime.TextDumper(new ByteArrayInputStream(output), sink).run();
+        return sink.count;
+    }
+
+    private static class CountingOutputStream extends OutputStream {
+        long count;
+
+        @Override
+        public void write(int b) {
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            count += len;
+        }
+    }
+
+    private static class CountingAppendable implements Appendable {
+        long count;
+
+        public Appendable append(CharSequence csq) throws IOException {
+            count += csq.length();
+            return this;
+        }
+
+        public Appendable append(CharSequence csq, int start, int end) throws IOException {
+            count += end - start;
+            return this;
+        }
+
+        public Appendable append(char c) throws IOException {
+            count++;
+            return this;
+        }
+    }
+}
@@ -18,6 +18,7 @@ package org.grails.maven.plugin;
 
 import org.apache.maven.artifact.Artifact;
 import org.apache.maven.artifact.repository.ArtifactRepository;
+import org.apache.maven.execution.MavenSession;
 import org.apache.maven.model.Dependency;
 import org.apache.maven.plugin.AbstractMojo;
 import org.apache.maven.plugin.MojoExecutionException;
@@ -38,14 +39,29 @@ import org.eclipse.aether.util.filter.ScopeDependencyFilter;
 import org.grails.launcher.GrailsLauncher;
 import org.grails.launcher.RootLoader;
 import org.grails.maven.plugin.tools.AbstractGrailsRuntime;
+import org.grails.maven.plugin.tools.ArchiveAnalyzer;
+import org.grails.maven.plugin.tools.ArtifactTransfer;
+import org.grails.maven.plugin.tools.BuildEventRecorder;
+import org.grails.maven.plugin.tools.BuildEventServer;
 import org.grails.maven.plugin.tools.DefaultGrailsRuntime;
+import org.grails.maven.plugin.tools.ForkExitStatus;
+import org.grails.maven.plugin.tools.ForkMemoryHistory;
+import org.grails.maven.plugin.tools.ForkedGrailsPool;
 import org.grails.maven.plugin.tools.ForkedGrailsRuntime;
+import org.grails.maven.plugin.tools.GcLogAnalyzer;
 import org.grails.maven.plugin.tools.GrailsServices;
+import org.grails.maven.plugin.tools.InlinePluginRegistrar;
+import org.grails.maven.plugin.tools.LoggingBootstrap;
+import org.grails.maven.plugin.tools.PluginClassesCache;
+import org.grails.maven.plugin.tools.ProjectMetadata;
+import org.grails.maven.plugin.tools.ReactorPlugins;
+import org.grails.maven.plugin.tools.SharedWorkDir;
 
 import java.io.File;
-import java.io.FileReader;
-import java.io.FileWriter;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.util.*;
@@ -118,6 +134,17 @@ public abstract class AbstractGrailsMojo extends AbstractMojo {
      */
     protected String grailsWorkDir;
 
+    /**
+     * A work directory shared by the builds on this machine, e.g. by the agents of a CI
+     * server. Each goal copies it into {@code grailsWorkDir} and works there; after a
+     * successful goal the files it added or updated are published back under a file lock, so
+     * concurrent builds never see each other's half-written files. Files are never deleted
+     * from the shared directory.
+     *
+     * @parameter expression="${grails.sharedWorkDir}"
+     */
+    protected File sharedGrailsWorkDir;
+
     /**
      * Whether to run Grails in non-interactive mode or not. The default
      * is to run interactively, just like the Grails command-line.
@@ -176,6 +203,168 @@ public abstract class AbstractGrailsMojo extends AbstractMojo {
      */
     protected int forkMinMemory = 512;    
 
+    /**
+     * Whether in-process executions keep the class loader holding the Grails build
+     * dependencies for the lifetime of the Maven JVM, so that consecutive goals of one
+     * build don't re-open every jar and re-load the Groovy and Grails classes. Has no
+     * effect when the JVM is forked.
+     *
+     * @parameter expression="${grails.reuseBuildClassLoader}" default-value="false"
+     */
+    protected boolean reuseBuildClassLoader;
+
+    /**
+     * Whether to index the packages of the Grails build class path, letting the class loader
+     * skip jars that can't contain a class or resource instead of searching every jar. The
+     * index is built in parallel and cached in {@code classPathIndexDirectory}.
+     *
+     * @parameter expression="${grails.indexBuildClasspath}" default-value="false"
+     */
+    protected boolean indexBuildClasspath;
+
+    /**
+     * Where indexes of the Grails build class path are cached.
+     *
+     * @parameter expression="${grails.classPathIndexDirectory}" default-value="${user.home}/.grails-maven/classpath-index"
+     */
+    protected File classPathIndexDirectory;
+
+    /**
+     * Whether the forked JVM sends console logging through an async appender, which
+     * takes the cost of writing log output off the threads running the tests.
+     *
+     * @parameter expression="${forkAsyncLogging}" default-value="false"
+     */
+    protected boolean forkAsyncLogging;
+
+    /**
+     * Whether the forked JVM reports its build phases, test results and compilation errors to
+     * Maven over a local socket. Test failures and compilation errors are then logged as they
+     * happen, a build whose error events carry a compiler exception fails even if Grails exits
+     * normally, and the phase durations are written to {@code target/grails-build-events}.
+     *
+     * @parameter expression="${grails.buildEvents}" default-value="false"
+     */
+    protected boolean buildEvents;
+
+    /**
+     * Whether the forked JVM logs its garbage collections to
+     * {@code target/grails-maven/<script>/gc.log}. After the run, the pause times, peak heap
+     * and allocation rate are summarized in the build output and in {@code gc-summary.txt}
+     * next to the log, along with a suggested {@code forkMaxMemory}. Heap dumps of forked JVMs
+     * running out of memory are written to the same directory.
+     *
+     * @parameter expression="${grails.fork.gcLog}" default-value="false"
+     */
+    protected boolean forkGcLog;
+
+    /**
+     * Whether the heap of forked JVMs is sized from their past usage instead of
+     * {@code forkMaxMemory} and {@code forkMinMemory}. Each forked JVM reports its live heap,
+     * the heap left after a full collection, and its GC overhead on exit to
+     * {@code forkMemoryHistory}, and the next run of the same script gets the largest live heap
+     * of its last runs plus {@code forkMemoryHeadroom} as {@code -Xmx}, and the last live heap as
+     * {@code -Xms}. Runs that never needed a full collection don't raise {@code -Xmx} beyond what
+     * they had; runs that were short of heap or ran out of it raise it. Scripts without a
+     * history use the configured sizes. Scripts run in the {@code forkPool} are neither sized
+     * nor recorded, since a pooled JVM keeps its heap across scripts.
+     *
+     * @parameter expression="${grails.fork.memory.auto}" default-value="false"
+     */
+    protected boolean forkMemoryAuto;
+
+    /**
+     * The heap added to the live heap when {@code forkMemoryAuto} is set, in percent.
+     *
+     * @parameter expression="${grails.fork.memory.headroom}" default-value="100"
+     */
+    protected int forkMemoryHeadroom = 100;
+
+    /**
+     * The history read and written when {@code forkMemoryAuto} is set. Point it outside the
+     * build directory to keep the history across clean builds.
+     *
+     * @parameter expression="${grails.fork.memory.history}" default-value="${project.build.directory}/grails-maven/fork-memory.properties"
+     */
+    protected File forkMemoryHistory;
+
+    /**
+     * Whether forked goals run in a pool of warm JVMs shared by all modules of the build, instead
+     * of a new JVM each. Goals with the same build dependencies and fork settings reuse each
+     * other's JVMs, across modules; the JVMs end with Maven. Goals that keep running, such as
+     * {@code run-app}, or that are debugged or log their garbage collections keep forking a JVM
+     * of their own. Pooled goals get their module as {@code base.dir} and {@code user.dir}, but
+     * keep the operating system working directory of the module that started the JVM, which
+     * only matters to build code opening relative paths without resolving them. Pooled goals
+     * use {@code forkMaxMemory} and {@code forkMinMemory}; {@code forkMemoryAuto} only sizes
+     * the goals that fork a JVM of their own.
+     *
+     * @parameter expression="${grails.fork.pool}" default-value="false"
+     */
+    protected boolean forkPool;
+
+    /**
+     * The number of JVMs the {@code forkPool} may keep, defaults to the number of threads of
+     * the build ({@code -T}).
+     *
+     * @parameter expression="${grails.fork.pool.size}" default-value="0"
+     */
+    protected int forkPoolSize;
+
+    /**
+     * @parameter expression="${session}"
+     * @required
+     * @readonly
+     */
+    protected MavenSession session;
+
+    /**
+     * Whether Grails plugin modules of the same reactor build are used as inline plugins, from
+     * their directories, by the modules depending on them. Grails then compiles their sources
+     * along with the application instead of installing their packaged zip, so the plugins
+     * don't have to be packaged and installed for the application to build.
+     *
+     * @parameter expression="${grails.inlineReactorPlugins}" default-value="false"
+     */
+    protected boolean inlineReactorPlugins;
+
+    /**
+     * Whether the classes Grails compiles from the sources of plugins are cached in
+     * {@code pluginClassesCacheDirectory}, keyed on the plugin and other non-test dependencies,
+     * the Grails and Groovy versions and the Java version of Maven. A clean build of a project
+     * whose plugins were compiled before, by any project, restores them and only compiles the
+     * application. Not used with {@code inlineReactorPlugins}, as the sources of inline plugins
+     * change.
+     *
+     * @parameter expression="${grails.cachePluginClasses}" default-value="false"
+     */
+    protected boolean cachePluginClasses;
+
+    /**
+     * Where compiled plugin classes are cached.
+     *
+     * @parameter expression="${grails.pluginClassesCacheDirectory}" default-value="${user.home}/.grails-maven/plugin-classes"
+     */
+    protected File pluginClassesCacheDirectory;
+
+    /**
+     * Whether goals packaging a WAR or standalone jar index the classes in it, including those
+     * of the nested jars and of the {@code embedded.war} of a standalone jar, and write a report
+     * of duplicate classes and of jars nothing else refers to next to the archive.
+     *
+     * @parameter expression="${grails.archive.analyze}" default-value="false"
+     */
+    protected boolean analyzeArchive;
+
+    /**
+     * Nested jars (file names, {@code *} matching any characters) removed from the packaged
+     * archive when {@code analyzeArchive} is set and every class in them is also found in
+     * another part of the same WAR. Matching jars with classes of their own are kept.
+     *
+     * @parameter
+     */
+    protected List<String> excludeDuplicateJars;
+
     /**
      * The directory where plugins are stored.
      *
@@ -248,6 +437,14 @@ public abstract class AbstractGrailsMojo extends AbstractMojo {
      */
     private GrailsServices grailsServices;
 
+    /**
+     * Moves the files produced by Grails into the build directory.
+     *
+     * @component
+     * @readonly
+     */
+    private ArtifactTransfer artifactTransfer;
+
     /**
      * Utility for resolving dependencies from Maven
      *
@@ -312,6 +509,64 @@ public abstract class AbstractGrailsMojo extends AbstractMojo {
        return env;
     }
 
+    protected ArtifactTransfer getArtifactTransfer() {
+        return artifactTransfer;
+    }
+
+    /**
+     * Writes the duplicate class and unreferenced jar report of a packaged archive when
+     * {@code analyzeArchive} is set, and removes the redundant jars configured in
+     * {@code excludeDuplicateJars} from it.
+     *
+     * @param archive The WAR or standalone jar
+     * @throws MojoExecutionException If the archive can't be read or rewritten
+     */
+    protected void analyzePackagedArchive(File archive) throws MojoExecutionException {
+        if (!analyzeArchive) {
+            return;
+        }
+
+        final long start = System.currentTimeMillis();
+        final File report = new File(archive.getPath() + "-analysis.txt");
+        File tempFile = null;
+        try {
+            final ArchiveAnalyzer.Report analysis = new ArchiveAnalyzer(0).analyze(archive);
+            final Writer out = new OutputStreamWriter(new FileOutputStream(report), "UTF-8");
+            try {
+                analysis.write(out);
+            } finally {
+                out.close();
+            }
+            getLog().info("Analyzed '" + archive + "' in " + (System.currentTimeMillis() - start) + "ms: " +
+                    analysis.getDuplicates().size() + " duplicate classes, " + analysis.getUnreferenced().size() +
+                    " unreferenced jars, see '" + report + "'.");
+
+            if (excludeDuplicateJars == null || excludeDuplicateJars.isEmpty()) {
+                return;
+            }
+            final Set<String> excluded = new TreeSet<String>();
+            for (String jar : analysis.findJars(excludeDuplicateJars)) {
+                if (analysis.isRedundant(jar, excluded)) {
+                    excluded.add(jar);
+                } else {
+                    getLog().warn("Keeping '" + jar + "' in '" + archive + "' as it has classes found nowhere else.");
+                }
+            }
+            if (!excluded.isEmpty()) {
+                tempFile = File.createTempFile(archive.getName(), ".tmp", archive.getAbsoluteFile().getParentFile());
+                ArchiveAnalyzer.copyWithout(archive, excluded, tempFile);
+                getArtifactTransfer().move(tempFile, archive);
+                getLog().info("Removed duplicate jars from '" + archive + "': " + excluded);
+            }
+        } catch (IOException e) {
+            throw new MojoExecutionException("Unable to analyze " + archive, e);
+        } finally {
+            if (tempFile != null) {
+                tempFile.delete();
+            }
+        }
+    }
+
     /**
      * Returns the {@code GrailsServices} instance used by the plugin with the base directory
      * of the services object set to the configured base directory.
@@ -320,6 +575,9 @@ public abstract class AbstractGrailsMojo extends AbstractMojo {
      */
     protected GrailsServices getGrailsServices() {
         grailsServices.setBasedir(basedir);
+        if (project != null && project.getBuild().getDirectory() != null) {
+            grailsServices.setBuildDirectory(new File(project.getBuild().getDirectory()));
+        }
         return grailsServices;
     }
 
@@ -343,11 +601,25 @@ public abstract class AbstractGrailsMojo extends AbstractMojo {
      * @throws MojoExecutionException if an error occurs while attempting to execute the target.
      */
     protected void runGrails(final String targetName, String args) throws MojoExecutionException {
-        configureMavenProxy();
         handleVersionSync();
+        String pluginClassesKey = cachePluginClasses ? restorePluginClasses() : null;
+        SharedWorkDir sharedWorkDir = sharedGrailsWorkDir != null ? checkoutWorkDir() : null;
 
         if(fork) {
-            ForkedGrailsRuntime fgr = new ForkedGrailsRuntime(createExecutionContext(targetName, args));
+            AbstractGrailsRuntime.ExecutionContext ec = createExecutionContext(targetName, args);
+            BuildEventRecorder recorder = null;
+            BuildEventServer eventServer = null;
+            if (buildEvents) {
+                recorder = new BuildEventRecorder(getLog());
+                try {
+                    eventServer = BuildEventServer.open(recorder);
+                    ec.setBuildEventPort(eventServer.getPort());
+                } catch (IOException e) {
+                    getLog().warn("Unable to receive Grails build events: " + e.getMessage());
+                }
+            }
+
+            ForkedGrailsRuntime fgr = new ForkedGrailsRuntime(ec);
             if (activateAgent) {
                 File springLoadedJar = resolveArtifact("org.springframework:springloaded:" + SPRING_LOADED_VERSION);
                 if (springLoadedJar != null) {
@@ -357,14 +629,56 @@ public abstract class AbstractGrailsMojo extends AbstractMojo {
                     getLog().error("Grails Reloading: not enabled");
                 }
             }
+            if (forkPool && !isLongRunning()) {
+                ForkedGrailsPool pool = ForkedGrailsPool.getInstance();
+                pool.ensureMaxWorkers(forkPoolSize > 0 ? forkPoolSize : getBuildThreadCount());
+                fgr.setPool(pool);
+            }
             fgr.setDebug(forkDebug);
             fgr.setMaxMemory(forkMaxMemory);
             fgr.setMaxPerm(forkPermGen);
             fgr.setMinMemory(forkMinMemory);
+            File diagnosticsDir = new File(project.getBuild().getDirectory(), "grails-maven/" + targetName);
+            fgr.setHeapDumpDir(diagnosticsDir);
+            File gcLog = forkGcLog ? new File(diagnosticsDir, "gc.log") : null;
+            fgr.setGcLog(gcLog);
+            ForkMemoryHistory memoryHistory = null;
+            int maxMemory = forkMaxMemory;
+            // a pooled JVM keeps the heap it was started with and serves other scripts too
+            if (forkMemoryAuto && !fgr.isPooled()) {
+                memoryHistory = new ForkMemoryHistory(forkMemoryHistory, forkMemoryHeadroom);
+                maxMemory = sizeForkMemory(fgr, memoryHistory, targetName);
+                File memoryReport = new File(diagnosticsDir, "memory-report.properties");
+                memoryReport.getParentFile().mkdirs();
+                memoryReport.delete();
+                ec.setMemoryReport(memoryReport);
+            }
+
+            MojoExecutionException failure = null;
             try {
                 fgr.run();
-            } catch (Exception e) {
-                throw new RuntimeException("Error forking vm: ", e);
+            } catch (MojoExecutionException e) {
+                failure = e;
+            }
+            if (gcLog != null) {
+                summarizeGcLog(gcLog);
+            }
+            if (memoryHistory != null) {
+                recordForkMemory(fgr, memoryHistory, ec.getMemoryReport(), targetName, maxMemory);
+            }
+
+            if (eventServer != null) {
+                closeBuildEvents(eventServer, recorder, targetName);
+                String problems = recorder.describeProblems();
+                if (failure != null && problems.length() > 0) {
+                    failure = new MojoExecutionException(failure.getMessage() + "\nReported problems:" + problems, failure);
+                } else if (failure == null && !recorder.getCompileErrors().isEmpty()) {
+                    failure = new MojoExecutionException("Grails " + targetName + " reported " +
+                            recorder.getCompileErrors().size() + " compilation errors:" + problems);
+                }
+            }
+            if (failure != null) {
+                throw failure;
             }
 
         } else {
@@ -372,6 +686,188 @@ public abstract class AbstractGrailsMojo extends AbstractMojo {
             dgr.run();
         }
 
+        if (pluginClassesKey != null) {
+            storePluginClasses(pluginClassesKey);
+        }
+        if (sharedWorkDir != null) {
+            publishWorkDir(sharedWorkDir);
+        }
+
+    }
+
+    /**
+     * @return The number of threads of the build ({@code -T}). Maven 3.2.1 replaced the
+     * {@code threadCount} of the request by {@code degreeOfConcurrency}, so both are looked up.
+     */
+    private int getBuildThreadCount() {
+        if (session == null || session.getRequest() == null) {
+            return 1;
+        }
+        final Object request = session.getRequest();
+        try {
+            return Math.max(1, (Integer) request.getClass().getMethod("getDegreeOfConcurrency").invoke(request));
+        } catch (Exception e) {
+            // older Maven
+        }
+        try {
+            return ForkedGrailsPool.parseThreadCount((String) request.getClass().getMethod("getThreadCount").invoke(request));
+        } catch (Exception e) {
+            return 1;
+        }
+    }
+
+    /**
+     * @return Whether the goal keeps running until it is stopped, so that it doesn't take a JVM
+     * of the {@code forkPool}
+     */
+    protected boolean isLongRunning() {
+        return false;
+    }
+
+    /**
+     * Restores the compiled plugin classes of the project from the cache.
+     *
+     * @return The key of the project in the cache, or null if it isn't cached
+     */
+    private String restorePluginClasses() throws MojoExecutionException {
+        if (inlineReactorPlugins && session != null && !new ReactorPlugins(session.getProjects()).getDependencies(project).isEmpty()) {
+            return null;
+        }
+
+        List<String> plugins = new ArrayList<String>();
+        List<String> classpath = new ArrayList<String>();
+        for (Artifact artifact : project.getArtifacts()) {
+            String type = artifact.getType();
+            String coordinates = artifact.getGroupId() + ":" + artifact.getArtifactId() + ":" + type + ":" +
+                    (artifact.hasClassifier() ? artifact.getClassifier() + ":" : "") + artifact.getVersion();
+            if (artifact.isSnapshot() && artifact.getFile() != null) {
+                // snapshots change under the same version
+                coordinates += ":" + artifact.getFile().length() + ":" + artifact.getFile().lastModified();
+            }
+            if ("zip".equals(type) || "grails-plugin".equals(type) || "grails-binary-plugin".equals(type)) {
+                plugins.add(coordinates);
+            } else if (!Artifact.SCOPE_TEST.equals(artifact.getScope())) {
+                // plugins are compiled against the rest of the class path
+                classpath.add(coordinates);
+            }
+        }
+        if (plugins.isEmpty()) {
+            return null;
+        }
+
+        String key;
+        try {
+            key = PluginClassesCache.key(plugins, classpath, establishGrailsVersion(), establishGroovyVersion(),
+                    System.getProperty("java.specification.version"));
+        } catch (ProjectBuildingException e) {
+            throw new MojoExecutionException("Unable to establish the Grails and Groovy versions", e);
+        }
+        try {
+            if (new PluginClassesCache(pluginClassesCacheDirectory).restore(key, new File(project.getBuild().getDirectory()))) {
+                getLog().info("Restored the compiled classes of " + plugins.size() + " plugins from '" + pluginClassesCacheDirectory + "'.");
+            }
+        } catch (IOException e) {
+            getLog().warn("Unable to restore the compiled plugin classes: " + e.getMessage());
+        }
+        return key;
+    }
+
+    private void storePluginClasses(String key) {
+        try {
+            if (new PluginClassesCache(pluginClassesCacheDirectory).store(key, new File(project.getBuild().getDirectory()))) {
+                getLog().info("Cached the compiled plugin classes in '" + pluginClassesCacheDirectory + "'.");
+            }
+        } catch (IOException e) {
+            getLog().warn("Unable to cache the compiled plugin classes: " + e.getMessage());
+        }
+    }
+
+    private SharedWorkDir checkoutWorkDir() {
+        SharedWorkDir sharedWorkDir = new SharedWorkDir(sharedGrailsWorkDir, new File(grailsWorkDir));
+        try {
+            int copied = sharedWorkDir.checkout();
+            getLog().debug("Copied " + copied + " files from '" + sharedGrailsWorkDir + "' to '" + grailsWorkDir + "'.");
+        } catch (IOException e) {
+            getLog().warn("Unable to copy the shared work directory '" + sharedGrailsWorkDir + "': " + e.getMessage());
+        }
+        return sharedWorkDir;
+    }
+
+    private void publishWorkDir(SharedWorkDir sharedWorkDir) {
+        try {
+            int published = sharedWorkDir.publish();
+            if (published > 0) {
+                getLog().info("Published " + published + " files to the shared work directory '" + sharedGrailsWorkDir + "'.");
+            }
+        } catch (IOException e) {
+            getLog().warn("Unable to publish to the shared work directory '" + sharedGrailsWorkDir + "': " + e.getMessage());
+        }
+    }
+
+    private int sizeForkMemory(ForkedGrailsRuntime fgr, ForkMemoryHistory memoryHistory, String targetName) {
+        try {
+            int[] size = memoryHistory.size(targetName);
+            if (size != null) {
+                getLog().info("Sizing the heap of Grails " + targetName + " from its history: -Xmx" + size[0] + "M -Xms" + size[1] + "M");
+                fgr.setMaxMemory(size[0]);
+                fgr.setMinMemory(size[1]);
+                return size[0];
+            }
+        } catch (IOException e) {
+            getLog().warn("Unable to read " + forkMemoryHistory + ": " + e.getMessage());
+        }
+        return forkMaxMemory;
+    }
+
+    private void recordForkMemory(ForkedGrailsRuntime fgr, ForkMemoryHistory memoryHistory, File memoryReport, String targetName, int maxMemory) {
+        try {
+            ForkMemoryHistory.Sample sample = ForkMemoryHistory.readReport(memoryReport);
+            ForkExitStatus status = fgr.getExitStatus();
+            if (status != null && status.getOutOfMemory() == ForkExitStatus.OutOfMemory.HEAP) {
+                // the report of a JVM that ran out of heap may not show it
+                sample = ForkMemoryHistory.Sample.outOfMemory(maxMemory);
+            }
+            if (sample != null) {
+                memoryHistory.record(targetName, sample);
+            }
+        } catch (IOException e) {
+            getLog().warn("Unable to record the heap usage of Grails " + targetName + ": " + e.getMessage());
+        }
+    }
+
+    private void summarizeGcLog(File gcLog) {
+        if (!gcLog.isFile()) {
+            return;
+        }
+        try {
+            String summary = GcLogAnalyzer.analyze(gcLog).describe();
+            File summaryFile = new File(gcLog.getParentFile(), "gc-summary.txt");
+            Writer out = new OutputStreamWriter(new FileOutputStream(summaryFile), "UTF-8");
+            try {
+                out.write(summary);
+                out.write(System.getProperty("line.separator"));
+            } finally {
+                out.close();
+            }
+            for (String line : summary.split("\\r?\\n")) {
+                getLog().info(line);
+            }
+        } catch (IOException e) {
+            getLog().warn("Unable to analyze " + gcLog + ": " + e.getMessage());
+        }
+    }
+
+    private void closeBuildEvents(BuildEventServer eventServer, BuildEventRecorder recorder, String targetName) {
+        try {
+            eventServer.close();
+            recorder.writeMetrics(new File(project.getBuild().getDirectory(), "grails-build-events/" + targetName + ".txt"));
+        } catch (IOException e) {
+            getLog().warn("Unable to record the Grails build events: " + e.getMessage());
+        }
+        if (recorder.getTestCount() > 0) {
+            getLog().info("Grails " + targetName + " ran " + recorder.getTestCount() + " tests, " +
+                    recorder.getTestFailures().size() + " failed.");
+        }
     }
 
     protected AbstractGrailsRuntime.ExecutionContext createExecutionContext(String targetName, String args) throws MojoExecutionException {
@@ -379,17 +875,42 @@ public abstract class AbstractGrailsMojo extends AbstractMojo {
         ForkedGrailsRuntime.ExecutionContext ec = new ForkedGrailsRuntime.ExecutionContext();
         ec.setBuildDependencies( resolveBuildDependencies() );
         List<File> providedDependencies = resolveArtifacts("provided");
-        List<File> compileDependencies = resolveArtifacts("compile");
+        List<org.eclipse.aether.graph.Dependency> compileGraph = resolveDependencies(project, Arrays.asList("compile"), null);
+        List<File> compileDependencies = toFiles(compileGraph);
 
         List<File> runtimeDependencies = resolveArtifacts(COMPILE_PLUS_RUNTIME_SCOPE);
 
-        Set<File> testDependencies = new HashSet<File>( resolveArtifacts("test") );
+        List<File> testOnlyDependencies = resolveArtifacts("test");
+        if (inlineReactorPlugins && session != null) {
+            ReactorPlugins reactorPlugins = new ReactorPlugins(session.getProjects());
+            Map<String, MavenProject> inlinePlugins = reactorPlugins.getDependencies(project);
+            if (!inlinePlugins.isEmpty()) {
+                Set<File> packages = reactorPlugins.getPackages(project);
+                providedDependencies = ReactorPlugins.withoutPackages(providedDependencies, packages);
+                compileDependencies = ReactorPlugins.withoutPackages(compileDependencies, packages);
+                runtimeDependencies = ReactorPlugins.withoutPackages(runtimeDependencies, packages);
+                testOnlyDependencies = ReactorPlugins.withoutPackages(testOnlyDependencies, packages);
+                for (Map.Entry<String, MavenProject> plugin : inlinePlugins.entrySet()) {
+                    getLog().info("Using reactor plugin '" + plugin.getKey() + "' inline from '" + plugin.getValue().getBasedir() + "'");
+                    ec.getSystemProperties().put(InlinePluginRegistrar.LOCATION_PREFIX + plugin.getKey(), plugin.getValue().getBasedir().getAbsolutePath());
+                }
+            }
+        }
+
+        Set<File> testDependencies = new HashSet<File>( testOnlyDependencies );
         testDependencies.addAll( providedDependencies );
         testDependencies.addAll( compileDependencies );
         testDependencies.addAll(runtimeDependencies);
         ec.setProvidedDependencies(providedDependencies);
         ec.setRuntimeDependencies(new ArrayList<File>(runtimeDependencies));
         ec.setCompileDependencies(compileDependencies);
+
+        List<org.eclipse.aether.artifact.Artifact> compileArtifacts = new ArrayList<org.eclipse.aether.artifact.Artifact>();
+        for (org.eclipse.aether.graph.Dependency d : compileGraph) {
+            compileArtifacts.add(d.getArtifact());
+        }
+        ec.setLoggingSelection(LoggingBootstrap.select(compileArtifacts));
+        ec.setAsyncLogging(fork && forkAsyncLogging);
         ec.setTestDependencies(new ArrayList<File>(testDependencies));
 
         ec.setGrailsWorkDir(new File(grailsWorkDir));
@@ -399,6 +920,14 @@ public abstract class AbstractGrailsMojo extends AbstractMojo {
         ec.setResourcesDir(new File(targetDir, "resources"));
         ec.setProjectPluginsDir(this.pluginsDir);
         ec.setForkedVmArgs(this.forkedVmArgs);
+        ec.setReuseBuildClassLoader(!fork && this.reuseBuildClassLoader);
+        if (this.indexBuildClasspath) {
+            ec.setClassPathIndexDir(this.classPathIndexDirectory);
+        }
+
+        ec.getSystemProperties().put("grails.console.enable.terminal", "false");
+        ec.getSystemProperties().put("grails.console.enable.interactive", "false");
+        configureMavenProxy(ec);
 
         // If the command is running in non-interactive mode, we
         // need to pass on the relevant argument.
@@ -520,6 +1049,13 @@ public abstract class AbstractGrailsMojo extends AbstractMojo {
     }
 
     protected List<File> resolveArtifacts(MavenProject mavenProject, Collection<String> scopes, DependencyFilter filter) throws MojoExecutionException {
+        return toFiles(resolveDependencies(mavenProject, scopes, filter));
+    }
+
+    /**
+     * Resolves the dependency graph of a project, keeping the coordinates of each dependency.
+     */
+    protected List<org.eclipse.aether.graph.Dependency> resolveDependencies(MavenProject mavenProject, Collection<String> scopes, DependencyFilter filter) throws MojoExecutionException {
         try {
             DefaultDependencyResolutionRequest request = new DefaultDependencyResolutionRequest(mavenProject, repoSession);
             if(filter != null) {
@@ -529,24 +1065,26 @@ public abstract class AbstractGrailsMojo extends AbstractMojo {
                 request.setResolutionFilter(new ScopeDependencyFilter(scopes, Collections.<String>emptyList()));
             }
             DependencyResolutionResult result = projectDependenciesResolver.resolve(request);
-            List<org.eclipse.aether.graph.Dependency> dependencies = result.getDependencies();
-
-            final List<File> files = new ArrayList<File>();
+            return result.getDependencies();
+        } catch (DependencyResolutionException e) {
+            throw new MojoExecutionException("Dependency resolution failure: " + e.getMessage(), e);
+        }
+    }
 
-            for(org.eclipse.aether.graph.Dependency d : dependencies) {
-                org.eclipse.aether.artifact.Artifact artifact = d.getArtifact();
-                File file = artifact.getFile();
-                if(file != null) {
-                    String name = file.getName();
-                    if(!name.contains("xml-apis") && !name.contains("commons-logging"))
-                        files.add(file);
-                }
+    private List<File> toFiles(List<org.eclipse.aether.graph.Dependency> dependencies) {
+        final List<File> files = new ArrayList<File>();
 
+        for(org.eclipse.aether.graph.Dependency d : dependencies) {
+            org.eclipse.aether.artifact.Artifact artifact = d.getArtifact();
+            File file = artifact.getFile();
+            if(file != null) {
+                String name = file.getName();
+                if(!name.contains("xml-apis") && !name.contains("commons-logging"))
+                    files.add(file);
             }
-            return files;
-        } catch (DependencyResolutionException e) {
-            throw new MojoExecutionException("Dependency resolution failure: " + e.getMessage(), e);
+
         }
+        return files;
     }
 
     protected List<File> resolveBuildDependencies() throws MojoExecutionException {
@@ -645,72 +1183,39 @@ public abstract class AbstractGrailsMojo extends AbstractMojo {
 
 
     private void handleVersionSync() throws MojoExecutionException {
-        // Search for all Grails plugin dependencies and install
-        // any that haven't already been installed.
-        final Properties metadata = new Properties();
+        // Stage the versions from the POM together with any changes made by earlier
+        // goals, and write them all before Grails reads application.properties.
+        final GrailsServices services = getGrailsServices();
+        final ProjectMetadata metadata = services.readProjectMetadata();
 
-        File metadataFile = new File(getBasedir(), "application.properties");
-
-        FileReader reader = null;
-        FileWriter writer = null;
-        try {
-            boolean created = true;
-            if(!metadataFile.exists()) {
-                created = metadataFile.createNewFile();
-            }
-
-            if(created) {
-                reader = new FileReader(metadataFile);
-                metadata.load(reader);
-
-                boolean metadataModified = syncVersions(metadata);
-
-                if (metadataModified) {
-
-                    writer = new FileWriter(metadataFile);
-                    metadata.store(writer, "Grails Metadata file");
-                }
-            }
-        } catch (IOException e) {
-            throw new MojoExecutionException("Failed to sync application version with Maven plugin defined version");
-        } finally {
-            try {
-                if(reader != null)
-                    reader.close();
-                if(writer != null)
-                    writer.close();
-            } catch (IOException e) {
-                // ignore
-            }
+        for (Map.Entry<String, String> change : syncVersions(metadata).entrySet()) {
+            services.stageProjectMetadata(change.getKey(), change.getValue());
         }
+        services.flushProjectMetadata();
     }
+    private Map<String, String> syncVersions(ProjectMetadata metadata) {
 
-    private boolean syncVersions(Properties metadata) {
-
-        boolean result = false;
+        final Map<String, String> changes = new LinkedHashMap<String, String>();
 
-        Object grailsVersion = metadata.get(APP_GRAILS_VERSION);
+        String grailsVersion = metadata.getAppGrailsVersion();
         Artifact grailsDependency = findGrailsDependency(project);
         if (grailsDependency != null) {
             if (!grailsDependency.getVersion().equals(grailsVersion)) {
-                metadata.put(APP_GRAILS_VERSION, grailsDependency.getVersion());
-                result = true;
+                changes.put(APP_GRAILS_VERSION, grailsDependency.getVersion());
             }
         }
 
-        Object appVersion = metadata.get(APP_VERSION);
+        String appVersion = metadata.getAppVersion();
         if (!project.getVersion().equals(appVersion)) {
-            metadata.put(APP_VERSION, project.getVersion());
-            result = true;
+            changes.put(APP_VERSION, project.getVersion());
         }
 
-        Object appName = metadata.get(APP_NAME);
+        String appName = metadata.getAppName();
         if (!project.getArtifactId().equals(appName)) {
-            metadata.put(APP_NAME, project.getName());
-            result = true;
-        } 
+            changes.put(APP_NAME, project.getName());
+        }
 
-        return result;
+        return changes;
     }
 
 
@@ -743,25 +1248,31 @@ public abstract class AbstractGrailsMojo extends AbstractMojo {
 
 
 
-    private void configureMavenProxy() {
+    /**
+     * Passes the active Maven proxy to the Grails execution. The settings are scoped to the
+     * execution rather than set on the Maven JVM, so parallel module builds don't see each
+     * other's configuration.
+     */
+    private void configureMavenProxy(AbstractGrailsRuntime.ExecutionContext ec) {
         if (settings != null) {
             Proxy activeProxy = settings.getActiveProxy();
             if (activeProxy != null) {
+                Map<String, String> systemProperties = ec.getSystemProperties();
                 String host = activeProxy.getHost();
                 int port = activeProxy.getPort();
                 String noProxy = activeProxy.getNonProxyHosts();
                 String username = activeProxy.getUsername();
                 String password = activeProxy.getPassword();
-                System.setProperty("http.proxyHost", host);
-                System.setProperty("http.proxyPort", String.valueOf(port));
+                systemProperties.put("http.proxyHost", host);
+                systemProperties.put("http.proxyPort", String.valueOf(port));
                 if (noProxy != null) {
-                    System.setProperty("http.nonProxyHosts", noProxy);
+                    systemProperties.put("http.nonProxyHosts", noProxy);
                 }
                 if (username != null) {
-                    System.setProperty("http.proxyUser", username);
+                    systemProperties.put("http.proxyUser", username);
                 }
                 if (password != null) {
-                    System.setProperty("http.proxyPassword", password);
+                    systemProperties.put("http.proxyPassword", password);
                 }
             }
         }
@@ -44,6 +44,7 @@ import org.grails.maven.plugin.tools.GrailsServices;
  * @description Creates a creates a maven 2 POM for on an existing Grails
  * project.
  * @goal create-pom
+ * @threadSafe
  * @requiresProject false
  * @requiresDependencyResolution runtime
  * @since 0.1
@@ -25,6 +25,7 @@ import org.apache.maven.plugin.MojoFailureException;
  * @version $Id$
  * @description Cleans a Grails project.
  * @goal clean
+ * @threadSafe
  * @requiresProject true
  * @requiresDependencyResolution runtime
  * @since 0.1
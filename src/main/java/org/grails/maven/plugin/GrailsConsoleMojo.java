@@ -25,6 +25,7 @@ import org.apache.maven.plugin.MojoFailureException;
  * @version $Id$
  * @description Runs a Grails console inside the current project.
  * @goal console
+ * @threadSafe
  * @requiresProject true
  * @requiresDependencyResolution runtime
  * @since 1.0
@@ -34,4 +35,9 @@ public class GrailsConsoleMojo extends AbstractGrailsMojo {
     public void execute() throws MojoExecutionException, MojoFailureException {
         runGrails("Console");
     }
+
+    @Override
+    protected boolean isLongRunning() {
+        return true;
+    }
 }
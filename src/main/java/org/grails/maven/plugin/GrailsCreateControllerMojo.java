@@ -30,6 +30,7 @@ import org.apache.maven.plugin.MojoFailureException;
  * @version $Id$
  * @description Creates a new controller.
  * @goal create-controller
+ * @threadSafe
  * @requiresDependencyResolution runtime
  * @since 0.1
  */
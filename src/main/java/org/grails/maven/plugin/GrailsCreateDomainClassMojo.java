@@ -26,6 +26,7 @@ import org.apache.maven.plugin.MojoFailureException;
  * @version $Id$
  * @description Creates a new domain class.
  * @goal create-domain-class
+ * @threadSafe
  * @requiresProject false
  * @requiresDependencyResolution runtime
  * @since 0.1
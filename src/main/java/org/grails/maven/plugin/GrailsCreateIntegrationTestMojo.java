@@ -29,6 +29,7 @@ import org.apache.maven.plugin.MojoFailureException;
  * @description Creates a new Grails integration test which loads the whole
  * Grails environment when run.
  * @goal create-integration-test
+ * @threadSafe
  * @requiresProject false
  * @requiresDependencyResolution runtime
  * @since 0.1
@@ -26,6 +26,7 @@ import org.apache.maven.plugin.MojoFailureException;
  * @version $Id$
  * @description Creates a Grails Gant Script.
  * @goal create-script
+ * @threadSafe
  * @requiresProject false
  * @requiresDependencyResolution runtime
  * @since 0.1
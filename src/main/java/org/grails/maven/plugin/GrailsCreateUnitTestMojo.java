@@ -28,6 +28,7 @@ import org.apache.maven.plugin.MojoFailureException;
  * @description Creates a new Grails unit test. A unit test requires that you
  * mock out access to dynamic methods, but executes a lot quicker.
  * @goal create-unit-test
+ * @threadSafe
  * @requiresProject false
  * @requiresDependencyResolution runtime
  * @since 0.1
@@ -26,6 +26,7 @@ import org.grails.maven.plugin.tools.DefaultGrailsServices;
  * @version $Id$
  * @description Executes an arbitrary Grails command.
  * @goal exec
+ * @threadSafe
  * @requiresProject false
  * @requiresDependencyResolution test
  * @since 0.4
@@ -27,6 +27,7 @@ import org.apache.maven.plugin.MojoFailureException;
  * @description Generates a CRUD interface (controller + views) for a domain
  * class.
  * @goal generate-all
+ * @threadSafe
  * @requiresProject false
  * @requiresDependencyResolution runtime
  * @since 0.1
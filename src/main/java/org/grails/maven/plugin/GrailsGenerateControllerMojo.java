@@ -25,6 +25,7 @@ import org.apache.maven.plugin.MojoFailureException;
  * @version $Id$
  * @description Generates a CRUD controller for a specified domain class.
  * @goal generate-controller
+ * @threadSafe
  * @requiresProject false
  * @requiresDependencyResolution runtime
  * @since 0.1
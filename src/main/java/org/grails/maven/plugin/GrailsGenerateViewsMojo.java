@@ -26,6 +26,7 @@ import org.apache.maven.plugin.MojoFailureException;
  * @version $Id$
  * @description Generates the CRUD views for a specified domain class.
  * @goal generate-views
+ * @threadSafe
  * @requiresProject false
  * @requiresDependencyResolution runtime
  * @since 0.1
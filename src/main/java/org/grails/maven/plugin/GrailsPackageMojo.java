@@ -26,6 +26,7 @@ import org.apache.maven.plugin.MojoFailureException;
  * @description Packages the Grails application into the web-app folder for
  * running.
  * @goal package
+ * @threadSafe
  * @requiresProject false
  * @requiresDependencyResolution runtime
  * @since 0.2
@@ -19,8 +19,10 @@ import org.apache.maven.artifact.Artifact;
 import org.apache.maven.artifact.handler.ArtifactHandler;
 import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugin.MojoFailureException;
+import org.grails.maven.plugin.tools.AbstractGrailsRuntime;
 
 import java.io.File;
+import java.io.IOException;
 
 /**
  * Packages the Grails plugin.
@@ -29,6 +31,7 @@ import java.io.File;
  * @version $Id$
  * @description Packages the Grails plugin.
  * @goal package-plugin
+ * @threadSafe
  * @phase package
  * @requiresProject true
  * @requiresDependencyResolution runtime
@@ -36,6 +39,11 @@ import java.io.File;
  */
 public class GrailsPackagePluginMojo extends AbstractGrailsMojo {
 
+    /**
+     * The Grails build setting holding the directory binary plugins are packaged into.
+     */
+    private static final String GRAILS_PROJECT_TARGET_DIR = "grails.project.target.dir";
+
     /**
      * The artifact that this project produces.
      *
@@ -64,41 +72,50 @@ public class GrailsPackagePluginMojo extends AbstractGrailsMojo {
     protected ArtifactHandler binaryArtifactHandler;
 
     public void execute() throws MojoExecutionException, MojoFailureException {
-        // First package the plugin using the Grails script.
-        runGrails("PackagePlugin");
-
-        // Now move the ZIP from the project directory to the build
-        // output directory.
+        final File buildDir = new File(project.getBuild().getDirectory());
         String zipFileName = project.getArtifactId() + "-" + project.getVersion() + ".zip";
         if (!zipFileName.startsWith(PLUGIN_PREFIX)) zipFileName = PLUGIN_PREFIX + zipFileName;
 
-        File zipGeneratedByGrails = new File(getBasedir(), zipFileName);
-        ArtifactHandler handler = artifactHandler;
+        // Grails writes source plugins to the project directory and binary plugins to its
+        // target directory, which createExecutionContext points at the Maven build directory.
+        final File zipGeneratedByGrails = new File(getBasedir(), zipFileName);
+        final File jarGeneratedByGrails = new File(buildDir, "grails-plugin-" + project.getArtifactId() + "-" + project.getVersion() + ".jar");
 
-        if(!zipGeneratedByGrails.exists()) {
-            // try binary jar
-            final String targetDir = this.project.getBuild().getDirectory();
-            File jarFile = new File(targetDir, "grails-plugin-" + project.getArtifactId() + "-" + project.getVersion() + ".jar");
-            if(jarFile.exists()) {
+        // Remove the output of earlier builds, so that whatever exists afterwards is ours.
+        zipGeneratedByGrails.delete();
+        jarGeneratedByGrails.delete();
 
-                zipGeneratedByGrails = jarFile;
-                zipFileName = project.getArtifactId() + "-" + project.getVersion() + ".jar";
-                handler = binaryArtifactHandler;
-            }
+        // First package the plugin using the Grails script.
+        runGrails("PackagePlugin");
 
+        if (jarGeneratedByGrails.exists()) {
+            // A binary plugin, already where it belongs.
+            getLog().info("Binary plugin written to '" + jarGeneratedByGrails + "'.");
+            artifact.setFile(jarGeneratedByGrails);
+            artifact.setArtifactHandler(binaryArtifactHandler);
+            return;
         }
 
-        File mavenZipFile = new File(project.getBuild().getDirectory(), zipFileName);
-        mavenZipFile.delete();
-        if (!zipGeneratedByGrails.renameTo(mavenZipFile)) {
-            throw new MojoExecutionException("Unable to copy the plugin ZIP to the target directory");
-        } else {
-            getLog().info("Moved plugin ZIP to '" + mavenZipFile + "'.");
+        // Now move the ZIP from the project directory to the build
+        // output directory.
+        File mavenZipFile = new File(buildDir, zipFileName);
+        try {
+            getArtifactTransfer().move(zipGeneratedByGrails, mavenZipFile);
+        } catch (IOException e) {
+            throw new MojoExecutionException("Unable to move the plugin ZIP to the target directory", e);
         }
+        getLog().info("Moved plugin ZIP to '" + mavenZipFile + "'.");
 
         // Attach the zip file to the "grails-plugin" artifact, otherwise
         // the "install" and "deploy" phases won't work.
         artifact.setFile(mavenZipFile);
-        artifact.setArtifactHandler(handler);
+        artifact.setArtifactHandler(artifactHandler);
+    }
+
+    @Override
+    protected AbstractGrailsRuntime.ExecutionContext createExecutionContext(String targetName, String args) throws MojoExecutionException {
+        final AbstractGrailsRuntime.ExecutionContext ec = super.createExecutionContext(targetName, args);
+        ec.getSystemProperties().put(GRAILS_PROJECT_TARGET_DIR, ec.getProjectWorkDir().getAbsolutePath());
+        return ec;
     }
 }
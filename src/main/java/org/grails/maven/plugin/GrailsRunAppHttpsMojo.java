@@ -25,6 +25,7 @@ import org.apache.maven.plugin.MojoFailureException;
  * @version $Id$
  * @description Runs a Grails application in Jetty with HTTPS listener.
  * @goal run-app-https
+ * @threadSafe
  * @requiresProject true
  * @requiresDependencyResolution runtime
  * @since 0.3
@@ -34,4 +35,9 @@ public class GrailsRunAppHttpsMojo extends AbstractGrailsMojo {
     public void execute() throws MojoExecutionException, MojoFailureException {
         runGrails("RunApp", "-https");
     }
+
+    @Override
+    protected boolean isLongRunning() {
+        return true;
+    }
 }
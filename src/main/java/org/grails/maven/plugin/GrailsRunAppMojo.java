@@ -17,6 +17,16 @@ package org.grails.maven.plugin;
 
 import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugin.MojoFailureException;
+import org.grails.maven.plugin.tools.AbstractGrailsRuntime;
+import org.grails.maven.plugin.tools.ChangeChannel;
+import org.grails.maven.plugin.tools.ChangeReceiver;
+import org.grails.maven.plugin.tools.SourceWatcher;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  * Runs a Grails application in Jetty.
@@ -25,17 +35,119 @@ import org.apache.maven.plugin.MojoFailureException;
  * @version $Id$
  * @description Runs a Grails application in Jetty.
  * @goal run-app
+ * @threadSafe
  * @requiresProject true
  * @requiresDependencyResolution runtime
  * @since 0.3
  */
 public class GrailsRunAppMojo extends AbstractGrailsMojo {
 
+    /**
+     * Whether Maven watches the source directories of the project for changes and pushes them
+     * to the running application, instead of leaving Grails to find them by polling. The changes
+     * reach the Grails watchers of the JVM Maven forks; with Grails 2.3+ forked execution
+     * ({@code grails.project.fork.run} in BuildConfig.groovy) the application runs in a further
+     * JVM the changes don't reach, so that setting has to be disabled; a warning is logged when
+     * BuildConfig.groovy sets it.
+     *
+     * @parameter expression="${grails.run.watch}" default-value="false"
+     */
+    private boolean watch;
+
+    /**
+     * How long, in milliseconds, to wait for further changes before pushing a batch of them.
+     *
+     * @parameter expression="${grails.run.watch.debounce}" default-value="200"
+     */
+    private long watchDebounce;
+
+    /**
+     * The polling interval, in milliseconds, of the Grails watchers while changes are pushed.
+     * Polling remains a fallback for changes outside of the watched directories.
+     *
+     * @parameter expression="${grails.run.watch.pollInterval}" default-value="60000"
+     */
+    private long watchPollInterval;
+
+    /**
+     * Whether the forked JVM restarts the application in place, instead of exiting, when
+     * {@code r} is typed on the console or, with {@code watch}, when files reloading can't
+     * handle change. Grails is launched again in a new build class loader, so nothing of the
+     * previous run is kept in it; Maven, the resolved dependencies and the warm forked JVM are
+     * kept. Requires {@code fork}.
+     *
+     * @parameter expression="${grails.run.restartable}" default-value="false"
+     */
+    private boolean restartable;
+
+    private ChangeChannel changeChannel;
+
     public GrailsRunAppMojo() {
         activateAgent = true;
     }
 
     public void execute() throws MojoExecutionException, MojoFailureException {
-        runGrails("RunApp");
+        if (restartable && !fork) {
+            getLog().warn("Restarting run-app in place requires fork, ignoring restartable.");
+        }
+        if (!watch) {
+            runGrails("RunApp");
+            return;
+        }
+
+        final List<File> roots = new ArrayList<File>();
+        for (String sourceDirectory : MvnConfigDirectoriesMojo.SOURCE_DIRECTORIES) {
+            roots.add(new File(project.getBasedir(), sourceDirectory));
+        }
+
+        try {
+            if (ChangeChannel.isRunForked(new File(project.getBasedir(), "grails-app/conf/BuildConfig.groovy"))) {
+                getLog().warn("grails.project.fork.run is set in BuildConfig.groovy, the application runs in a JVM of its own " +
+                        "which the changes found by watch don't reach. Set it to false to reload them.");
+            }
+        } catch (IOException e) {
+            getLog().debug(e);
+        }
+
+        SourceWatcher watcher = null;
+        try {
+            changeChannel = ChangeChannel.open();
+            watcher = new SourceWatcher(roots, watchDebounce, changeChannel);
+            watcher.start();
+            runGrails("RunApp");
+        } catch (IOException e) {
+            throw new MojoExecutionException("Unable to watch the sources of " + project.getBasedir(), e);
+        } finally {
+            closeQuietly(watcher);
+            closeQuietly(changeChannel);
+            changeChannel = null;
+        }
+    }
+
+    @Override
+    protected AbstractGrailsRuntime.ExecutionContext createExecutionContext(String targetName, String args) throws MojoExecutionException {
+        final AbstractGrailsRuntime.ExecutionContext ec = super.createExecutionContext(targetName, args);
+        ec.setRestartable(fork && restartable);
+        if (changeChannel != null) {
+            ec.getSystemProperties().put(ChangeReceiver.PORT_PROPERTY, String.valueOf(changeChannel.getPort()));
+            ec.getSystemProperties().put(ChangeReceiver.POLL_INTERVAL_PROPERTY, String.valueOf(watchPollInterval));
+        }
+        return ec;
+    }
+
+    private void closeQuietly(Closeable closeable) {
+        if (closeable == null) {
+            return;
+        }
+        try {
+            closeable.close();
+        } catch (IOException e) {
+            getLog().debug(e);
+        }
+    }
+
+    @Override
+    protected boolean isLongRunning() {
+        return true;
     }
 }
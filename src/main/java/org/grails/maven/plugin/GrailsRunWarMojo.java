@@ -25,6 +25,7 @@ import org.apache.maven.plugin.MojoFailureException;
  * @version $Id$
  * @description Runs a Grails application in Jetty from its WAR.
  * @goal run-war
+ * @threadSafe
  * @requiresProject true
  * @requiresDependencyResolution runtime
  * @since 0.4
@@ -34,4 +35,9 @@ public class GrailsRunWarMojo extends AbstractGrailsMojo {
     public void execute() throws MojoExecutionException, MojoFailureException {
         runGrails("RunWar");
     }
+
+    @Override
+    protected boolean isLongRunning() {
+        return true;
+    }
 }
@@ -25,6 +25,7 @@ import org.apache.maven.plugin.MojoFailureException;
  * @version $Id$
  * @description Set the grails application version from the Maven POM version.
  * @goal set-version
+ * @threadSafe
  * @phase validate
  * @requiresProject true
  * @requiresDependencyResolution
@@ -25,6 +25,7 @@ import org.apache.maven.plugin.MojoFailureException;
  * @version $Id$
  * @description Runs a Grails applications unit tests and integration tests.
  * @goal test-app
+ * @threadSafe
  * @requiresProject false
  * @requiresDependencyResolution test
  * @since 0.1
@@ -25,6 +25,7 @@ import org.apache.maven.plugin.MojoFailureException;
  * @version $Id$
  * @description Upgrades a Grails application.
  * @goal upgrade
+ * @threadSafe
  * @requiresProject false
  * @requiresDependencyResolution runtime
  * @since 1.3.7
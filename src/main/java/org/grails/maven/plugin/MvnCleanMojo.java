@@ -25,6 +25,7 @@ import org.apache.maven.plugin.MojoFailureException;
  * @version $Id$
  * @description Cleans a Grails project and jars in lib directory.
  * @goal maven-clean
+ * @threadSafe
  * @phase clean
  * @requiresProject true
  * @requiresDependencyResolution
@@ -25,6 +25,7 @@ import org.apache.maven.plugin.MojoFailureException;
  * @version $Id$
  * @description Compiles a Grails project.
  * @goal maven-compile
+ * @threadSafe
  * @phase compile
  * @requiresProject true
  * @requiresDependencyResolution
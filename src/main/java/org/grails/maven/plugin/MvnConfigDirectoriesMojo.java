@@ -16,6 +16,9 @@
 package org.grails.maven.plugin;
 
 import java.io.File;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 
 import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugin.MojoFailureException;
@@ -27,11 +30,26 @@ import org.apache.maven.plugin.MojoFailureException;
  * @version $Id$
  * @description Set sources/tests directories to be compatible with the directories layout used by grails.
  * @goal config-directories
+ * @threadSafe
  * @phase generate-sources
  * @requiresProject true
  * @since 0.3
  */
 public class MvnConfigDirectoriesMojo extends AbstractGrailsMojo {
+
+    /**
+     * The source directories of a Grails project, relative to its base directory.
+     */
+    public static final List<String> SOURCE_DIRECTORIES = Collections.unmodifiableList(Arrays.asList(
+            "grails-app/conf", "grails-app/controllers", "grails-app/domain", "grails-app/services",
+            "grails-app/taglib", "grails-app/utils", "src/groovy", "src/java"));
+
+    /**
+     * The test directories of a Grails project, relative to its base directory.
+     */
+    public static final List<String> TEST_DIRECTORIES = Collections.unmodifiableList(Arrays.asList(
+            "test/unit", "test/integration"));
+
     /*
      * (non-Javadoc)
      *
@@ -55,18 +73,14 @@ public class MvnConfigDirectoriesMojo extends AbstractGrailsMojo {
 //        }
 
         // Add sources directories
-        this.project.addCompileSourceRoot((new File(projectDir, "/grails-app/conf")).getAbsolutePath());
-        this.project.addCompileSourceRoot((new File(projectDir, "/grails-app/controllers")).getAbsolutePath());
-        this.project.addCompileSourceRoot((new File(projectDir, "/grails-app/domain")).getAbsolutePath());
-        this.project.addCompileSourceRoot((new File(projectDir, "/grails-app/services")).getAbsolutePath());
-        this.project.addCompileSourceRoot((new File(projectDir, "/grails-app/taglib")).getAbsolutePath());
-        this.project.addCompileSourceRoot((new File(projectDir, "/grails-app/utils")).getAbsolutePath());
-        this.project.addCompileSourceRoot((new File(projectDir, "/src/groovy")).getAbsolutePath());
-        this.project.addCompileSourceRoot((new File(projectDir, "src/java")).getAbsolutePath());
+        for (String sourceDirectory : SOURCE_DIRECTORIES) {
+            this.project.addCompileSourceRoot((new File(projectDir, sourceDirectory)).getAbsolutePath());
+        }
 
         // Add tests directories
-        this.project.addTestCompileSourceRoot((new File(projectDir, "test/unit")).getAbsolutePath());
-        this.project.addTestCompileSourceRoot((new File(projectDir, "test/integration")).getAbsolutePath());
+        for (String testDirectory : TEST_DIRECTORIES) {
+            this.project.addTestCompileSourceRoot((new File(projectDir, testDirectory)).getAbsolutePath());
+        }
 
         // Change output dir
 //        this.project.getModel().getBuild().setOutputDirectory("web-app/WEB-INF/classes");
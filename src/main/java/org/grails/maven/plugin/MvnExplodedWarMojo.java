@@ -0,0 +1,68 @@
+/*
+ * Copyright 2007 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.grails.maven.plugin;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.MojoFailureException;
+import org.grails.maven.plugin.tools.DirectorySync;
+
+/**
+ * Maintains the exploded WAR of the project in the build directory, for deployment loops that
+ * don't need a zipped archive. Grails stages the application, and only the classes, views and
+ * jars that changed since the previous run are copied into the exploded directory; files that
+ * were removed from the application are deleted from it.
+ *
+ * @description Creates or updates an exploded WAR directory.
+ * @goal maven-exploded-war
+ * @threadSafe
+ * @phase package
+ * @requiresDependencyResolution
+ * @since 2.4.7
+ */
+public class MvnExplodedWarMojo extends MvnWarMojo {
+
+    /**
+     * The directory holding the exploded WAR.
+     *
+     * @parameter expression="${grails.war.explodedDirectory}" default-value="${project.build.directory}/${project.build.finalName}"
+     */
+    private File explodedWarDirectory;
+
+    public void execute() throws MojoExecutionException, MojoFailureException {
+        if(getEnvironment() == null) {
+            env = "prod";
+        }
+
+        runGrails("War", explodedWarDirectory.toString());
+
+        final long start = System.currentTimeMillis();
+        try {
+            DirectorySync sync = DirectorySync.sync(warStagingDirectory, explodedWarDirectory);
+            getLog().info("Updated '" + explodedWarDirectory + "' in " + (System.currentTimeMillis() - start) + "ms: " +
+                    sync.getCopied() + " copied, " + sync.getDeleted() + " deleted, " + sync.getUnchanged() + " unchanged.");
+        } catch (IOException e) {
+            throw new MojoExecutionException("Unable to update the exploded WAR in " + explodedWarDirectory, e);
+        }
+    }
+
+    @Override
+    protected boolean isStagingOnly() {
+        return true;
+    }
+}
@@ -25,6 +25,7 @@ import org.apache.maven.plugin.MojoFailureException;
  * @version $Id$
  * @description Runs a Grails application's functional tests.
  * @goal maven-functional-test
+ * @threadSafe
  * @phase integration-test
  * @requiresProject true
  * @requiresDependencyResolution test
@@ -21,6 +21,7 @@ import org.apache.maven.plugin.MojoFailureException;
  * @version $Id$
  * @description Creates a WAR archive and register it in maven.
  * @goal maven-grails-app-war
+ * @threadSafe
  * @phase package
  * @requiresDependencyResolution
  * @since 1.1
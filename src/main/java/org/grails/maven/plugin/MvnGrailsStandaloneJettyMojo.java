@@ -5,9 +5,18 @@ import org.apache.maven.artifact.handler.ArtifactHandler;
 import org.apache.maven.model.Build;
 import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.project.MavenProjectHelper;
+import org.grails.maven.plugin.tools.CdsTrainer;
+import org.grails.maven.plugin.tools.StandaloneLayers;
+import org.grails.maven.plugin.tools.WarAssembler;
 
 
 import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
 
 /**
  * <p>Creates a standalone jetty jar encapsulating the grails war
@@ -16,6 +25,7 @@ import java.io.File;
  * @version $Id$
  * @description Creates a jetty JAR archive and register it in maven.
  * @goal maven-grails-standalone-jetty
+ * @threadSafe
  * @phase package
  * @requiresDependencyResolution
  * @since 1.1
@@ -41,6 +51,89 @@ public class MvnGrailsStandaloneJettyMojo extends AbstractGrailsMojo {
      */
     private ArtifactHandler artifactHandler;
 
+    /**
+     * Whether the jar is split into layers (dependencies, Grails plugins and the application)
+     * that are extracted into {@code layersDirectory} and written back in that order with
+     * fixed time stamps, so that unchanged layers are byte-identical between releases. The
+     * {@code embedded.war} holding the application is split and written back the same way.
+     *
+     * @parameter expression="${grails.standalone.layered}" default-value="false"
+     */
+    private boolean layered;
+
+    /**
+     * The directory receiving one directory per layer when {@code layered} is set.
+     *
+     * @parameter expression="${grails.standalone.layersDirectory}" default-value="${project.build.directory}/standalone-layers"
+     */
+    private File layersDirectory;
+
+    /**
+     * Whether an AppCDS archive is created for the jar. The application is started once with
+     * {@code cdsJvmArgs} and {@code cdsApplicationArgs}, stopped as soon as it answers on
+     * {@code cdsReadinessPath}, and the classes it loaded are archived to {@code <jar>.jsa}. A launcher script
+     * {@code <jar name>.sh} starting the jar with the archive is written next to it, and both are
+     * attached to the project. The three files may be moved or downloaded together, the script
+     * starts the application in their directory. Requires a JDK 13 or later matching the one used
+     * in production.
+     *
+     * @parameter expression="${grails.standalone.cds}" default-value="false"
+     */
+    private boolean cdsArchive;
+
+    /**
+     * The path polled to find out when the training run is ready, which it is once the path
+     * answers with a 2xx status. The training run gets a free port as its {@code port=} argument,
+     * unless {@code cdsApplicationArgs} name one.
+     *
+     * @parameter expression="${grails.standalone.cds.readinessPath}" default-value="/"
+     */
+    private String cdsReadinessPath;
+
+    /**
+     * A URL polled instead of {@code cdsReadinessPath}, for applications not listening on their
+     * {@code port=} argument. Nothing may answer at it before the training run starts.
+     *
+     * @parameter expression="${grails.standalone.cds.readinessUrl}"
+     */
+    private String cdsReadinessUrl;
+
+    /**
+     * The seconds the training run may take to become ready, and to stop.
+     *
+     * @parameter expression="${grails.standalone.cds.timeout}" default-value="300"
+     */
+    private int cdsTimeout;
+
+    /**
+     * JVM arguments for the training run, e.g. {@code -Dgrails.env=...} selecting an embedded
+     * configuration that needs no external services.
+     *
+     * @parameter
+     */
+    private List<String> cdsJvmArgs;
+
+    /**
+     * Arguments passed to the application in the training run, e.g. {@code context=/app}. A
+     * {@code port=} argument replaces the free port of the training run.
+     *
+     * @parameter
+     */
+    private List<String> cdsApplicationArgs;
+
+    /**
+     * The java executable of the training run, defaults to the one running Maven.
+     *
+     * @parameter expression="${grails.standalone.cds.java}"
+     */
+    private File cdsJava;
+
+    /**
+     * @component
+     * @readonly
+     */
+    private MavenProjectHelper projectHelper;
+
     /**
      * Executes the MvnGrailsStandaloneJettyMojo on the current project.
      *
@@ -61,9 +154,79 @@ public class MvnGrailsStandaloneJettyMojo extends AbstractGrailsMojo {
         }
 
         runGrails("BuildStandalone", "--jetty " + jarFile.toString());
+        analyzePackagedArchive(jarFile);
+
+        if (layered) {
+            layerJar();
+        }
+
+        // after layering, as the archive is only valid for the final jar
+        if (cdsArchive) {
+            createCdsArchive();
+        }
 
         // Make the WAR file the build artifact.
         artifact.setFile(jarFile);
         artifact.setArtifactHandler(artifactHandler);
     }
+
+    private void layerJar() throws MojoExecutionException {
+        final Set<String> pluginJarNames = new HashSet<String>();
+        for (Artifact dependency : project.getArtifacts()) {
+            String type = dependency.getType();
+            if ("grails-plugin".equals(type) || "grails-binary-plugin".equals(type)) {
+                pluginJarNames.add(dependency.getArtifactId() + "-" + dependency.getVersion() + ".jar");
+                if (dependency.getFile() != null) {
+                    pluginJarNames.add(dependency.getFile().getName());
+                }
+            }
+        }
+
+        File tempFile = null;
+        try {
+            final StandaloneLayers layers = new StandaloneLayers(pluginJarNames);
+            layers.extract(jarFile, layersDirectory);
+            tempFile = File.createTempFile(jarFile.getName(), ".tmp", jarFile.getAbsoluteFile().getParentFile());
+            layers.assemble(layersDirectory, new WarAssembler(-1, 0), tempFile);
+            getArtifactTransfer().move(tempFile, jarFile);
+        } catch (IOException e) {
+            throw new MojoExecutionException("Unable to layer " + jarFile, e);
+        } finally {
+            if (tempFile != null) {
+                tempFile.delete();
+            }
+        }
+        getLog().info("Layered '" + jarFile + "' into '" + layersDirectory + "'.");
+    }
+
+    private void createCdsArchive() throws MojoExecutionException {
+        final File archive = new File(jarFile.getPath() + ".jsa");
+        final String baseName = jarFile.getName().substring(0, jarFile.getName().length() - ".jar".length());
+        final File script = new File(jarFile.getParentFile(), baseName + ".sh");
+        final File java = cdsJava != null ? cdsJava : new File(new File(System.getProperty("java.home"), "bin"), "java");
+
+        final CdsTrainer trainer = new CdsTrainer(java, jarFile, archive);
+        trainer.setJvmArgs(cdsJvmArgs);
+        trainer.setApplicationArgs(cdsApplicationArgs);
+        trainer.setTimeoutSeconds(cdsTimeout);
+        trainer.setLogFile(new File(jarFile.getParentFile(), "cds-training.log"));
+        try {
+            trainer.setReadinessPath(cdsReadinessPath);
+            if (cdsReadinessUrl != null) {
+                trainer.setReadinessUrl(new URL(cdsReadinessUrl));
+            }
+            getLog().info("Starting '" + jarFile + "' to create a CDS archive.");
+            trainer.train();
+            CdsTrainer.writeLauncherScript(script, jarFile.getName(), archive.getName());
+        } catch (IOException e) {
+            throw new MojoExecutionException("Unable to create a CDS archive for " + jarFile + ": " + e.getMessage(), e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new MojoExecutionException("Interrupted while creating a CDS archive for " + jarFile, e);
+        }
+
+        projectHelper.attachArtifact(project, "jsa", "cds", archive);
+        projectHelper.attachArtifact(project, "sh", "launcher", script);
+        getLog().info("Created CDS archive '" + archive + "' and launcher '" + script + "'.");
+    }
 }
@@ -25,6 +25,7 @@ import org.apache.maven.plugin.MojoFailureException;
  * @version $Id$
  * @description Determines whether the current directory contains a Grails application or not, and creates one in the latter case.
  * @goal init
+ * @threadSafe
  * @phase initialize
  * @requiresDependencyResolution runtime
  * @since 0.1
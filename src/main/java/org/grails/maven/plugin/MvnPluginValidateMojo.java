@@ -26,6 +26,7 @@ import org.grails.maven.plugin.tools.GrailsPluginProject;
  * @version $Id$
  * @description Validate consistency between Grails (*GrailsPlugin.groovy) and Maven (pom.xml) settings.
  * @goal validate-plugin
+ * @threadSafe
  * @phase validate
  * @requiresDependencyResolution runtime
  * @since 1.0
@@ -25,6 +25,7 @@ import org.apache.maven.plugin.MojoFailureException;
  * @version $Id$
  * @description Runs a Grails applications unit tests.
  * @goal maven-test
+ * @threadSafe
  * @phase test
  * @requiresProject true
  * @requiresDependencyResolution test
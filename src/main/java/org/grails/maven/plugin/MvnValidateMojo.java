@@ -18,6 +18,7 @@ package org.grails.maven.plugin;
 import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugin.MojoFailureException;
 import org.grails.maven.plugin.tools.GrailsProject;
+import org.grails.maven.plugin.tools.ProjectMetadata;
 
 /**
  * Validate consistency between Grails and Maven settings.
@@ -26,6 +27,7 @@ import org.grails.maven.plugin.tools.GrailsProject;
  * @version $Id$
  * @description Validate consistency between Grails (application.properties) and Maven (pom.xml) settings.
  * @goal validate
+ * @threadSafe
  * @phase validate
  * @requiresDependencyResolution runtime
  * @since 0.1
@@ -72,7 +74,8 @@ public class MvnValidateMojo extends AbstractGrailsMojo {
             getLog().warn("application.properties didn't contain an app.version property");
             getLog().warn("Setting to default value '" + grailsProject.getAppVersion() + "'.");
 
-            getGrailsServices().writeProjectDescriptor(getBasedir(), grailsProject);
+            getGrailsServices().stageProjectMetadata(ProjectMetadata.APP_VERSION, grailsProject.getAppVersion());
+            getGrailsServices().flushProjectMetadata();
 	        final String pomVersion = version.trim();
 	        final String grailsVersion = grailsProject.getAppVersion().trim();
 
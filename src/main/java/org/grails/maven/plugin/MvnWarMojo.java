@@ -16,10 +16,13 @@
 package org.grails.maven.plugin;
 
 import java.io.File;
+import java.io.IOException;
 
 import org.apache.maven.model.Build;
 import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugin.MojoFailureException;
+import org.grails.maven.plugin.tools.AbstractGrailsRuntime;
+import org.grails.maven.plugin.tools.WarAssembler;
 
 /**
  * Creates a WAR archive for the project and puts it in the usual Maven
@@ -29,6 +32,7 @@ import org.apache.maven.plugin.MojoFailureException;
  * @version $Id$
  * @description Creates a WAR archive and register it in maven.
  * @goal maven-war
+ * @threadSafe
  * @phase package
  * @requiresDependencyResolution
  * @since 0.1
@@ -36,6 +40,37 @@ import org.apache.maven.plugin.MojoFailureException;
 public class MvnWarMojo extends AbstractGrailsMojo {
     protected File warFile;
 
+    /**
+     * Whether the WAR is assembled by the plugin from the application Grails stages, rather
+     * than by the Grails War script. Entries are compressed in parallel, nested jars are stored
+     * without recompressing them, and the same build always produces the same archive.
+     *
+     * @parameter expression="${grails.war.assemble}" default-value="false"
+     */
+    protected boolean assembleWar;
+
+    /**
+     * The deflate level (0-9, or -1 for the default) used when {@code assembleWar} is set.
+     *
+     * @parameter expression="${grails.war.compressionLevel}" default-value="-1"
+     */
+    protected int warCompressionLevel;
+
+    /**
+     * The number of threads compressing entries when {@code assembleWar} is set, 0 for one
+     * per processor.
+     *
+     * @parameter expression="${grails.war.threads}" default-value="0"
+     */
+    protected int warThreads;
+
+    /**
+     * The directory Grails stages the application in when {@code assembleWar} is set.
+     *
+     * @parameter expression="${grails.war.stagingDirectory}" default-value="${project.build.directory}/war-staging"
+     */
+    protected File warStagingDirectory;
+
     /**
      * Executes the MvnWarMojo on the current project.
      *
@@ -56,5 +91,46 @@ public class MvnWarMojo extends AbstractGrailsMojo {
         }
 
         runGrails("War", warFile.toString());
+        if (assembleWar) {
+            assembleWar();
+        }
+        analyzePackagedArchive(warFile);
+    }
+
+    /**
+     * @return Whether the War script only stages the application in {@code warStagingDirectory}
+     */
+    protected boolean isStagingOnly() {
+        return assembleWar;
+    }
+
+    @Override
+    protected AbstractGrailsRuntime.ExecutionContext createExecutionContext(String targetName, String args) throws MojoExecutionException {
+        final AbstractGrailsRuntime.ExecutionContext ec = super.createExecutionContext(targetName, args);
+        if (isStagingOnly()) {
+            // have the War script stop after staging the application
+            ec.getSystemProperties().put("grails.war.exploded", "true");
+            ec.getSystemProperties().put("grails.project.war.exploded.dir", warStagingDirectory.getAbsolutePath());
+        }
+        return ec;
+    }
+
+    private void assembleWar() throws MojoExecutionException {
+        final long start = System.currentTimeMillis();
+        File tempFile = null;
+        try {
+            tempFile = File.createTempFile(warFile.getName(), ".tmp", warFile.getAbsoluteFile().getParentFile());
+            new WarAssembler(warCompressionLevel, warThreads).assemble(warStagingDirectory, tempFile);
+            getArtifactTransfer().move(tempFile, warFile);
+        } catch (IOException e) {
+            throw new MojoExecutionException("Unable to assemble " + warFile + " from " + warStagingDirectory, e);
+        } catch (IllegalArgumentException e) {
+            throw new MojoExecutionException(e.getMessage(), e);
+        } finally {
+            if (tempFile != null) {
+                tempFile.delete();
+            }
+        }
+        getLog().info("Assembled '" + warFile + "' in " + (System.currentTimeMillis() - start) + "ms.");
     }
 }
@@ -9,7 +9,9 @@ import java.io.Serializable;
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * @author Andrew Potter (ddcapotter)
@@ -25,19 +27,10 @@ public abstract class AbstractGrailsRuntime {
     protected ExecutionContext executionContext;
 
     public static GrailsLauncher createGrailsLauncher(ExecutionContext ec) {
-        URL[] urls = generateBuildPath(ec.getBuildDependencies());
-        final RootLoader rootLoader = new RootLoader(urls, ClassLoader.getSystemClassLoader());
-        System.setProperty("grails.console.enable.terminal", "false");
-        System.setProperty("grails.console.enable.interactive", "false");
+        final RootLoader rootLoader = createLaunchClassLoader(ec);
 
         List<File> compileDependencies = ec.getCompileDependencies();
 
-        try {
-            addLoggingJarsToRootLoader(rootLoader, compileDependencies);
-        } catch (Exception e) {
-            throw new RuntimeException(e);
-        }
-
         final GrailsLauncher launcher = new GrailsLauncher(rootLoader, null, ec.getBaseDir().getAbsolutePath());
         launcher.setPlainOutput(true);
         launcher.setDependenciesExternallyConfigured(true);
@@ -56,46 +49,82 @@ public abstract class AbstractGrailsRuntime {
         return launcher;
     }
 
-    public static void addLoggingJarsToRootLoader(RootLoader rootLoader, List<File> compileDependencies) throws MalformedURLException, ClassNotFoundException {
-        List<File> loggingBootstrapJars = new ArrayList<File>();
-        for (File file : compileDependencies) {
-            String name = file.getName();
-            if(name.contains("slf4j") || name.contains("log4j") || name.contains("spring-core") || name.contains("logback")) {
-                loggingBootstrapJars.add(file);
-            }
-        }
-        if(!loggingBootstrapJars.isEmpty()) {
-            for (File loggingBootstrapJar : loggingBootstrapJars) {
-                rootLoader.addURL(loggingBootstrapJar.toURI().toURL());
-            }
-            Class cls = rootLoader.loadClass("org.springframework.util.Log4jConfigurer");
-            try {
-                invokeStaticMethod(cls, "initLogging", new Object[]{"classpath:grails-maven/log4j.properties"});
-            } catch (Throwable e) {
-                // ignore
-            }
+    /**
+     * @param ec The execution
+     * @return The class loader a launcher of the execution runs Grails in
+     */
+    static RootLoader createLaunchClassLoader(ExecutionContext ec) {
+        if (ec.isReuseBuildClassLoader()) {
+            // the build dependencies stay loaded between goals, the launcher gets a child
+            // loader that is discarded with it
+            return BuildClassLoaderCache.createGoalClassLoader(ec);
+        }
+        final RootLoader loader = createBuildClassLoader(ec.getBuildDependencies(), ec.getClassPathIndexDir());
+        prepareBuildClassLoader(loader, ec);
+        return loader;
+    }
+
+    /**
+     * Creates the class loader for the Grails build dependencies.
+     *
+     * @param buildDependencies The build dependencies
+     * @param classPathIndexDir The directory caching class path indexes, or null to search the jars linearly
+     * @return The class loader
+     */
+    public static RootLoader createBuildClassLoader(List<File> buildDependencies, File classPathIndexDir) {
+        URL[] urls = generateBuildPath(buildDependencies);
+        if (classPathIndexDir != null) {
+            return new IndexedRootLoader(urls, ClassLoader.getSystemClassLoader(), ClassPathIndex.obtain(buildDependencies, classPathIndexDir));
         }
+        return new RootLoader(urls, ClassLoader.getSystemClassLoader());
     }
 
     /**
-     * Invokes the named method on a target object using reflection.
-     * The method signature is determined by the classes of each argument.
-     * @param target The object to call the method on.
-     * @param name The name of the method to call.
-     * @param args The arguments to pass to the method (may be an empty array).
-     * @return The value returned by the method.
+     * Adds the logging jars and, if the execution needs them, the build listeners of the plugin
+     * jar to a build class loader, so that the Grails classes in it see them.
+     *
+     * @param loader The build class loader
+     * @param ec The execution
      */
-    private static Object invokeStaticMethod(Class target, String name, Object[] args) {
-        Class<?>[] argTypes = new Class[args.length];
-        for (int i = 0; i < args.length; i++) {
-            argTypes[i] = args[i].getClass();
+    static void prepareBuildClassLoader(RootLoader loader, ExecutionContext ec) {
+        LoggingBootstrap.configure(loader, ec.getLoggingSelection(), ec.isAsyncLogging());
+        if (needsBuildListeners(ec)) {
+            // the listeners are in the plugin jar
+            BuildEventReporter.addTo(loader);
         }
+    }
 
-        try {
-            return target.getMethod(name, argTypes).invoke(target, args);
+    static boolean needsBuildListeners(ExecutionContext ec) {
+        return ec.getBuildEventPort() > 0 || InlinePluginRegistrar.isRequested(ec.getSystemProperties());
+    }
+
+    /**
+     * Applies the system properties of an execution to the current JVM.
+     *
+     * @param systemProperties The properties to apply, may be null
+     * @return The previous values of the applied properties (null for properties that were not set)
+     */
+    protected static Map<String, String> applySystemProperties(Map<String, String> systemProperties) {
+        Map<String, String> previous = new LinkedHashMap<String, String>();
+        if (systemProperties != null) {
+            for (Map.Entry<String, String> entry : systemProperties.entrySet()) {
+                previous.put(entry.getKey(), System.getProperty(entry.getKey()));
+                System.setProperty(entry.getKey(), entry.getValue());
+            }
         }
-        catch (Exception ex) {
-            throw new RuntimeException(ex);
+        return previous;
+    }
+
+    /**
+     * Restores system properties previously returned by {@link #applySystemProperties(java.util.Map)}.
+     */
+    protected static void restoreSystemProperties(Map<String, String> previous) {
+        for (Map.Entry<String, String> entry : previous.entrySet()) {
+            if (entry.getValue() == null) {
+                System.clearProperty(entry.getKey());
+            } else {
+                System.setProperty(entry.getKey(), entry.getValue());
+            }
         }
     }
 
@@ -126,6 +155,7 @@ public abstract class AbstractGrailsRuntime {
         private List<File> providedDependencies;
         private List<File> testDependencies;
         private List forkedVmArgs;
+        private Map<String, String> systemProperties = new LinkedHashMap<String, String>();
 
         private File grailsWorkDir;
         private File projectWorkDir;
@@ -140,6 +170,13 @@ public abstract class AbstractGrailsRuntime {
         private String env;
         private String args;
         private String grailsBuildListener;
+        private boolean reuseBuildClassLoader;
+        private File classPathIndexDir;
+        private LoggingBootstrap.Selection loggingSelection;
+        private boolean asyncLogging;
+        private boolean restartable;
+        private int buildEventPort;
+        private File memoryReport;
 
 
         public String getScriptName() {
@@ -174,6 +211,19 @@ public abstract class AbstractGrailsRuntime {
             this.forkedVmArgs = forkedVmArgs;
         }
 
+        /**
+         * System properties that only apply to this execution. They are passed to the forked
+         * JVM, or applied around the launch when running in-process, rather than being set
+         * globally in the Maven JVM.
+         */
+        public Map<String, String> getSystemProperties() {
+            return systemProperties;
+        }
+
+        public void setSystemProperties(Map<String, String> systemProperties) {
+            this.systemProperties = systemProperties;
+        }
+
         public File getBaseDir() {
             return baseDir;
         }
@@ -285,5 +335,79 @@ public abstract class AbstractGrailsRuntime {
         public void setGrailsBuildListener(String buildListener) {
             this.grailsBuildListener = buildListener;
         }
+
+        public boolean isReuseBuildClassLoader() {
+            return reuseBuildClassLoader;
+        }
+
+        public void setReuseBuildClassLoader(boolean reuseBuildClassLoader) {
+            this.reuseBuildClassLoader = reuseBuildClassLoader;
+        }
+
+        /**
+         * @return The directory caching the package index of the build class path, or null if
+         * the build class path isn't indexed
+         */
+        public File getClassPathIndexDir() {
+            return classPathIndexDir;
+        }
+
+        public void setClassPathIndexDir(File classPathIndexDir) {
+            this.classPathIndexDir = classPathIndexDir;
+        }
+
+        /**
+         * @return The logging jars and backend picked from the compile dependencies
+         */
+        public LoggingBootstrap.Selection getLoggingSelection() {
+            return loggingSelection;
+        }
+
+        public void setLoggingSelection(LoggingBootstrap.Selection loggingSelection) {
+            this.loggingSelection = loggingSelection;
+        }
+
+        public boolean isAsyncLogging() {
+            return asyncLogging;
+        }
+
+        public void setAsyncLogging(boolean asyncLogging) {
+            this.asyncLogging = asyncLogging;
+        }
+
+        /**
+         * @return Whether the forked JVM restarts the script in place when asked to, see {@link RunAppSupervisor}
+         */
+        public boolean isRestartable() {
+            return restartable;
+        }
+
+        public void setRestartable(boolean restartable) {
+            this.restartable = restartable;
+        }
+
+        /**
+         * @return The port of the {@link BuildEventServer} receiving the build events, or 0 if
+         * they aren't reported
+         */
+        public int getBuildEventPort() {
+            return buildEventPort;
+        }
+
+        public void setBuildEventPort(int buildEventPort) {
+            this.buildEventPort = buildEventPort;
+        }
+
+        /**
+         * @return The file the forked JVM reports its memory usage to on exit, see
+         * {@link ForkMemoryHistory}, or null
+         */
+        public File getMemoryReport() {
+            return memoryReport;
+        }
+
+        public void setMemoryReport(File memoryReport) {
+            this.memoryReport = memoryReport;
+        }
     }
 }
@@ -0,0 +1,555 @@
+/*
+ * Copyright 2007 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.grails.maven.plugin.tools;
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipInputStream;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Indexes the classes of a packaged WAR or standalone jar, including the jars nested in it,
+ * to find classes shipped more than once and jars nothing else refers to.
+ *
+ * Nested jars are indexed in parallel. A jar counts as referenced when a class or a
+ * configuration file (XML, properties, service registrations) in another part of the archive
+ * names one of its classes; as Grails loads a lot by reflection, unreferenced jars are only
+ * candidates for removal.
+ *
+ * WARs nested in the archive, like the {@code embedded.war} of a standalone jar, are indexed
+ * the same way, their parts named {@code embedded.war!/WEB-INF/lib/foo.jar}.
+ *
+ * @since 2.4.7
+ */
+public class ArchiveAnalyzer {
+
+    /**
+     * The part of the archive holding the application classes.
+     */
+    public static final String APPLICATION = "WEB-INF/classes";
+
+    /**
+     * The part of the archive holding the classes outside of {@code WEB-INF}, e.g. the
+     * launcher of a standalone jar.
+     */
+    public static final String ROOT = "/";
+
+    /**
+     * Separates the name of a nested WAR from the names of its parts.
+     */
+    public static final String NESTED = "!/";
+
+    private static final Pattern DOTTED_NAME = Pattern.compile("[A-Za-z_$][\\w$]*(?:\\.[A-Za-z_$][\\w$]*)+");
+    private static final Pattern DESCRIPTOR_NAME = Pattern.compile("L([\\w$/]+)[;<]");
+    private static final int MAX_TEXT_SIZE = 1024 * 1024;
+
+    private final int threads;
+
+    /**
+     * @param threads The number of threads indexing nested jars, 0 for one per processor
+     */
+    public ArchiveAnalyzer(int threads) {
+        this.threads = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+    }
+
+    /**
+     * The outcome of {@link ArchiveAnalyzer#analyze(File)}.
+     */
+    public static class Report {
+        private final Map<String, Set<String>> classes = new TreeMap<String, Set<String>>();
+        private final Map<String, Set<String>> duplicates = new TreeMap<String, Set<String>>();
+        private final Set<String> unreferenced = new TreeSet<String>();
+
+        private Report(Map<String, Index> indexes) {
+            final Map<String, List<String>> owners = new HashMap<String, List<String>>();
+            for (Map.Entry<String, Index> entry : indexes.entrySet()) {
+                classes.put(entry.getKey(), Collections.unmodifiableSet(entry.getValue().classes));
+                for (String className : entry.getValue().classes) {
+                    List<String> containers = owners.get(className);
+                    if (containers == null) {
+                        containers = new ArrayList<String>(1);
+                        owners.put(className, containers);
+                    }
+                    containers.add(entry.getKey());
+                }
+            }
+
+            for (Map.Entry<String, List<String>> entry : owners.entrySet()) {
+                if (entry.getValue().size() > 1) {
+                    duplicates.put(entry.getKey(), Collections.unmodifiableSet(new TreeSet<String>(entry.getValue())));
+                }
+            }
+
+            final Set<String> referenced = new HashSet<String>();
+            for (Map.Entry<String, Index> entry : indexes.entrySet()) {
+                for (String reference : entry.getValue().references) {
+                    final List<String> containers = owners.get(reference);
+                    if (containers != null) {
+                        for (String container : containers) {
+                            if (!container.equals(entry.getKey())) {
+                                referenced.add(container);
+                            }
+                        }
+                    }
+                }
+            }
+            for (Map.Entry<String, Set<String>> entry : classes.entrySet()) {
+                if (isJar(entry.getKey()) && !entry.getValue().isEmpty() && !referenced.contains(entry.getKey())) {
+                    unreferenced.add(entry.getKey());
+                }
+            }
+        }
+
+        /**
+         * @return The classes (as {@code a/b/C}) of each part of the archive: the nested jars by
+         * entry name, {@link #APPLICATION} and {@link #ROOT}
+         */
+        public Map<String, Set<String>> getClasses() {
+            return Collections.unmodifiableMap(classes);
+        }
+
+        /**
+         * @return The classes found in more than one part of the archive, with those parts
+         */
+        public Map<String, Set<String>> getDuplicates() {
+            return Collections.unmodifiableMap(duplicates);
+        }
+
+        /**
+         * @return The nested jars with classes that nothing else in the archive refers to
+         */
+        public Set<String> getUnreferenced() {
+            return Collections.unmodifiableSet(unreferenced);
+        }
+
+        /**
+         * @param container A part of the archive
+         * @param excluded Parts of the archive that will be removed
+         * @return Whether every class of the part is also found in another part of the same WAR
+         * that is kept
+         */
+        public boolean isRedundant(String container, Collection<String> excluded) {
+            final Set<String> containerClasses = classes.get(container);
+            if (containerClasses == null || containerClasses.isEmpty()) {
+                return false;
+            }
+            for (String className : containerClasses) {
+                final Set<String> containers = duplicates.get(className);
+                if (containers == null) {
+                    return false;
+                }
+                boolean kept = false;
+                for (String other : containers) {
+                    if (!other.equals(container) && !excluded.contains(other) && warOf(other).equals(warOf(container))) {
+                        kept = true;
+                        break;
+                    }
+                }
+                if (!kept) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /**
+         * @param patterns Jar file names, where {@code *} matches any characters
+         * @return The nested jars matching one of the patterns
+         */
+        public Set<String> findJars(Collection<String> patterns) {
+            final List<Pattern> compiled = new ArrayList<Pattern>();
+            for (String pattern : patterns) {
+                compiled.add(Pattern.compile(Pattern.quote(pattern).replace("*", "\\E.*\\Q")));
+            }
+            final Set<String> jars = new TreeSet<String>();
+            for (String container : classes.keySet()) {
+                final String name = container.substring(container.lastIndexOf('/') + 1);
+                for (Pattern pattern : compiled) {
+                    if (isJar(container) && pattern.matcher(name).matches()) {
+                        jars.add(container);
+                    }
+                }
+            }
+            return jars;
+        }
+
+        /**
+         * Writes a readable summary: duplicates grouped by the parts sharing them, then the
+         * unreferenced jars.
+         */
+        public void write(Writer out) throws IOException {
+            int classCount = 0;
+            for (Set<String> containerClasses : classes.values()) {
+                classCount += containerClasses.size();
+            }
+            out.write("Classes: " + classCount + " in " + classes.size() + " locations\n");
+            out.write("Duplicate classes: " + duplicates.size() + "\n");
+
+            final Map<Set<String>, List<String>> groups = new TreeMap<Set<String>, List<String>>(new Comparator<Set<String>>() {
+                public int compare(Set<String> a, Set<String> b) {
+                    return a.toString().compareTo(b.toString());
+                }
+            });
+            for (Map.Entry<String, Set<String>> entry : duplicates.entrySet()) {
+                List<String> groupClasses = groups.get(entry.getValue());
+                if (groupClasses == null) {
+                    groupClasses = new ArrayList<String>();
+                    groups.put(entry.getValue(), groupClasses);
+                }
+                groupClasses.add(entry.getKey());
+            }
+            for (Map.Entry<Set<String>, List<String>> group : groups.entrySet()) {
+                out.write("  " + group.getValue().size() + " in " + group.getKey() + ", e.g. " + group.getValue().get(0).replace('/', '.') + "\n");
+            }
+
+            out.write("Unreferenced jars: " + unreferenced.size() + "\n");
+            for (String jar : unreferenced) {
+                out.write("  " + jar + " (" + classes.get(jar).size() + " classes)\n");
+            }
+        }
+    }
+
+    private static class Index {
+        final Set<String> classes = new HashSet<String>();
+        final Set<String> references = new HashSet<String>();
+    }
+
+    /**
+     * Indexes the archive.
+     *
+     * @param archive The WAR or standalone jar
+     * @return The report
+     * @throws IOException If the archive can't be read
+     */
+    public Report analyze(File archive) throws IOException {
+        final ExecutorService executor = Executors.newFixedThreadPool(threads);
+        final List<ZipFile> zipFiles = new ArrayList<ZipFile>();
+        final List<File> tempFiles = new ArrayList<File>();
+        try {
+            final Map<String, Future<Index>> futures = new TreeMap<String, Future<Index>>();
+            final Map<String, Index> indexes = new TreeMap<String, Index>();
+            index(archive, "", executor, futures, indexes, zipFiles, tempFiles);
+            for (Map.Entry<String, Future<Index>> future : futures.entrySet()) {
+                indexes.put(future.getKey(), get(future.getValue()));
+            }
+            return new Report(indexes);
+        } finally {
+            executor.shutdownNow();
+            for (ZipFile zipFile : zipFiles) {
+                zipFile.close();
+            }
+            for (File tempFile : tempFiles) {
+                tempFile.delete();
+            }
+        }
+    }
+
+    /**
+     * Indexes the archive, or a WAR nested in it, submitting its nested jars to the executor.
+     * The archives stay open until the jars are indexed.
+     */
+    private static void index(File archive, String prefix, ExecutorService executor, Map<String, Future<Index>> futures,
+                              Map<String, Index> indexes, List<ZipFile> zipFiles, List<File> tempFiles) throws IOException {
+        final ZipFile zipFile = new ZipFile(archive);
+        zipFiles.add(zipFile);
+        final Index application = new Index();
+        final Index root = new Index();
+        final Enumeration<? extends ZipEntry> entries = zipFile.entries();
+        while (entries.hasMoreElements()) {
+            final ZipEntry entry = entries.nextElement();
+            if (entry.isDirectory()) {
+                continue;
+            }
+            final String name = entry.getName();
+            if (isJar(name)) {
+                futures.put(prefix + name, executor.submit(new Callable<Index>() {
+                    public Index call() throws IOException {
+                        return indexJar(zipFile, entry);
+                    }
+                }));
+            } else if (isWar(name)) {
+                final File war = extract(zipFile, entry);
+                tempFiles.add(war);
+                index(war, prefix + name + NESTED, executor, futures, indexes, zipFiles, tempFiles);
+            } else {
+                final InputStream in = zipFile.getInputStream(entry);
+                try {
+                    index(name.startsWith(APPLICATION + "/") ? name.substring(APPLICATION.length() + 1) : name,
+                            in, name.startsWith(APPLICATION + "/") ? application : root);
+                } finally {
+                    in.close();
+                }
+            }
+        }
+        indexes.put(prefix + APPLICATION, application);
+        indexes.put(prefix.length() > 0 ? prefix : ROOT, root);
+    }
+
+    private static File extract(ZipFile zipFile, ZipEntry entry) throws IOException {
+        final File file = File.createTempFile("nested", ".war");
+        final InputStream in = zipFile.getInputStream(entry);
+        try {
+            copy(in, file);
+        } catch (IOException e) {
+            file.delete();
+            throw e;
+        } finally {
+            in.close();
+        }
+        return file;
+    }
+
+    private static void copy(InputStream in, File file) throws IOException {
+        final OutputStream out = new FileOutputStream(file);
+        try {
+            final byte[] buffer = new byte[65536];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+        } finally {
+            out.close();
+        }
+    }
+
+    private static Index get(Future<Index> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while indexing the archive");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException(e.getCause());
+        }
+    }
+
+    private static Index indexJar(ZipFile zipFile, ZipEntry jarEntry) throws IOException {
+        final Index index = new Index();
+        final ZipInputStream in = new ZipInputStream(new BufferedInputStream(zipFile.getInputStream(jarEntry)));
+        try {
+            ZipEntry entry;
+            while ((entry = in.getNextEntry()) != null) {
+                if (!entry.isDirectory()) {
+                    index(entry.getName(), in, index);
+                }
+            }
+        } finally {
+            in.close();
+        }
+        return index;
+    }
+
+    private static void index(String name, InputStream in, Index index) throws IOException {
+        if (name.endsWith(".class")) {
+            if (!name.startsWith("META-INF/") && !name.endsWith("module-info.class")) {
+                index.classes.add(name.substring(0, name.length() - ".class".length()));
+                readClassReferences(new DataInputStream(new BufferedInputStream(in)), index.references);
+            }
+        } else if (name.endsWith(".xml") || name.endsWith(".properties") || name.endsWith(".tld")
+                || name.startsWith("META-INF/services/")) {
+            readTextReferences(in, index.references);
+        }
+    }
+
+    /**
+     * Adds the class names found in the constant pool of a class file.
+     */
+    static void readClassReferences(DataInputStream in, Set<String> references) throws IOException {
+        if (in.readInt() != 0xCAFEBABE) {
+            return;
+        }
+        in.readUnsignedShort();
+        in.readUnsignedShort();
+        final int count = in.readUnsignedShort();
+        for (int i = 1; i < count; i++) {
+            final int tag = in.readUnsignedByte();
+            switch (tag) {
+                case 1:
+                    addReferences(in.readUTF(), references);
+                    break;
+                case 7: case 8: case 16: case 19: case 20:
+                    in.skipBytes(2);
+                    break;
+                case 15:
+                    in.skipBytes(3);
+                    break;
+                case 3: case 4: case 9: case 10: case 11: case 12: case 17: case 18:
+                    in.skipBytes(4);
+                    break;
+                case 5: case 6:
+                    in.skipBytes(8);
+                    i++;
+                    break;
+                default:
+                    // an unknown constant, the rest of the pool can't be read
+                    return;
+            }
+        }
+    }
+
+    private static void addReferences(String constant, Set<String> references) {
+        // class names (a/b/C), descriptors (La/b/C;) and names used reflectively (a.b.C)
+        if (constant.indexOf('/') > 0 && constant.indexOf(';') < 0) {
+            references.add(constant.charAt(0) == '[' ? constant.substring(constant.lastIndexOf('[') + 1) : constant);
+        }
+        if (constant.indexOf(';') > 0) {
+            final Matcher matcher = DESCRIPTOR_NAME.matcher(constant);
+            while (matcher.find()) {
+                references.add(matcher.group(1));
+            }
+        }
+        if (constant.indexOf('.') > 0 && constant.indexOf('/') < 0) {
+            references.add(constant.replace('.', '/'));
+        }
+    }
+
+    private static void readTextReferences(InputStream in, Set<String> references) throws IOException {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        final byte[] buffer = new byte[8192];
+        int read;
+        while ((read = in.read(buffer)) != -1 && bytes.size() < MAX_TEXT_SIZE) {
+            bytes.write(buffer, 0, read);
+        }
+        final Matcher matcher = DOTTED_NAME.matcher(bytes.toString("ISO-8859-1"));
+        while (matcher.find()) {
+            references.add(matcher.group().replace('.', '/'));
+        }
+    }
+
+    private static boolean isJar(String name) {
+        return name.endsWith(".jar");
+    }
+
+    private static boolean isWar(String name) {
+        return name.endsWith(".war");
+    }
+
+    /**
+     * @return The name of the nested WAR holding the part, or the empty string for the parts of
+     * the archive itself
+     */
+    private static String warOf(String container) {
+        final int nested = container.lastIndexOf(NESTED);
+        return nested >= 0 ? container.substring(0, nested) : "";
+    }
+
+    /**
+     * Copies an archive without the given entries. Entries of nested WARs are named as in the
+     * {@link Report}, {@code embedded.war!/WEB-INF/lib/foo.jar}.
+     *
+     * @param archive The archive to copy
+     * @param excluded The names of the entries to leave out
+     * @param target The copy
+     * @throws IOException If the archive can't be read or the copy can't be written
+     */
+    public static void copyWithout(File archive, Collection<String> excluded, File target) throws IOException {
+        final ZipFile zipFile = new ZipFile(archive);
+        try {
+            final ZipOutputStream out = new ZipOutputStream(new BufferedOutputStream(new FileOutputStream(target)));
+            try {
+                final byte[] buffer = new byte[65536];
+                final Enumeration<? extends ZipEntry> entries = zipFile.entries();
+                while (entries.hasMoreElements()) {
+                    final ZipEntry entry = entries.nextElement();
+                    if (excluded.contains(entry.getName())) {
+                        continue;
+                    }
+                    final Set<String> nestedExcluded = new HashSet<String>();
+                    for (String name : excluded) {
+                        if (name.startsWith(entry.getName() + NESTED)) {
+                            nestedExcluded.add(name.substring(entry.getName().length() + NESTED.length()));
+                        }
+                    }
+                    if (!nestedExcluded.isEmpty()) {
+                        copyNestedWithout(zipFile, entry, nestedExcluded, out);
+                        continue;
+                    }
+                    final ZipEntry copy = new ZipEntry(entry);
+                    if (copy.getMethod() != ZipEntry.STORED) {
+                        // recompressed, so the size may differ
+                        copy.setCompressedSize(-1);
+                    }
+                    out.putNextEntry(copy);
+                    final InputStream in = zipFile.getInputStream(entry);
+                    try {
+                        int read;
+                        while ((read = in.read(buffer)) != -1) {
+                            out.write(buffer, 0, read);
+                        }
+                    } finally {
+                        in.close();
+                    }
+                    out.closeEntry();
+                }
+            } finally {
+                out.close();
+            }
+        } finally {
+            zipFile.close();
+        }
+    }
+
+    private static void copyNestedWithout(ZipFile zipFile, ZipEntry entry, Set<String> excluded, ZipOutputStream out) throws IOException {
+        final File war = extract(zipFile, entry);
+        final File copy = File.createTempFile("nested", ".war");
+        try {
+            copyWithout(war, excluded, copy);
+            final ZipEntry copyEntry = new ZipEntry(entry.getName());
+            copyEntry.setTime(entry.getTime());
+            copyEntry.setMethod(entry.getMethod());
+            if (entry.getMethod() == ZipEntry.STORED) {
+                final CRC32 crc = new CRC32();
+                final InputStream in = new FileInputStream(copy);
+                try {
+                    final byte[] buffer = new byte[65536];
+                    int read;
+                    while ((read = in.read(buffer)) != -1) {
+                        crc.update(buffer, 0, read);
+                    }
+                } finally {
+                    in.close();
+                }
+                copyEntry.setSize(copy.length());
+                copyEntry.setCompressedSize(copy.length());
+                copyEntry.setCrc(crc.getValue());
+            }
+            out.putNextEntry(copyEntry);
+            final InputStream in = new FileInputStream(copy);
+            try {
+                final byte[] buffer = new byte[65536];
+                int read;
+                while ((read = in.read(buffer)) != -1) {
+                    out.write(buffer, 0, read);
+                }
+            } finally {
+                in.close();
+            }
+            out.closeEntry();
+        } finally {
+            war.delete();
+            copy.delete();
+        }
+    }
+}
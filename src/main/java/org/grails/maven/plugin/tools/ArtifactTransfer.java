@@ -0,0 +1,37 @@
+/*
+ * Copyright 2007 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.grails.maven.plugin.tools;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Moves files produced by Grails to where Maven expects the build artifacts.
+ *
+ * @since 2.4.7
+ */
+public interface ArtifactTransfer {
+
+    /**
+     * Moves a file, replacing the target if it exists. Readers of the target never see a
+     * partially written file.
+     *
+     * @param source The file to move
+     * @param target Its new location, on the same or a different file system
+     * @throws IOException If the file couldn't be moved
+     */
+    void move(File source, File target) throws IOException;
+}
@@ -0,0 +1,98 @@
+/*
+ * Copyright 2007 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.grails.maven.plugin.tools;
+
+import org.grails.launcher.RootLoader;
+
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Keeps the class loaders holding the Grails build dependencies alive for the lifetime of the
+ * JVM, so that consecutive in-process goals don't re-open every jar and re-load the Groovy and
+ * Grails classes.
+ *
+ * The Grails, Groovy and Spring classes of the build loader have to see the logging jars and
+ * the build listeners of the plugin jar, so these are added to the build loader when it is
+ * created and are part of its key, along with the build path. URLs are compared as strings, as
+ * {@link URL#equals(Object)} may resolve host names. Each goal runs in an empty child loader
+ * that is discarded with its launcher.
+ *
+ * @since 2.4.7
+ */
+public class BuildClassLoaderCache {
+
+    private static final Map<List<String>, RootLoader> LOADERS = new HashMap<List<String>, RootLoader>();
+
+    private BuildClassLoaderCache() {
+    }
+
+    /**
+     * Returns the cached loader for the build path, logging and build listeners of the given
+     * execution, creating it on first use.
+     *
+     * @param ec The execution
+     * @return A loader shared by every execution with the same build path, logging and listeners
+     */
+    public static RootLoader getBuildClassLoader(AbstractGrailsRuntime.ExecutionContext ec) {
+        final List<String> key = new ArrayList<String>();
+        for (URL url : AbstractGrailsRuntime.generateBuildPath(ec.getBuildDependencies())) {
+            key.add(url.toExternalForm());
+        }
+        final LoggingBootstrap.Selection logging = ec.getLoggingSelection();
+        if (logging != null && !logging.getJars().isEmpty()) {
+            key.add("logging:" + logging.getBackend() + (ec.isAsyncLogging() ? ":async" : ""));
+            for (URL url : AbstractGrailsRuntime.generateBuildPath(logging.getJars())) {
+                key.add(url.toExternalForm());
+            }
+        }
+        if (AbstractGrailsRuntime.needsBuildListeners(ec)) {
+            key.add("listeners");
+        }
+
+        synchronized (LOADERS) {
+            RootLoader loader = LOADERS.get(key);
+            if (loader == null) {
+                loader = AbstractGrailsRuntime.createBuildClassLoader(ec.getBuildDependencies(), ec.getClassPathIndexDir());
+                AbstractGrailsRuntime.prepareBuildClassLoader(loader, ec);
+                LOADERS.put(key, loader);
+            }
+            return loader;
+        }
+    }
+
+    /**
+     * Creates a per-goal loader on top of the cached build loader.
+     *
+     * @param ec The execution
+     * @return A new, initially empty, child loader
+     */
+    public static RootLoader createGoalClassLoader(AbstractGrailsRuntime.ExecutionContext ec) {
+        return new RootLoader(new URL[0], getBuildClassLoader(ec));
+    }
+
+    /**
+     * Forgets all cached loaders.
+     */
+    public static void clear() {
+        synchronized (LOADERS) {
+            LOADERS.clear();
+        }
+    }
+}
@@ -0,0 +1,118 @@
+/*
+ * Copyright 2007 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.grails.maven.plugin.tools;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+/**
+ * An event reported by a Grails JVM to Maven over a {@link BuildEventServer} connection.
+ *
+ * Events are written as a type byte, the time in milliseconds, a name, a detail and a value,
+ * whose meaning depends on the type.
+ *
+ * @since 2.4.7
+ */
+public class BuildEvent {
+
+    public enum Type {
+        /** A script was launched; the name is the script. */
+        SCRIPT_START,
+        /** A script finished; the value is its exit code. */
+        SCRIPT_END,
+        /** A build phase (a Gant target) started. */
+        PHASE_START,
+        /** A build phase finished; the value is its duration in milliseconds. */
+        PHASE_END,
+        /** A test passed; the value is its duration in milliseconds. */
+        TEST_PASSED,
+        /** A test failed; the detail is the failure, the value its duration in milliseconds. */
+        TEST_FAILED,
+        /** Compilation failed; the detail is the error. */
+        COMPILE_ERROR,
+        /** Grails reported an error; the detail is the message. */
+        ERROR,
+        /** Grails reported its status; the detail is the message. */
+        STATUS
+    }
+
+    private static final int MAX_TEXT_LENGTH = 16 * 1024;
+
+    private final Type type;
+    private final long time;
+    private final String name;
+    private final String detail;
+    private final long value;
+
+    public BuildEvent(Type type, String name, String detail, long value) {
+        this(type, System.currentTimeMillis(), name, detail, value);
+    }
+
+    BuildEvent(Type type, long time, String name, String detail, long value) {
+        this.type = type;
+        this.time = time;
+        this.name = name != null ? name : "";
+        this.detail = detail != null ? detail : "";
+        this.value = value;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public long getTime() {
+        return time;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getDetail() {
+        return detail;
+    }
+
+    public long getValue() {
+        return value;
+    }
+
+    void write(DataOutputStream out) throws IOException {
+        out.writeByte(type.ordinal());
+        out.writeLong(time);
+        out.writeUTF(truncate(name));
+        out.writeUTF(truncate(detail));
+        out.writeLong(value);
+    }
+
+    static BuildEvent read(DataInputStream in) throws IOException {
+        final int type = in.readUnsignedByte();
+        if (type >= Type.values().length) {
+            throw new IOException("Unknown build event type " + type);
+        }
+        return new BuildEvent(Type.values()[type], in.readLong(), in.readUTF(), in.readUTF(), in.readLong());
+    }
+
+    private static String truncate(String text) {
+        // writeUTF is limited to 64k bytes
+        return text.length() > MAX_TEXT_LENGTH ? text.substring(0, MAX_TEXT_LENGTH) : text;
+    }
+
+    @Override
+    public String toString() {
+        return type + " " + name + (detail.length() > 0 ? " (" + detail + ")" : "") + " " + value;
+    }
+}
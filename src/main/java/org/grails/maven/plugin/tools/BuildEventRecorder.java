@@ -0,0 +1,153 @@
+/*
+ * Copyright 2007 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.grails.maven.plugin.tools;
+
+import org.apache.maven.plugin.logging.Log;
+
+import java.io.*;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Collects the {@link BuildEvent}s of a Grails execution: test failures and compilation errors
+ * are logged as they arrive, build phases at debug level, and the phase durations and test
+ * counts can be written out as metrics once the execution finished.
+ *
+ * @since 2.4.7
+ */
+public class BuildEventRecorder implements BuildEventServer.Handler {
+
+    private final Log log;
+    private final List<BuildEvent> phases = new ArrayList<BuildEvent>();
+    private final List<BuildEvent> testFailures = new ArrayList<BuildEvent>();
+    private final List<BuildEvent> compileErrors = new ArrayList<BuildEvent>();
+    private final List<BuildEvent> errors = new ArrayList<BuildEvent>();
+    private int testCount;
+    private Integer exitCode;
+
+    public BuildEventRecorder(Log log) {
+        this.log = log;
+    }
+
+    public synchronized void handle(BuildEvent event) {
+        switch (event.getType()) {
+            case PHASE_START:
+                log.debug("Grails phase " + event.getName() + " started");
+                break;
+            case PHASE_END:
+                phases.add(event);
+                log.debug("Grails phase " + event.getName() + " finished in " + event.getValue() + "ms");
+                break;
+            case TEST_PASSED:
+                testCount++;
+                break;
+            case TEST_FAILED:
+                testCount++;
+                testFailures.add(event);
+                log.error("Test " + event.getName() + " failed: " + event.getDetail());
+                break;
+            case COMPILE_ERROR:
+                compileErrors.add(event);
+                log.error(event.getDetail());
+                break;
+            case ERROR:
+                errors.add(event);
+                break;
+            case SCRIPT_END:
+                exitCode = (int) event.getValue();
+                break;
+            default:
+                break;
+        }
+    }
+
+    /**
+     * @return The exit code reported by the script, or null if it didn't report one
+     */
+    public synchronized Integer getExitCode() {
+        return exitCode;
+    }
+
+    public synchronized int getTestCount() {
+        return testCount;
+    }
+
+    public synchronized List<BuildEvent> getTestFailures() {
+        return new ArrayList<BuildEvent>(testFailures);
+    }
+
+    public synchronized List<BuildEvent> getCompileErrors() {
+        return new ArrayList<BuildEvent>(compileErrors);
+    }
+
+    public synchronized List<BuildEvent> getErrors() {
+        return new ArrayList<BuildEvent>(errors);
+    }
+
+    /**
+     * @return The finished phases, longest first
+     */
+    public synchronized List<BuildEvent> getPhases() {
+        final List<BuildEvent> sorted = new ArrayList<BuildEvent>(phases);
+        Collections.sort(sorted, new Comparator<BuildEvent>() {
+            public int compare(BuildEvent a, BuildEvent b) {
+                return a.getValue() < b.getValue() ? 1 : a.getValue() > b.getValue() ? -1 : 0;
+            }
+        });
+        return sorted;
+    }
+
+    /**
+     * @return The compilation errors, test failures and errors reported, one per line, or an
+     * empty string if there were none
+     */
+    public synchronized String describeProblems() {
+        final StringBuilder problems = new StringBuilder();
+        for (BuildEvent error : compileErrors) {
+            problems.append('\n').append(error.getDetail());
+        }
+        for (BuildEvent failure : testFailures) {
+            problems.append('\n').append("Test ").append(failure.getName()).append(" failed: ").append(failure.getDetail());
+        }
+        for (BuildEvent error : errors) {
+            problems.append('\n').append(error.getDetail());
+        }
+        return problems.toString();
+    }
+
+    /**
+     * Writes the phase durations, longest first, and the test and error counts.
+     */
+    public void writeMetrics(File file) throws IOException {
+        file.getParentFile().mkdirs();
+        final Writer out = new OutputStreamWriter(new FileOutputStream(file), "UTF-8");
+        try {
+            for (BuildEvent phase : getPhases()) {
+                out.write(phase.getValue() + "ms\t" + phase.getName() + "\n");
+            }
+            synchronized (this) {
+                out.write("tests\t" + testCount + "\n");
+                out.write("test failures\t" + testFailures.size() + "\n");
+                out.write("compilation errors\t" + compileErrors.size() + "\n");
+                out.write("exit code\t" + (exitCode != null ? exitCode : "none") + "\n");
+            }
+        } finally {
+            out.close();
+        }
+    }
+}
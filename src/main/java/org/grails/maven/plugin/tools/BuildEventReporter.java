@@ -0,0 +1,178 @@
+/*
+ * Copyright 2007 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.grails.maven.plugin.tools;
+
+import grails.build.GrailsBuildListener;
+import org.grails.launcher.RootLoader;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.net.URL;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Reports the Grails build events of a JVM to the {@link BuildEventServer} whose port is
+ * given by {@link #PORT_PROPERTY}: build phases with their durations, test results,
+ * compilation errors and status messages. An error counts as a compilation error when its event
+ * carries the exception of the Groovy compiler, never because of its text.
+ *
+ * Grails creates the listener by name from its build class loader, so the plugin jar has to
+ * be added to that loader with {@link #addTo(RootLoader)} for the listener to implement the
+ * {@link GrailsBuildListener} interface Grails knows.
+ *
+ * @since 2.4.7
+ */
+public class BuildEventReporter implements GrailsBuildListener {
+
+    /**
+     * The system property holding the port of the {@link BuildEventServer}.
+     */
+    public static final String PORT_PROPERTY = "grails.maven.events.port";
+
+    private static final String COMPILATION_FAILURE = "org.codehaus.groovy.control.CompilationFailedException";
+
+    private DataOutputStream out;
+    private boolean disconnected;
+    private final Map<String, Long> phaseStarts = new HashMap<String, Long>();
+    private String testCase;
+    private String test;
+    private long testStart;
+    private String testFailure;
+
+    /**
+     * Adds the jar holding this class to a Grails build class loader.
+     */
+    public static void addTo(RootLoader loader) {
+        final URL location = BuildEventReporter.class.getProtectionDomain().getCodeSource().getLocation();
+        loader.addURL(location);
+    }
+
+    public synchronized void receiveGrailsBuildEvent(String name, Object... args) {
+        final long now = System.currentTimeMillis();
+        if ("TestCaseStart".equals(name)) {
+            testCase = argument(args, 0);
+        } else if ("TestCaseEnd".equals(name)) {
+            testCase = null;
+        } else if ("TestStart".equals(name)) {
+            test = argument(args, 0);
+            testStart = now;
+            testFailure = null;
+        } else if ("TestFailure".equals(name)) {
+            testFailure = args != null && args.length > 1 ? String.valueOf(args[1]) : "failed";
+        } else if ("TestEnd".equals(name)) {
+            final String testName = testCase != null ? testCase + "." + test : test;
+            final long duration = now - testStart;
+            if (testFailure == null) {
+                send(new BuildEvent(BuildEvent.Type.TEST_PASSED, testName, null, duration));
+            } else {
+                send(new BuildEvent(BuildEvent.Type.TEST_FAILED, testName, testFailure, duration));
+            }
+            test = null;
+        } else if ("StatusError".equals(name)) {
+            final String message = argument(args, 0);
+            final Throwable compilationFailure = findCompilationFailure(args);
+            if (compilationFailure != null) {
+                send(new BuildEvent(BuildEvent.Type.COMPILE_ERROR, name,
+                        message != null ? message : String.valueOf(compilationFailure.getMessage()), 0));
+            } else {
+                send(new BuildEvent(BuildEvent.Type.ERROR, name, message, 0));
+            }
+        } else if ("StatusUpdate".equals(name) || "StatusFinal".equals(name)) {
+            send(new BuildEvent(BuildEvent.Type.STATUS, name, argument(args, 0), 0));
+        } else if (name.endsWith("Start")) {
+            final String phase = name.substring(0, name.length() - "Start".length());
+            phaseStarts.put(phase, now);
+            send(new BuildEvent(BuildEvent.Type.PHASE_START, phase, null, 0));
+        } else if (name.endsWith("End")) {
+            final String phase = name.substring(0, name.length() - "End".length());
+            final Long start = phaseStarts.remove(phase);
+            send(new BuildEvent(BuildEvent.Type.PHASE_END, phase, null, start != null ? now - start : -1));
+        }
+    }
+
+    /**
+     * Reports the start of a script.
+     */
+    public synchronized void scriptStarted(String script) {
+        send(new BuildEvent(BuildEvent.Type.SCRIPT_START, script, null, 0));
+    }
+
+    /**
+     * Reports the end of a script and closes the connection.
+     */
+    public synchronized void scriptFinished(String script, int exitCode) {
+        send(new BuildEvent(BuildEvent.Type.SCRIPT_END, script, null, exitCode));
+        if (out != null) {
+            try {
+                out.close();
+            } catch (IOException e) {
+                // ignore
+            }
+            out = null;
+        }
+        disconnected = true;
+    }
+
+    private void send(BuildEvent event) {
+        if (disconnected) {
+            return;
+        }
+        try {
+            if (out == null) {
+                final String port = System.getProperty(PORT_PROPERTY);
+                if (port == null) {
+                    disconnected = true;
+                    return;
+                }
+                final Socket socket = new Socket(InetAddress.getByName(null), Integer.parseInt(port));
+                out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+            }
+            event.write(out);
+            out.flush();
+        } catch (IOException e) {
+            // Maven went away, stop reporting
+            disconnected = true;
+        }
+    }
+
+    /**
+     * @return The compiler exception among the arguments of an event or their causes, or null.
+     * The class is matched by name, as Grails may load its own copy of Groovy.
+     */
+    static Throwable findCompilationFailure(Object[] args) {
+        if (args == null) {
+            return null;
+        }
+        for (Object arg : args) {
+            for (Throwable e = arg instanceof Throwable ? (Throwable) arg : null; e != null; e = e.getCause() != e ? e.getCause() : null) {
+                for (Class<?> type = e.getClass(); type != null; type = type.getSuperclass()) {
+                    if (COMPILATION_FAILURE.equals(type.getName())) {
+                        return e;
+                    }
+                }
+            }
+        }
+        return null;
+    }
+
+    private static String argument(Object[] args, int index) {
+        return args != null && args.length > index && args[index] != null ? String.valueOf(args[index]) : null;
+    }
+}
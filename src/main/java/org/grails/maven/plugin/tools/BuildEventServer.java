@@ -0,0 +1,130 @@
+/*
+ * Copyright 2007 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.grails.maven.plugin.tools;
+
+import java.io.*;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Receives the {@link BuildEvent}s reported by a Grails JVM on a loopback socket. Each
+ * connection is read on its own daemon thread, and the events are passed to the handler one
+ * at a time.
+ *
+ * @since 2.4.7
+ */
+public class BuildEventServer implements Closeable {
+
+    /**
+     * Receives the events.
+     */
+    public interface Handler {
+        void handle(BuildEvent event);
+    }
+
+    private final ServerSocket serverSocket;
+    private final Handler handler;
+    private final List<Thread> readers = new CopyOnWriteArrayList<Thread>();
+
+    private BuildEventServer(ServerSocket serverSocket, Handler handler) {
+        this.serverSocket = serverSocket;
+        this.handler = handler;
+    }
+
+    /**
+     * Listens on a free loopback port.
+     */
+    public static BuildEventServer open(Handler handler) throws IOException {
+        final BuildEventServer server = new BuildEventServer(new ServerSocket(0, 5, InetAddress.getByName(null)), handler);
+        final Thread acceptor = new Thread(new Runnable() {
+            public void run() {
+                server.accept();
+            }
+        }, "grails-build-events");
+        acceptor.setDaemon(true);
+        acceptor.start();
+        return server;
+    }
+
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    private void accept() {
+        while (!serverSocket.isClosed()) {
+            try {
+                final Socket socket = serverSocket.accept();
+                final Thread reader = new Thread(new Runnable() {
+                    public void run() {
+                        read(socket);
+                    }
+                }, "grails-build-events-reader");
+                reader.setDaemon(true);
+                readers.add(reader);
+                reader.start();
+            } catch (SocketException e) {
+                // closed
+            } catch (IOException e) {
+                // try the next one
+            }
+        }
+    }
+
+    private void read(Socket socket) {
+        try {
+            final DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            while (true) {
+                final BuildEvent event;
+                try {
+                    event = BuildEvent.read(in);
+                } catch (EOFException e) {
+                    break;
+                }
+                synchronized (handler) {
+                    handler.handle(event);
+                }
+            }
+        } catch (IOException e) {
+            // the JVM went away
+        } finally {
+            try {
+                socket.close();
+            } catch (IOException e) {
+                // ignore
+            }
+        }
+    }
+
+    /**
+     * Stops accepting connections and waits briefly for the open ones to be read to the end,
+     * which they are once the reporting JVM exits.
+     */
+    public void close() throws IOException {
+        serverSocket.close();
+        for (Thread reader : readers) {
+            try {
+                reader.join(2000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+    }
+}
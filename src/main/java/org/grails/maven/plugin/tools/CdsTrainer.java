@@ -0,0 +1,294 @@
+/*
+ * Copyright 2007 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.grails.maven.plugin.tools;
+
+import java.io.*;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Creates an AppCDS archive for a standalone application jar with a training run: the
+ * application is started with {@code -XX:ArchiveClassesAtExit}, stopped once it answers HTTP
+ * requests successfully, and the JVM writes the classes it loaded to the archive on exit.
+ *
+ * Unless a readiness URL is given, the application gets a free port as its {@code port=}
+ * argument and the readiness path is polled on it. A given URL must not answer before the
+ * training run starts, so that no other server is mistaken for the application.
+ *
+ * Dynamic archives need a JDK 13 or later, and the JVM only uses the archive with the jar it was
+ * created for, checking its class path entry, size and modification time. The training run
+ * therefore starts the jar by its file name from its own directory, as the launcher written by
+ * {@link #writeLauncherScript} does, so that jar, archive and launcher may be moved together.
+ * The jar gets the fixed modification time {@link #JAR_TIME}, which the launcher restores, as
+ * copies and repository downloads don't keep it.
+ *
+ * @since 2.4.7
+ */
+public class CdsTrainer {
+
+    /** The modification time of trained jars, 1980-02-01T00:00:00Z as in {@link StandaloneLayers}. */
+    static final long JAR_TIME = StandaloneLayers.REPRODUCIBLE_TIME;
+
+    /** {@link #JAR_TIME} for {@code touch -t} in UTC. */
+    private static final String JAR_TOUCH_TIME = "198002010000.00";
+
+    private final File java;
+    private final File jar;
+    private final File archive;
+    private final List<String> jvmArgs = new ArrayList<String>();
+    private final List<String> applicationArgs = new ArrayList<String>();
+    private URL readinessUrl;
+    private String readinessPath = "/";
+    private int timeoutSeconds = 300;
+    private File logFile;
+
+    /**
+     * @param java The java executable to train with, which should be the one used in production
+     * @param jar The standalone jar
+     * @param archive The archive to create
+     */
+    public CdsTrainer(File java, File jar, File archive) {
+        this.java = java;
+        this.jar = jar;
+        this.archive = archive;
+    }
+
+    public void setJvmArgs(List<String> jvmArgs) {
+        this.jvmArgs.clear();
+        if (jvmArgs != null) {
+            this.jvmArgs.addAll(jvmArgs);
+        }
+    }
+
+    public void setApplicationArgs(List<String> applicationArgs) {
+        this.applicationArgs.clear();
+        if (applicationArgs != null) {
+            this.applicationArgs.addAll(applicationArgs);
+        }
+    }
+
+    /**
+     * @param readinessUrl The URL answering once the application is ready, null to poll
+     * the readiness path on the port of the training run
+     */
+    public void setReadinessUrl(URL readinessUrl) {
+        this.readinessUrl = readinessUrl;
+    }
+
+    /**
+     * @param readinessPath The path polled when no readiness URL is set, {@code /} by default
+     */
+    public void setReadinessPath(String readinessPath) {
+        this.readinessPath = readinessPath.startsWith("/") ? readinessPath : "/" + readinessPath;
+    }
+
+    public void setTimeoutSeconds(int timeoutSeconds) {
+        this.timeoutSeconds = timeoutSeconds;
+    }
+
+    /**
+     * @param logFile Receives the output of the training run, discarded when null
+     */
+    public void setLogFile(File logFile) {
+        this.logFile = logFile;
+    }
+
+    /**
+     * @param port The port passed to the application as {@code port=}, or 0 for none
+     * @return The command starting the training run
+     */
+    public List<String> getCommand(int port) throws IOException {
+        final List<String> command = new ArrayList<String>();
+        command.add(java.getPath());
+        command.add("-XX:ArchiveClassesAtExit=" + archive.getCanonicalPath());
+        command.addAll(jvmArgs);
+        command.add("-jar");
+        // relative to the working directory, see train()
+        command.add(jar.getName());
+        command.addAll(applicationArgs);
+        if (port > 0) {
+            command.add("port=" + port);
+        }
+        return command;
+    }
+
+    /**
+     * Runs the application until it is ready, stops it and waits for the archive to be written.
+     *
+     * @throws IOException If the application fails to start or no archive was written
+     * @throws InterruptedException If interrupted while waiting for the application
+     */
+    public void train() throws IOException, InterruptedException {
+        archive.delete();
+        if (!jar.setLastModified(JAR_TIME)) {
+            throw new IOException("Unable to set the modification time of " + jar);
+        }
+        final int givenPort = applicationPort();
+        final int port = readinessUrl != null ? 0 : givenPort > 0 ? givenPort : findFreePort();
+        final URL url = readinessUrl != null ? readinessUrl : new URL("http", "localhost", port, readinessPath);
+        if (isListening(url)) {
+            throw new IOException("Another process already listens at " + url + " and would be taken for the training run");
+        }
+        final ProcessBuilder processBuilder = new ProcessBuilder(getCommand(givenPort > 0 ? 0 : port))
+                .directory(jar.getAbsoluteFile().getParentFile())
+                .redirectErrorStream(true);
+        if (logFile != null) {
+            processBuilder.redirectOutput(logFile);
+        } else {
+            processBuilder.redirectOutput(ProcessBuilder.Redirect.INHERIT);
+        }
+
+        final Process process = processBuilder.start();
+        try {
+            final long deadline = System.currentTimeMillis() + timeoutSeconds * 1000L;
+            while (true) {
+                if (hasExited(process)) {
+                    throw new IOException("The application exited with code " + process.exitValue() + " before it was ready" + seeLog());
+                }
+                if (isReady(url)) {
+                    break;
+                }
+                if (System.currentTimeMillis() > deadline) {
+                    throw new IOException("The application wasn't ready after " + timeoutSeconds + " seconds" + seeLog());
+                }
+                Thread.sleep(500);
+            }
+
+            // a regular shutdown, which writes the archive
+            process.destroy();
+            final long exitDeadline = System.currentTimeMillis() + timeoutSeconds * 1000L;
+            while (!hasExited(process)) {
+                if (System.currentTimeMillis() > exitDeadline) {
+                    throw new IOException("The application didn't stop within " + timeoutSeconds + " seconds" + seeLog());
+                }
+                Thread.sleep(200);
+            }
+        } finally {
+            process.destroy();
+        }
+
+        if (!archive.isFile()) {
+            throw new IOException("No CDS archive was written to " + archive + ", does " + java + " support -XX:ArchiveClassesAtExit?" + seeLog());
+        }
+    }
+
+    /**
+     * @return The port given in the application arguments, or 0
+     */
+    private int applicationPort() {
+        for (String arg : applicationArgs) {
+            if (arg.startsWith("port=")) {
+                try {
+                    return Integer.parseInt(arg.substring("port=".length()).trim());
+                } catch (NumberFormatException e) {
+                    return 0;
+                }
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * @return Whether the URL answers with a 2xx status; redirects aren't followed
+     */
+    static boolean isReady(URL url) {
+        try {
+            final HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+            connection.setConnectTimeout(1000);
+            connection.setReadTimeout(5000);
+            connection.setInstanceFollowRedirects(false);
+            try {
+                final int status = connection.getResponseCode();
+                return status >= 200 && status < 300;
+            } finally {
+                connection.disconnect();
+            }
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * @return Whether something accepts connections on the host and port of the URL
+     */
+    static boolean isListening(URL url) {
+        final Socket socket = new Socket();
+        try {
+            socket.connect(new InetSocketAddress(url.getHost(), url.getPort() != -1 ? url.getPort() : url.getDefaultPort()), 1000);
+            return true;
+        } catch (IOException e) {
+            return false;
+        } finally {
+            try {
+                socket.close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+
+    private static int findFreePort() throws IOException {
+        final ServerSocket socket = new ServerSocket(0);
+        try {
+            return socket.getLocalPort();
+        } finally {
+            socket.close();
+        }
+    }
+
+    private static boolean hasExited(Process process) {
+        try {
+            process.exitValue();
+            return true;
+        } catch (IllegalThreadStateException e) {
+            return false;
+        }
+    }
+
+    private String seeLog() {
+        return logFile != null ? ", see " + logFile : "";
+    }
+
+    /**
+     * Writes a POSIX shell script starting the jar with the archive. Both are expected next
+     * to the script; JAVA and JAVA_OPTS are honoured. The script changes to their directory and
+     * restores the modification time of the jar, if it may, so that the JVM accepts the archive.
+     *
+     * @param script The script to write
+     * @param jarName The file name of the jar
+     * @param archiveName The file name of the archive
+     */
+    public static void writeLauncherScript(File script, String jarName, String archiveName) throws IOException {
+        final Writer out = new OutputStreamWriter(new FileOutputStream(script), "UTF-8");
+        try {
+            out.write("#!/bin/sh\n");
+            out.write("# Starts " + jarName + " with the class data sharing archive created at build time.\n");
+            out.write("# The archive is ignored if the jar was modified since. The application runs in the\n");
+            out.write("# directory of the jar, which is started by the same relative path as at build time.\n");
+            out.write("cd \"$(dirname \"$0\")\" || exit 1\n");
+            out.write("# the JVM checks the modification time of the jar, which copies don't always keep\n");
+            out.write("if [ -w \"" + jarName + "\" ]; then TZ=UTC0 touch -c -t " + JAR_TOUCH_TIME + " \"" + jarName + "\"; fi\n");
+            out.write("exec \"${JAVA:-java}\" -XX:SharedArchiveFile=\"" + archiveName + "\" -Xshare:auto $JAVA_OPTS -jar \"" + jarName + "\" \"$@\"\n");
+        } finally {
+            out.close();
+        }
+        script.setExecutable(true, false);
+    }
+}
@@ -0,0 +1,159 @@
+/*
+ * Copyright 2007 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.grails.maven.plugin.tools;
+
+import org.codehaus.plexus.util.FileUtils;
+
+import java.io.*;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Pushes batches of source changes to Grails JVMs over a loopback socket. Every connected
+ * {@link ChangeReceiver} gets each batch as lines of {@code <change> <absolute path>}
+ * followed by an empty line.
+ *
+ * @since 2.4.7
+ */
+public class ChangeChannel implements SourceWatcher.Listener, Closeable {
+
+    private static final Pattern COMMENT = Pattern.compile("/\\*.*?\\*/|//[^\n]*", Pattern.DOTALL);
+    private static final Pattern FORK_RUN = Pattern.compile("grails\\.project\\.fork\\.run\\s*=\\s*+(?!false\\b)");
+    private static final Pattern FORK_MAP = Pattern.compile("grails\\.project\\.fork\\s*=\\s*\\[");
+    private static final Pattern RUN_ENTRY = Pattern.compile("\\brun\\s*:\\s*+(?!false\\b)");
+
+    private final ServerSocket serverSocket;
+    private final List<Writer> clients = new CopyOnWriteArrayList<Writer>();
+
+    private ChangeChannel(ServerSocket serverSocket) {
+        this.serverSocket = serverSocket;
+    }
+
+    /**
+     * Listens on a free loopback port and accepts receivers on a daemon thread.
+     */
+    public static ChangeChannel open() throws IOException {
+        final ChangeChannel channel = new ChangeChannel(new ServerSocket(0, 5, InetAddress.getByName(null)));
+        final Thread acceptor = new Thread(new Runnable() {
+            public void run() {
+                channel.accept();
+            }
+        }, "grails-change-channel");
+        acceptor.setDaemon(true);
+        acceptor.start();
+        return channel;
+    }
+
+    /**
+     * @return The port receivers connect to
+     */
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    /**
+     * @return The number of connected receivers
+     */
+    public int getReceiverCount() {
+        return clients.size();
+    }
+
+    private void accept() {
+        while (!serverSocket.isClosed()) {
+            try {
+                final Socket socket = serverSocket.accept();
+                socket.shutdownInput();
+                clients.add(new BufferedWriter(new OutputStreamWriter(socket.getOutputStream(), "UTF-8")));
+            } catch (SocketException e) {
+                // closed
+            } catch (IOException e) {
+                // try the next one
+            }
+        }
+    }
+
+    public void changed(Map<File, SourceWatcher.Change> changes) {
+        final StringBuilder batch = new StringBuilder();
+        for (Map.Entry<File, SourceWatcher.Change> change : changes.entrySet()) {
+            batch.append(change.getValue().name()).append(' ').append(change.getKey().getAbsolutePath()).append('\n');
+        }
+        batch.append('\n');
+
+        for (Writer client : clients) {
+            try {
+                client.write(batch.toString());
+                client.flush();
+            } catch (IOException e) {
+                // the JVM went away
+                clients.remove(client);
+                closeQuietly(client);
+            }
+        }
+    }
+
+    public void close() throws IOException {
+        serverSocket.close();
+        for (Writer client : clients) {
+            closeQuietly(client);
+        }
+        clients.clear();
+    }
+
+    /**
+     * Tells from the {@code BuildConfig.groovy} of a project whether Grails runs the application
+     * in a JVM of its own, which pushed changes can't reach: {@code grails.project.fork.run}, or
+     * the {@code run} entry of the {@code grails.project.fork} map that Grails 2.3+ generates, is
+     * set to anything but false. The file is searched, not evaluated.
+     *
+     * @param buildConfig The {@code BuildConfig.groovy} of the project, which may not exist
+     */
+    public static boolean isRunForked(File buildConfig) throws IOException {
+        if (!buildConfig.isFile()) {
+            return false;
+        }
+        final String config = COMMENT.matcher(FileUtils.fileRead(buildConfig, "UTF-8")).replaceAll("");
+        if (FORK_RUN.matcher(config).find()) {
+            return true;
+        }
+        final Matcher forkMap = FORK_MAP.matcher(config);
+        while (forkMap.find()) {
+            int end = forkMap.end();
+            for (int depth = 1; depth > 0 && end < config.length(); end++) {
+                final char c = config.charAt(end);
+                depth += c == '[' ? 1 : c == ']' ? -1 : 0;
+            }
+            if (RUN_ENTRY.matcher(config.substring(forkMap.end(), end)).find()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static void closeQuietly(Closeable closeable) {
+        try {
+            closeable.close();
+        } catch (IOException e) {
+            // ignore
+        }
+    }
+}
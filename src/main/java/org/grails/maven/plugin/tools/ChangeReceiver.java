@@ -0,0 +1,285 @@
+/*
+ * Copyright 2007 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.grails.maven.plugin.tools;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.net.ConnectException;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.util.*;
+
+/**
+ * Receives the source changes pushed by a {@link ChangeChannel} inside the JVM running the
+ * Grails application.
+ *
+ * By default the changes are handed to the listeners of the Grails {@code DirectoryWatcher}
+ * threads, which then recompile and reload as if they had found the changes themselves, and
+ * the polling interval of those watchers is raised so they stop scanning the project while
+ * changes are pushed. Each watcher only gets the files it watches itself, or whose extension it
+ * watches in one of its directories, so editor swap and temporary files are left out as Grails
+ * would. Grails watchers don't report deletions; a deleted file is only forgotten by them. Grails
+ * exposes no API for this, so the watchers are driven reflectively and left alone if their
+ * structure isn't recognized. Only the watchers of this JVM are found:
+ * when Grails runs the application in a JVM of its own ({@code grails.project.fork.run}),
+ * pushed changes can't reach them, which is reported once.
+ *
+ * @since 2.4.7
+ */
+public class ChangeReceiver implements Runnable {
+
+    /**
+     * The system property holding the port of the {@link ChangeChannel}.
+     */
+    public static final String PORT_PROPERTY = "grails.maven.changes.port";
+
+    /**
+     * The system property holding the polling interval, in milliseconds, for the Grails
+     * watchers while changes are pushed.
+     */
+    public static final String POLL_INTERVAL_PROPERTY = "grails.maven.changes.pollInterval";
+
+    private static final int CONNECT_ATTEMPTS = 20;
+
+    private final int port;
+    private final SourceWatcher.Listener listener;
+
+    ChangeReceiver(int port, SourceWatcher.Listener listener) {
+        this.port = port;
+        this.listener = listener;
+    }
+
+    /**
+     * Starts a receiver on a daemon thread if {@link #PORT_PROPERTY} is set.
+     */
+    public static void startIfRequested() {
+        startIfRequested(null);
+    }
+
+    /**
+     * Starts a receiver on a daemon thread if {@link #PORT_PROPERTY} is set.
+     *
+     * @param supervisor Restarts the application for changes reloading can't handle, may be null
+     */
+    public static void startIfRequested(RunAppSupervisor supervisor) {
+        final String port = System.getProperty(PORT_PROPERTY);
+        if (port == null || port.length() == 0) {
+            return;
+        }
+        final long pollInterval = Long.getLong(POLL_INTERVAL_PROPERTY, 0L);
+        final SourceWatcher.Listener reloader = new GrailsWatcherNotifier(pollInterval);
+        final Thread thread = new Thread(new ChangeReceiver(Integer.parseInt(port),
+                supervisor != null ? supervisor.restartOrReload(reloader) : reloader), "grails-change-receiver");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    public void run() {
+        Socket socket = null;
+        try {
+            socket = connect();
+            final BufferedReader reader = new BufferedReader(new InputStreamReader(socket.getInputStream(), "UTF-8"));
+            Map<File, SourceWatcher.Change> batch = new LinkedHashMap<File, SourceWatcher.Change>();
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.length() == 0) {
+                    if (!batch.isEmpty()) {
+                        listener.changed(batch);
+                    }
+                    batch = new LinkedHashMap<File, SourceWatcher.Change>();
+                } else {
+                    final int space = line.indexOf(' ');
+                    try {
+                        batch.put(new File(line.substring(space + 1)), SourceWatcher.Change.valueOf(line.substring(0, space)));
+                    } catch (RuntimeException e) {
+                        // not a change
+                    }
+                }
+            }
+        } catch (IOException e) {
+            System.out.println("Source changes pushed by Maven are no longer received: " + e.getMessage());
+        } catch (InterruptedException e) {
+            // shutting down
+        } finally {
+            if (socket != null) {
+                try {
+                    socket.close();
+                } catch (IOException e) {
+                    // ignore
+                }
+            }
+        }
+    }
+
+    private Socket connect() throws IOException, InterruptedException {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                final Socket socket = new Socket(InetAddress.getByName(null), port);
+                socket.shutdownOutput();
+                return socket;
+            } catch (ConnectException e) {
+                if (attempt == CONNECT_ATTEMPTS) {
+                    throw e;
+                }
+                Thread.sleep(100);
+            }
+        }
+    }
+
+    /**
+     * Notifies the listeners of the running Grails directory watchers.
+     */
+    static class GrailsWatcherNotifier implements SourceWatcher.Listener {
+        private final long pollInterval;
+        private final Set<Thread> slowedDown = Collections.newSetFromMap(new WeakHashMap<Thread, Boolean>());
+        private boolean noWatchersReported;
+
+        GrailsWatcherNotifier(long pollInterval) {
+            this.pollInterval = pollInterval;
+        }
+
+        public void changed(Map<File, SourceWatcher.Change> changes) {
+            final List<Thread> watchers = findWatchers();
+            if (watchers.isEmpty()) {
+                if (!noWatchersReported) {
+                    noWatchersReported = true;
+                    System.out.println("No Grails directory watcher runs in this JVM, source changes pushed by Maven are not reloaded. " +
+                            "If grails.project.fork.run is set, the application runs in a JVM of its own; unset it to use grails.run.watch.");
+                }
+                return;
+            }
+            for (Thread watcher : watchers) {
+                if (pollInterval > 0 && slowedDown.add(watcher)) {
+                    invoke(watcher, "setSleepTime", long.class, pollInterval);
+                }
+
+                final Object listeners = getField(watcher, "listeners");
+                final Object lastModified = getField(watcher, "lastModifiedMap");
+                if (!(listeners instanceof Collection) || !(lastModified instanceof Map)) {
+                    continue;
+                }
+                @SuppressWarnings("unchecked")
+                final Map<File, Long> lastModifiedMap = (Map<File, Long>) lastModified;
+                for (Map.Entry<File, SourceWatcher.Change> change : changes.entrySet()) {
+                    final File watchedFile = findFile(lastModifiedMap.keySet(), change.getKey());
+                    if (change.getValue() == SourceWatcher.Change.DELETED) {
+                        if (watchedFile != null) {
+                            lastModifiedMap.remove(watchedFile);
+                        }
+                        continue;
+                    }
+                    if (watchedFile == null && !watchesExtension(watcher, change.getKey())) {
+                        continue;
+                    }
+                    final File file = watchedFile != null ? watchedFile : change.getKey();
+                    // keep the watcher from reporting the change a second time
+                    lastModifiedMap.put(file, file.lastModified());
+                    final String method = change.getValue() == SourceWatcher.Change.CREATED ? "onNew" : "onChange";
+                    for (Object listener : new ArrayList<Object>((Collection<?>) listeners)) {
+                        invoke(listener, method, File.class, file);
+                    }
+                }
+            }
+        }
+
+        /**
+         * @return Whether the file has an extension the watcher watches in a directory containing it
+         */
+        private static boolean watchesExtension(Thread watcher, File file) {
+            final Object directories = getField(watcher, "directoryToExtensionsMap");
+            if (!(directories instanceof Map)) {
+                return false;
+            }
+            final Map<?, ?> directoryExtensions = (Map<?, ?>) directories;
+            for (File directory = file.getParentFile(); directory != null; directory = directory.getParentFile()) {
+                final File watchedDirectory = findFile(directoryExtensions.keySet(), directory);
+                if (watchedDirectory == null) {
+                    continue;
+                }
+                Object extensions = directoryExtensions.get(watchedDirectory);
+                if (extensions == null) {
+                    extensions = getField(watcher, "extensions");
+                }
+                return extensions instanceof Collection && matchesExtension((Collection<?>) extensions, file.getName());
+            }
+            return false;
+        }
+
+        static boolean matchesExtension(Collection<?> extensions, String fileName) {
+            final int dot = fileName.lastIndexOf('.');
+            final String extension = dot > 0 ? fileName.substring(dot + 1) : null;
+            return extensions.contains("*") || extension != null && (extensions.contains(extension) || extensions.contains("." + extension));
+        }
+
+        /**
+         * @return The file among the given ones with the same absolute path, or null
+         */
+        private static File findFile(Collection<?> files, File file) {
+            if (files.contains(file)) {
+                return file;
+            }
+            final File absoluteFile = file.getAbsoluteFile();
+            for (Object candidate : files) {
+                if (candidate instanceof File && ((File) candidate).getAbsoluteFile().equals(absoluteFile)) {
+                    return (File) candidate;
+                }
+            }
+            return null;
+        }
+
+        private static List<Thread> findWatchers() {
+            final List<Thread> watchers = new ArrayList<Thread>();
+            for (Thread thread : Thread.getAllStackTraces().keySet()) {
+                for (Class<?> type = thread.getClass(); type != null; type = type.getSuperclass()) {
+                    if ("DirectoryWatcher".equals(type.getSimpleName())) {
+                        watchers.add(thread);
+                        break;
+                    }
+                }
+            }
+            return watchers;
+        }
+
+        private static Object getField(Object target, String name) {
+            for (Class<?> type = target.getClass(); type != null; type = type.getSuperclass()) {
+                try {
+                    final Field field = type.getDeclaredField(name);
+                    field.setAccessible(true);
+                    return field.get(target);
+                } catch (NoSuchFieldException e) {
+                    // try the super class
+                } catch (Exception e) {
+                    return null;
+                }
+            }
+            return null;
+        }
+
+        private static void invoke(Object target, String name, Class<?> parameterType, Object argument) {
+            try {
+                final Method method = target.getClass().getMethod(name, parameterType);
+                method.setAccessible(true);
+                method.invoke(target, argument);
+            } catch (Exception e) {
+                System.out.println("Unable to call " + name + " on " + target.getClass().getName() + ": " + e);
+            }
+        }
+    }
+}
@@ -0,0 +1,342 @@
+/*
+ * Copyright 2007 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.grails.maven.plugin.tools;
+
+import java.io.*;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.jar.Attributes;
+import java.util.jar.JarFile;
+import java.util.jar.Manifest;
+import java.util.zip.ZipEntry;
+
+/**
+ * An index of the packages (and resource directories) contained in the jars of a class path.
+ *
+ * {@link java.net.URLClassLoader} answers every lookup by probing each jar in turn, which is
+ * particularly expensive for the many lookups made during Grails bootstrap that don't match
+ * anything at all. The index lets a class loader answer those without touching a single jar.
+ *
+ * The index is built in parallel and cached on disk, keyed on the path, size and modification
+ * time of every entry. Class paths containing directories can't be indexed ahead of time; the
+ * resulting index is marked incomplete and never rules anything out.
+ *
+ * @since 2.4.7
+ */
+public class ClassPathIndex {
+
+    private static final int FORMAT_VERSION = 1;
+    private static final String VERSIONED_PREFIX = "META-INF/versions/";
+
+    private final Set<String> packages;
+    private volatile boolean complete;
+
+    ClassPathIndex(Set<String> packages, boolean complete) {
+        this.packages = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+        this.packages.addAll(packages);
+        this.complete = complete;
+    }
+
+    /**
+     * @return Whether the index covers every entry of the class path
+     */
+    public boolean isComplete() {
+        return complete;
+    }
+
+    /**
+     * @param className A binary class name
+     * @return false if the class can't be in any of the indexed jars
+     */
+    public boolean mayContainClass(String className) {
+        if (!complete) {
+            return true;
+        }
+        int i = className.lastIndexOf('.');
+        return packages.contains(i == -1 ? "" : className.substring(0, i).replace('.', '/'));
+    }
+
+    /**
+     * @param name A resource name
+     * @return false if the resource can't be in any of the indexed jars
+     */
+    public boolean mayContainResource(String name) {
+        if (!complete) {
+            return true;
+        }
+        if (name.startsWith("/")) {
+            name = name.substring(1);
+        }
+        return packages.contains(packageOf(name));
+    }
+
+    /**
+     * Adds a class path entry after the index was built.
+     *
+     * @param entry A jar or directory
+     */
+    public void add(File entry) {
+        if (!complete) {
+            return;
+        }
+        try {
+            for (File jar : indexJars(Collections.singletonList(entry), packages, 1)) {
+                if (!jar.isFile()) {
+                    complete = false;
+                }
+            }
+        } catch (IOException e) {
+            complete = false;
+        }
+    }
+
+    /**
+     * Returns the index for the given class path, reading it from the cache directory when an
+     * index for the exact same jars exists and building (and caching) it otherwise.
+     *
+     * @param classPath The class path entries
+     * @param cacheDir The directory holding cached indexes
+     * @return The index
+     */
+    public static ClassPathIndex obtain(List<File> classPath, File cacheDir) {
+        final File cacheFile = new File(cacheDir, cacheKey(classPath) + ".idx");
+        ClassPathIndex index = read(cacheFile);
+        if (index == null) {
+            index = build(classPath);
+            write(index, cacheFile);
+        }
+        return index;
+    }
+
+    /**
+     * Builds an index by reading the jars of the class path in parallel.
+     *
+     * @param classPath The class path entries
+     * @return The index
+     */
+    public static ClassPathIndex build(List<File> classPath) {
+        final Set<String> packages = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+        boolean complete = true;
+        try {
+            List<File> unindexable = indexJars(classPath, packages, Runtime.getRuntime().availableProcessors());
+            for (File file : unindexable) {
+                if (file.exists()) {
+                    complete = false;
+                }
+            }
+        } catch (IOException e) {
+            complete = false;
+        }
+        return new ClassPathIndex(packages, complete);
+    }
+
+    /**
+     * Indexes the given jars, following manifest Class-Path references like the class loader does.
+     *
+     * @return The entries that aren't jars and weren't indexed
+     */
+    private static List<File> indexJars(List<File> entries, final Set<String> packages, int threads) throws IOException {
+        final List<File> unindexable = new ArrayList<File>();
+        final Set<File> seen = new HashSet<File>();
+        List<File> pending = new ArrayList<File>(entries);
+
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, Math.min(threads, entries.size())), new ThreadFactory() {
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "grails-classpath-index");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        try {
+            while (!pending.isEmpty()) {
+                List<Future<List<File>>> results = new ArrayList<Future<List<File>>>();
+                for (final File entry : pending) {
+                    if (!seen.add(entry.getAbsoluteFile())) {
+                        continue;
+                    }
+                    if (!entry.isFile()) {
+                        unindexable.add(entry);
+                        continue;
+                    }
+                    results.add(executor.submit(new Callable<List<File>>() {
+                        public List<File> call() throws IOException {
+                            return indexJar(entry, packages);
+                        }
+                    }));
+                }
+
+                pending = new ArrayList<File>();
+                for (Future<List<File>> result : results) {
+                    pending.addAll(result.get());
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while indexing the class path");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            throw cause instanceof IOException ? (IOException) cause : new IOException(String.valueOf(cause));
+        } finally {
+            executor.shutdownNow();
+        }
+        return unindexable;
+    }
+
+    /**
+     * Adds the packages of a single jar to the index.
+     *
+     * @return The jars referenced by the Class-Path attribute of its manifest
+     */
+    private static List<File> indexJar(File jar, Set<String> packages) throws IOException {
+        final JarFile jarFile = new JarFile(jar, false);
+        try {
+            final Set<String> local = new HashSet<String>();
+            for (Enumeration<? extends ZipEntry> e = jarFile.entries(); e.hasMoreElements();) {
+                String name = e.nextElement().getName();
+                local.add(packageOf(name));
+                if (name.startsWith(VERSIONED_PREFIX)) {
+                    int i = name.indexOf('/', VERSIONED_PREFIX.length());
+                    if (i != -1) {
+                        local.add(packageOf(name.substring(i + 1)));
+                    }
+                }
+            }
+            packages.addAll(local);
+
+            final List<File> referenced = new ArrayList<File>();
+            final Manifest manifest = jarFile.getManifest();
+            if (manifest != null) {
+                String classPath = manifest.getMainAttributes().getValue(Attributes.Name.CLASS_PATH);
+                if (classPath != null) {
+                    for (String ref : classPath.trim().split("\\s+")) {
+                        if (ref.length() > 0) {
+                            referenced.add(new File(jar.getParentFile(), ref.replace('/', File.separatorChar)));
+                        }
+                    }
+                }
+            }
+            return referenced;
+        } finally {
+            jarFile.close();
+        }
+    }
+
+    /**
+     * The package of a resource, or the directory itself for directory entries.
+     */
+    static String packageOf(String name) {
+        if (name.endsWith("/")) {
+            return name.substring(0, name.length() - 1);
+        }
+        int i = name.lastIndexOf('/');
+        return i == -1 ? "" : name.substring(0, i);
+    }
+
+    static String cacheKey(List<File> classPath) {
+        StringBuilder key = new StringBuilder();
+        for (File file : classPath) {
+            key.append(file.getAbsolutePath()).append('|')
+               .append(file.length()).append('|')
+               .append(file.lastModified()).append('\n');
+        }
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-1");
+            byte[] hash = digest.digest(key.toString().getBytes("UTF-8"));
+            StringBuilder hex = new StringBuilder();
+            for (byte b : hash) {
+                hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static ClassPathIndex read(File cacheFile) {
+        if (!cacheFile.isFile()) {
+            return null;
+        }
+        DataInputStream in = null;
+        try {
+            in = new DataInputStream(new BufferedInputStream(new FileInputStream(cacheFile)));
+            if (in.readInt() != FORMAT_VERSION) {
+                return null;
+            }
+            boolean complete = in.readBoolean();
+            int count = in.readInt();
+            Set<String> packages = new HashSet<String>(count * 2);
+            for (int i = 0; i < count; i++) {
+                packages.add(in.readUTF());
+            }
+            return new ClassPathIndex(packages, complete);
+        } catch (IOException e) {
+            // unreadable or truncated, rebuild it
+            return null;
+        } finally {
+            if (in != null) {
+                try {
+                    in.close();
+                } catch (IOException e) {
+                    // ignore
+                }
+            }
+        }
+    }
+
+    private static void write(ClassPathIndex index, File cacheFile) {
+        File dir = cacheFile.getParentFile();
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            return;
+        }
+        DataOutputStream out = null;
+        File tempFile = null;
+        try {
+            // write to a temporary file first so concurrent builds never read a partial index
+            tempFile = File.createTempFile(cacheFile.getName(), ".tmp", dir);
+            out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile)));
+            out.writeInt(FORMAT_VERSION);
+            out.writeBoolean(index.complete);
+            List<String> packages = new ArrayList<String>(index.packages);
+            out.writeInt(packages.size());
+            for (String pkg : packages) {
+                out.writeUTF(pkg);
+            }
+            out.close();
+            out = null;
+            if (!tempFile.renameTo(cacheFile)) {
+                cacheFile.delete();
+                tempFile.renameTo(cacheFile);
+            }
+        } catch (IOException e) {
+            // the cache is an optimisation only
+        } finally {
+            if (out != null) {
+                try {
+                    out.close();
+                } catch (IOException e) {
+                    // ignore
+                }
+            }
+            if (tempFile != null && tempFile.exists()) {
+                tempFile.delete();
+            }
+        }
+    }
+}
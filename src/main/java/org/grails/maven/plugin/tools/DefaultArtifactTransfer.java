@@ -0,0 +1,97 @@
+/*
+ * Copyright 2007 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.grails.maven.plugin.tools;
+
+import org.codehaus.plexus.logging.AbstractLogEnabled;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * Moves artifacts with an atomic rename where the file system allows it. When source and
+ * target are on different file systems (a tmpfs build directory, for example), the file is
+ * copied with {@link FileChannel#transferTo}, which lets the kernel copy the data directly, to a
+ * temporary file next to the target, which is then renamed into place.
+ *
+ * @plexus.component role="org.grails.maven.plugin.tools.ArtifactTransfer"
+ * @since 2.4.7
+ */
+public class DefaultArtifactTransfer extends AbstractLogEnabled implements ArtifactTransfer {
+
+    public void move(File source, File target) throws IOException {
+        if (!source.isFile()) {
+            throw new IOException("Unable to move " + source + ": it does not exist");
+        }
+        final File directory = target.getAbsoluteFile().getParentFile();
+        Files.createDirectories(directory.toPath());
+
+        try {
+            Files.move(source.toPath(), target.toPath(), StandardCopyOption.ATOMIC_MOVE);
+            return;
+        } catch (AtomicMoveNotSupportedException e) {
+            // a different file system, copy it over
+        }
+
+        final File tempFile = File.createTempFile(target.getName(), ".tmp", directory);
+        try {
+            copy(source, tempFile);
+            tempFile.setLastModified(source.lastModified());
+            replace(tempFile.toPath(), target.toPath());
+        } finally {
+            Files.deleteIfExists(tempFile.toPath());
+        }
+        Files.delete(source.toPath());
+    }
+
+    private static void copy(File source, File target) throws IOException {
+        FileInputStream in = null;
+        FileOutputStream out = null;
+        try {
+            in = new FileInputStream(source);
+            out = new FileOutputStream(target);
+            final FileChannel inChannel = in.getChannel();
+            final FileChannel outChannel = out.getChannel();
+            final long size = inChannel.size();
+            long position = 0;
+            while (position < size) {
+                position += inChannel.transferTo(position, size - position, outChannel);
+            }
+            outChannel.force(true);
+        } finally {
+            if (in != null) {
+                in.close();
+            }
+            if (out != null) {
+                out.close();
+            }
+        }
+    }
+
+    private static void replace(Path source, Path target) throws IOException {
+        try {
+            Files.move(source, target, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+}
@@ -2,20 +2,46 @@ package org.grails.maven.plugin.tools;
 
 import org.apache.maven.plugin.MojoExecutionException;
 import org.grails.launcher.GrailsLauncher;
+import org.grails.maven.plugin.AbstractGrailsMojo;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 /**
  * @author Andrew Potter (ddcapotter)
  */
 public class DefaultGrailsRuntime extends AbstractGrailsRuntime {
 
+    /**
+     * Grails reads its settings from JVM wide system properties, so in-process executions
+     * from parallel reactor modules have to take turns.
+     */
+    private static final Object IN_PROCESS_LOCK = new Object();
+
     public DefaultGrailsRuntime(ExecutionContext context) {
         super(context);
     }
 
     @Override
     public void run() throws MojoExecutionException {
-        GrailsLauncher launcher = createGrailsLauncher(executionContext);
-        int exit =  launcher.launch(executionContext.getScriptName(), executionContext.getArgs(), executionContext.getEnv());
+        int exit;
+        synchronized (IN_PROCESS_LOCK) {
+            Map<String, String> systemProperties = executionContext.getSystemProperties();
+            if (InlinePluginRegistrar.isRequested(systemProperties)) {
+                systemProperties = new LinkedHashMap<String, String>(systemProperties);
+                String listeners = System.getProperty(AbstractGrailsMojo.GRAILS_BUILD_LISTENERS);
+                String registrar = InlinePluginRegistrar.class.getName();
+                systemProperties.put(AbstractGrailsMojo.GRAILS_BUILD_LISTENERS, listeners != null ? listeners + "," + registrar : registrar);
+            }
+            Map<String, String> previous = applySystemProperties(systemProperties);
+            try {
+                ChangeReceiver.startIfRequested();
+                GrailsLauncher launcher = createGrailsLauncher(executionContext);
+                exit = launcher.launch(executionContext.getScriptName(), executionContext.getArgs(), executionContext.getEnv());
+            } finally {
+                restoreSystemProperties(previous);
+            }
+        }
         if(exit != 0) {
             throw new MojoExecutionException("Build step \"" + executionContext.getScriptName() + "\" exited with non-zero exit status: " + exit);
         }
@@ -15,21 +15,19 @@
  */
 package org.grails.maven.plugin.tools;
 
-import groovy.lang.GroovyClassLoader;
 import org.apache.maven.plugin.MojoExecutionException;
-import org.codehaus.groovy.grails.plugins.AstPluginDescriptorReader;
-import org.codehaus.groovy.grails.plugins.GrailsPluginInfo;
 import org.codehaus.plexus.logging.AbstractLogEnabled;
-import org.codehaus.plexus.util.IOUtil;
 
 import java.io.*;
-import java.util.Date;
-import java.util.Properties;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Locale;
 
 /**
  * @author <a href="mailto:aheritier@gmail.com">Arnaud HERITIER</a>
  * @version $Id$
- * @plexus.component role="org.grails.maven.plugin.tools.GrailsServices"
+ * @plexus.component role="org.grails.maven.plugin.tools.GrailsServices" instantiation-strategy="per-lookup"
  * @since 0.1
  */
 public class DefaultGrailsServices extends AbstractLogEnabled implements GrailsServices {
@@ -38,6 +36,8 @@ public class DefaultGrailsServices extends AbstractLogEnabled implements GrailsS
 
     private File _basedir;
 
+    private File _buildDirectory;
+
     /**
      * Converts foo-bar into FooBar. Empty and null strings are returned as-is.
      *
@@ -48,34 +48,122 @@ public class DefaultGrailsServices extends AbstractLogEnabled implements GrailsS
         // Handle null and empty strings.
         if (name == null || name.length() == 0) return name;
 
-        if (name.indexOf('-') == -1) {
-            return name.substring(0,1).toUpperCase() + name.substring(1);
+        if (name.indexOf('-') == -1 && !isAsciiLowerCase(name.charAt(0)) && name.charAt(0) < 128) {
+            return name;
         }
+        return appendClassName(new StringBuilder(name.length()), name).toString();
+    }
 
-        StringBuilder buf = new StringBuilder();
-        String[] tokens = name.split("-");
-        for (String token : tokens) {
-            if (token == null || token.length() == 0) continue;
-            buf.append(token.substring(0, 1).toUpperCase())
-                    .append(token.substring(1));
+    /**
+     * Converts each name with {@link #getClassNameForLowerCaseHyphenSeparatedName(String)}.
+     *
+     * @param names The lower case hyphen separated names
+     * @return The class names, in the same order
+     */
+    public static List<String> getClassNamesForLowerCaseHyphenSeparatedNames(Collection<String> names) {
+        final List<String> result = new ArrayList<String>(names.size());
+        final StringBuilder buf = new StringBuilder();
+        for (String name : names) {
+            if (name == null || name.length() == 0) {
+                result.add(name);
+            } else {
+                buf.setLength(0);
+                result.add(appendClassName(buf, name).toString());
+            }
         }
-        return buf.toString();
+        return result;
     }
 
-    /**
-   	 * The regular expression used to find camel case boundaries with a string.
-   	 */
-   	private static final String CAMEL_CASE_CONVERSION = "([a-z0-9])(?=[A-Z])";
+    private static StringBuilder appendClassName(StringBuilder buf, String name) {
+        boolean startOfToken = true;
+        for (int i = 0, length = name.length(); i < length; i++) {
+            final char c = name.charAt(i);
+            if (c == '-') {
+                startOfToken = true;
+            } else if (startOfToken) {
+                if (isAsciiLowerCase(c)) {
+                    buf.append((char) (c - ('a' - 'A')));
+                } else if (c < 128) {
+                    buf.append(c);
+                } else {
+                    buf.append(String.valueOf(c).toUpperCase(Locale.ENGLISH));
+                }
+                startOfToken = false;
+            } else {
+                buf.append(c);
+            }
+        }
+        return buf;
+    }
 
     /**
      * Converts FooBar into foo-bar. Empty and null strings are returned as-is.
      *
+     * A hyphen is inserted wherever a lower case letter or digit is followed by an upper case
+     * letter, then the name is lower cased.
+     *
      * @param name The lower case hyphen separated name
      * @return The class name equivalent.
      */
     public static String getLowerCaseHyphenSeparatedName(String name) {
         if (name == null || name.length() == 0) return name;
-        return name.replaceAll(CAMEL_CASE_CONVERSION, "$1-").toLowerCase();
+
+        boolean unchanged = true;
+        for (int i = 0, length = name.length(); i < length && unchanged; i++) {
+            final char c = name.charAt(i);
+            unchanged = !isAsciiUpperCase(c) && c < 128;
+        }
+        if (unchanged) {
+            return name;
+        }
+        return toLowerCaseHyphenSeparatedName(new StringBuilder(name.length() + 4), name);
+    }
+
+    /**
+     * Converts each name with {@link #getLowerCaseHyphenSeparatedName(String)}.
+     *
+     * @param names The names to convert
+     * @return The converted names, in the same order
+     */
+    public static List<String> getLowerCaseHyphenSeparatedNames(Collection<String> names) {
+        final List<String> result = new ArrayList<String>(names.size());
+        final StringBuilder buf = new StringBuilder();
+        for (String name : names) {
+            if (name == null || name.length() == 0) {
+                result.add(name);
+            } else {
+                buf.setLength(0);
+                result.add(toLowerCaseHyphenSeparatedName(buf, name));
+            }
+        }
+        return result;
+    }
+
+    private static String toLowerCaseHyphenSeparatedName(StringBuilder buf, String name) {
+        boolean ascii = true;
+        char previous = 0;
+        for (int i = 0, length = name.length(); i < length; i++) {
+            final char c = name.charAt(i);
+            if (isAsciiUpperCase(c)) {
+                if (isAsciiLowerCase(previous) || (previous >= '0' && previous <= '9')) {
+                    buf.append('-');
+                }
+                buf.append((char) (c + ('a' - 'A')));
+            } else {
+                ascii &= c < 128;
+                buf.append(c);
+            }
+            previous = c;
+        }
+        return ascii ? buf.toString() : buf.toString().toLowerCase(Locale.ENGLISH);
+    }
+
+    private static boolean isAsciiUpperCase(char c) {
+        return c >= 'A' && c <= 'Z';
+    }
+
+    private static boolean isAsciiLowerCase(char c) {
+        return c >= 'a' && c <= 'z';
     }
 //    private List _dependencyPaths;
 
@@ -95,44 +183,64 @@ public class DefaultGrailsServices extends AbstractLogEnabled implements GrailsS
         this._basedir = basedir;
     }
 
+    public void setBuildDirectory(final File buildDirectory) {
+        this._buildDirectory = buildDirectory;
+    }
+
 
 
     public GrailsProject readProjectDescriptor() throws MojoExecutionException {
-        // Load existing Grails properties
-        FileInputStream fis = null;
+        final ProjectMetadata metadata = readProjectMetadata();
+        if (!metadata.exists()) {
+            throw new MojoExecutionException("Unable to read grails project descriptor.",
+                    new FileNotFoundException(metadata.getFile().getPath()));
+        }
+        return metadata.toGrailsProject();
+    }
+
+    public void writeProjectDescriptor(final File projectDir, final GrailsProject grailsProjectDescriptor) throws MojoExecutionException {
         try {
-            final Properties properties = new Properties();
-            fis = new FileInputStream(new File(getBasedir(), "application.properties"));
-            properties.load(fis);
+            final ProjectMetadataStore store = ProjectMetadataStore.forProject(projectDir);
+            stage(store, ProjectMetadata.APP_GRAILS_VERSION, grailsProjectDescriptor.getAppGrailsVersion());
+            stage(store, ProjectMetadata.APP_NAME, grailsProjectDescriptor.getAppName());
+            stage(store, ProjectMetadata.APP_VERSION, grailsProjectDescriptor.getAppVersion());
+            store.flush();
+        } catch (final IOException e) {
+            throw new MojoExecutionException("Unable to write grails project descriptor.", e);
+        }
+    }
 
-            final GrailsProject grailsProject = new GrailsProject();
-            grailsProject.setAppGrailsVersion(properties.getProperty("app.grails.version"));
-            grailsProject.setAppName(properties.getProperty("app.name"));
-            grailsProject.setAppVersion(properties.getProperty("app.version"));
+    private static void stage(final ProjectMetadataStore store, final String name, final String value) {
+        if (value != null) {
+            store.stage(name, value);
+        }
+    }
 
-            return grailsProject;
+    public ProjectMetadata readProjectMetadata() throws MojoExecutionException {
+        try {
+            return getMetadataStore().snapshot();
         } catch (final IOException e) {
             throw new MojoExecutionException("Unable to read grails project descriptor.", e);
-        } finally {
-            IOUtil.close(fis);
         }
     }
 
-    public void writeProjectDescriptor(final File projectDir, final GrailsProject grailsProjectDescriptor) throws MojoExecutionException {
-        final String description = "Grails Descriptor updated by grails-maven-plugin on " + new Date();
+    public void stageProjectMetadata(final String name, final String value) throws MojoExecutionException {
+        getMetadataStore().stage(name, value);
+    }
 
-        FileOutputStream fos = null;
+    public boolean flushProjectMetadata() throws MojoExecutionException {
         try {
-            fos = new FileOutputStream(new File(projectDir, "application.properties"));
-            final Properties properties = new Properties();
-            properties.setProperty("app.grails.version", grailsProjectDescriptor.getAppGrailsVersion());
-            properties.setProperty("app.name", grailsProjectDescriptor.getAppName());
-            properties.setProperty("app.version", grailsProjectDescriptor.getAppVersion());
-            properties.store(fos, description);
+            return getMetadataStore().flush();
         } catch (final IOException e) {
             throw new MojoExecutionException("Unable to write grails project descriptor.", e);
-        } finally {
-            IOUtil.close(fos);
+        }
+    }
+
+    private ProjectMetadataStore getMetadataStore() throws MojoExecutionException {
+        try {
+            return ProjectMetadataStore.forProject(getBasedir());
+        } catch (final IOException e) {
+            throw new MojoExecutionException("Unable to locate grails project descriptor.", e);
         }
     }
 
@@ -157,10 +265,13 @@ public class DefaultGrailsServices extends AbstractLogEnabled implements GrailsS
         final String pluginName = getLowerCaseHyphenSeparatedName(getLogicalName(className, "GrailsPlugin"));
         pluginProject.setPluginName(pluginName);
 
-        final GroovyClassLoader classLoader = new GroovyClassLoader();
-        final AstPluginDescriptorReader reader = new AstPluginDescriptorReader(classLoader);
-        final GrailsPluginInfo info = reader.readPluginInfo(new org.codehaus.groovy.grails.io.support.FileSystemResource(descriptor));
-        final String version = info.getVersion();
+        final String version;
+        try {
+            version = PluginDescriptorCache.readVersion(descriptor,
+                    _buildDirectory != null ? new File(_buildDirectory, "grails-maven") : null);
+        } catch (final IOException e) {
+            throw new MojoExecutionException("Unable to read plugin descriptor " + descriptor + ".", e);
+        }
 
         if (version == null || version.trim().length() == 0) {
             throw new MojoExecutionException("Plugin does not have a version!");
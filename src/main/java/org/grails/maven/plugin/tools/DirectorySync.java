@@ -0,0 +1,176 @@
+/*
+ * Copyright 2007 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.grails.maven.plugin.tools;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Makes a directory an exact copy of another one, touching only what changed.
+ *
+ * A file is considered unchanged when its size and modification time match the copy, or,
+ * when only the time differs, when the contents are equal. Copies keep the modification time of
+ * their source, so the next sync can skip them on the cheap check. Files and directories that
+ * no longer exist in the source are deleted.
+ *
+ * @since 2.4.7
+ */
+public class DirectorySync {
+
+    private int copied;
+    private int deleted;
+    private int unchanged;
+
+    /**
+     * Synchronizes the target directory with the source directory.
+     *
+     * @param source The directory to copy
+     * @param target The directory to update, created if it doesn't exist
+     * @return The statistics of the sync
+     * @throws IOException If a file can't be copied or deleted
+     */
+    public static DirectorySync sync(File source, File target) throws IOException {
+        if (!source.isDirectory()) {
+            throw new FileNotFoundException("Directory " + source + " does not exist");
+        }
+        final DirectorySync sync = new DirectorySync();
+        sync.syncDirectory(source, target);
+        return sync;
+    }
+
+    public int getCopied() {
+        return copied;
+    }
+
+    public int getDeleted() {
+        return deleted;
+    }
+
+    public int getUnchanged() {
+        return unchanged;
+    }
+
+    private void syncDirectory(File source, File target) throws IOException {
+        if (target.isFile()) {
+            delete(target);
+        }
+        if (!target.isDirectory() && !target.mkdirs()) {
+            throw new IOException("Unable to create directory " + target);
+        }
+
+        final File[] files = source.listFiles();
+        if (files == null) {
+            throw new IOException("Unable to list " + source);
+        }
+        final Set<String> names = new HashSet<String>();
+        for (File file : files) {
+            names.add(file.getName());
+            final File copy = new File(target, file.getName());
+            if (file.isDirectory()) {
+                syncDirectory(file, copy);
+            } else {
+                syncFile(file, copy);
+            }
+        }
+
+        final File[] existing = target.listFiles();
+        if (existing != null) {
+            for (File file : existing) {
+                if (!names.contains(file.getName())) {
+                    delete(file);
+                }
+            }
+        }
+    }
+
+    private void syncFile(File source, File target) throws IOException {
+        if (target.isDirectory()) {
+            delete(target);
+        } else if (target.isFile() && source.length() == target.length()) {
+            if (source.lastModified() == target.lastModified()) {
+                unchanged++;
+                return;
+            }
+            if (sameContents(source, target)) {
+                target.setLastModified(source.lastModified());
+                unchanged++;
+                return;
+            }
+        }
+        Files.copy(source.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.COPY_ATTRIBUTES);
+        copied++;
+    }
+
+    private void delete(File file) throws IOException {
+        final File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                delete(child);
+            }
+        }
+        if (!file.delete() && file.exists()) {
+            throw new IOException("Unable to delete " + file);
+        }
+        if (children == null) {
+            deleted++;
+        }
+    }
+
+    static boolean sameContents(File a, File b) throws IOException {
+        final InputStream in1 = new BufferedInputStream(new FileInputStream(a), 64 * 1024);
+        try {
+            final InputStream in2 = new BufferedInputStream(new FileInputStream(b), 64 * 1024);
+            try {
+                final byte[] buffer1 = new byte[8192];
+                final byte[] buffer2 = new byte[8192];
+                while (true) {
+                    final int read1 = readFully(in1, buffer1);
+                    final int read2 = readFully(in2, buffer2);
+                    if (read1 != read2) {
+                        return false;
+                    }
+                    if (read1 <= 0) {
+                        return true;
+                    }
+                    for (int i = 0; i < read1; i++) {
+                        if (buffer1[i] != buffer2[i]) {
+                            return false;
+                        }
+                    }
+                }
+            } finally {
+                in2.close();
+            }
+        } finally {
+            in1.close();
+        }
+    }
+
+    private static int readFully(InputStream in, byte[] buffer) throws IOException {
+        int total = 0;
+        while (total < buffer.length) {
+            final int read = in.read(buffer, total, buffer.length - total);
+            if (read == -1) {
+                break;
+            }
+            total += read;
+        }
+        return total;
+    }
+}
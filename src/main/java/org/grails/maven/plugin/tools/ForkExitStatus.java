@@ -0,0 +1,179 @@
+/*
+ * Copyright 2007 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.grails.maven.plugin.tools;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * How a forked Grails JVM ended: its exit code, the signal that killed it if any, whether it
+ * ran out of memory, and the last lines it printed, for reporting failures.
+ *
+ * Exit codes above 128 are taken as the JVM being killed by signal {@code code - 128}, as
+ * reported by POSIX shells and the JVM itself. Running out of memory is detected through an
+ * {@code OutOfMemoryError} in the output, whose message tells the exhausted area, or the heap
+ * dump the JVM writes with {@code -XX:+HeapDumpOnOutOfMemoryError}. Each area gets its own
+ * advice, as only a full heap is helped by a larger {@code forkMaxMemory}.
+ *
+ * @since 2.4.7
+ */
+public class ForkExitStatus {
+
+    /**
+     * The memory area a JVM ran out of.
+     */
+    public enum OutOfMemory {
+        /** The Java heap, sized by {@code forkMaxMemory}. */
+        HEAP,
+        /** The class metadata: PermGen, sized by {@code forkPermGen}, or Metaspace from Java 8 on. */
+        CLASS_METADATA,
+        /** Native threads, limited by the operating system rather than by the heap. */
+        NATIVE_THREADS,
+        /** Any other area, e.g. direct buffers. */
+        OTHER
+    }
+
+    private static final String OUT_OF_MEMORY_ERROR = "java.lang.OutOfMemoryError";
+
+    private static final Map<Integer, String> SIGNALS = new HashMap<Integer, String>();
+
+    static {
+        SIGNALS.put(1, "SIGHUP");
+        SIGNALS.put(2, "SIGINT");
+        SIGNALS.put(3, "SIGQUIT");
+        SIGNALS.put(4, "SIGILL");
+        SIGNALS.put(6, "SIGABRT");
+        SIGNALS.put(7, "SIGBUS");
+        SIGNALS.put(9, "SIGKILL");
+        SIGNALS.put(11, "SIGSEGV");
+        SIGNALS.put(15, "SIGTERM");
+    }
+
+    private final int exitCode;
+    private final File heapDump;
+    private final List<String> lastLines;
+
+    /**
+     * @param exitCode The exit code of the JVM
+     * @param heapDump The heap dump written when the JVM ran out of memory, or null
+     * @param lastLines The last lines the JVM printed
+     */
+    public ForkExitStatus(int exitCode, File heapDump, List<String> lastLines) {
+        this.exitCode = exitCode;
+        this.heapDump = heapDump;
+        this.lastLines = Collections.unmodifiableList(new ArrayList<String>(lastLines));
+    }
+
+    public int getExitCode() {
+        return exitCode;
+    }
+
+    public boolean isSuccess() {
+        return exitCode == 0;
+    }
+
+    /**
+     * @return The number of the signal that killed the JVM, or null if it exited by itself
+     */
+    public Integer getSignal() {
+        return exitCode > 128 && exitCode < 160 ? exitCode - 128 : null;
+    }
+
+    public boolean isOutOfMemory() {
+        return getOutOfMemory() != null;
+    }
+
+    /**
+     * @return The memory area the JVM ran out of, or null if it didn't
+     */
+    public OutOfMemory getOutOfMemory() {
+        for (String line : lastLines) {
+            final int error = line.indexOf(OUT_OF_MEMORY_ERROR);
+            if (error == -1) {
+                continue;
+            }
+            final String message = line.substring(error + OUT_OF_MEMORY_ERROR.length());
+            if (message.contains("Metaspace") || message.contains("PermGen") || message.contains("Compressed class space")) {
+                return OutOfMemory.CLASS_METADATA;
+            }
+            if (message.contains("native thread")) {
+                return OutOfMemory.NATIVE_THREADS;
+            }
+            if (message.trim().length() == 0 || message.contains("Java heap space") || message.contains("GC overhead limit exceeded")
+                    || message.contains("Requested array size exceeds VM limit")) {
+                return OutOfMemory.HEAP;
+            }
+            return OutOfMemory.OTHER;
+        }
+        // the JVM writes heap dumps for errors without output, e.g. when the output is lost
+        return heapDump != null ? OutOfMemory.HEAP : null;
+    }
+
+    /**
+     * @return The heap dump written when the JVM ran out of memory, or null
+     */
+    public File getHeapDump() {
+        return heapDump;
+    }
+
+    public List<String> getLastLines() {
+        return lastLines;
+    }
+
+    /**
+     * @return A description of the failure for the build output, including the last lines the JVM printed
+     */
+    public String describe() {
+        final StringBuilder description = new StringBuilder("Forked Grails VM exited with code ").append(exitCode);
+        final Integer signal = getSignal();
+        if (signal != null) {
+            final String name = SIGNALS.get(signal);
+            description.append(" (killed by ").append(name != null ? name : "signal " + signal);
+            if (signal == 9 && !isOutOfMemory()) {
+                description.append(", possibly by the out-of-memory killer of the operating system");
+            }
+            description.append(')');
+        }
+        final OutOfMemory outOfMemory = getOutOfMemory();
+        if (outOfMemory == OutOfMemory.HEAP) {
+            description.append(": the JVM ran out of heap space, consider raising forkMaxMemory");
+        } else if (outOfMemory == OutOfMemory.CLASS_METADATA) {
+            description.append(": the JVM ran out of space for class metadata, consider raising forkPermGen, " +
+                    "or -XX:MaxMetaspaceSize in forkedVmArgs from Java 8 on");
+        } else if (outOfMemory == OutOfMemory.NATIVE_THREADS) {
+            description.append(": the JVM was unable to create a thread, which the operating system limits rather than the heap; " +
+                    "check the process limits (ulimit -u) and the memory left outside the heap");
+        } else if (outOfMemory == OutOfMemory.OTHER) {
+            description.append(": the JVM ran out of memory outside the heap");
+        }
+        if (outOfMemory != null) {
+            if (heapDump != null) {
+                description.append(" (heap dump: ").append(heapDump).append(')');
+            }
+        }
+        if (!lastLines.isEmpty()) {
+            description.append("\nLast output:");
+            for (String line : lastLines) {
+                description.append("\n  ").append(line);
+            }
+        }
+        return description.toString();
+    }
+}
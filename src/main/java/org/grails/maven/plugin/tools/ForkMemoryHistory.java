@@ -0,0 +1,405 @@
+/*
+ * Copyright 2007 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.grails.maven.plugin.tools;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+
+import javax.management.Notification;
+import javax.management.NotificationEmitter;
+import javax.management.NotificationListener;
+import javax.management.openmbean.CompositeData;
+
+import com.sun.management.GarbageCollectionNotificationInfo;
+
+/**
+ * Records how much heap forked Grails JVMs used, per goal, and sizes the heap of the next fork
+ * of the goal from it.
+ *
+ * The forked JVM writes its live heap, maximum heap and GC overhead to a report file on exit
+ * (see {@link #reportOnExit(File)}), which Maven appends to the history. The live heap is the
+ * largest heap left after a full collection, which unlike the peak usage does not grow with the
+ * heap the run was given. The last {@link #SAMPLES} runs of a goal are kept. The next maximum
+ * heap is the largest live heap among them plus the headroom. A run that never needed a full
+ * collection only knows the heap left after young collections, which still holds garbage, so it
+ * asks for no more than the heap it had. A run whose live heap got close to its maximum heap,
+ * that spent more than {@link #GC_OVERHEAD_LIMIT} percent of its time collecting or that ran out
+ * of memory was held back by its heap, so it asks for one and a half, or twice, the heap it had.
+ * The initial heap is the live heap of the last run.
+ *
+ * @since 2.4.7
+ */
+public class ForkMemoryHistory {
+
+    /**
+     * The number of runs kept per goal.
+     */
+    static final int SAMPLES = 5;
+
+    /**
+     * The share of time spent in GC, in percent, above which a run counts as short of heap.
+     */
+    static final double GC_OVERHEAD_LIMIT = 10;
+
+    private static final int GRANULE = 64;
+
+    private static final LiveHeap LIVE_HEAP = new LiveHeap();
+
+    /**
+     * The memory usage of one forked run.
+     */
+    public static class Sample {
+        private final int liveHeapMb;
+        private final int maxMemoryMb;
+        private final double gcOverheadPercent;
+        private final boolean outOfMemory;
+        private final boolean afterFullGc;
+
+        public Sample(int liveHeapMb, int maxMemoryMb, double gcOverheadPercent, boolean outOfMemory) {
+            this(liveHeapMb, maxMemoryMb, gcOverheadPercent, outOfMemory, true);
+        }
+
+        /**
+         * @param afterFullGc Whether the live heap was measured after a full collection, rather
+         * than after young collections only
+         */
+        public Sample(int liveHeapMb, int maxMemoryMb, double gcOverheadPercent, boolean outOfMemory, boolean afterFullGc) {
+            this.liveHeapMb = liveHeapMb;
+            this.maxMemoryMb = maxMemoryMb;
+            this.gcOverheadPercent = gcOverheadPercent;
+            this.outOfMemory = outOfMemory;
+            this.afterFullGc = afterFullGc;
+        }
+
+        /**
+         * @param maxMemoryMb The maximum heap of a run that ran out of memory without reporting
+         * @return A sample for the run
+         */
+        public static Sample outOfMemory(int maxMemoryMb) {
+            return new Sample(maxMemoryMb, maxMemoryMb, 100, true);
+        }
+
+        public int getLiveHeapMb() {
+            return liveHeapMb;
+        }
+
+        public int getMaxMemoryMb() {
+            return maxMemoryMb;
+        }
+
+        public double getGcOverheadPercent() {
+            return gcOverheadPercent;
+        }
+
+        public boolean isOutOfMemory() {
+            return outOfMemory;
+        }
+
+        public boolean isAfterFullGc() {
+            return afterFullGc;
+        }
+
+        /**
+         * @param headroomPercent The heap added to the live heap, in percent of it
+         * @return The maximum heap the run asks for, in megabytes
+         */
+        long getWantedMb(int headroomPercent) {
+            final long wanted = liveHeapMb * (100L + headroomPercent) / 100;
+            if (outOfMemory) {
+                return maxMemoryMb * 2L;
+            }
+            if (liveHeapMb >= maxMemoryMb * 0.9 || gcOverheadPercent > GC_OVERHEAD_LIMIT) {
+                return Math.max(wanted, maxMemoryMb * 3L / 2);
+            }
+            return afterFullGc ? wanted : Math.min(wanted, maxMemoryMb);
+        }
+
+        @Override
+        public String toString() {
+            return liveHeapMb + "/" + maxMemoryMb + "/" + String.format(Locale.ENGLISH, "%.1f", gcOverheadPercent)
+                    + (outOfMemory ? "/oom" : "") + (afterFullGc ? "" : "/young");
+        }
+
+        static Sample parse(String value) {
+            final String[] parts = value.trim().split("/");
+            if (parts.length < 3) {
+                return null;
+            }
+            final List<String> flags = Arrays.asList(parts).subList(3, parts.length);
+            try {
+                return new Sample(Integer.parseInt(parts[0]), Integer.parseInt(parts[1]), Double.parseDouble(parts[2]),
+                        flags.contains("oom"), !flags.contains("young"));
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+    }
+
+    private final File file;
+    private final int headroomPercent;
+
+    /**
+     * @param file The history file, shared by all goals of the project
+     * @param headroomPercent The heap added to the largest live heap, in percent of it
+     */
+    public ForkMemoryHistory(File file, int headroomPercent) {
+        this.file = file;
+        this.headroomPercent = headroomPercent;
+    }
+
+    /**
+     * @param goal The Grails script
+     * @return The recorded runs of the goal, oldest first
+     */
+    public List<Sample> getSamples(String goal) throws IOException {
+        if (!file.isFile()) {
+            return Collections.emptyList();
+        }
+        LockedFile lockedFile = null;
+        try {
+            lockedFile = LockedFile.open(file);
+            return parse(lockedFile.readProperties().getProperty(goal));
+        } finally {
+            if (lockedFile != null) {
+                lockedFile.close();
+            }
+        }
+    }
+
+    /**
+     * Appends a run of the goal, dropping the oldest beyond {@link #SAMPLES}.
+     *
+     * @param goal The Grails script
+     * @param sample The run
+     */
+    public void record(String goal, Sample sample) throws IOException {
+        LockedFile lockedFile = null;
+        try {
+            lockedFile = LockedFile.open(file);
+            final Properties properties = lockedFile.readProperties();
+            final List<Sample> samples = new ArrayList<Sample>(parse(properties.getProperty(goal)));
+            samples.add(sample);
+            while (samples.size() > SAMPLES) {
+                samples.remove(0);
+            }
+            final StringBuilder value = new StringBuilder();
+            for (Sample each : samples) {
+                if (value.length() > 0) {
+                    value.append(',');
+                }
+                value.append(each);
+            }
+            properties.setProperty(goal, value.toString());
+            lockedFile.writeProperties(properties, "Heap usage of forked Grails JVMs: live MB/max MB/GC overhead %");
+        } finally {
+            if (lockedFile != null) {
+                lockedFile.close();
+            }
+        }
+    }
+
+    /**
+     * @param goal The Grails script
+     * @return The {@code -Xmx} and {@code -Xms} for the next run of the goal in megabytes, or
+     * null if it has no history
+     */
+    public int[] size(String goal) throws IOException {
+        return size(getSamples(goal), headroomPercent);
+    }
+
+    static int[] size(List<Sample> samples, int headroomPercent) {
+        if (samples.isEmpty()) {
+            return null;
+        }
+        long wanted = 0;
+        for (Sample sample : samples) {
+            wanted = Math.max(wanted, sample.getWantedMb(headroomPercent));
+        }
+        final int maxMemory = roundUp(wanted);
+        final int minMemory = Math.min(maxMemory, roundUp(samples.get(samples.size() - 1).getLiveHeapMb()));
+        return new int[]{maxMemory, minMemory};
+    }
+
+    private static int roundUp(long mb) {
+        return (int) Math.max(GRANULE, (mb + GRANULE - 1) / GRANULE * GRANULE);
+    }
+
+    private static List<Sample> parse(String value) {
+        final List<Sample> samples = new ArrayList<Sample>();
+        if (value != null) {
+            for (String each : value.split(",")) {
+                final Sample sample = Sample.parse(each);
+                if (sample != null) {
+                    samples.add(sample);
+                }
+            }
+        }
+        return samples;
+    }
+
+    /**
+     * Reads the report written by a forked JVM.
+     *
+     * @param report The report file
+     * @return The run, or null if the JVM didn't write a report
+     */
+    public static Sample readReport(File report) throws IOException {
+        if (!report.isFile()) {
+            return null;
+        }
+        final Properties properties = new Properties();
+        final InputStream in = new FileInputStream(report);
+        try {
+            properties.load(in);
+        } finally {
+            in.close();
+        }
+        return Sample.parse(properties.getProperty("sample", ""));
+    }
+
+    /**
+     * Makes this JVM write its memory usage to the given report file when it exits.
+     *
+     * @param report The report file
+     */
+    public static void reportOnExit(final File report) {
+        trackLiveHeap();
+        Runtime.getRuntime().addShutdownHook(new Thread("grails-memory-report") {
+            @Override
+            public void run() {
+                try {
+                    writeReport(report);
+                } catch (IOException e) {
+                    // the run is not recorded
+                }
+            }
+        });
+    }
+
+    /**
+     * Writes the memory usage of this JVM so far to the given report file.
+     *
+     * @param report The report file
+     */
+    private static void writeReport(File report) throws IOException {
+        final Properties properties = new Properties();
+        properties.setProperty("sample", measure().toString());
+        final OutputStream out = new FileOutputStream(report);
+        try {
+            properties.store(out, null);
+        } finally {
+            out.close();
+        }
+    }
+
+    /**
+     * Starts recording the heap left after each garbage collection of this JVM, which
+     * {@link #measure()} reports as its live heap. JVMs without garbage collection notifications
+     * report the heap in use when measured.
+     */
+    static void trackLiveHeap() {
+        LIVE_HEAP.start();
+    }
+
+    /**
+     * @return The memory usage of this JVM so far
+     */
+    static Sample measure() {
+        final long[] live = LIVE_HEAP.get();
+        final boolean afterFullGc = live[0] > 0;
+        long liveHeap = afterFullGc ? live[0] : live[1];
+        if (liveHeap == 0) {
+            liveHeap = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+        }
+        long gcTime = 0;
+        for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+            gcTime += Math.max(0, collector.getCollectionTime());
+        }
+        final long uptime = ManagementFactory.getRuntimeMXBean().getUptime();
+        final long maxMemory = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getMax();
+        return new Sample((int) (liveHeap >> 20), (int) (maxMemory >> 20), uptime > 0 ? gcTime * 100.0 / uptime : 0, false, afterFullGc);
+    }
+
+    /**
+     * The largest heap left after full and after young collections, from the notifications of
+     * the garbage collectors.
+     */
+    private static class LiveHeap implements NotificationListener {
+        private final Set<String> heapPools = new HashSet<String>();
+        private boolean started;
+        private long afterFullGc;
+        private long afterYoungGc;
+
+        synchronized void start() {
+            if (started) {
+                return;
+            }
+            started = true;
+            for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+                if (pool.getType() == MemoryType.HEAP) {
+                    heapPools.add(pool.getName());
+                }
+            }
+            for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+                if (collector instanceof NotificationEmitter) {
+                    ((NotificationEmitter) collector).addNotificationListener(this, null, null);
+                }
+            }
+        }
+
+        synchronized long[] get() {
+            return new long[]{afterFullGc, afterYoungGc};
+        }
+
+        public void handleNotification(Notification notification, Object handback) {
+            if (!GarbageCollectionNotificationInfo.GARBAGE_COLLECTION_NOTIFICATION.equals(notification.getType())) {
+                return;
+            }
+            final GarbageCollectionNotificationInfo info = GarbageCollectionNotificationInfo.from((CompositeData) notification.getUserData());
+            long used = 0;
+            for (Map.Entry<String, MemoryUsage> pool : info.getGcInfo().getMemoryUsageAfterGc().entrySet()) {
+                if (heapPools.contains(pool.getKey())) {
+                    used += pool.getValue().getUsed();
+                }
+            }
+            synchronized (this) {
+                if (info.getGcAction().contains("major")) {
+                    afterFullGc = Math.max(afterFullGc, used);
+                } else {
+                    afterYoungGc = Math.max(afterYoungGc, used);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,332 @@
+/*
+ * Copyright 2007 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.grails.maven.plugin.tools;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+
+/**
+ * A pool of warm Grails JVMs shared by all modules of a reactor build, as long as they use the
+ * same version of the plugin. Each JVM runs {@link ForkedGrailsWorker} and executes one script
+ * at a time. Scripts are only run in a JVM started with exactly the same options and class
+ * path, so modules with the same build dependencies and fork settings share JVMs. A JVM keeps
+ * the working directory of the module that started it; the worker points Grails at the module
+ * of each script.
+ *
+ * At most {@code maxWorkers} JVMs are alive. When all of them are busy, callers wait; when an
+ * idle JVM has other options, the one idle the longest is stopped to make room.
+ *
+ * @since 2.4.7
+ */
+public class ForkedGrailsPool {
+
+    private static final ForkedGrailsPool INSTANCE = new ForkedGrailsPool(1);
+
+    private int maxWorkers;
+    private final List<Worker> workers = new ArrayList<Worker>();
+    // most recently used first
+    private final LinkedList<Worker> idle = new LinkedList<Worker>();
+    private int launchCount;
+    private String workerMainClass = ForkedGrailsWorker.class.getName();
+    private Thread shutdownHook;
+
+    ForkedGrailsPool(int maxWorkers) {
+        this.maxWorkers = maxWorkers;
+    }
+
+    /**
+     * @return The pool of the build
+     */
+    public static ForkedGrailsPool getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Raises the number of JVMs the pool may keep. It is never lowered, so that the module asking
+     * for the most concurrency wins.
+     */
+    public synchronized void ensureMaxWorkers(int maxWorkers) {
+        if (maxWorkers > this.maxWorkers) {
+            this.maxWorkers = maxWorkers;
+            notifyAll();
+        }
+    }
+
+    /**
+     * @param threadCount The number of threads of the build as given to {@code -T}, such as
+     * {@code 4} or {@code 1.5C} for one and a half threads per core, or null
+     * @return The number of threads, at least one
+     */
+    public static int parseThreadCount(String threadCount) {
+        if (threadCount == null) {
+            return 1;
+        }
+        final String value = threadCount.trim();
+        try {
+            if (value.endsWith("C") || value.endsWith("c")) {
+                final double perCore = Double.parseDouble(value.substring(0, value.length() - 1));
+                return Math.max(1, (int) (perCore * Runtime.getRuntime().availableProcessors()));
+            }
+            return Math.max(1, Integer.parseInt(value));
+        } catch (NumberFormatException e) {
+            return 1;
+        }
+    }
+
+    /**
+     * @return The number of JVMs started so far
+     */
+    public synchronized int getLaunchCount() {
+        return launchCount;
+    }
+
+    void setWorkerMainClass(String workerMainClass) {
+        this.workerMainClass = workerMainClass;
+    }
+
+    /**
+     * Runs a script in a JVM started with the given options, waiting for one to become available.
+     *
+     * @param jvmOptions The options of the JVM, including its class path
+     * @param heapDumpDir The directory a JVM started for this call writes heap dumps to
+     * @param directory The working directory of a JVM started for this call
+     * @param executionContext The serialized execution context of the script
+     * @return How the script ended
+     */
+    public ForkExitStatus run(List<String> jvmOptions, File heapDumpDir, File directory, File executionContext) throws IOException, InterruptedException {
+        final Worker worker = acquire(jvmOptions, heapDumpDir, directory);
+        try {
+            return worker.execute(executionContext);
+        } finally {
+            release(worker);
+        }
+    }
+
+    private Worker acquire(List<String> jvmOptions, File heapDumpDir, File directory) throws IOException, InterruptedException {
+        final Worker worker;
+        synchronized (this) {
+            while (true) {
+                for (Iterator<Worker> i = idle.iterator(); i.hasNext(); ) {
+                    final Worker candidate = i.next();
+                    if (candidate.jvmOptions.equals(jvmOptions)) {
+                        i.remove();
+                        return candidate;
+                    }
+                }
+                if (workers.size() < maxWorkers) {
+                    worker = new Worker(jvmOptions, heapDumpDir);
+                    workers.add(worker);
+                    launchCount++;
+                    break;
+                }
+                if (!idle.isEmpty()) {
+                    final Worker eldest = idle.removeLast();
+                    workers.remove(eldest);
+                    eldest.stop();
+                    continue;
+                }
+                wait();
+            }
+            if (shutdownHook == null) {
+                shutdownHook = new Thread("grails-fork-pool-shutdown") {
+                    @Override
+                    public void run() {
+                        shutdown();
+                    }
+                };
+                Runtime.getRuntime().addShutdownHook(shutdownHook);
+            }
+        }
+
+        // outside of the lock, other callers may use the idle JVMs meanwhile
+        try {
+            worker.start(workerMainClass, directory);
+        } catch (IOException e) {
+            synchronized (this) {
+                workers.remove(worker);
+                notifyAll();
+            }
+            throw e;
+        }
+        return worker;
+    }
+
+    private synchronized void release(Worker worker) {
+        if (worker.isAlive()) {
+            idle.addFirst(worker);
+        } else {
+            workers.remove(worker);
+        }
+        notifyAll();
+    }
+
+    /**
+     * Stops all JVMs of the pool.
+     */
+    public synchronized void shutdown() {
+        for (Worker worker : workers) {
+            worker.destroy();
+        }
+        workers.clear();
+        idle.clear();
+        notifyAll();
+    }
+
+    private static class Worker {
+        final List<String> jvmOptions;
+        final File heapDumpDir;
+        private Process process;
+        private Writer in;
+        private BufferedReader out;
+        private Thread errorDumper;
+        private volatile boolean exited;
+        private volatile LinkedList<String> lastLines = new LinkedList<String>();
+
+        Worker(List<String> jvmOptions, File heapDumpDir) {
+            this.jvmOptions = new ArrayList<String>(jvmOptions);
+            this.heapDumpDir = heapDumpDir;
+        }
+
+        void start(String mainClass, File directory) throws IOException {
+            heapDumpDir.mkdirs();
+            final List<String> cmd = new ArrayList<String>();
+            cmd.add("java");
+            cmd.addAll(jvmOptions);
+            cmd.addAll(Arrays.asList("-XX:+HeapDumpOnOutOfMemoryError", "-XX:HeapDumpPath=" + heapDumpDir.getCanonicalPath()));
+            cmd.add(mainClass);
+            process = new ProcessBuilder(cmd).directory(directory).start();
+            in = new OutputStreamWriter(process.getOutputStream());
+            out = new BufferedReader(new InputStreamReader(process.getInputStream()));
+            errorDumper = new Thread(new Runnable() {
+                public void run() {
+                    final BufferedReader err = new BufferedReader(new InputStreamReader(process.getErrorStream()));
+                    String line;
+                    try {
+                        while ((line = err.readLine()) != null) {
+                            System.err.append(line).append("\n");
+                            remember(lastLines, line);
+                        }
+                    } catch (IOException e) {
+                        // the JVM exited
+                    }
+                }
+            }, "grails-fork-pool-stderr");
+            errorDumper.setDaemon(true);
+            errorDumper.start();
+        }
+
+        ForkExitStatus execute(File executionContext) throws IOException, InterruptedException {
+            final LinkedList<String> lines = new LinkedList<String>();
+            lastLines = lines;
+            final long started = System.currentTimeMillis();
+            try {
+                in.write(executionContext.getCanonicalPath() + "\n");
+                in.flush();
+            } catch (IOException e) {
+                // the JVM exited, reported below
+            }
+
+            String line;
+            // an empty line is held back, it may be the separator written before the exit marker
+            boolean emptyLine = false;
+            while ((line = out.readLine()) != null) {
+                final int marker = line.indexOf(ForkedGrailsWorker.EXIT_MARKER);
+                if (marker >= 0) {
+                    if (marker > 0) {
+                        printLine(lines, line.substring(0, marker));
+                    }
+                    System.out.flush();
+                    synchronized (lines) {
+                        return new ForkExitStatus(Integer.parseInt(line.substring(marker + ForkedGrailsWorker.EXIT_MARKER.length()).trim()), null, lines);
+                    }
+                }
+                if (emptyLine) {
+                    printLine(lines, "");
+                }
+                emptyLine = line.length() == 0;
+                if (!emptyLine) {
+                    printLine(lines, line);
+                }
+            }
+            if (emptyLine) {
+                printLine(lines, "");
+            }
+
+            exited = true;
+            final int exitCode = process.waitFor();
+            errorDumper.join();
+            System.out.flush();
+            System.err.flush();
+            synchronized (lines) {
+                return new ForkExitStatus(exitCode, ForkedGrailsRuntime.findHeapDump(heapDumpDir, started), lines);
+            }
+        }
+
+        boolean isAlive() {
+            if (exited) {
+                return false;
+            }
+            try {
+                process.exitValue();
+                return false;
+            } catch (IllegalThreadStateException e) {
+                return true;
+            }
+        }
+
+        void stop() {
+            exited = true;
+            if (process != null) {
+                // the worker exits at the end of its input
+                try {
+                    in.close();
+                } catch (IOException e) {
+                    process.destroy();
+                }
+            }
+        }
+
+        void destroy() {
+            exited = true;
+            if (process != null) {
+                process.destroy();
+            }
+        }
+
+        private static void printLine(LinkedList<String> lines, String line) {
+            System.out.append(line).append("\n");
+            remember(lines, line);
+        }
+
+        private static void remember(LinkedList<String> lines, String line) {
+            synchronized (lines) {
+                lines.add(line);
+                if (lines.size() > ForkedGrailsRuntime.LAST_LINES) {
+                    lines.removeFirst();
+                }
+            }
+        }
+    }
+}
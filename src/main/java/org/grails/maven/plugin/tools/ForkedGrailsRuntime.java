@@ -2,13 +2,16 @@ package org.grails.maven.plugin.tools;
 
 import groovy.lang.GroovyRuntimeException;
 import org.codehaus.groovy.grails.io.support.GrailsIOUtils;
+import org.apache.maven.plugin.MojoExecutionException;
 import org.grails.launcher.GrailsLauncher;
 import org.grails.maven.plugin.AbstractGrailsMojo;
 
 import java.io.*;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.LinkedList;
 import java.util.List;
+import java.util.concurrent.Callable;
 
 /**
  * 
@@ -25,6 +28,16 @@ public class ForkedGrailsRuntime extends AbstractGrailsRuntime {
     private int maxPerm = 256;
     private boolean debug;
     private File reloadingAgent;
+    private String mainClass = ForkedGrailsRuntime.class.getName();
+    private File heapDumpDir;
+    private File gcLog;
+    private ForkExitStatus exitStatus;
+    private ForkedGrailsPool pool;
+
+    /**
+     * The number of output lines kept for reporting failures.
+     */
+    static final int LAST_LINES = 20;
 
     public ForkedGrailsRuntime(ExecutionContext executionContext) {
         super(executionContext);
@@ -46,82 +59,126 @@ public class ForkedGrailsRuntime extends AbstractGrailsRuntime {
         this.debug = debug;
     }
 
-    public void run() {
+    public void run() throws MojoExecutionException {
         ProcessBuilder processBuilder = new ProcessBuilder();
-        StringBuilder cp = new StringBuilder();
-        cp.append(GrailsIOUtils.findJarFile(ForkedGrailsRuntime.class)).append(File.pathSeparatorChar);
-        for (File file : executionContext.getBuildDependencies()) {
-            cp.append(file).append(File.pathSeparatorChar);
-        }
+        String cp = buildClassPath(GrailsIOUtils.findJarFile(ForkedGrailsRuntime.class), executionContext.getBuildDependencies());
 
 
         FileOutputStream fos = null;
         File tempFile = null;
         try {
+            // For use inside of IDEs
+            String buildListeners = executionContext.getGrailsBuildListener();
+            if (executionContext.getBuildEventPort() > 0) {
+                String reporter = BuildEventReporter.class.getName();
+                buildListeners = buildListeners != null ? buildListeners + "," + reporter : reporter;
+            }
+            if (InlinePluginRegistrar.isRequested(executionContext.getSystemProperties())) {
+                String registrar = InlinePluginRegistrar.class.getName();
+                buildListeners = buildListeners != null ? buildListeners + "," + registrar : registrar;
+            }
+
+            File heapDumpDir = getHeapDumpDir();
+            if (isPooled()) {
+                // the pooled JVMs take these per script
+                if (buildListeners != null) {
+                    executionContext.getSystemProperties().put(AbstractGrailsMojo.GRAILS_BUILD_LISTENERS, buildListeners);
+                }
+                if (executionContext.getDependencyFileLocation() != null) {
+                    executionContext.getSystemProperties().put(AbstractGrailsMojo.DEPENDENCY_FILE_LOC, executionContext.getDependencyFileLocation().getPath());
+                }
+            }
+
             String baseName = executionContext.getBaseDir().getCanonicalFile().getName();
             tempFile = File.createTempFile(baseName, "grails-execution-context");
             tempFile.deleteOnExit();
 
             fos = new FileOutputStream(tempFile);
-            ObjectOutputStream oos = new ObjectOutputStream(fos);
-            oos.writeObject(executionContext);
+            writeExecutionContext(executionContext, fos);
+            fos.close();
 
+            if (isPooled()) {
+                exitStatus = pool.run(getJvmOptions(cp), heapDumpDir, executionContext.getBaseDir(), tempFile);
+                if (!exitStatus.isSuccess()) {
+                    throw new MojoExecutionException(exitStatus.describe());
+                }
+                return;
+            }
 
-            List<String> cmd = new ArrayList<String>(Arrays.asList("java", "-Xmx" + maxMemory + "M", "-Xms" + minMemory + "M", "-XX:MaxPermSize=" + maxPerm + "m", "-Dgrails.build.execution.context=" + tempFile.getCanonicalPath(), "-cp", cp.toString()));
+            heapDumpDir.mkdirs();
+            List<String> cmd = new ArrayList<String>();
+            cmd.add("java");
+            cmd.addAll(getJvmOptions(cp));
+            cmd.add("-Dgrails.build.execution.context=" + tempFile.getCanonicalPath());
+            cmd.addAll(Arrays.asList("-XX:+HeapDumpOnOutOfMemoryError", "-XX:HeapDumpPath=" + heapDumpDir.getCanonicalPath()));
+            if (gcLog != null) {
+                gcLog.getParentFile().mkdirs();
+                gcLog.delete();
+                // assumes the java on the path is the version running Maven
+                cmd.addAll(Arrays.asList(GcLogAnalyzer.gcLogOptions(gcLog.getCanonicalFile(), System.getProperty("java.specification.version"))));
+            }
             if(debug) {
                 cmd.addAll(Arrays.asList("-Xdebug","-Xnoagent","-Dgrails.full.stacktrace=true", "-Djava.compiler=NONE", "-Xrunjdwp:transport=dt_socket,server=y,suspend=y,address=5005"));
             }
-            if(reloadingAgent != null) {
-                cmd.addAll(Arrays.asList("-javaagent:" + reloadingAgent.getCanonicalPath(), "-noverify", "-Dspringloaded=profile=grails"));
-            }
 
-            if(null != executionContext.getForkedVmArgs()
-            && executionContext.getForkedVmArgs().size() > 0) {
-                cmd.addAll(executionContext.getForkedVmArgs());
-            }
-
-            // For use inside of IDEs
-            if (executionContext.getGrailsBuildListener() != null) {
-                cmd.add("-D" + AbstractGrailsMojo.GRAILS_BUILD_LISTENERS + "=" + executionContext.getGrailsBuildListener());
+            if (buildListeners != null) {
+                cmd.add("-D" + AbstractGrailsMojo.GRAILS_BUILD_LISTENERS + "=" + buildListeners);
             }
             // For use inside of IDEs
             if (executionContext.getDependencyFileLocation() != null) {
                 cmd.add("-D" + AbstractGrailsMojo.DEPENDENCY_FILE_LOC + "=" + executionContext.getDependencyFileLocation());
             }
             
-            cmd.add(getClass().getName());
+            cmd.add(mainClass);
             processBuilder
                     .directory(executionContext.getBaseDir())
                     .redirectErrorStream(false)
                     .command(cmd);
 
+            long started = System.currentTimeMillis();
             Process process = processBuilder.start();
 
             InputStream is = process.getInputStream();
             InputStream es = process.getErrorStream();
-            Thread t1 = new Thread(new TextDumper(is, System.out));
-            Thread t2 = new Thread(new TextDumper(es, System.err));
+            LinkedList<String> lastLines = new LinkedList<String>();
+            Thread t1 = new Thread(new TextDumper(is, System.out, lastLines));
+            Thread t2 = new Thread(new TextDumper(es, System.err, lastLines));
             t1.start();
             t2.start();
+            InputForwarder forwarder = null;
+            if (executionContext.isRestartable()) {
+                // the console commands of the RunAppSupervisor
+                forwarder = new InputForwarder(System.in, process.getOutputStream());
+                Thread t3 = new Thread(forwarder, "grails-fork-input");
+                t3.setDaemon(true);
+                t3.start();
+            }
 
             int result = process.waitFor();
-            if(result == 1) {
-                try { t1.join(); } catch (InterruptedException ignore) {}
-                try { t1.join(); } catch (InterruptedException ignore) {}
-                try { es.close(); } catch (IOException ignore) {}
-                try { is.close(); } catch (IOException ignore) {}
+            if (forwarder != null) {
+                // Maven's input is no longer read once the fork is gone
+                forwarder.stop();
+            }
+            // all output has to be shown before the result is reported
+            t1.join();
+            t2.join();
+            try { es.close(); } catch (IOException ignore) {}
+            try { is.close(); } catch (IOException ignore) {}
 
-                System.out.flush();
-                System.err.flush();
+            System.out.flush();
+            System.err.flush();
 
-                throw new RuntimeException("Forked Grails VM exited with error");
+            synchronized (lastLines) {
+                exitStatus = new ForkExitStatus(result, findHeapDump(heapDumpDir, started), lastLines);
+            }
+            if (!exitStatus.isSuccess()) {
+                throw new MojoExecutionException(exitStatus.describe());
             }
-        } catch (FileNotFoundException e) {
-            throw new RuntimeException("Fatal error forking Grails JVM: " + e.getMessage() , e);
         } catch (IOException e) {
-            throw new RuntimeException("Fatal error forking Grails JVM: " + e.getMessage() , e);
+            throw new MojoExecutionException("Fatal error forking Grails JVM: " + e.getMessage() , e);
         } catch (InterruptedException e) {
-            throw new RuntimeException("Fatal error forking Grails JVM: " + e.getMessage() , e);
+            Thread.currentThread().interrupt();
+            throw new MojoExecutionException("Fatal error forking Grails JVM: " + e.getMessage() , e);
         } finally {
             if(fos  != null) try {
                 fos.close();
@@ -131,6 +188,40 @@ public class ForkedGrailsRuntime extends AbstractGrailsRuntime {
         }
     }
 
+    /**
+     * @return The options of the forked JVM that don't depend on the script: memory, class path,
+     * reloading agent and the configured arguments
+     */
+    List<String> getJvmOptions(String cp) throws IOException {
+        List<String> options = new ArrayList<String>(Arrays.asList("-Xmx" + maxMemory + "M", "-Xms" + minMemory + "M", "-XX:MaxPermSize=" + maxPerm + "m", "-cp", cp));
+        if(reloadingAgent != null) {
+            options.addAll(Arrays.asList("-javaagent:" + reloadingAgent.getCanonicalPath(), "-noverify", "-Dspringloaded=profile=grails"));
+        }
+
+        if(null != executionContext.getForkedVmArgs()
+        && executionContext.getForkedVmArgs().size() > 0) {
+            options.addAll(executionContext.getForkedVmArgs());
+        }
+        return options;
+    }
+
+    /**
+     * Runs the script in a JVM of the given pool, unless it needs a JVM of its own: when it is
+     * debugged, logs its garbage collections to its own file or can be restarted.
+     *
+     * @param pool The pool, or null to always fork a new JVM
+     */
+    public void setPool(ForkedGrailsPool pool) {
+        this.pool = pool;
+    }
+
+    /**
+     * @return Whether the script runs in a JVM of the pool
+     */
+    public boolean isPooled() {
+        return pool != null && !debug && gcLog == null && !executionContext.isRestartable();
+    }
+
     public static void main(String[] args) {
         String location = System.getProperty("grails.build.execution.context");
         if(location != null) {
@@ -139,11 +230,37 @@ public class ForkedGrailsRuntime extends AbstractGrailsRuntime {
 
             try {
                 fis = new FileInputStream(f);
-                ObjectInputStream ois = new ObjectInputStream(fis);
-                ExecutionContext ec = (ExecutionContext) ois.readObject();
+                final ExecutionContext ec = readExecutionContext(fis);
+                applySystemProperties(ec.getSystemProperties());
+                if (ec.getMemoryReport() != null) {
+                    ForkMemoryHistory.reportOnExit(ec.getMemoryReport());
+                }
 
+                final BuildEventReporter reporter = new BuildEventReporter();
+                if (ec.getBuildEventPort() > 0) {
+                    System.setProperty(BuildEventReporter.PORT_PROPERTY, String.valueOf(ec.getBuildEventPort()));
+                    reporter.scriptStarted(ec.getScriptName());
+                }
+
+                if (ec.isRestartable()) {
+                    // each launch creates its own build class loader, see RunAppSupervisor
+                    RunAppSupervisor supervisor = new RunAppSupervisor(ec.getBaseDir(), ec.getProjectWorkDir());
+                    supervisor.startConsole(System.in);
+                    ChangeReceiver.startIfRequested(supervisor);
+                    int exit = supervisor.run(new Callable<Integer>() {
+                        public Integer call() {
+                            return createGrailsLauncher(ec).launch(ec.getScriptName(), ec.getArgs(), ec.getEnv());
+                        }
+                    });
+                    reporter.scriptFinished(ec.getScriptName(), exit);
+                    System.exit(exit);
+                }
+
+                ChangeReceiver.startIfRequested();
                 GrailsLauncher launcher = createGrailsLauncher(ec);
-                System.exit( launcher.launch(ec.getScriptName(), ec.getArgs(), ec.getEnv()) );
+                int exit = launcher.launch(ec.getScriptName(), ec.getArgs(), ec.getEnv());
+                reporter.scriptFinished(ec.getScriptName(), exit);
+                System.exit(exit);
 
             } catch (FileNotFoundException e) {
                 fatalError(e);
@@ -173,15 +290,125 @@ public class ForkedGrailsRuntime extends AbstractGrailsRuntime {
         this.reloadingAgent = file;
     }
 
+    /**
+     * @return How the last run of the forked JVM ended, or null if it didn't start
+     */
+    public ForkExitStatus getExitStatus() {
+        return exitStatus;
+    }
+
+    void setMainClass(String mainClass) {
+        this.mainClass = mainClass;
+    }
+
+    /**
+     * @return The directory the forked JVM writes a heap dump to when it runs out of memory
+     */
+    File getHeapDumpDir() {
+        return heapDumpDir != null ? heapDumpDir : new File(executionContext.getProjectWorkDir(), "grails-fork-heap-dumps");
+    }
+
+    public void setHeapDumpDir(File heapDumpDir) {
+        this.heapDumpDir = heapDumpDir;
+    }
+
+    /**
+     * @param gcLog The file the forked JVM logs its garbage collections to, or null to not log them
+     */
+    public void setGcLog(File gcLog) {
+        this.gcLog = gcLog;
+    }
+
+    static File findHeapDump(File heapDumpDir, long since) {
+        File[] files = heapDumpDir.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                if (file.getName().endsWith(".hprof") && file.lastModified() >= since - 1000) {
+                    return file;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Builds the class path of the forked JVM: the plugin jar followed by the build dependencies.
+     */
+    static String buildClassPath(String pluginJar, List<File> buildDependencies) {
+        StringBuilder cp = new StringBuilder();
+        cp.append(pluginJar).append(File.pathSeparatorChar);
+        for (File file : buildDependencies) {
+            cp.append(file).append(File.pathSeparatorChar);
+        }
+        return cp.toString();
+    }
+
+    static void writeExecutionContext(ExecutionContext executionContext, OutputStream out) throws IOException {
+        ObjectOutputStream oos = new ObjectOutputStream(out);
+        oos.writeObject(executionContext);
+        oos.flush();
+    }
 
+    static ExecutionContext readExecutionContext(InputStream in) throws IOException, ClassNotFoundException {
+        ObjectInputStream ois = new ObjectInputStream(in);
+        return (ExecutionContext) ois.readObject();
+    }
 
-    private static class TextDumper implements Runnable {
+    /**
+     * Copies Maven's input to the forked JVM until stopped. Only what is available is read, so
+     * that no read blocks past the end of the fork and takes input meant for Maven.
+     */
+    static class InputForwarder implements Runnable {
+        InputStream in;
+        OutputStream out;
+        private volatile boolean stopped;
+
+        public InputForwarder(InputStream in, OutputStream out) {
+            this.in = in;
+            this.out = out;
+        }
+
+        public void stop() {
+            stopped = true;
+        }
+
+        public void run() {
+            byte[] buffer = new byte[1024];
+            try {
+                while (!stopped) {
+                    int available = in.available();
+                    if (available <= 0) {
+                        Thread.sleep(100);
+                        continue;
+                    }
+                    int read = in.read(buffer, 0, Math.min(available, buffer.length));
+                    if (read == -1) {
+                        return;
+                    }
+                    out.write(buffer, 0, read);
+                    out.flush();
+                }
+            } catch (IOException e) {
+                // the forked JVM exited
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    static class TextDumper implements Runnable {
         InputStream in;
         Appendable app;
+        LinkedList<String> lastLines;
 
         public TextDumper(InputStream in, Appendable app) {
+            this(in, app, null);
+        }
+
+        public TextDumper(InputStream in, Appendable app, LinkedList<String> lastLines) {
             this.in = in;
             this.app = app;
+            this.lastLines = lastLines;
         }
 
         public void run() {
@@ -194,6 +421,14 @@ public class ForkedGrailsRuntime extends AbstractGrailsRuntime {
                         app.append(next);
                         app.append("\n");
                     }
+                    if (lastLines != null) {
+                        synchronized (lastLines) {
+                            lastLines.add(next);
+                            if (lastLines.size() > LAST_LINES) {
+                                lastLines.removeFirst();
+                            }
+                        }
+                    }
                 }
             } catch (IOException e) {
                 throw new GroovyRuntimeException("exception while reading process stream", e);
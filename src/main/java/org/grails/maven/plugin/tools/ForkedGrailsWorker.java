@@ -0,0 +1,129 @@
+/*
+ * Copyright 2007 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.grails.maven.plugin.tools;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.util.Properties;
+
+/**
+ * The main class of the JVMs kept by {@link ForkedGrailsPool}. Reads the paths of serialized
+ * execution contexts from standard input, one per line, runs each script in turn and ends its
+ * output with a line holding {@link #EXIT_MARKER} and the exit code. Exits when standard input
+ * is closed, which happens at the latest when Maven exits.
+ *
+ * Scripts of any module may run in the same worker: each gets the base directory of its
+ * module as {@code base.dir} and {@code user.dir}, and Grails resolves the project paths from
+ * them. The system properties are reset after each script, as Grails sets some of its own, such
+ * as the environment. Grails is told not to exit the JVM when a script fails; a script calling
+ * {@link System#exit(int)} by itself still ends the worker, which Maven reports like the exit of
+ * a single forked JVM.
+ *
+ * @since 2.4.7
+ */
+public class ForkedGrailsWorker {
+
+    /**
+     * Starts the line ending the output of a script. It follows a line separator, in case the
+     * script left its last line unterminated.
+     */
+    static final String EXIT_MARKER = "\u0001grails-maven-exit ";
+
+    /**
+     * Runs one script.
+     */
+    interface Runner {
+        int run(File executionContext) throws Exception;
+    }
+
+    private ForkedGrailsWorker() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        serve(new BufferedReader(new InputStreamReader(System.in)), System.out, new Runner() {
+            public int run(File executionContext) throws Exception {
+                return runScript(executionContext);
+            }
+        });
+        System.exit(0);
+    }
+
+    static void serve(BufferedReader in, PrintStream out, Runner runner) throws IOException {
+        final Properties baseline = (Properties) System.getProperties().clone();
+        String line;
+        while ((line = in.readLine()) != null) {
+            if (line.length() == 0) {
+                continue;
+            }
+            int exit;
+            try {
+                exit = runner.run(new File(line));
+            } catch (Throwable e) {
+                out.println("Fatal error running Grails in a pooled JVM: " + e.getMessage());
+                e.printStackTrace(out);
+                exit = 1;
+            } finally {
+                final Properties properties = new Properties();
+                properties.putAll(baseline);
+                System.setProperties(properties);
+            }
+            System.err.flush();
+            out.println();
+            out.println(EXIT_MARKER + exit);
+            out.flush();
+        }
+    }
+
+    /**
+     * Sets the system properties of a script, pointing it at its module.
+     */
+    static void applySystemProperties(AbstractGrailsRuntime.ExecutionContext ec) {
+        AbstractGrailsRuntime.applySystemProperties(ec.getSystemProperties());
+        final String baseDir = ec.getBaseDir().getAbsolutePath();
+        System.setProperty("base.dir", baseDir);
+        System.setProperty("user.dir", baseDir);
+        // Grails ends failing scripts with System.exit unless told otherwise
+        System.setProperty("grails.disable.exit", "true");
+    }
+
+    private static int runScript(File contextFile) throws IOException, ClassNotFoundException {
+        final AbstractGrailsRuntime.ExecutionContext ec;
+        final FileInputStream fis = new FileInputStream(contextFile);
+        try {
+            ec = ForkedGrailsRuntime.readExecutionContext(fis);
+        } finally {
+            fis.close();
+        }
+        applySystemProperties(ec);
+
+        final BuildEventReporter reporter = new BuildEventReporter();
+        if (ec.getBuildEventPort() > 0) {
+            System.setProperty(BuildEventReporter.PORT_PROPERTY, String.valueOf(ec.getBuildEventPort()));
+            reporter.scriptStarted(ec.getScriptName());
+        }
+        int exit = 1;
+        try {
+            exit = AbstractGrailsRuntime.createGrailsLauncher(ec).launch(ec.getScriptName(), ec.getArgs(), ec.getEnv());
+        } finally {
+            reporter.scriptFinished(ec.getScriptName(), exit);
+        }
+        return exit;
+    }
+}
@@ -0,0 +1,216 @@
+/*
+ * Copyright 2007 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.grails.maven.plugin.tools;
+
+import java.io.*;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Summarizes the GC log of a forked JVM: pause count and times, peak heap, the heap still in
+ * use after collections, and the allocation rate, to help choosing {@code forkMaxMemory}.
+ *
+ * Both the unified logging of Java 9 and later ({@code -Xlog:gc*} with the uptime decoration)
+ * and the {@code -XX:+PrintGCDetails -XX:+PrintGCTimeStamps} output of older JVMs are read;
+ * lines that don't describe a pause are skipped.
+ *
+ * @since 2.4.7
+ */
+public class GcLogAnalyzer {
+
+    // [1.234s][info][gc] GC(3) Pause Young (Normal) (G1 Evacuation Pause) 24M->3M(256M) 3.456ms
+    private static final Pattern UNIFIED_PAUSE = Pattern.compile(
+            "^\\[(\\d+(?:\\.\\d+)?)s\\].*\\bPause\\b.*?(\\d+)([KMG])->(\\d+)([KMG])\\((\\d+)([KMG])\\) (\\d+(?:\\.\\d+)?)ms");
+
+    // 1.234: [GC (Allocation Failure) [PSYoungGen: ...] 33280K->5112K(125952K), 0.0041020 secs]
+    private static final Pattern LEGACY_TIME = Pattern.compile("^(?:\\S+: )?(\\d+\\.\\d+): \\[(?:GC|Full GC)");
+    private static final Pattern LEGACY_HEAP = Pattern.compile(
+            "(\\d+)K->(\\d+)K\\((\\d+)K\\)(?:, \\[Metaspace: [^\\]]*\\])?, (\\d+\\.\\d+) secs\\]");
+
+    /**
+     * What the log says about the run.
+     */
+    public static class Summary {
+        private int pauseCount;
+        private double totalPauseMillis;
+        private double maxPauseMillis;
+        private long peakHeapKb;
+        private long maxLiveHeapKb;
+        private long maxLiveHeapAfterFullGcKb = -1;
+        private long committedHeapKb;
+        private long allocatedKb;
+        private double elapsedSeconds;
+
+        private long previousAfterKb;
+
+        void pause(double uptimeSeconds, boolean full, long beforeKb, long afterKb, long committedKb, double pauseMillis) {
+            pauseCount++;
+            totalPauseMillis += pauseMillis;
+            maxPauseMillis = Math.max(maxPauseMillis, pauseMillis);
+            peakHeapKb = Math.max(peakHeapKb, beforeKb);
+            maxLiveHeapKb = Math.max(maxLiveHeapKb, afterKb);
+            if (full) {
+                maxLiveHeapAfterFullGcKb = Math.max(maxLiveHeapAfterFullGcKb, afterKb);
+            }
+            committedHeapKb = Math.max(committedHeapKb, committedKb);
+            // everything in the heap before this collection that survived the last one is new
+            allocatedKb += Math.max(0, beforeKb - previousAfterKb);
+            previousAfterKb = afterKb;
+            elapsedSeconds = Math.max(elapsedSeconds, uptimeSeconds);
+        }
+
+        public int getPauseCount() {
+            return pauseCount;
+        }
+
+        public double getTotalPauseMillis() {
+            return totalPauseMillis;
+        }
+
+        public double getMaxPauseMillis() {
+            return maxPauseMillis;
+        }
+
+        /**
+         * @return The largest heap occupancy seen before a collection
+         */
+        public long getPeakHeapKb() {
+            return peakHeapKb;
+        }
+
+        /**
+         * @return The largest heap occupancy left after a full collection, which is the live
+         * data, or after any collection if there were no full ones, which overestimates it
+         */
+        public long getMaxLiveHeapKb() {
+            return maxLiveHeapAfterFullGcKb >= 0 ? maxLiveHeapAfterFullGcKb : maxLiveHeapKb;
+        }
+
+        public long getCommittedHeapKb() {
+            return committedHeapKb;
+        }
+
+        public long getAllocatedKb() {
+            return allocatedKb;
+        }
+
+        /**
+         * @return The uptime of the last collection
+         */
+        public double getElapsedSeconds() {
+            return elapsedSeconds;
+        }
+
+        public double getAllocationRateMbPerSecond() {
+            return elapsedSeconds > 0 ? allocatedKb / 1024.0 / elapsedSeconds : 0;
+        }
+
+        /**
+         * @return The share of the run spent in GC pauses, in percent
+         */
+        public double getGcOverheadPercent() {
+            return elapsedSeconds > 0 ? totalPauseMillis / (elapsedSeconds * 10) : 0;
+        }
+
+        /**
+         * @return A maximum heap leaving the live data room to grow, twice the largest live
+         * heap in megabytes, or 0 if the log had no collections
+         */
+        public int getSuggestedMaxMemoryMb() {
+            return pauseCount > 0 ? (int) Math.max(64, (getMaxLiveHeapKb() * 2 + 1023) / 1024) : 0;
+        }
+
+        /**
+         * @return The summary as lines for the build output
+         */
+        public String describe() {
+            if (pauseCount == 0) {
+                return "No GC pauses logged.";
+            }
+            return String.format("GC pauses: %d, %.1fms in total, %.1fms at most (%.1f%% of %.1fs)%n" +
+                            "Heap: peak %dM, at most %dM live after GC, %dM committed%n" +
+                            "Allocation: %dM, %.1fM/s%n" +
+                            "Suggested forkMaxMemory: %d",
+                    pauseCount, totalPauseMillis, maxPauseMillis, getGcOverheadPercent(), elapsedSeconds,
+                    peakHeapKb / 1024, getMaxLiveHeapKb() / 1024, committedHeapKb / 1024,
+                    allocatedKb / 1024, getAllocationRateMbPerSecond(), getSuggestedMaxMemoryMb());
+        }
+    }
+
+    private GcLogAnalyzer() {
+    }
+
+    public static Summary analyze(File log) throws IOException {
+        final BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(log), "UTF-8"));
+        try {
+            return analyze(reader);
+        } finally {
+            reader.close();
+        }
+    }
+
+    static Summary analyze(BufferedReader reader) throws IOException {
+        final Summary summary = new Summary();
+        String line;
+        while ((line = reader.readLine()) != null) {
+            final Matcher unified = UNIFIED_PAUSE.matcher(line);
+            if (unified.find()) {
+                summary.pause(Double.parseDouble(unified.group(1)), line.contains("Pause Full"),
+                        toKb(unified.group(2), unified.group(3)), toKb(unified.group(4), unified.group(5)),
+                        toKb(unified.group(6), unified.group(7)), Double.parseDouble(unified.group(8)));
+                continue;
+            }
+
+            final Matcher legacy = LEGACY_TIME.matcher(line);
+            if (legacy.find()) {
+                // the last figures on the line are those of the whole heap
+                final Matcher heap = LEGACY_HEAP.matcher(line);
+                String[] last = null;
+                while (heap.find()) {
+                    last = new String[]{heap.group(1), heap.group(2), heap.group(3), heap.group(4)};
+                }
+                if (last != null) {
+                    summary.pause(Double.parseDouble(legacy.group(1)), line.contains("[Full GC"), Long.parseLong(last[0]), Long.parseLong(last[1]),
+                            Long.parseLong(last[2]), Double.parseDouble(last[3]) * 1000);
+                }
+            }
+        }
+        return summary;
+    }
+
+    private static long toKb(String value, String unit) {
+        final long amount = Long.parseLong(value);
+        if ("G".equals(unit)) {
+            return amount * 1024 * 1024;
+        }
+        if ("M".equals(unit)) {
+            return amount * 1024;
+        }
+        return amount;
+    }
+
+    /**
+     * @param log The file to log to
+     * @param javaSpecificationVersion The {@code java.specification.version} of the JVM to log
+     * @return The options enabling GC logging on that JVM
+     */
+    public static String[] gcLogOptions(File log, String javaSpecificationVersion) {
+        if (javaSpecificationVersion.startsWith("1.")) {
+            return new String[]{"-Xloggc:" + log.getPath(), "-XX:+PrintGCDetails", "-XX:+PrintGCTimeStamps"};
+        }
+        return new String[]{"-Xlog:gc*:file=" + log.getPath() + ":uptime,level,tags"};
+    }
+}
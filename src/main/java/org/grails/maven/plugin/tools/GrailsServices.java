@@ -31,6 +31,14 @@ public interface GrailsServices {
      */
     void setBasedir(File basedir);
 
+    /**
+     * Sets the build directory used to cache information read from the project, such as the
+     * plugin descriptor. Nothing is cached on disk when this isn't set.
+     *
+     * @since 2.4.7
+     */
+    void setBuildDirectory(File buildDirectory);
+
 
     /**
      * Read a grails project descriptor (application.properties) from a file.
@@ -57,4 +65,29 @@ public interface GrailsServices {
         throws MojoExecutionException;
 
     GrailsPluginProject readGrailsPluginProject() throws MojoExecutionException;
+
+    /**
+     * Returns the metadata (application.properties) of the project. The file is read once and
+     * shared by every mojo of the build until it changes on disk.
+     *
+     * @return An immutable snapshot, which may describe a file that doesn't exist yet
+     * @since 2.4.7
+     */
+    ProjectMetadata readProjectMetadata() throws MojoExecutionException;
+
+    /**
+     * Stages a change to the project metadata, to be written by the next call to
+     * {@link #flushProjectMetadata()}.
+     *
+     * @since 2.4.7
+     */
+    void stageProjectMetadata(String name, String value) throws MojoExecutionException;
+
+    /**
+     * Writes all staged metadata changes at once.
+     *
+     * @return Whether application.properties was modified
+     * @since 2.4.7
+     */
+    boolean flushProjectMetadata() throws MojoExecutionException;
 }
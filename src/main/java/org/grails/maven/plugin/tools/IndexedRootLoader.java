@@ -0,0 +1,84 @@
+/*
+ * Copyright 2007 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.grails.maven.plugin.tools;
+
+import org.grails.launcher.RootLoader;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.util.Collections;
+import java.util.Enumeration;
+
+/**
+ * A {@link RootLoader} that consults a {@link ClassPathIndex} before searching its jars, so
+ * that lookups for classes and resources that none of the jars contain go straight to the
+ * parent loader.
+ *
+ * @since 2.4.7
+ */
+public class IndexedRootLoader extends RootLoader {
+
+    private final ClassPathIndex index;
+
+    public IndexedRootLoader(URL[] urls, ClassLoader parent, ClassPathIndex index) {
+        super(urls, parent);
+        this.index = index;
+    }
+
+    @Override
+    protected Class<?> loadClass(String name, boolean resolve) throws ClassNotFoundException {
+        if (index.mayContainClass(name)) {
+            return super.loadClass(name, resolve);
+        }
+
+        Class<?> c = findLoadedClass(name);
+        if (c == null) {
+            c = getParent().loadClass(name);
+        }
+        if (resolve) {
+            resolveClass(c);
+        }
+        return c;
+    }
+
+    @Override
+    public URL findResource(String name) {
+        return index.mayContainResource(name) ? super.findResource(name) : null;
+    }
+
+    @Override
+    public Enumeration<URL> findResources(String name) throws IOException {
+        if (index.mayContainResource(name)) {
+            return super.findResources(name);
+        }
+        return Collections.enumeration(Collections.<URL>emptyList());
+    }
+
+    @Override
+    public void addURL(URL url) {
+        try {
+            index.add(new File(url.toURI()));
+        } catch (URISyntaxException e) {
+            index.add(new File(url.getPath()));
+        } catch (IllegalArgumentException e) {
+            // not a file URL, nothing can be ruled out any more
+            index.add(new File(url.toExternalForm()));
+        }
+        super.addURL(url);
+    }
+}
@@ -0,0 +1,108 @@
+/*
+ * Copyright 2007 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.grails.maven.plugin.tools;
+
+import grails.build.GrailsBuildListener;
+
+import java.io.File;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Adds Grails plugins of the same reactor build to the Grails build as inline plugins, so that
+ * Grails compiles them from their sources instead of installing their packaged zip.
+ *
+ * The plugin directories are given as system properties {@link #LOCATION_PREFIX}{@code <name>},
+ * the keys inline plugins have in {@code BuildConfig.groovy}. Grails creates the listener by
+ * name once its build settings are loaded, which is when the directories are added to them;
+ * like {@link BuildEventReporter}, the plugin jar has to be on the Grails build class loader.
+ *
+ * @since 2.4.7
+ */
+public class InlinePluginRegistrar implements GrailsBuildListener {
+
+    /**
+     * Starts the system properties holding the directories of the inline plugins.
+     */
+    public static final String LOCATION_PREFIX = "grails.plugin.location.";
+
+    private boolean registered;
+
+    public InlinePluginRegistrar() {
+        register();
+    }
+
+    public synchronized void receiveGrailsBuildEvent(String name, Object... args) {
+        // in case the settings weren't there yet when the listener was created
+        register();
+    }
+
+    /**
+     * @param systemProperties The system properties of a Grails build
+     * @return Whether they name inline plugins
+     */
+    public static boolean isRequested(Map<?, ?> systemProperties) {
+        return !getLocations(systemProperties).isEmpty();
+    }
+
+    /**
+     * @param systemProperties The system properties of a Grails build
+     * @return The inline plugin directories by plugin name
+     */
+    static Map<String, File> getLocations(Map<?, ?> systemProperties) {
+        final Map<String, File> locations = new TreeMap<String, File>();
+        for (Map.Entry<?, ?> entry : systemProperties.entrySet()) {
+            final String key = String.valueOf(entry.getKey());
+            if (key.startsWith(LOCATION_PREFIX) && key.length() > LOCATION_PREFIX.length()) {
+                locations.put(key.substring(LOCATION_PREFIX.length()), new File(String.valueOf(entry.getValue())));
+            }
+        }
+        return locations;
+    }
+
+    private synchronized void register() {
+        if (registered) {
+            return;
+        }
+        try {
+            final Class<?> holder = getClass().getClassLoader().loadClass("grails.util.BuildSettingsHolder");
+            final Object settings = holder.getMethod("getSettings").invoke(null);
+            if (settings == null) {
+                return;
+            }
+            registered = true;
+            final Method addPluginDirectory = settings.getClass().getMethod("addPluginDirectory", File.class, boolean.class);
+            for (Map.Entry<String, File> location : getLocations(System.getProperties()).entrySet()) {
+                addPluginDirectory.invoke(settings, location.getValue(), true);
+            }
+        } catch (InvocationTargetException e) {
+            registered = true;
+            warn(e.getTargetException());
+        } catch (Exception e) {
+            registered = true;
+            warn(e);
+        } catch (LinkageError e) {
+            registered = true;
+            warn(e);
+        }
+    }
+
+    private static void warn(Throwable e) {
+        System.out.println("Unable to add the reactor plugins to the Grails build as inline plugins: " + e);
+    }
+}
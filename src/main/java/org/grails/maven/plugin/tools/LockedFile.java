@@ -0,0 +1,182 @@
+/*
+ * Copyright 2007 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.grails.maven.plugin.tools;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A file held under an exclusive lock, both against other threads of this JVM
+ * (parallel reactor builds) and against other processes (a second Maven or
+ * Grails invocation on the same project).
+ *
+ * All reads and writes go through the locked channel, so the lock is honoured
+ * on platforms with mandatory locking as well.
+ *
+ * @since 2.4.7
+ */
+public class LockedFile {
+
+    private static final ConcurrentMap<String, ReentrantLock> JVM_LOCKS = new ConcurrentHashMap<String, ReentrantLock>();
+
+    private final File file;
+    private final ReentrantLock jvmLock;
+    private final RandomAccessFile randomAccessFile;
+    private final FileLock fileLock;
+
+    private LockedFile(File file, ReentrantLock jvmLock, RandomAccessFile randomAccessFile, FileLock fileLock) {
+        this.file = file;
+        this.jvmLock = jvmLock;
+        this.randomAccessFile = randomAccessFile;
+        this.fileLock = fileLock;
+    }
+
+    /**
+     * Opens the given file for reading and writing, creating it (and its parent directories)
+     * if necessary, and blocks until an exclusive lock is held.
+     *
+     * @param file The file to lock
+     * @return The locked file, which must be closed to release the lock
+     * @throws IOException If the file cannot be opened or locked
+     */
+    public static LockedFile open(File file) throws IOException {
+        final File canonicalFile = file.getCanonicalFile();
+        final File parent = canonicalFile.getParentFile();
+        if (parent != null && !parent.isDirectory() && !parent.mkdirs() && !parent.isDirectory()) {
+            throw new IOException("Unable to create directory " + parent);
+        }
+
+        final ReentrantLock jvmLock = jvmLockFor(canonicalFile);
+        jvmLock.lock();
+        RandomAccessFile raf = null;
+        try {
+            raf = new RandomAccessFile(canonicalFile, "rw");
+            FileLock fileLock = raf.getChannel().lock();
+            return new LockedFile(canonicalFile, jvmLock, raf, fileLock);
+        } catch (IOException e) {
+            closeQuietly(raf);
+            jvmLock.unlock();
+            throw e;
+        } catch (RuntimeException e) {
+            closeQuietly(raf);
+            jvmLock.unlock();
+            throw e;
+        }
+    }
+
+    private static ReentrantLock jvmLockFor(File canonicalFile) {
+        final String key = canonicalFile.getPath();
+        ReentrantLock lock = JVM_LOCKS.get(key);
+        if (lock == null) {
+            ReentrantLock created = new ReentrantLock();
+            lock = JVM_LOCKS.putIfAbsent(key, created);
+            if (lock == null) {
+                lock = created;
+            }
+        }
+        return lock;
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * @return The current contents of the file
+     */
+    public byte[] read() throws IOException {
+        final FileChannel channel = randomAccessFile.getChannel();
+        final long size = channel.size();
+        if (size > Integer.MAX_VALUE) {
+            throw new IOException("File " + file + " is too large to be read in one go");
+        }
+        final ByteBuffer buffer = ByteBuffer.allocate((int) size);
+        channel.position(0);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer) == -1) {
+                break;
+            }
+        }
+        final byte[] contents = new byte[buffer.position()];
+        buffer.flip();
+        buffer.get(contents);
+        return contents;
+    }
+
+    /**
+     * Replaces the contents of the file.
+     *
+     * @param contents The new contents
+     */
+    public void write(byte[] contents) throws IOException {
+        final FileChannel channel = randomAccessFile.getChannel();
+        channel.truncate(0);
+        channel.position(0);
+        final ByteBuffer buffer = ByteBuffer.wrap(contents);
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        channel.force(false);
+    }
+
+    public Properties readProperties() throws IOException {
+        final Properties properties = new Properties();
+        properties.load(new ByteArrayInputStream(read()));
+        return properties;
+    }
+
+    public void writeProperties(Properties properties, String comment) throws IOException {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        properties.store(out, comment);
+        write(out.toByteArray());
+    }
+
+    /**
+     * Releases the lock and closes the underlying file.
+     */
+    public void close() {
+        try {
+            if (fileLock.isValid()) {
+                fileLock.release();
+            }
+        } catch (IOException e) {
+            // ignore, closing the file releases the lock anyway
+        } finally {
+            closeQuietly(randomAccessFile);
+            jvmLock.unlock();
+        }
+    }
+
+    private static void closeQuietly(RandomAccessFile raf) {
+        if (raf != null) {
+            try {
+                raf.close();
+            } catch (IOException e) {
+                // ignore
+            }
+        }
+    }
+}
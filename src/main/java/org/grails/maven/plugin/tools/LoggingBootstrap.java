@@ -0,0 +1,214 @@
+/*
+ * Copyright 2007 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.grails.maven.plugin.tools;
+
+import org.eclipse.aether.artifact.Artifact;
+import org.grails.launcher.RootLoader;
+
+import java.io.File;
+import java.io.Serializable;
+import java.lang.reflect.InvocationTargetException;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Sets up logging for the Grails build before the launcher starts.
+ *
+ * The logging jars are picked from the resolved dependency graph by their coordinates, and the
+ * backend found there (logback, Log4j 2 or Log4j) is configured directly from one of the
+ * {@code grails-maven/} configuration files shipped with the plugin. Async appenders can be
+ * requested to take console logging off the calling threads.
+ *
+ * @since 2.4.7
+ */
+public class LoggingBootstrap {
+
+    /**
+     * The logging implementations that can be configured.
+     */
+    public enum Backend {
+        LOGBACK("org.slf4j.LoggerFactory", "grails-maven/logback.xml", "grails-maven/logback-async.xml"),
+        LOG4J2("org.apache.logging.log4j.core.config.Configurator", "grails-maven/log4j2.xml", "grails-maven/log4j2-async.xml"),
+        LOG4J("org.apache.log4j.PropertyConfigurator", "grails-maven/log4j.properties", "grails-maven/log4j-async.xml"),
+        NONE(null, null, null);
+
+        private final String configuratorClass;
+        private final String configuration;
+        private final String asyncConfiguration;
+
+        Backend(String configuratorClass, String configuration, String asyncConfiguration) {
+            this.configuratorClass = configuratorClass;
+            this.configuration = configuration;
+            this.asyncConfiguration = asyncConfiguration;
+        }
+
+        public String getConfiguration(boolean async) {
+            return async ? asyncConfiguration : configuration;
+        }
+    }
+
+    /**
+     * The outcome of {@link #select(java.util.List)}: the jars to add and the backend to configure.
+     */
+    public static class Selection implements Serializable {
+        private final List<File> jars;
+        private final Backend backend;
+
+        public Selection(List<File> jars, Backend backend) {
+            this.jars = Collections.unmodifiableList(new ArrayList<File>(jars));
+            this.backend = backend;
+        }
+
+        public List<File> getJars() {
+            return jars;
+        }
+
+        public Backend getBackend() {
+            return backend;
+        }
+    }
+
+    private static final Set<String> LOGGING_GROUPS = new HashSet<String>(Arrays.asList(
+            "org.slf4j", "log4j", "org.apache.logging.log4j", "ch.qos.logback"));
+
+    private static final ConcurrentMap<List<File>, Selection> SELECTIONS = new ConcurrentHashMap<List<File>, Selection>();
+
+    private static final Map<ClassLoader, Backend> CONFIGURED = Collections.synchronizedMap(new WeakHashMap<ClassLoader, Backend>());
+
+    private LoggingBootstrap() {
+    }
+
+    /**
+     * Picks the logging jars and backend from the resolved compile dependencies. The decision is
+     * cached per class path.
+     *
+     * @param artifacts The resolved compile dependencies
+     * @return The selection
+     */
+    public static Selection select(List<Artifact> artifacts) {
+        final List<File> classPath = new ArrayList<File>(artifacts.size());
+        for (Artifact artifact : artifacts) {
+            classPath.add(artifact.getFile());
+        }
+
+        Selection selection = SELECTIONS.get(classPath);
+        if (selection == null) {
+            selection = doSelect(artifacts);
+            SELECTIONS.putIfAbsent(classPath, selection);
+        }
+        return selection;
+    }
+
+    private static Selection doSelect(List<Artifact> artifacts) {
+        final List<File> jars = new ArrayList<File>();
+        final Set<String> ids = new HashSet<String>();
+        for (Artifact artifact : artifacts) {
+            if (artifact.getFile() != null && LOGGING_GROUPS.contains(artifact.getGroupId())) {
+                jars.add(artifact.getFile());
+                ids.add(artifact.getGroupId() + ":" + artifact.getArtifactId());
+            }
+        }
+
+        // the SLF4J binding decides which implementation is actually used
+        Backend backend;
+        if (ids.contains("ch.qos.logback:logback-classic")) {
+            backend = Backend.LOGBACK;
+        } else if (ids.contains("org.apache.logging.log4j:log4j-slf4j-impl")) {
+            backend = Backend.LOG4J2;
+        } else if (ids.contains("org.slf4j:slf4j-log4j12") || ids.contains("log4j:log4j")) {
+            backend = Backend.LOG4J;
+        } else if (ids.contains("org.apache.logging.log4j:log4j-core")) {
+            backend = Backend.LOG4J2;
+        } else {
+            backend = Backend.NONE;
+        }
+        return new Selection(jars, backend);
+    }
+
+    /**
+     * Adds the selected logging jars to the class loader and configures the backend. Loaders
+     * that were configured before are left alone.
+     *
+     * @param loader The loader the Grails build runs in
+     * @param selection The jars and backend to use, may be null
+     * @param async Whether console output should go through an async appender
+     */
+    public static void configure(RootLoader loader, Selection selection, boolean async) {
+        if (selection == null || selection.getJars().isEmpty() || CONFIGURED.containsKey(loader)) {
+            return;
+        }
+
+        for (File jar : selection.getJars()) {
+            try {
+                loader.addURL(jar.toURI().toURL());
+            } catch (MalformedURLException e) {
+                // ignore
+            }
+        }
+        CONFIGURED.put(loader, selection.getBackend());
+
+        final Backend backend = selection.getBackend();
+        if (backend == Backend.NONE) {
+            return;
+        }
+
+        final URL configuration = LoggingBootstrap.class.getClassLoader().getResource(backend.getConfiguration(async));
+        try {
+            switch (backend) {
+                case LOGBACK:
+                    configureLogback(loader, configuration);
+                    break;
+                case LOG4J2:
+                    Class<?> configurator = loader.loadClass(backend.configuratorClass);
+                    configurator.getMethod("initialize", String.class, ClassLoader.class, java.net.URI.class)
+                            .invoke(null, "grails-maven", loader, configuration.toURI());
+                    break;
+                case LOG4J:
+                    String configuratorClass = async ? "org.apache.log4j.xml.DOMConfigurator" : backend.configuratorClass;
+                    loader.loadClass(configuratorClass).getMethod("configure", URL.class).invoke(null, configuration);
+                    break;
+                default:
+                    break;
+            }
+        } catch (InvocationTargetException e) {
+            warn(backend, e.getTargetException());
+        } catch (Exception e) {
+            warn(backend, e);
+        } catch (LinkageError e) {
+            warn(backend, e);
+        }
+    }
+
+    private static void configureLogback(RootLoader loader, URL configuration) throws Exception {
+        Object loggerContext = loader.loadClass(Backend.LOGBACK.configuratorClass).getMethod("getILoggerFactory").invoke(null);
+        Class<?> contextClass = loader.loadClass("ch.qos.logback.core.Context");
+        if (!contextClass.isInstance(loggerContext)) {
+            throw new IllegalStateException("SLF4J is not bound to logback but to " + loggerContext.getClass().getName());
+        }
+        Class<?> joranClass = loader.loadClass("ch.qos.logback.classic.joran.JoranConfigurator");
+        Object configurator = joranClass.newInstance();
+        joranClass.getMethod("setContext", contextClass).invoke(configurator, loggerContext);
+        loggerContext.getClass().getMethod("reset").invoke(loggerContext);
+        joranClass.getMethod("doConfigure", URL.class).invoke(configurator, configuration);
+    }
+
+    private static void warn(Backend backend, Throwable e) {
+        System.out.println("Unable to configure " + backend.name().toLowerCase() + " logging for the Grails build: " + e);
+    }
+}
@@ -0,0 +1,168 @@
+/*
+ * Copyright 2007 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.grails.maven.plugin.tools;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * A cache of the classes Grails compiles from the sources of plugins, shared between builds.
+ *
+ * Grails compiles all plugins of a project together into the plugin class directories of the
+ * project work directory. Entries hold those directories and are keyed on the coordinates of
+ * all plugins of the project together with the rest of the class path they are compiled
+ * against, the Grails and Groovy versions and the Java version. A clean build
+ * restores them before Grails runs; as the copies keep the modification times of the
+ * originals, Grails finds the classes up to date and only compiles the application. Entries
+ * are written once, to a temporary directory that is renamed into place, so concurrent builds
+ * never see a partial entry.
+ *
+ * @since 2.4.7
+ */
+public class PluginClassesCache {
+
+    /**
+     * The directories of the project work directory Grails compiles plugins into.
+     */
+    static final List<String> DIRECTORIES = Collections.unmodifiableList(Arrays.asList(
+            "plugin-classes", "plugin-build-classes", "plugin-provided-classes"));
+
+    private final File cacheDir;
+
+    /**
+     * @param cacheDir The directory holding the entries
+     */
+    public PluginClassesCache(File cacheDir) {
+        this.cacheDir = cacheDir;
+    }
+
+    /**
+     * @param plugins The coordinates of the plugins of the project, in any order
+     * @param classpath The coordinates of the other dependencies of the project, in any order
+     * @param grailsVersion The Grails version of the project
+     * @param groovyVersion The Groovy version of the project
+     * @param javaVersion The specification version of the Java the plugins are compiled with
+     * @return The key of the entry for the project
+     */
+    public static String key(Collection<String> plugins, Collection<String> classpath, String grailsVersion, String groovyVersion, String javaVersion) {
+        final List<String> lines = new ArrayList<String>(plugins);
+        Collections.sort(lines);
+        final List<String> dependencies = new ArrayList<String>(classpath);
+        Collections.sort(dependencies);
+        for (String dependency : dependencies) {
+            lines.add("classpath:" + dependency);
+        }
+        lines.add("grails:" + grailsVersion);
+        lines.add("groovy:" + groovyVersion);
+        lines.add("java:" + javaVersion);
+        try {
+            final MessageDigest digest = MessageDigest.getInstance("SHA-1");
+            for (String line : lines) {
+                digest.update(line.getBytes("UTF-8"));
+                digest.update((byte) '\n');
+            }
+            final StringBuilder key = new StringBuilder();
+            for (byte b : digest.digest()) {
+                key.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+            }
+            return key.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Copies the entry into the project work directory, unless Grails compiled plugins there
+     * before.
+     *
+     * @param key The key of the entry
+     * @param projectWorkDir The project work directory
+     * @return Whether the entry was restored
+     */
+    public boolean restore(String key, File projectWorkDir) throws IOException {
+        final File entry = new File(cacheDir, key);
+        if (!entry.isDirectory()) {
+            return false;
+        }
+        for (String directory : DIRECTORIES) {
+            if (!isEmpty(new File(projectWorkDir, directory))) {
+                return false;
+            }
+        }
+        for (String directory : DIRECTORIES) {
+            final File cached = new File(entry, directory);
+            if (cached.isDirectory()) {
+                DirectorySync.sync(cached, new File(projectWorkDir, directory));
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Copies the plugin classes of the project work directory into a new entry. Existing
+     * entries are left alone.
+     *
+     * @param key The key of the entry
+     * @param projectWorkDir The project work directory
+     * @return Whether an entry was written
+     */
+    public boolean store(String key, File projectWorkDir) throws IOException {
+        final File entry = new File(cacheDir, key);
+        if (entry.isDirectory() || isEmpty(new File(projectWorkDir, DIRECTORIES.get(0)))) {
+            return false;
+        }
+
+        final File temp = new File(cacheDir, key + "-" + UUID.randomUUID() + ".tmp");
+        try {
+            for (String directory : DIRECTORIES) {
+                final File compiled = new File(projectWorkDir, directory);
+                if (compiled.isDirectory()) {
+                    DirectorySync.sync(compiled, new File(temp, directory));
+                }
+            }
+            // another build may have won the race, its entry is as good as ours
+            return temp.renameTo(entry);
+        } finally {
+            delete(temp);
+        }
+    }
+
+    private static boolean isEmpty(File dir) {
+        final String[] names = dir.list();
+        return names == null || names.length == 0;
+    }
+
+    private static void delete(File file) {
+        final File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+}
@@ -0,0 +1,163 @@
+/*
+ * Copyright 2007 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.grails.maven.plugin.tools;
+
+import groovy.lang.GroovyClassLoader;
+import org.codehaus.groovy.grails.io.support.FileSystemResource;
+import org.codehaus.groovy.grails.plugins.AstPluginDescriptorReader;
+import org.codehaus.groovy.grails.plugins.GrailsPluginInfo;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Caches the version read from plugin descriptors ({@code FooGrailsPlugin.groovy}), so that the
+ * descriptor is only parsed again when it changes.
+ *
+ * Entries are keyed on the descriptor's path and validated against its size and modification
+ * time. They live in memory for the lifetime of the JVM and, when a cache directory is given,
+ * on disk so that later builds of the same project skip the parse as well. All parsing shares a
+ * single class loader.
+ *
+ * @since 2.4.7
+ */
+public class PluginDescriptorCache {
+
+    static final String CACHE_FILE = "plugin-descriptor.properties";
+
+    private static final ConcurrentMap<String, Entry> ENTRIES = new ConcurrentHashMap<String, Entry>();
+
+    private static GroovyClassLoader classLoader;
+
+    private PluginDescriptorCache() {
+    }
+
+    /**
+     * Returns the version declared by the given plugin descriptor.
+     *
+     * @param descriptor The plugin descriptor
+     * @param cacheDir The directory holding the on-disk cache, or null to only cache in memory
+     * @return The version, or null if the descriptor doesn't declare one
+     * @throws IOException If the descriptor can't be read
+     */
+    public static String readVersion(File descriptor, File cacheDir) throws IOException {
+        final File file = descriptor.getCanonicalFile();
+        final String path = file.getPath();
+
+        Entry entry = ENTRIES.get(path);
+        if (entry != null && entry.matches(file)) {
+            return entry.version;
+        }
+
+        final File cacheFile = cacheDir != null ? new File(cacheDir, CACHE_FILE) : null;
+        if (cacheFile != null && cacheFile.isFile()) {
+            entry = readEntry(cacheFile, path);
+            if (entry != null && entry.matches(file)) {
+                ENTRIES.put(path, entry);
+                return entry.version;
+            }
+        }
+
+        // take size and time stamp before parsing, so a concurrent edit is picked up next time
+        final long length = file.length();
+        final long lastModified = file.lastModified();
+        entry = new Entry(length, lastModified, parseVersion(file));
+        ENTRIES.put(path, entry);
+        if (cacheFile != null) {
+            writeEntry(cacheFile, path, entry);
+        }
+        return entry.version;
+    }
+
+    /**
+     * Forgets all entries held in memory.
+     */
+    public static void clear() {
+        ENTRIES.clear();
+    }
+
+    private static synchronized String parseVersion(File descriptor) {
+        if (classLoader == null) {
+            classLoader = new GroovyClassLoader();
+        }
+        final AstPluginDescriptorReader reader = new AstPluginDescriptorReader(classLoader);
+        final GrailsPluginInfo info = reader.readPluginInfo(new FileSystemResource(descriptor));
+        return info.getVersion();
+    }
+
+    private static Entry readEntry(File cacheFile, String path) {
+        LockedFile lockedFile = null;
+        try {
+            lockedFile = LockedFile.open(cacheFile);
+            final Properties properties = lockedFile.readProperties();
+            if (!path.equals(properties.getProperty("path"))) {
+                return null;
+            }
+            return new Entry(Long.parseLong(properties.getProperty("length")),
+                    Long.parseLong(properties.getProperty("lastModified")),
+                    properties.getProperty("version"));
+        } catch (IOException e) {
+            return null;
+        } catch (NumberFormatException e) {
+            return null;
+        } finally {
+            if (lockedFile != null) {
+                lockedFile.close();
+            }
+        }
+    }
+
+    private static void writeEntry(File cacheFile, String path, Entry entry) {
+        final Properties properties = new Properties();
+        properties.setProperty("path", path);
+        properties.setProperty("length", String.valueOf(entry.length));
+        properties.setProperty("lastModified", String.valueOf(entry.lastModified));
+        if (entry.version != null) {
+            properties.setProperty("version", entry.version);
+        }
+
+        LockedFile lockedFile = null;
+        try {
+            lockedFile = LockedFile.open(cacheFile);
+            lockedFile.writeProperties(properties, "Plugin descriptor cache");
+        } catch (IOException e) {
+            // the cache is an optimisation only
+        } finally {
+            if (lockedFile != null) {
+                lockedFile.close();
+            }
+        }
+    }
+
+    private static class Entry {
+        final long length;
+        final long lastModified;
+        final String version;
+
+        Entry(long length, long lastModified, String version) {
+            this.length = length;
+            this.lastModified = lastModified;
+            this.version = version;
+        }
+
+        boolean matches(File file) {
+            return file.length() == length && file.lastModified() == lastModified;
+        }
+    }
+}
@@ -0,0 +1,108 @@
+/*
+ * Copyright 2007 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.grails.maven.plugin.tools;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * An immutable snapshot of a project's metadata (application.properties).
+ *
+ * @see GrailsServices#readProjectMetadata()
+ * @since 2.4.7
+ */
+public class ProjectMetadata {
+
+    public static final String APP_GRAILS_VERSION = "app.grails.version";
+    public static final String APP_VERSION = "app.version";
+    public static final String APP_NAME = "app.name";
+
+    private final File file;
+    private final boolean exists;
+    private final long length;
+    private final long lastModified;
+    private final Map<String, String> properties;
+
+    ProjectMetadata(File file, boolean exists, long length, long lastModified, Properties properties) {
+        this.file = file;
+        this.exists = exists;
+        this.length = length;
+        this.lastModified = lastModified;
+        final Map<String, String> copy = new LinkedHashMap<String, String>();
+        for (String name : properties.stringPropertyNames()) {
+            copy.put(name, properties.getProperty(name));
+        }
+        this.properties = Collections.unmodifiableMap(copy);
+    }
+
+    /**
+     * @return The metadata file
+     */
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * @return Whether the metadata file existed when the snapshot was taken
+     */
+    public boolean exists() {
+        return exists;
+    }
+
+    public String getProperty(String name) {
+        return properties.get(name);
+    }
+
+    /**
+     * @return All properties, as an unmodifiable map
+     */
+    public Map<String, String> getProperties() {
+        return properties;
+    }
+
+    public String getAppName() {
+        return getProperty(APP_NAME);
+    }
+
+    public String getAppVersion() {
+        return getProperty(APP_VERSION);
+    }
+
+    public String getAppGrailsVersion() {
+        return getProperty(APP_GRAILS_VERSION);
+    }
+
+    /**
+     * @return A new, mutable, descriptor holding the application settings of this snapshot
+     */
+    public GrailsProject toGrailsProject() {
+        final GrailsProject grailsProject = new GrailsProject();
+        grailsProject.setAppGrailsVersion(getAppGrailsVersion());
+        grailsProject.setAppName(getAppName());
+        grailsProject.setAppVersion(getAppVersion());
+        return grailsProject;
+    }
+
+    /**
+     * @return Whether the file on disk is still the one this snapshot was read from
+     */
+    boolean isCurrent() {
+        return file.isFile() == exists && file.length() == length && file.lastModified() == lastModified;
+    }
+}
@@ -0,0 +1,152 @@
+/*
+ * Copyright 2007 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.grails.maven.plugin.tools;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Holds the metadata of a project for every mojo of the build: the last snapshot read from
+ * application.properties and the changes staged since, which are written in one go by
+ * {@link #flush()}.
+ *
+ * There is one store per metadata file and JVM, so mojos of the same project share it no
+ * matter which {@link GrailsServices} instance they use.
+ *
+ * @since 2.4.7
+ */
+public class ProjectMetadataStore {
+
+    static final String METADATA_FILE = "application.properties";
+
+    private static final ConcurrentMap<File, ProjectMetadataStore> STORES = new ConcurrentHashMap<File, ProjectMetadataStore>();
+
+    private final File file;
+    private final Map<String, String> pending = new LinkedHashMap<String, String>();
+    private ProjectMetadata snapshot;
+
+    private ProjectMetadataStore(File file) {
+        this.file = file;
+    }
+
+    /**
+     * @param basedir The project directory
+     * @return The store shared by everyone working on the project
+     * @throws IOException If the project directory can't be resolved
+     */
+    public static ProjectMetadataStore forProject(File basedir) throws IOException {
+        final File file = new File(basedir, METADATA_FILE).getCanonicalFile();
+        ProjectMetadataStore store = STORES.get(file);
+        if (store == null) {
+            ProjectMetadataStore created = new ProjectMetadataStore(file);
+            store = STORES.putIfAbsent(file, created);
+            if (store == null) {
+                store = created;
+            }
+        }
+        return store;
+    }
+
+    /**
+     * Returns the current metadata. The file is only read again when it was changed on disk,
+     * for example by Grails itself; staged changes aren't part of the snapshot until flushed.
+     *
+     * @return The snapshot
+     * @throws IOException If the file exists but can't be read
+     */
+    public synchronized ProjectMetadata snapshot() throws IOException {
+        if (snapshot == null || !snapshot.isCurrent()) {
+            snapshot = load();
+        }
+        return snapshot;
+    }
+
+    /**
+     * Records a change to be written by the next {@link #flush()}.
+     *
+     * @param name The property name
+     * @param value The new value
+     */
+    public synchronized void stage(String name, String value) {
+        pending.put(name, value);
+    }
+
+    /**
+     * @return Whether there are changes that haven't been written yet
+     */
+    public synchronized boolean hasPendingChanges() {
+        return !pending.isEmpty();
+    }
+
+    /**
+     * Writes all staged changes with a single write, holding the lock on the file so that
+     * changes made concurrently by other builds are kept. Nothing is written if the file
+     * already contains the staged values.
+     *
+     * @return Whether the file was written
+     * @throws IOException If the file can't be read or written
+     */
+    public synchronized boolean flush() throws IOException {
+        if (pending.isEmpty()) {
+            return false;
+        }
+
+        LockedFile lockedFile = null;
+        try {
+            lockedFile = LockedFile.open(file);
+            final Properties properties = lockedFile.readProperties();
+            boolean modified = false;
+            for (Map.Entry<String, String> change : pending.entrySet()) {
+                if (!change.getValue().equals(properties.getProperty(change.getKey()))) {
+                    properties.setProperty(change.getKey(), change.getValue());
+                    modified = true;
+                }
+            }
+            if (modified) {
+                lockedFile.writeProperties(properties, "Grails Metadata file");
+            }
+            pending.clear();
+            snapshot = new ProjectMetadata(file, true, file.length(), file.lastModified(), properties);
+            return modified;
+        } finally {
+            if (lockedFile != null) {
+                lockedFile.close();
+            }
+        }
+    }
+
+    private ProjectMetadata load() throws IOException {
+        if (!file.isFile()) {
+            return new ProjectMetadata(file, false, 0L, 0L, new Properties());
+        }
+
+        LockedFile lockedFile = null;
+        try {
+            lockedFile = LockedFile.open(file);
+            final Properties properties = lockedFile.readProperties();
+            return new ProjectMetadata(file, true, file.length(), file.lastModified(), properties);
+        } finally {
+            if (lockedFile != null) {
+                lockedFile.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,141 @@
+/*
+ * Copyright 2007 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.grails.maven.plugin.tools;
+
+import org.apache.maven.artifact.Artifact;
+import org.apache.maven.project.MavenProject;
+
+import java.io.File;
+import java.io.FilenameFilter;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The Grails plugin modules of a reactor build, for using them as inline plugins in the modules
+ * depending on them instead of their packaged zip.
+ *
+ * @since 2.4.7
+ */
+public class ReactorPlugins {
+
+    private static final String DESCRIPTOR_SUFFIX = "GrailsPlugin.groovy";
+
+    private final Map<String, MavenProject> plugins = new LinkedHashMap<String, MavenProject>();
+
+    /**
+     * @param reactorProjects The projects of the build
+     */
+    public ReactorPlugins(Collection<MavenProject> reactorProjects) {
+        for (MavenProject reactorProject : reactorProjects) {
+            if ("grails-plugin".equals(reactorProject.getPackaging())) {
+                plugins.put(key(reactorProject.getGroupId(), reactorProject.getArtifactId(), reactorProject.getVersion()), reactorProject);
+            }
+        }
+    }
+
+    /**
+     * @param project A project of the build, with its dependencies resolved
+     * @return The plugin modules the project depends on, directly or not, by plugin name
+     */
+    public Map<String, MavenProject> getDependencies(MavenProject project) {
+        final Map<String, MavenProject> dependencies = new LinkedHashMap<String, MavenProject>();
+        for (Artifact artifact : project.getArtifacts()) {
+            final MavenProject plugin = plugins.get(key(artifact.getGroupId(), artifact.getArtifactId(), artifact.getBaseVersion()));
+            if (plugin != null && plugin != project) {
+                dependencies.put(getPluginName(plugin), plugin);
+            }
+        }
+        return dependencies;
+    }
+
+    /**
+     * @param project A project of the build, with its dependencies resolved
+     * @return The files of the packaged plugin modules the project depends on, and their class
+     * directories, which the build resolves them to before they are packaged
+     */
+    public Set<File> getPackages(MavenProject project) {
+        final Set<File> packages = new HashSet<File>();
+        final Collection<MavenProject> dependencies = getDependencies(project).values();
+        for (Artifact artifact : project.getArtifacts()) {
+            for (MavenProject plugin : dependencies) {
+                if (artifact.getFile() != null && isSameArtifact(artifact, plugin)) {
+                    packages.add(artifact.getFile());
+                }
+            }
+        }
+        for (MavenProject plugin : dependencies) {
+            if (plugin.getArtifact() != null && plugin.getArtifact().getFile() != null) {
+                packages.add(plugin.getArtifact().getFile());
+            }
+            for (Artifact attached : plugin.getAttachedArtifacts()) {
+                if (attached.getFile() != null) {
+                    packages.add(attached.getFile());
+                }
+            }
+            if (plugin.getBuild() != null && plugin.getBuild().getOutputDirectory() != null) {
+                packages.add(new File(plugin.getBuild().getOutputDirectory()));
+            }
+        }
+        return packages;
+    }
+
+    /**
+     * @param files Dependency files
+     * @param packages The files to leave out, see {@link #getPackages(MavenProject)}
+     * @return The files without the packages
+     */
+    public static List<File> withoutPackages(Collection<File> files, Set<File> packages) {
+        final List<File> remaining = new ArrayList<File>(files.size());
+        for (File file : files) {
+            if (!packages.contains(file)) {
+                remaining.add(file);
+            }
+        }
+        return remaining;
+    }
+
+    /**
+     * @param plugin A Grails plugin project
+     * @return The name Grails knows the plugin by, taken from its descriptor, or its artifact id
+     * if it has none
+     */
+    public static String getPluginName(MavenProject plugin) {
+        final String[] descriptors = plugin.getBasedir() != null ? plugin.getBasedir().list(new FilenameFilter() {
+            public boolean accept(File dir, String name) {
+                return name.endsWith(DESCRIPTOR_SUFFIX) && name.length() > DESCRIPTOR_SUFFIX.length();
+            }
+        }) : null;
+        if (descriptors == null || descriptors.length != 1) {
+            return plugin.getArtifactId();
+        }
+        final String className = descriptors[0].substring(0, descriptors[0].length() - ".groovy".length());
+        return DefaultGrailsServices.getLowerCaseHyphenSeparatedName(DefaultGrailsServices.getLogicalName(className, "GrailsPlugin"));
+    }
+
+    private static boolean isSameArtifact(Artifact artifact, MavenProject project) {
+        return artifact.getGroupId().equals(project.getGroupId()) && artifact.getArtifactId().equals(project.getArtifactId())
+                && artifact.getBaseVersion().equals(project.getVersion());
+    }
+
+    private static String key(String groupId, String artifactId, String version) {
+        return groupId + ":" + artifactId + ":" + version;
+    }
+}
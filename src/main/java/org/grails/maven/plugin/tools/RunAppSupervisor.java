@@ -0,0 +1,212 @@
+/*
+ * Copyright 2007 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.grails.maven.plugin.tools;
+
+import java.io.*;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.Callable;
+
+/**
+ * Restarts run-app inside the JVM running it. The running application is stopped through the
+ * {@code .kill-run-app} file Grails watches, and launched again with a new launcher. Grails
+ * keeps its settings, holders and meta classes in static state of the build class loader, so
+ * each launch gets a new one, and the system properties are reset to those the JVM had before
+ * the first launch. The JVM, with its compiled code and the class path index, stays warm.
+ *
+ * Restarts are requested by typing {@code r} on the console, or by changes pushed by a
+ * {@link ChangeChannel} to files reloading can't handle, such as domain classes or
+ * {@code resources.groovy}. Typing {@code q} stops the application.
+ *
+ * @since 2.4.7
+ */
+public class RunAppSupervisor {
+
+    /**
+     * The file Grails checks for to stop a running application.
+     */
+    public static final String KILL_FILE = ".kill-run-app";
+
+    /**
+     * Directories, relative to the project, whose files require a restart when changed.
+     */
+    public static final List<String> RESTART_DIRECTORIES = Collections.unmodifiableList(Arrays.asList(
+            "grails-app/domain/", "grails-app/conf/spring/"));
+
+    /**
+     * Files in {@code grails-app/conf} that require a restart when changed.
+     */
+    public static final List<String> RESTART_CONFIG_FILES = Collections.unmodifiableList(Arrays.asList(
+            "Config.groovy", "DataSource.groovy", "BootStrap.groovy"));
+
+    private final File baseDir;
+    private final List<File> killFiles;
+    private boolean restartRequested;
+
+    /**
+     * @param baseDir The project directory
+     * @param projectWorkDir The project work directory, which some Grails versions keep the kill file in
+     */
+    public RunAppSupervisor(File baseDir, File projectWorkDir) {
+        this.baseDir = baseDir.getAbsoluteFile();
+        this.killFiles = projectWorkDir != null
+                ? Arrays.asList(new File(baseDir, KILL_FILE), new File(projectWorkDir, KILL_FILE))
+                : Collections.singletonList(new File(baseDir, KILL_FILE));
+    }
+
+    /**
+     * Launches the application until it stops without a restart being requested.
+     *
+     * @param launch Launches run-app once and returns its exit code
+     * @return The exit code of the last launch
+     */
+    public int run(Callable<Integer> launch) throws Exception {
+        final Properties baseline = (Properties) System.getProperties().clone();
+        while (true) {
+            deleteKillFiles();
+            final int exit;
+            try {
+                exit = launch.call();
+            } finally {
+                final Properties properties = new Properties();
+                properties.putAll(baseline);
+                System.setProperties(properties);
+            }
+            synchronized (this) {
+                if (!restartRequested) {
+                    deleteKillFiles();
+                    return exit;
+                }
+                restartRequested = false;
+            }
+            System.out.println("Restarting the application...");
+        }
+    }
+
+    /**
+     * Stops the running application and launches it again.
+     *
+     * @param reason Why, shown on the console
+     */
+    public synchronized void requestRestart(String reason) {
+        if (restartRequested) {
+            return;
+        }
+        System.out.println(reason + ", restarting the application.");
+        restartRequested = true;
+        writeKillFiles();
+    }
+
+    /**
+     * Stops the running application for good.
+     */
+    public synchronized void requestStop() {
+        restartRequested = false;
+        writeKillFiles();
+    }
+
+    /**
+     * Reads commands from the console on a daemon thread.
+     *
+     * @param in The console
+     */
+    public void startConsole(final InputStream in) {
+        final Thread thread = new Thread(new Runnable() {
+            public void run() {
+                readCommands(in);
+            }
+        }, "grails-run-app-console");
+        thread.setDaemon(true);
+        thread.start();
+        System.out.println("Type 'r' and Enter to restart the application, 'q' and Enter to stop it.");
+    }
+
+    void readCommands(InputStream in) {
+        final BufferedReader reader = new BufferedReader(new InputStreamReader(in));
+        try {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                final String command = line.trim();
+                if ("r".equals(command) || "restart".equals(command)) {
+                    requestRestart("Restart requested");
+                } else if ("q".equals(command) || "quit".equals(command) || "stop".equals(command)) {
+                    requestStop();
+                }
+            }
+        } catch (IOException e) {
+            // no console
+        }
+    }
+
+    /**
+     * @param reloader Handles the changes reloading can deal with
+     * @return A listener restarting the application for changes that need a restart, and passing
+     * on the others
+     */
+    public SourceWatcher.Listener restartOrReload(final SourceWatcher.Listener reloader) {
+        return new SourceWatcher.Listener() {
+            public void changed(Map<File, SourceWatcher.Change> changes) {
+                for (File file : changes.keySet()) {
+                    if (needsRestart(file)) {
+                        requestRestart(file.getName() + " changed");
+                        return;
+                    }
+                }
+                reloader.changed(changes);
+            }
+        };
+    }
+
+    /**
+     * @param file A changed file
+     * @return Whether the change can only be applied by restarting the application
+     */
+    public boolean needsRestart(File file) {
+        final String base = baseDir.getPath().replace(File.separatorChar, '/') + "/";
+        final String path = file.getAbsolutePath().replace(File.separatorChar, '/');
+        if (!path.startsWith(base)) {
+            return false;
+        }
+        final String relative = path.substring(base.length());
+        for (String directory : RESTART_DIRECTORIES) {
+            if (relative.startsWith(directory)) {
+                return true;
+            }
+        }
+        return relative.startsWith("grails-app/conf/") && relative.indexOf('/', "grails-app/conf/".length()) < 0
+                && RESTART_CONFIG_FILES.contains(file.getName());
+    }
+
+    private void writeKillFiles() {
+        for (File killFile : killFiles) {
+            try {
+                killFile.getParentFile().mkdirs();
+                killFile.createNewFile();
+            } catch (IOException e) {
+                System.out.println("Unable to create " + killFile + ": " + e.getMessage());
+            }
+        }
+    }
+
+    private void deleteKillFiles() {
+        for (File killFile : killFiles) {
+            killFile.delete();
+        }
+    }
+}
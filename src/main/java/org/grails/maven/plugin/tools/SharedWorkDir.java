@@ -0,0 +1,273 @@
+/*
+ * Copyright 2007 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.grails.maven.plugin.tools;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileLock;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * A Grails work directory shared by the builds on a machine, with one private overlay per
+ * build that Grails actually works in.
+ *
+ * Before a goal, the shared base is copied into the overlay ({@link #checkout()}); only what
+ * changed since the last checkout is copied. After a successful goal, the files the goal
+ * created or updated are copied back ({@link #publish()}), each replaced atomically; files are
+ * never deleted from the base, as other builds may use them. Checkouts hold a shared lock on
+ * the base and publishing an exclusive one, both against other threads of this JVM and other
+ * processes, so builds never see a base that is being written. Failed goals publish nothing.
+ *
+ * The per-project directories Grails keeps in {@code projects} are left out, as the overlay
+ * belongs to a single project anyway.
+ *
+ * @since 2.4.7
+ */
+public class SharedWorkDir {
+
+    static final String LOCK_FILE = ".grails-maven.lock";
+
+    private static final Set<String> EXCLUDED = Collections.unmodifiableSet(new HashSet<String>(Arrays.asList("projects", LOCK_FILE)));
+
+    private static final ConcurrentMap<String, Coordinator> COORDINATORS = new ConcurrentHashMap<String, Coordinator>();
+
+    private final File base;
+    private final File overlay;
+
+    /**
+     * @param base The shared work directory
+     * @param overlay The work directory of this build
+     */
+    public SharedWorkDir(File base, File overlay) {
+        this.base = base;
+        this.overlay = overlay;
+    }
+
+    /**
+     * Makes the overlay a copy of the base.
+     *
+     * @return The number of files copied
+     */
+    public int checkout() throws IOException {
+        final Coordinator coordinator = coordinatorFor(base);
+        coordinator.lockShared();
+        try {
+            if (!overlay.isDirectory() && !overlay.mkdirs()) {
+                throw new IOException("Unable to create directory " + overlay);
+            }
+            int copied = 0;
+            final Set<String> names = new HashSet<String>();
+            for (File file : list(base)) {
+                if (EXCLUDED.contains(file.getName())) {
+                    continue;
+                }
+                names.add(file.getName());
+                final File copy = new File(overlay, file.getName());
+                if (file.isDirectory()) {
+                    copied += DirectorySync.sync(file, copy).getCopied();
+                } else if (!copy.isFile() || copy.length() != file.length() || copy.lastModified() != file.lastModified()) {
+                    delete(copy);
+                    Files.copy(file.toPath(), copy.toPath(), StandardCopyOption.COPY_ATTRIBUTES);
+                    copied++;
+                }
+            }
+            // left behind by a goal that failed
+            for (File file : list(overlay)) {
+                if (!EXCLUDED.contains(file.getName()) && !names.contains(file.getName())) {
+                    delete(file);
+                }
+            }
+            return copied;
+        } finally {
+            coordinator.unlockShared();
+        }
+    }
+
+    /**
+     * Copies the files of the overlay that are missing from the base, or newer than their copy
+     * there, into the base.
+     *
+     * @return The number of files published
+     */
+    public int publish() throws IOException {
+        final Coordinator coordinator = coordinatorFor(base);
+        coordinator.lockExclusive();
+        try {
+            int published = 0;
+            for (File file : list(overlay)) {
+                if (!EXCLUDED.contains(file.getName())) {
+                    published += publish(file, new File(base, file.getName()));
+                }
+            }
+            return published;
+        } finally {
+            coordinator.unlockExclusive();
+        }
+    }
+
+    private int publish(File file, File target) throws IOException {
+        if (file.isDirectory()) {
+            if (!target.isDirectory() && !target.mkdirs()) {
+                throw new IOException("Unable to create directory " + target);
+            }
+            int published = 0;
+            for (File child : list(file)) {
+                published += publish(child, new File(target, child.getName()));
+            }
+            return published;
+        }
+
+        if (target.isFile() && (file.lastModified() <= target.lastModified()
+                || (file.length() == target.length() && DirectorySync.sameContents(file, target)))) {
+            return 0;
+        }
+        final File temp = new File(target.getParentFile(), "." + target.getName() + "-" + UUID.randomUUID() + ".tmp");
+        try {
+            Files.copy(file.toPath(), temp.toPath(), StandardCopyOption.COPY_ATTRIBUTES);
+            Files.move(temp.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            temp.delete();
+        }
+        return 1;
+    }
+
+    private static File[] list(File dir) {
+        final File[] files = dir.listFiles();
+        return files != null ? files : new File[0];
+    }
+
+    private static void delete(File file) throws IOException {
+        for (File child : list(file)) {
+            delete(child);
+        }
+        if (!file.delete() && file.exists()) {
+            throw new IOException("Unable to delete " + file);
+        }
+    }
+
+    private static Coordinator coordinatorFor(File base) throws IOException {
+        final File lockFile = new File(base.getCanonicalFile(), LOCK_FILE);
+        final String key = lockFile.getPath();
+        Coordinator coordinator = COORDINATORS.get(key);
+        if (coordinator == null) {
+            final Coordinator created = new Coordinator(lockFile);
+            coordinator = COORDINATORS.putIfAbsent(key, created);
+            if (coordinator == null) {
+                coordinator = created;
+            }
+        }
+        return coordinator;
+    }
+
+    /**
+     * Combines a read-write lock for the threads of this JVM with a file lock for other
+     * processes. The JVM can hold only one file lock on a file, so the shared one is held for
+     * as long as any thread holds the read lock.
+     */
+    private static class Coordinator {
+        private final File lockFile;
+        private final ReentrantReadWriteLock jvmLock = new ReentrantReadWriteLock();
+        private int readers;
+        private RandomAccessFile file;
+        private FileLock fileLock;
+
+        Coordinator(File lockFile) {
+            this.lockFile = lockFile;
+        }
+
+        void lockShared() throws IOException {
+            jvmLock.readLock().lock();
+            try {
+                synchronized (this) {
+                    if (readers == 0) {
+                        lockFile(true);
+                    }
+                    readers++;
+                }
+            } catch (IOException e) {
+                jvmLock.readLock().unlock();
+                throw e;
+            }
+        }
+
+        void unlockShared() {
+            synchronized (this) {
+                if (--readers == 0) {
+                    unlockFile();
+                }
+            }
+            jvmLock.readLock().unlock();
+        }
+
+        void lockExclusive() throws IOException {
+            jvmLock.writeLock().lock();
+            try {
+                lockFile(false);
+            } catch (IOException e) {
+                jvmLock.writeLock().unlock();
+                throw e;
+            }
+        }
+
+        void unlockExclusive() {
+            unlockFile();
+            jvmLock.writeLock().unlock();
+        }
+
+        private void lockFile(boolean shared) throws IOException {
+            final File parent = lockFile.getParentFile();
+            if (!parent.isDirectory() && !parent.mkdirs() && !parent.isDirectory()) {
+                throw new IOException("Unable to create directory " + parent);
+            }
+            file = new RandomAccessFile(lockFile, "rw");
+            try {
+                fileLock = file.getChannel().lock(0L, Long.MAX_VALUE, shared);
+            } catch (IOException e) {
+                unlockFile();
+                throw e;
+            }
+        }
+
+        private void unlockFile() {
+            try {
+                if (fileLock != null) {
+                    fileLock.release();
+                }
+            } catch (IOException e) {
+                // released with the file
+            }
+            try {
+                if (file != null) {
+                    file.close();
+                }
+            } catch (IOException e) {
+                // ignore
+            }
+            fileLock = null;
+            file = null;
+        }
+    }
+}
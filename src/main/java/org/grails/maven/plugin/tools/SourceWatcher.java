@@ -0,0 +1,196 @@
+/*
+ * Copyright 2007 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.grails.maven.plugin.tools;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+import static java.nio.file.StandardWatchEventKinds.*;
+
+/**
+ * Watches source directories with a {@link WatchService} and reports changes in batches: a
+ * batch is delivered once no further change arrived for the debounce interval, so saving many
+ * files at once (or an IDE writing a file in several steps) results in a single notification.
+ *
+ * @since 2.4.7
+ */
+public class SourceWatcher implements Closeable {
+
+    /**
+     * What happened to a file within a batch.
+     */
+    public enum Change {
+        CREATED, MODIFIED, DELETED
+    }
+
+    /**
+     * Receives the batches of changes.
+     */
+    public interface Listener {
+        /**
+         * @param changes The changed files in the order they were first seen
+         */
+        void changed(Map<File, Change> changes);
+    }
+
+    private final WatchService watchService;
+    private final Map<WatchKey, Path> keys = new HashMap<WatchKey, Path>();
+    private final long debounceMillis;
+    private final Listener listener;
+    private Thread thread;
+
+    /**
+     * @param roots The directories to watch, including their sub directories; missing ones are skipped
+     * @param debounceMillis How long to wait for further changes before delivering a batch
+     * @param listener Receives the batches on the watcher thread
+     */
+    public SourceWatcher(Collection<File> roots, long debounceMillis, Listener listener) throws IOException {
+        this.watchService = FileSystems.getDefault().newWatchService();
+        this.debounceMillis = debounceMillis;
+        this.listener = listener;
+        for (File root : roots) {
+            if (root.isDirectory()) {
+                registerAll(root.toPath());
+            }
+        }
+    }
+
+    /**
+     * Starts watching on a daemon thread.
+     */
+    public synchronized void start() {
+        if (thread != null) {
+            return;
+        }
+        thread = new Thread(new Runnable() {
+            public void run() {
+                try {
+                    watch();
+                } catch (InterruptedException e) {
+                    // closed
+                } catch (ClosedWatchServiceException e) {
+                    // closed
+                }
+            }
+        }, "grails-source-watcher");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Stops watching. Pending changes are discarded.
+     */
+    public synchronized void close() throws IOException {
+        if (thread != null) {
+            thread.interrupt();
+            thread = null;
+        }
+        watchService.close();
+    }
+
+    private void watch() throws InterruptedException {
+        final Map<File, Change> pending = new LinkedHashMap<File, Change>();
+        long lastEvent = 0;
+        while (!Thread.currentThread().isInterrupted()) {
+            final WatchKey key;
+            if (pending.isEmpty()) {
+                key = watchService.take();
+            } else {
+                final long remaining = lastEvent + debounceMillis - System.currentTimeMillis();
+                key = remaining > 0 ? watchService.poll(remaining, TimeUnit.MILLISECONDS) : null;
+            }
+
+            if (key == null) {
+                final Map<File, Change> batch = new LinkedHashMap<File, Change>(pending);
+                pending.clear();
+                if (!batch.isEmpty()) {
+                    listener.changed(batch);
+                }
+                continue;
+            }
+
+            final Path dir = keys.get(key);
+            for (WatchEvent<?> event : key.pollEvents()) {
+                if (event.kind() == OVERFLOW || dir == null) {
+                    continue;
+                }
+                final Path path = dir.resolve((Path) event.context());
+                if (event.kind() == ENTRY_CREATE && Files.isDirectory(path, LinkOption.NOFOLLOW_LINKS)) {
+                    // files created before the registration completed are reported as well
+                    for (Path file : registerAll(path)) {
+                        record(pending, file.toFile(), Change.CREATED);
+                    }
+                } else if (!Files.isDirectory(path, LinkOption.NOFOLLOW_LINKS)) {
+                    record(pending, path.toFile(), event.kind() == ENTRY_CREATE ? Change.CREATED
+                            : event.kind() == ENTRY_DELETE ? Change.DELETED : Change.MODIFIED);
+                }
+            }
+            if (!key.reset()) {
+                keys.remove(key);
+            }
+            lastEvent = System.currentTimeMillis();
+        }
+    }
+
+    /**
+     * Merges a change into the pending batch, e.g. a file created and then modified counts as
+     * created, and a file created and deleted again is dropped.
+     */
+    static void record(Map<File, Change> pending, File file, Change change) {
+        final Change previous = pending.get(file);
+        if (previous == null) {
+            pending.put(file, change);
+        } else if (previous == Change.CREATED && change == Change.DELETED) {
+            pending.remove(file);
+        } else if (previous == Change.DELETED && change == Change.CREATED) {
+            pending.put(file, Change.MODIFIED);
+        } else if (previous != Change.CREATED) {
+            pending.put(file, change);
+        }
+    }
+
+    private List<Path> registerAll(Path root) {
+        final List<Path> files = new ArrayList<Path>();
+        try {
+            Files.walkFileTree(root, new SimpleFileVisitor<Path>() {
+                @Override
+                public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+                    keys.put(dir.register(watchService, ENTRY_CREATE, ENTRY_MODIFY, ENTRY_DELETE), dir);
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                    files.add(file);
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFileFailed(Path file, IOException exc) {
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        } catch (IOException e) {
+            // the directory went away again
+        }
+        return files;
+    }
+}
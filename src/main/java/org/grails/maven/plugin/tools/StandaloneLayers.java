@@ -0,0 +1,263 @@
+/*
+ * Copyright 2007 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.grails.maven.plugin.tools;
+
+import java.io.*;
+import java.util.*;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipInputStream;
+
+/**
+ * Splits a standalone application jar into layers that change at different rates, so that
+ * container images and artifact stores can share the unchanged layers between releases:
+ *
+ * <ul>
+ *     <li>{@code dependencies}: library jars, and the launcher and server classes outside the
+ *     application</li>
+ *     <li>{@code plugins}: Grails plugin jars and plugin resources</li>
+ *     <li>{@code application}: the application classes, views, resources and configuration</li>
+ * </ul>
+ *
+ * Each layer is extracted into a directory of its own with fixed time stamps, and a
+ * {@code META-INF/layers.idx} index listing the entries of every layer is added to the
+ * application layer.
+ *
+ * The jars of Grails 2's {@code build-standalone} hold the launcher and server classes and the
+ * application as a nested {@code embedded.war}. Nested WARs are split as well: their entries
+ * go below a directory named like the WAR in each layer, and {@link #assemble} packs them into
+ * a WAR again, in layer order, when the jar is written back.
+ *
+ * @since 2.4.7
+ */
+public class StandaloneLayers {
+
+    public static final String DEPENDENCIES = "dependencies";
+    public static final String PLUGINS = "plugins";
+    public static final String APPLICATION = "application";
+
+    /** The layers, from the least to the most frequently changing. */
+    public static final List<String> LAYERS = Collections.unmodifiableList(Arrays.asList(DEPENDENCIES, PLUGINS, APPLICATION));
+
+    static final String INDEX = "META-INF/layers.idx";
+
+    /** 1980-02-01T00:00:00Z, matching the time stamp of the entries written by {@link WarAssembler}. */
+    static final long REPRODUCIBLE_TIME = 318211200000L;
+
+    private final Set<String> pluginJarNames;
+
+    /**
+     * @param pluginJarNames The file names of the jars that are Grails plugins
+     */
+    public StandaloneLayers(Collection<String> pluginJarNames) {
+        this.pluginJarNames = new HashSet<String>(pluginJarNames);
+    }
+
+    /**
+     * @param name The name of an entry of the standalone jar
+     * @return The layer the entry belongs to
+     */
+    public String layerOf(String name) {
+        final String fileName = name.substring(name.lastIndexOf('/', name.length() - 2) + 1);
+        if (name.endsWith(".jar")) {
+            return pluginJarNames.contains(fileName) || fileName.startsWith("grails-plugin-") ? PLUGINS : DEPENDENCIES;
+        }
+        if (name.startsWith("plugins/") || name.startsWith("WEB-INF/plugins/")) {
+            return PLUGINS;
+        }
+        if (name.startsWith("WEB-INF/") || name.startsWith("META-INF/") || !name.endsWith(".class")) {
+            return APPLICATION;
+        }
+        // classes outside the web application belong to the launcher and the embedded server
+        return DEPENDENCIES;
+    }
+
+    /**
+     * Extracts the jar into one directory per layer below the given directory, replacing
+     * whatever was there.
+     *
+     * @param jar The standalone jar
+     * @param layersDir The directory receiving the layer directories
+     * @return The layer directories, in {@link #LAYERS} order
+     * @throws IOException If the jar can't be read or the layers can't be written
+     */
+    public List<File> extract(File jar, File layersDir) throws IOException {
+        final Map<String, List<String>> index = new LinkedHashMap<String, List<String>>();
+        final List<File> layerDirs = new ArrayList<File>();
+        for (String layer : LAYERS) {
+            index.put(layer, new ArrayList<String>());
+            final File layerDir = new File(layersDir, layer);
+            deleteRecursively(layerDir);
+            if (!layerDir.mkdirs()) {
+                throw new IOException("Unable to create directory " + layerDir);
+            }
+            layerDirs.add(layerDir);
+        }
+
+        final ZipFile zipFile = new ZipFile(jar);
+        try {
+            final byte[] buffer = new byte[64 * 1024];
+            for (Enumeration<? extends ZipEntry> entries = zipFile.entries(); entries.hasMoreElements();) {
+                final ZipEntry entry = entries.nextElement();
+                final String name = entry.getName();
+                if (entry.isDirectory() || name.equals(INDEX)) {
+                    continue;
+                }
+                final InputStream in = zipFile.getInputStream(entry);
+                try {
+                    if (isNestedWar(name)) {
+                        extractWar(name, new ZipInputStream(in), layersDir, index, buffer);
+                    } else {
+                        extractEntry(name, layerOf(name), in, layersDir, index, buffer);
+                    }
+                } finally {
+                    in.close();
+                }
+            }
+        } finally {
+            zipFile.close();
+        }
+
+        writeIndex(index, new File(new File(layersDir, APPLICATION), INDEX));
+        for (File layerDir : layerDirs) {
+            setReproducibleTime(layerDir);
+        }
+        return layerDirs;
+    }
+
+    /**
+     * Writes the layers back into a jar, packing the nested WARs split by {@link #extract} again.
+     *
+     * @param layersDir The directory holding the layer directories
+     * @param assembler The assembler writing the jar and the nested WARs
+     * @param jar The jar to write, replaced if it exists
+     * @throws IOException If the layers can't be read or the jar can't be written
+     */
+    public void assemble(File layersDir, WarAssembler assembler, File jar) throws IOException {
+        final List<File> layerDirs = new ArrayList<File>();
+        final Set<String> nestedWars = new TreeSet<String>();
+        for (String layer : LAYERS) {
+            final File layerDir = new File(layersDir, layer);
+            layerDirs.add(layerDir);
+            final File[] children = layerDir.listFiles();
+            if (children != null) {
+                for (File child : children) {
+                    if (child.isDirectory() && isNestedWar(child.getName())) {
+                        nestedWars.add(child.getName());
+                    }
+                }
+            }
+        }
+
+        // not a layer, only holds the packed WARs while the jar is written
+        final File warsDir = new File(layersDir, ".nested-wars");
+        deleteRecursively(warsDir);
+        try {
+            if (!nestedWars.isEmpty()) {
+                if (!warsDir.mkdirs()) {
+                    throw new IOException("Unable to create directory " + warsDir);
+                }
+                for (String war : nestedWars) {
+                    final List<File> warDirs = new ArrayList<File>();
+                    for (File layerDir : layerDirs) {
+                        if (new File(layerDir, war).isDirectory()) {
+                            warDirs.add(new File(layerDir, war));
+                        }
+                    }
+                    assembler.assemble(warDirs, new File(warsDir, war));
+                }
+                layerDirs.add(warsDir);
+            }
+            assembler.assemble(layerDirs, nestedWars, jar);
+        } finally {
+            deleteRecursively(warsDir);
+        }
+    }
+
+    /**
+     * @return Whether the entry of the standalone jar is a WAR nested in it
+     */
+    private static boolean isNestedWar(String name) {
+        return name.endsWith(".war") && name.indexOf('/') < 0;
+    }
+
+    private void extractWar(String war, ZipInputStream in, File layersDir, Map<String, List<String>> index, byte[] buffer) throws IOException {
+        ZipEntry entry;
+        while ((entry = in.getNextEntry()) != null) {
+            if (!entry.isDirectory()) {
+                extractEntry(war + "/" + entry.getName(), layerOf(entry.getName()), in, layersDir, index, buffer);
+            }
+        }
+    }
+
+    private static void extractEntry(String name, String layer, InputStream in, File layersDir, Map<String, List<String>> index, byte[] buffer) throws IOException {
+        final File layerDir = new File(layersDir, layer);
+        final File target = new File(layerDir, name);
+        if (!target.getCanonicalPath().startsWith(layerDir.getCanonicalPath() + File.separator)) {
+            throw new IOException("Entry " + name + " is outside of the jar");
+        }
+        index.get(layer).add(name);
+        target.getParentFile().mkdirs();
+        final OutputStream out = new FileOutputStream(target);
+        try {
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+        } finally {
+            out.close();
+        }
+    }
+
+    private static void writeIndex(Map<String, List<String>> index, File file) throws IOException {
+        file.getParentFile().mkdirs();
+        final Writer out = new OutputStreamWriter(new FileOutputStream(file), "UTF-8");
+        try {
+            for (Map.Entry<String, List<String>> layer : index.entrySet()) {
+                out.write("- \"" + layer.getKey() + "\":\n");
+                final List<String> names = new ArrayList<String>(layer.getValue());
+                Collections.sort(names);
+                for (String name : names) {
+                    out.write("  - \"" + name + "\"\n");
+                }
+            }
+        } finally {
+            out.close();
+        }
+    }
+
+    private static void setReproducibleTime(File file) {
+        final File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                setReproducibleTime(child);
+            }
+        }
+        file.setLastModified(REPRODUCIBLE_TIME);
+    }
+
+    private static void deleteRecursively(File file) throws IOException {
+        final File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                deleteRecursively(child);
+            }
+        }
+        if (!file.delete() && file.exists()) {
+            throw new IOException("Unable to delete " + file);
+        }
+    }
+}
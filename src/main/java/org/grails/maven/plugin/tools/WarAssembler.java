@@ -0,0 +1,397 @@
+/*
+ * Copyright 2007 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.grails.maven.plugin.tools;
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+/**
+ * Builds a WAR from the exploded application Grails stages, compressing entries in parallel.
+ *
+ * Entries that are already compressed (nested jars, archives and images) are stored as-is;
+ * everything else is deflated at the configured level on a pool of worker threads while a
+ * single writer appends the results in order. Entries are sorted and carry a fixed time stamp,
+ * so the same staging directory always produces a byte-identical archive.
+ *
+ * Archives needing ZIP64 extensions (more than 65535 entries or 4GB) aren't supported.
+ *
+ * @since 2.4.7
+ */
+public class WarAssembler {
+
+    private static final String MANIFEST = "META-INF/MANIFEST.MF";
+
+    private static final String[] STORED_EXTENSIONS = {
+            ".jar", ".zip", ".war", ".gz", ".png", ".jpg", ".jpeg", ".gif"
+    };
+
+    /** 1980-02-01 00:00, the earliest date all zip tools agree on. */
+    private static final int DOS_DATE = (2 << 5) | 1;
+    private static final int DOS_TIME = 0;
+
+    private static final int METHOD_STORED = 0;
+    private static final int METHOD_DEFLATED = 8;
+    private static final int UTF8_FLAG = 1 << 11;
+    private static final long MAX_SIZE = 0xFFFFFFFFL;
+    private static final int MAX_ENTRIES = 0xFFFF;
+
+    private final int compressionLevel;
+    private final int threads;
+
+    /**
+     * @param compressionLevel The deflate level, 0-9, or -1 for the default
+     * @param threads The number of compressing threads, or 0 for one per processor
+     */
+    public WarAssembler(int compressionLevel, int threads) {
+        if (compressionLevel < -1 || compressionLevel > 9) {
+            throw new IllegalArgumentException("Invalid compression level " + compressionLevel);
+        }
+        this.compressionLevel = compressionLevel;
+        this.threads = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+    }
+
+    /**
+     * Writes the contents of the staging directory to the archive.
+     *
+     * @param stagingDir The exploded application
+     * @param archive The WAR to write, replaced if it exists
+     * @throws IOException If a file can't be read or the archive can't be written
+     */
+    public void assemble(File stagingDir, File archive) throws IOException {
+        assemble(Collections.singletonList(stagingDir), archive);
+    }
+
+    /**
+     * Writes the contents of several directories to one archive, one directory after the other,
+     * so that content that rarely changes can be placed at the start of the archive.
+     *
+     * @param roots The directories to add, in order
+     * @param archive The archive to write, replaced if it exists
+     * @throws IOException If a file can't be read or the archive can't be written
+     */
+    public void assemble(List<File> roots, File archive) throws IOException {
+        assemble(roots, Collections.<String>emptySet(), archive);
+    }
+
+    /**
+     * Writes the contents of several directories to one archive, one directory after the other,
+     * leaving out the given directories.
+     *
+     * @param roots The directories to add, in order
+     * @param excludedDirectories The paths, relative to each root, of the directories to leave out
+     * @param archive The archive to write, replaced if it exists
+     * @throws IOException If a file can't be read or the archive can't be written
+     */
+    public void assemble(List<File> roots, Set<String> excludedDirectories, File archive) throws IOException {
+        for (File root : roots) {
+            if (!root.isDirectory()) {
+                throw new FileNotFoundException("Staging directory " + root + " does not exist");
+            }
+        }
+        final Map<String, File> entries = listEntries(roots, excludedDirectories);
+        if (entries.size() > MAX_ENTRIES) {
+            throw new IOException("Too many entries (" + entries.size() + ") for an archive without ZIP64 support");
+        }
+
+        final ExecutorService executor = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "grails-war-assembler");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        final CountingOutputStream out = new CountingOutputStream(new BufferedOutputStream(new FileOutputStream(archive), 64 * 1024));
+        try {
+            // compress a bounded number of entries ahead of the writer
+            final int window = threads * 4;
+            final LinkedList<Future<Entry>> pending = new LinkedList<Future<Entry>>();
+            final List<Entry> written = new ArrayList<Entry>(entries.size());
+            final Iterator<Map.Entry<String, File>> remaining = entries.entrySet().iterator();
+            while (remaining.hasNext() || !pending.isEmpty()) {
+                while (remaining.hasNext() && pending.size() < window) {
+                    final Map.Entry<String, File> next = remaining.next();
+                    pending.add(executor.submit(new Callable<Entry>() {
+                        public Entry call() throws IOException {
+                            return prepare(next.getValue(), next.getKey());
+                        }
+                    }));
+                }
+                final Entry entry = get(pending.removeFirst());
+                writeLocalEntry(out, entry);
+                entry.data = null;
+                written.add(entry);
+            }
+            writeCentralDirectory(out, written);
+        } finally {
+            executor.shutdownNow();
+            out.close();
+        }
+    }
+
+    /**
+     * Lists the entries of the archive, mapped to the directory holding them, in the order they
+     * are written: the manifest first, as {@link java.util.jar.JarInputStream} expects, then the
+     * contents of each directory sorted by name. Directories present in several roots are
+     * added once.
+     */
+    static Map<String, File> listEntries(List<File> roots) {
+        return listEntries(roots, Collections.<String>emptySet());
+    }
+
+    static Map<String, File> listEntries(List<File> roots, Set<String> excludedDirectories) {
+        final Map<String, File> entries = new LinkedHashMap<String, File>();
+        for (File root : roots) {
+            if (new File(root, MANIFEST).isFile()) {
+                entries.put("META-INF/", root);
+                entries.put(MANIFEST, root);
+                break;
+            }
+        }
+        for (File root : roots) {
+            final List<String> names = new ArrayList<String>();
+            collect(root, "", excludedDirectories, names);
+            Collections.sort(names);
+            for (String name : names) {
+                if (!entries.containsKey(name)) {
+                    entries.put(name, root);
+                }
+            }
+        }
+        return entries;
+    }
+
+    private static void collect(File dir, String prefix, Set<String> excludedDirectories, List<String> names) {
+        final File[] files = dir.listFiles();
+        if (files == null) {
+            return;
+        }
+        for (File file : files) {
+            if (file.isDirectory()) {
+                if (excludedDirectories.contains(prefix + file.getName())) {
+                    continue;
+                }
+                names.add(prefix + file.getName() + "/");
+                collect(file, prefix + file.getName() + "/", excludedDirectories, names);
+            } else {
+                names.add(prefix + file.getName());
+            }
+        }
+    }
+
+    private Entry prepare(File root, String name) throws IOException {
+        final Entry entry = new Entry(name);
+        if (name.endsWith("/")) {
+            entry.method = METHOD_STORED;
+            return entry;
+        }
+
+        final File file = new File(root, name);
+        entry.file = file;
+        entry.size = file.length();
+        if (entry.size > MAX_SIZE) {
+            throw new IOException(name + " is too large for an archive without ZIP64 support");
+        }
+
+        final CRC32 crc = new CRC32();
+        final byte[] buffer = new byte[8192];
+        final InputStream in = new FileInputStream(file);
+        try {
+            if (isStored(name)) {
+                // stored entries are streamed again by the writer, only the checksum is needed now
+                entry.method = METHOD_STORED;
+                entry.compressedSize = entry.size;
+                int read;
+                while ((read = in.read(buffer)) != -1) {
+                    crc.update(buffer, 0, read);
+                }
+            } else {
+                entry.method = METHOD_DEFLATED;
+                final ByteArrayOutputStream compressed = new ByteArrayOutputStream((int) Math.min(entry.size, 1024 * 1024));
+                final Deflater deflater = new Deflater(compressionLevel, true);
+                try {
+                    final DeflaterOutputStream deflating = new DeflaterOutputStream(compressed, deflater, 8192);
+                    int read;
+                    while ((read = in.read(buffer)) != -1) {
+                        crc.update(buffer, 0, read);
+                        deflating.write(buffer, 0, read);
+                    }
+                    deflating.finish();
+                } finally {
+                    deflater.end();
+                }
+                entry.data = compressed.toByteArray();
+                entry.compressedSize = entry.data.length;
+            }
+        } finally {
+            in.close();
+        }
+        entry.crc = crc.getValue();
+        return entry;
+    }
+
+    private static boolean isStored(String name) {
+        final String lowerCaseName = name.toLowerCase(Locale.ENGLISH);
+        for (String extension : STORED_EXTENSIONS) {
+            if (lowerCaseName.endsWith(extension)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static Entry get(Future<Entry> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while assembling the WAR");
+        } catch (ExecutionException e) {
+            final Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            throw new IOException("Unable to add an entry to the WAR", cause);
+        }
+    }
+
+    private static void writeLocalEntry(CountingOutputStream out, Entry entry) throws IOException {
+        if (out.count > MAX_SIZE) {
+            throw new IOException("The WAR exceeds 4GB, which requires ZIP64 support");
+        }
+        entry.offset = out.count;
+        writeInt(out, 0x04034b50);
+        writeShort(out, entry.method == METHOD_DEFLATED ? 20 : 10);
+        writeShort(out, UTF8_FLAG);
+        writeShort(out, entry.method);
+        writeShort(out, DOS_TIME);
+        writeShort(out, DOS_DATE);
+        writeInt(out, entry.crc);
+        writeInt(out, entry.compressedSize);
+        writeInt(out, entry.size);
+        writeShort(out, entry.nameBytes.length);
+        writeShort(out, 0);
+        out.write(entry.nameBytes);
+
+        if (entry.data != null) {
+            out.write(entry.data);
+        } else if (entry.file != null) {
+            final InputStream in = new FileInputStream(entry.file);
+            try {
+                final byte[] buffer = new byte[64 * 1024];
+                long remaining = entry.size;
+                int read;
+                while (remaining > 0 && (read = in.read(buffer, 0, (int) Math.min(buffer.length, remaining))) != -1) {
+                    out.write(buffer, 0, read);
+                    remaining -= read;
+                }
+                if (remaining != 0) {
+                    throw new IOException(entry.file + " changed while the WAR was assembled");
+                }
+            } finally {
+                in.close();
+            }
+        }
+    }
+
+    private static void writeCentralDirectory(CountingOutputStream out, List<Entry> entries) throws IOException {
+        final long start = out.count;
+        for (Entry entry : entries) {
+            writeInt(out, 0x02014b50);
+            writeShort(out, 20);
+            writeShort(out, entry.method == METHOD_DEFLATED ? 20 : 10);
+            writeShort(out, UTF8_FLAG);
+            writeShort(out, entry.method);
+            writeShort(out, DOS_TIME);
+            writeShort(out, DOS_DATE);
+            writeInt(out, entry.crc);
+            writeInt(out, entry.compressedSize);
+            writeInt(out, entry.size);
+            writeShort(out, entry.nameBytes.length);
+            writeShort(out, 0);
+            writeShort(out, 0);
+            writeShort(out, 0);
+            writeShort(out, 0);
+            writeInt(out, entry.file == null ? 0x10 : 0);
+            writeInt(out, entry.offset);
+            out.write(entry.nameBytes);
+        }
+        final long size = out.count - start;
+        if (out.count > MAX_SIZE) {
+            throw new IOException("The WAR exceeds 4GB, which requires ZIP64 support");
+        }
+        writeInt(out, 0x06054b50);
+        writeShort(out, 0);
+        writeShort(out, 0);
+        writeShort(out, entries.size());
+        writeShort(out, entries.size());
+        writeInt(out, size);
+        writeInt(out, start);
+        writeShort(out, 0);
+    }
+
+    private static void writeShort(OutputStream out, int value) throws IOException {
+        out.write(value & 0xFF);
+        out.write((value >>> 8) & 0xFF);
+    }
+
+    private static void writeInt(OutputStream out, long value) throws IOException {
+        writeShort(out, (int) (value & 0xFFFF));
+        writeShort(out, (int) ((value >>> 16) & 0xFFFF));
+    }
+
+    private static class Entry {
+        final byte[] nameBytes;
+        File file;
+        int method;
+        long crc;
+        long size;
+        long compressedSize;
+        long offset;
+        byte[] data;
+
+        Entry(String name) {
+            try {
+                this.nameBytes = name.getBytes("UTF-8");
+            } catch (UnsupportedEncodingException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+
+    private static class CountingOutputStream extends FilterOutputStream {
+        long count;
+
+        CountingOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            count += len;
+        }
+    }
+}
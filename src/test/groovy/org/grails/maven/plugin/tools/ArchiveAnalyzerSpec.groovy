@@ -0,0 +1,188 @@
+package org.grails.maven.plugin.tools
+
+import org.grails.maven.plugin.MvnWarMojo
+
+import java.util.zip.CRC32
+import java.util.zip.ZipEntry
+import java.util.zip.ZipFile
+import java.util.zip.ZipOutputStream
+
+class ArchiveAnalyzerSpec extends TemporaryDirectorySpec {
+
+    static final String WAR_ASSEMBLER = "org/grails/maven/plugin/tools/WarAssembler"
+    static final String DIRECTORY_SYNC = "org/grails/maven/plugin/tools/DirectorySync"
+    static final String WAR_MOJO = "org/grails/maven/plugin/MvnWarMojo"
+
+    File war
+
+    def setup() {
+        // the application refers to WarAssembler, which is shipped twice, and to nothing in c.jar
+        war = zip(new File(dir, "app.war"), [
+                "WEB-INF/web.xml"                     : "<web-app/>".bytes,
+                ("WEB-INF/classes/" + WAR_MOJO + ".class"): classBytes(MvnWarMojo),
+                "WEB-INF/lib/a-1.0.jar"               : jar([(WAR_ASSEMBLER + ".class"): classBytes(WarAssembler)]),
+                "WEB-INF/lib/b-1.0.jar"               : jar([(WAR_ASSEMBLER + ".class"): classBytes(WarAssembler)]),
+                "WEB-INF/lib/c-1.0.jar"               : jar([(DIRECTORY_SYNC + ".class"): classBytes(DirectorySync)])
+        ])
+    }
+
+    def "classes shipped in more than one jar are reported"() {
+        when:
+            def report = new ArchiveAnalyzer(2).analyze(war)
+
+        then:
+            report.classes[ArchiveAnalyzer.APPLICATION] == [WAR_MOJO] as Set
+            report.classes["WEB-INF/lib/c-1.0.jar"] == [DIRECTORY_SYNC] as Set
+            report.duplicates == [(WAR_ASSEMBLER): ["WEB-INF/lib/a-1.0.jar", "WEB-INF/lib/b-1.0.jar"] as Set]
+    }
+
+    def "jars nothing else refers to are reported"() {
+        when:
+            def report = new ArchiveAnalyzer(2).analyze(war)
+
+        then:
+            report.unreferenced == ["WEB-INF/lib/c-1.0.jar"] as Set
+    }
+
+    def "configuration files count as references"() {
+        given:
+            war = zip(new File(dir, "configured.war"), [
+                    "WEB-INF/web.xml"      : "<listener-class>org.grails.maven.plugin.tools.DirectorySync</listener-class>".bytes,
+                    "WEB-INF/lib/c-1.0.jar": jar([(DIRECTORY_SYNC + ".class"): classBytes(DirectorySync)])
+            ])
+
+        expect:
+            new ArchiveAnalyzer(1).analyze(war).unreferenced.empty
+    }
+
+    def "only one of two copies is redundant"() {
+        given:
+            def report = new ArchiveAnalyzer(2).analyze(war)
+
+        expect:
+            report.findJars(["a-*.jar", "b-1.0.jar"]) == ["WEB-INF/lib/a-1.0.jar", "WEB-INF/lib/b-1.0.jar"] as Set
+            report.isRedundant("WEB-INF/lib/a-1.0.jar", [])
+            !report.isRedundant("WEB-INF/lib/b-1.0.jar", ["WEB-INF/lib/a-1.0.jar"])
+            !report.isRedundant("WEB-INF/lib/c-1.0.jar", [])
+    }
+
+    def "excluded jars are left out of the copy"() {
+        given:
+            def copy = new File(dir, "copy.war")
+
+        when:
+            ArchiveAnalyzer.copyWithout(war, ["WEB-INF/lib/a-1.0.jar"], copy)
+            def zipFile = new ZipFile(copy)
+            def names = zipFile.entries()*.name
+            zipFile.close()
+
+        then:
+            names == ["WEB-INF/web.xml", "WEB-INF/classes/" + WAR_MOJO + ".class", "WEB-INF/lib/b-1.0.jar", "WEB-INF/lib/c-1.0.jar"]
+            new ArchiveAnalyzer(1).analyze(copy).duplicates.isEmpty()
+    }
+
+    def "the jars of a WAR nested in a standalone jar are indexed"() {
+        given:
+            def jar = zip(new File(dir, "app.jar"), [
+                    (WAR_ASSEMBLER + ".class"): classBytes(WarAssembler),
+                    "embedded.war"            : war.bytes
+            ])
+
+        when:
+            def report = new ArchiveAnalyzer(2).analyze(jar)
+
+        then:
+            report.classes[ArchiveAnalyzer.ROOT] == [WAR_ASSEMBLER] as Set
+            report.classes["embedded.war!/WEB-INF/classes"] == [WAR_MOJO] as Set
+            report.classes["embedded.war!/WEB-INF/lib/c-1.0.jar"] == [DIRECTORY_SYNC] as Set
+            report.duplicates[WAR_ASSEMBLER] == [ArchiveAnalyzer.ROOT, "embedded.war!/WEB-INF/lib/a-1.0.jar", "embedded.war!/WEB-INF/lib/b-1.0.jar"] as Set
+            report.unreferenced == ["embedded.war!/WEB-INF/lib/c-1.0.jar"] as Set
+            report.findJars(["a-*.jar"]) == ["embedded.war!/WEB-INF/lib/a-1.0.jar"] as Set
+    }
+
+    def "classes outside a nested WAR don't make its jars redundant"() {
+        given:
+            def jar = zip(new File(dir, "app.jar"), [
+                    (WAR_ASSEMBLER + ".class"): classBytes(WarAssembler),
+                    "embedded.war"            : war.bytes
+            ])
+            def report = new ArchiveAnalyzer(2).analyze(jar)
+
+        expect:
+            report.isRedundant("embedded.war!/WEB-INF/lib/a-1.0.jar", [])
+            !report.isRedundant("embedded.war!/WEB-INF/lib/b-1.0.jar", ["embedded.war!/WEB-INF/lib/a-1.0.jar"])
+    }
+
+    def "excluded jars of a nested WAR are left out of the copy"() {
+        given:
+            def jar = zip(new File(dir, "app.jar"), [
+                    "Launcher.class": "launcher".bytes,
+                    "embedded.war"  : war.bytes
+            ], true)
+            def copy = new File(dir, "copy.jar")
+
+        when:
+            ArchiveAnalyzer.copyWithout(jar, ["embedded.war!/WEB-INF/lib/a-1.0.jar"], copy)
+            def zipFile = new ZipFile(copy)
+            def names = zipFile.entries()*.name
+            def method = zipFile.getEntry("embedded.war").method
+            zipFile.close()
+
+        then:
+            names == ["Launcher.class", "embedded.war"]
+            method == ZipEntry.STORED
+            new ArchiveAnalyzer(1).analyze(copy).classes.keySet().findAll { it.endsWith(".jar") } ==
+                    ["embedded.war!/WEB-INF/lib/b-1.0.jar", "embedded.war!/WEB-INF/lib/c-1.0.jar"] as Set
+            new ArchiveAnalyzer(1).analyze(copy).duplicates.isEmpty()
+    }
+
+    def "the report groups duplicates by the jars sharing them"() {
+        given:
+            def out = new StringWriter()
+
+        when:
+            new ArchiveAnalyzer(2).analyze(war).write(out)
+
+        then:
+            out.toString() == '''\
+Classes: 4 in 5 locations
+Duplicate classes: 1
+  1 in [WEB-INF/lib/a-1.0.jar, WEB-INF/lib/b-1.0.jar], e.g. org.grails.maven.plugin.tools.WarAssembler
+Unreferenced jars: 1
+  WEB-INF/lib/c-1.0.jar (1 classes)
+'''
+    }
+
+    private static byte[] classBytes(Class type) {
+        type.getResourceAsStream("/" + type.name.replace('.', '/') + ".class").bytes
+    }
+
+    private static byte[] jar(Map<String, byte[]> entries) {
+        def bytes = new ByteArrayOutputStream()
+        write(bytes, entries)
+        bytes.toByteArray()
+    }
+
+    private static File zip(File file, Map<String, byte[]> entries, boolean stored = false) {
+        file.withOutputStream { write(it, entries, stored) }
+        file
+    }
+
+    private static void write(OutputStream out, Map<String, byte[]> entries, boolean stored = false) {
+        def zip = new ZipOutputStream(out)
+        entries.each { name, content ->
+            def entry = new ZipEntry(name)
+            if (stored) {
+                def crc = new CRC32()
+                crc.update(content)
+                entry.method = ZipEntry.STORED
+                entry.size = content.length
+                entry.crc = crc.value
+            }
+            zip.putNextEntry(entry)
+            zip.write(content)
+            zip.closeEntry()
+        }
+        zip.finish()
+    }
+}
@@ -0,0 +1,91 @@
+package org.grails.maven.plugin.tools
+
+import org.codehaus.groovy.control.CompilationUnit
+import org.codehaus.groovy.control.Phases
+
+import java.util.jar.JarEntry
+import java.util.jar.JarOutputStream
+
+class BuildClassLoaderCacheSpec extends TemporaryDirectorySpec {
+
+    def cleanup() {
+        BuildClassLoaderCache.clear()
+    }
+
+    def "goals with the same build path share the build class loader"() {
+        given:
+            List<File> buildPath = [new File("a.jar"), new File("b.jar")]
+            List<File> samePath = [new File("a.jar"), new File("b.jar")]
+
+        when:
+            def first = BuildClassLoaderCache.createGoalClassLoader(context(buildPath))
+            def second = BuildClassLoaderCache.createGoalClassLoader(context(samePath))
+
+        then:
+            !first.is(second)
+            first.parent.is(second.parent)
+            first.parent.URLs as List == buildPath*.toURI()*.toURL()
+    }
+
+    def "a different build path gets its own class loader"() {
+        given:
+            List<File> buildPath = [new File("a.jar")]
+            List<File> otherPath = [new File("b.jar")]
+
+        expect:
+            !BuildClassLoaderCache.getBuildClassLoader(context(buildPath)).is(BuildClassLoaderCache.getBuildClassLoader(context(otherPath)))
+    }
+
+    def "classes of the build path see the logging jars in every goal"() {
+        given:
+            def buildJar = jar("build.jar", "class BuildTool { static Class logging() { Class.forName('org.slf4j.LoggerFactory') } }")
+            def loggingJar = jar("logging.jar", "package org.slf4j; class LoggerFactory {}")
+            def logging = new LoggingBootstrap.Selection([loggingJar], LoggingBootstrap.Backend.NONE)
+
+        when:
+            def first = BuildClassLoaderCache.createGoalClassLoader(context([buildJar], logging))
+            def loggerFactory = first.loadClass("BuildTool").logging()
+            def second = BuildClassLoaderCache.createGoalClassLoader(context([buildJar], logging))
+
+        then:
+            first.parent.is(second.parent)
+            loggerFactory.classLoader.is(first.parent)
+            second.loadClass("BuildTool").logging().is(loggerFactory)
+            first.parent.URLs.findAll { it == loggingJar.toURI().toURL() }.size() == 1
+    }
+
+    def "another logging selection gets its own class loader"() {
+        given:
+            List<File> buildPath = [new File("a.jar")]
+            def log4j = new LoggingBootstrap.Selection([new File("log4j.jar")], LoggingBootstrap.Backend.NONE)
+
+        expect:
+            !BuildClassLoaderCache.getBuildClassLoader(context(buildPath)).is(BuildClassLoaderCache.getBuildClassLoader(context(buildPath, log4j)))
+    }
+
+    private AbstractGrailsRuntime.ExecutionContext context(List<File> buildPath, LoggingBootstrap.Selection logging = null) {
+        def ec = new AbstractGrailsRuntime.ExecutionContext()
+        ec.buildDependencies = buildPath
+        ec.loggingSelection = logging
+        ec
+    }
+
+    private File jar(String name, String source) {
+        def unit = new CompilationUnit()
+        unit.addSource("Source.groovy", source)
+        // the classes stay in memory, the output phase would write them to the working directory
+        unit.compile(Phases.CLASS_GENERATION)
+        def file = new File(dir, name)
+        def out = new JarOutputStream(new FileOutputStream(file))
+        try {
+            unit.classes.each {
+                out.putNextEntry(new JarEntry(it.name.replace('.', '/') + ".class"))
+                out.write(it.bytes)
+                out.closeEntry()
+            }
+        } finally {
+            out.close()
+        }
+        file
+    }
+}
@@ -0,0 +1,108 @@
+package org.grails.maven.plugin.tools
+
+import org.apache.maven.plugin.logging.Log
+import org.codehaus.groovy.control.CompilationFailedException
+import org.codehaus.groovy.control.Phases
+
+class BuildEventReporterSpec extends TemporaryDirectorySpec {
+
+    BuildEventRecorder recorder
+    BuildEventServer server
+    String previousPort
+
+    def setup() {
+        recorder = new BuildEventRecorder(Mock(Log))
+        server = BuildEventServer.open(recorder)
+        previousPort = System.getProperty(BuildEventReporter.PORT_PROPERTY)
+        System.setProperty(BuildEventReporter.PORT_PROPERTY, String.valueOf(server.port))
+    }
+
+    def cleanup() {
+        server.close()
+        if (previousPort != null) {
+            System.setProperty(BuildEventReporter.PORT_PROPERTY, previousPort)
+        } else {
+            System.clearProperty(BuildEventReporter.PORT_PROPERTY)
+        }
+    }
+
+    def "Grails build events reach the recorder"() {
+        given:
+            def reporter = new BuildEventReporter()
+
+        when:
+            reporter.scriptStarted("TestApp")
+            reporter.receiveGrailsBuildEvent("CompileStart", "source")
+            reporter.receiveGrailsBuildEvent("CompileEnd", "source")
+            reporter.receiveGrailsBuildEvent("TestCaseStart", "BookSpec")
+            reporter.receiveGrailsBuildEvent("TestStart", "saves a book")
+            reporter.receiveGrailsBuildEvent("TestEnd", "saves a book")
+            reporter.receiveGrailsBuildEvent("TestStart", "finds a book")
+            reporter.receiveGrailsBuildEvent("TestFailure", "finds a book", new AssertionError("expected 1"), false)
+            reporter.receiveGrailsBuildEvent("TestEnd", "finds a book")
+            reporter.receiveGrailsBuildEvent("TestCaseEnd", "BookSpec")
+            reporter.receiveGrailsBuildEvent("StatusError", "Compilation error: Book.groovy: 3: unexpected token",
+                    new RuntimeException("compile failed", new CompilationFailedException(Phases.PARSING, null)))
+            reporter.receiveGrailsBuildEvent("StatusError", "Compilation error: only the text says so")
+            reporter.scriptFinished("TestApp", 1)
+            server.close()
+
+        then:
+            recorder.phases*.name == ["Compile"]
+            recorder.testCount == 2
+            recorder.testFailures*.name == ["BookSpec.finds a book"]
+            recorder.testFailures*.detail == ["java.lang.AssertionError: expected 1"]
+            recorder.compileErrors*.detail == ["Compilation error: Book.groovy: 3: unexpected token"]
+            recorder.errors*.detail == ["Compilation error: only the text says so"]
+            recorder.exitCode == 1
+    }
+
+    def "events of several connections are all recorded"() {
+        given:
+            def script = new BuildEventReporter()
+            def listener = new BuildEventReporter()
+
+        when:
+            script.scriptStarted("War")
+            listener.receiveGrailsBuildEvent("PackagePluginsStart")
+            listener.receiveGrailsBuildEvent("PackagePluginsEnd")
+            listener.scriptFinished("War", 0)
+            script.scriptFinished("War", 0)
+            server.close()
+
+        then:
+            recorder.phases*.name == ["PackagePlugins"]
+            recorder.exitCode == 0
+    }
+
+    def "the metrics list the longest phases first"() {
+        given:
+            def metrics = new File(dir, "grails-build-events/TestApp.txt")
+            recorder.handle(new BuildEvent(BuildEvent.Type.PHASE_END, "Compile", null, 1200))
+            recorder.handle(new BuildEvent(BuildEvent.Type.PHASE_END, "TestPhase", null, 3400))
+            recorder.handle(new BuildEvent(BuildEvent.Type.TEST_PASSED, "BookSpec.saves a book", null, 12))
+
+        when:
+            recorder.writeMetrics(metrics)
+
+        then:
+            metrics.text == "3400ms\tTestPhase\n1200ms\tCompile\ntests\t1\ntest failures\t0\ncompilation errors\t0\nexit code\tnone\n"
+    }
+
+    def "unknown event types are rejected"() {
+        given:
+            def bytes = new ByteArrayOutputStream()
+            new BuildEvent(BuildEvent.Type.STATUS, "StatusUpdate", "Running tests", 0).write(new DataOutputStream(bytes))
+            def frame = bytes.toByteArray()
+
+        expect:
+            BuildEvent.read(new DataInputStream(new ByteArrayInputStream(frame))).detail == "Running tests"
+
+        when:
+            frame[0] = (byte) 99
+            BuildEvent.read(new DataInputStream(new ByteArrayInputStream(frame)))
+
+        then:
+            thrown(IOException)
+    }
+}
@@ -0,0 +1,102 @@
+package org.grails.maven.plugin.tools
+
+import com.sun.net.httpserver.HttpExchange
+import com.sun.net.httpserver.HttpHandler
+import com.sun.net.httpserver.HttpServer
+
+class CdsTrainerSpec extends TemporaryDirectorySpec {
+
+    def "the training run starts the jar by its file name and archives its classes on exit"() {
+        given:
+            def jar = new File(dir, "app.jar").canonicalFile
+            def archive = new File(dir, "app.jar.jsa").canonicalFile
+            def trainer = new CdsTrainer(new File("/opt/jdk/bin/java"), jar, archive)
+            trainer.jvmArgs = ["-Dgrails.env=training"]
+            trainer.applicationArgs = ["context=/app"]
+
+        expect:
+            trainer.getCommand(8081) == ["/opt/jdk/bin/java", "-XX:ArchiveClassesAtExit=" + archive.path,
+                                         "-Dgrails.env=training", "-jar", "app.jar", "context=/app", "port=8081"]
+            trainer.getCommand(0)[-1] == "context=/app"
+    }
+
+    def "a readiness URL that already answers fails before the training run starts"() {
+        given:
+            def server = new ServerSocket(0)
+            def log = new File(dir, "training.log")
+            def jar = new File(dir, "app.jar")
+            jar.text = "not a jar"
+            def trainer = new CdsTrainer(new File("/opt/jdk/bin/java"), jar, new File(dir, "app.jar.jsa"))
+            trainer.readinessUrl = new URL("http://localhost:${server.localPort}/")
+            trainer.logFile = log
+
+        when:
+            trainer.train()
+
+        then:
+            def e = thrown(IOException)
+            e.message.contains("already listens")
+            !log.exists()
+
+        cleanup:
+            server.close()
+    }
+
+    def "only successful responses make the training run ready"() {
+        given:
+            def server = HttpServer.create(new InetSocketAddress("localhost", 0), 0)
+            [ok: 200, missing: 404, moved: 302].each { path, status ->
+                server.createContext("/" + path, { HttpExchange exchange ->
+                    exchange.sendResponseHeaders(status, -1)
+                    exchange.close()
+                } as HttpHandler)
+            }
+            server.start()
+            def url = { String path -> new URL("http://localhost:${server.address.port}/" + path) }
+
+        expect:
+            CdsTrainer.isReady(url("ok"))
+            !CdsTrainer.isReady(url("missing"))
+            !CdsTrainer.isReady(url("moved"))
+
+        cleanup:
+            server.stop(0)
+    }
+
+    def "a training run exiting before it is ready fails"() {
+        given:
+            def java = new File(new File(System.getProperty("java.home"), "bin"), "java")
+            def log = new File(dir, "training.log")
+            def jar = new File(dir, "broken.jar")
+            jar.text = "not a jar"
+            def trainer = new CdsTrainer(java, jar, new File(dir, "broken.jar.jsa"))
+            trainer.readinessUrl = new URL("http://localhost:1/")
+            trainer.timeoutSeconds = 60
+            trainer.logFile = log
+
+        when:
+            trainer.train()
+
+        then:
+            def e = thrown(IOException)
+            e.message.contains("before it was ready")
+            e.message.contains(log.path)
+            log.exists()
+            jar.lastModified() == CdsTrainer.JAR_TIME
+    }
+
+    def "the launcher script starts the jar with the archive from their directory"() {
+        given:
+            def script = new File(dir, "app.sh")
+
+        when:
+            CdsTrainer.writeLauncherScript(script, "app.jar", "app.jar.jsa")
+
+        then:
+            script.canExecute()
+            script.text.startsWith("#!/bin/sh\n")
+            script.text.contains('cd "$(dirname "$0")" || exit 1\n')
+            script.text.contains('TZ=UTC0 touch -c -t 198002010000.00 "app.jar"')
+            script.text.contains('-XX:SharedArchiveFile="app.jar.jsa" -Xshare:auto $JAVA_OPTS -jar "app.jar" "$@"')
+    }
+}
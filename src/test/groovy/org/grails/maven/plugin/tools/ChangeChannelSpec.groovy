@@ -0,0 +1,197 @@
+package org.grails.maven.plugin.tools
+
+import java.util.concurrent.LinkedBlockingQueue
+import java.util.concurrent.TimeUnit
+
+import static org.grails.maven.plugin.tools.SourceWatcher.Change.*
+
+class ChangeChannelSpec extends TemporaryDirectorySpec {
+
+    ChangeChannel channel
+
+    def setup() {
+        channel = ChangeChannel.open()
+    }
+
+    def cleanup() {
+        channel.close()
+    }
+
+    def "batches reach every connected receiver"() {
+        given:
+            def first = receive()
+            def second = receive()
+            def changes = [(new File("/app/grails-app/domain/Book.groovy")): MODIFIED,
+                           (new File("/app/src/groovy/a b/Helper.groovy")): CREATED]
+
+        when:
+            channel.changed(changes)
+
+        then:
+            first.poll(5, TimeUnit.SECONDS) == changes
+            second.poll(5, TimeUnit.SECONDS) == changes
+    }
+
+    def "receivers stop when the channel is closed"() {
+        given:
+            def thread = new Thread(new ChangeReceiver(channel.port, {} as SourceWatcher.Listener))
+            thread.start()
+            waitForReceivers(1)
+
+        when:
+            channel.close()
+            thread.join(5000)
+
+        then:
+            !thread.alive
+    }
+
+    def "changes without a Grails watcher to reach are reported once"() {
+        given:
+            def notifier = new ChangeReceiver.GrailsWatcherNotifier(0)
+            def out = new ByteArrayOutputStream()
+            def previous = System.out
+            System.out = new PrintStream(out, true)
+
+        when:
+            notifier.changed([(new File("/app/grails-app/domain/Book.groovy")): MODIFIED])
+            notifier.changed([(new File("/app/grails-app/domain/Author.groovy")): MODIFIED])
+
+        then:
+            out.toString().readLines().findAll { it.startsWith("No Grails directory watcher") }.size() == 1
+            out.toString().contains("grails.project.fork.run")
+
+        cleanup:
+            System.out = previous
+    }
+
+    def "only the files a Grails watcher watches reach its listeners"() {
+        given:
+            def sources = new File(dir, "grails-app/domain")
+            sources.mkdirs()
+            def book = new File(sources, "Book.groovy")
+            def author = new File(sources, "Author.groovy")
+            def swap = new File(sources, ".Book.groovy.swp")
+            def config = new File(dir, "grails-app/conf/Config.groovy")
+            [book, author, swap].each { it.text = "" }
+            def watcher = new DirectoryWatcher(lastModifiedMap: [(book): 0L, (config): 0L],
+                    directoryToExtensionsMap: [(sources): ["groovy", "java"]])
+            watcher.start()
+
+        when:
+            new ChangeReceiver.GrailsWatcherNotifier(0).changed([(book): MODIFIED, (author): CREATED, (swap): CREATED,
+                                                                 (new File(dir, "README.md")): CREATED])
+
+        then:
+            watcher.calls == ["onChange " + book.name, "onNew " + author.name]
+            watcher.lastModifiedMap.keySet() == [book, config, author] as Set
+
+        cleanup:
+            watcher.interrupt()
+    }
+
+    def "deleted files are forgotten by the Grails watchers"() {
+        given:
+            def book = new File(dir, "Book.groovy")
+            def watcher = new DirectoryWatcher(lastModifiedMap: [(book): 1L], directoryToExtensionsMap: [(dir): ["groovy"]])
+            watcher.start()
+
+        when:
+            new ChangeReceiver.GrailsWatcherNotifier(0).changed([(book): DELETED])
+
+        then:
+            watcher.calls.empty
+            watcher.lastModifiedMap.isEmpty()
+
+        cleanup:
+            watcher.interrupt()
+    }
+
+    def "extensions match with or without their dot, or all of them"() {
+        expect:
+            ChangeReceiver.GrailsWatcherNotifier.matchesExtension(["groovy"], "Book.groovy")
+            ChangeReceiver.GrailsWatcherNotifier.matchesExtension([".groovy"], "Book.groovy")
+            ChangeReceiver.GrailsWatcherNotifier.matchesExtension(["*"], "Book.groovy~")
+            !ChangeReceiver.GrailsWatcherNotifier.matchesExtension(["groovy"], "Book.groovy~")
+            !ChangeReceiver.GrailsWatcherNotifier.matchesExtension(["groovy"], ".groovy")
+    }
+
+    def "a run forked by the build configuration is recognized"() {
+        given:
+            def buildConfig = new File(dir, "BuildConfig.groovy")
+
+        expect:
+            !ChangeChannel.isRunForked(buildConfig)
+            forked(buildConfig, '''
+                grails.project.fork = [
+                    // compile: [maxMemory: 256, minMemory: 64],
+                    test: [maxMemory: 768, minMemory: 64, daemon:true],
+                    run: [maxMemory: 768, minMemory: 64, forkReserve:false],
+                ]''')
+            forked(buildConfig, 'grails.project.fork.run = [maxMemory: 768]')
+            !forked(buildConfig, '''
+                grails.project.fork = [
+                    test: [maxMemory: 768, minMemory: 64, daemon:true],
+                    run: false
+                ]''')
+            !forked(buildConfig, '''
+                grails.project.fork = [test: [maxMemory: 768]]
+                // run: [maxMemory: 768]
+                grails.project.dependency.resolution = { inherits("global") }''')
+            !forked(buildConfig, 'grails.project.fork.run = false')
+    }
+
+    private static boolean forked(File buildConfig, String text) {
+        buildConfig.text = text
+        ChangeChannel.isRunForked(buildConfig)
+    }
+
+    /**
+     * Stands in for the Grails watcher thread, with the fields the notifier drives.
+     */
+    static class DirectoryWatcher extends Thread {
+        List calls = [].asSynchronized()
+        List listeners = [[onChange: { File file -> calls << "onChange " + file.name },
+                           onNew: { File file -> calls << "onNew " + file.name }] as Listener]
+        Map<File, Long> lastModifiedMap = [:]
+        Map<File, Collection<String>> directoryToExtensionsMap = [:]
+        Collection<String> extensions = []
+
+        DirectoryWatcher() {
+            daemon = true
+        }
+
+        void run() {
+            try {
+                Thread.sleep(60000)
+            } catch (InterruptedException e) {
+                // stopped
+            }
+        }
+
+        void setSleepTime(long sleepTime) {
+        }
+    }
+
+    static interface Listener {
+        void onChange(File file)
+        void onNew(File file)
+    }
+
+    private LinkedBlockingQueue<Map<File, SourceWatcher.Change>> receive() {
+        def batches = new LinkedBlockingQueue<Map<File, SourceWatcher.Change>>()
+        def expected = channel.receiverCount + 1
+        def thread = new Thread(new ChangeReceiver(channel.port, { batches.add(it) } as SourceWatcher.Listener))
+        thread.daemon = true
+        thread.start()
+        waitForReceivers(expected)
+        batches
+    }
+
+    private void waitForReceivers(int count) {
+        def deadline = System.currentTimeMillis() + 5000
+        while (channel.receiverCount < count && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10)
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package org.grails.maven.plugin.tools
+
+import java.util.jar.JarEntry
+import java.util.jar.JarOutputStream
+
+class ClassPathIndexSpec extends TemporaryDirectorySpec {
+
+    private File jar(String name, List<String> entries) {
+        File file = new File(dir, name)
+        file.withOutputStream { out ->
+            JarOutputStream jar = new JarOutputStream(out)
+            entries.each {
+                jar.putNextEntry(new JarEntry(it))
+                jar.closeEntry()
+            }
+            jar.close()
+        }
+        file
+    }
+
+    def "lookups outside the indexed packages are ruled out"() {
+        given:
+            def index = ClassPathIndex.build([
+                    jar("a.jar", ["org/", "org/example/", "org/example/Foo.class", "logging.properties"]),
+                    jar("b.jar", ["META-INF/versions/9/com/example/Bar.class"])])
+
+        expect:
+            index.complete
+            index.mayContainClass("org.example.Foo")
+            index.mayContainClass("org.example.Missing")
+            index.mayContainClass("com.example.Bar")
+            !index.mayContainClass("groovy.runtime.metaclass.org.example.FooMetaClass")
+            index.mayContainResource("/logging.properties")
+            index.mayContainResource("org/")
+            !index.mayContainResource("grails-maven/log4j.properties")
+    }
+
+    def "class paths with directories are never ruled out"() {
+        given:
+            def classes = new File(dir, "classes")
+            classes.mkdirs()
+            def index = ClassPathIndex.build([jar("a.jar", ["org/example/Foo.class"]), classes])
+
+        expect:
+            !index.complete
+            index.mayContainClass("com.example.Anything")
+    }
+
+    def "the index is cached on disk until a jar changes"() {
+        given:
+            def cacheDir = new File(dir, "cache")
+            def a = jar("a.jar", ["org/example/Foo.class"])
+
+        when:
+            ClassPathIndex.obtain([a], cacheDir)
+
+        then:
+            cacheDir.listFiles().length == 1
+
+        when:
+            a = jar("a.jar", ["org/example/Foo.class", "com/example/Bar.class"])
+            a.setLastModified(a.lastModified() + 2000)
+            def index = ClassPathIndex.obtain([a], cacheDir)
+
+        then:
+            index.mayContainClass("com.example.Bar")
+            cacheDir.listFiles().length == 2
+    }
+}
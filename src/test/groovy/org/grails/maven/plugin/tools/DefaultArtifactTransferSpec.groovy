@@ -0,0 +1,66 @@
+package org.grails.maven.plugin.tools
+
+import spock.lang.IgnoreIf
+
+class DefaultArtifactTransferSpec extends TemporaryDirectorySpec {
+
+    ArtifactTransfer transfer = new DefaultArtifactTransfer()
+
+    def "a file is moved into a new directory"() {
+        given:
+            def source = new File(dir, "grails-foo-1.0.zip")
+            source.text = "plugin"
+            def target = new File(dir, "target/grails-foo-1.0.zip")
+
+        when:
+            transfer.move(source, target)
+
+        then:
+            !source.exists()
+            target.text == "plugin"
+    }
+
+    def "an existing target is replaced"() {
+        given:
+            def source = new File(dir, "grails-foo-1.0.zip")
+            source.text = "new"
+            def target = new File(dir, "target/grails-foo-1.0.zip")
+            target.parentFile.mkdirs()
+            target.text = "a much longer previous build"
+
+        when:
+            transfer.move(source, target)
+
+        then:
+            target.text == "new"
+    }
+
+    def "moving a missing file fails"() {
+        when:
+            transfer.move(new File(dir, "missing.zip"), new File(dir, "target/missing.zip"))
+
+        then:
+            thrown(IOException)
+    }
+
+    @IgnoreIf({ !new File("/dev/shm").canWrite() })
+    def "a file is copied across file systems"() {
+        given:
+            def source = File.createTempFile("grails-foo", ".zip", new File("/dev/shm"))
+            byte[] content = new byte[3 * 1024 * 1024]
+            new Random(7).nextBytes(content)
+            source.bytes = content
+            def target = new File(dir, "target/grails-foo-1.0.zip")
+
+        when:
+            transfer.move(source, target)
+
+        then:
+            !source.exists()
+            target.bytes == content
+            target.parentFile.listFiles()*.name == ["grails-foo-1.0.zip"]
+
+        cleanup:
+            source.delete()
+    }
+}
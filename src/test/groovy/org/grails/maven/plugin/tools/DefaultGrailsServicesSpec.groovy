@@ -20,7 +20,49 @@ class DefaultGrailsServicesSpec extends Specification {
             ''          | ''
             'fooNASA'   | 'foo-nasa'
             null        | null
+            'foo-bar'   | 'foo-bar'
+            'Foo2Bar'   | 'foo2-bar'
+            'FOOBar'    | 'foobar'
+            '\u00C4pfelBaum' | '\u00E4pfel-baum'
 
     }
 
+    @Unroll
+    def "the string #string is converted to #expected when calling the getClassNameForLowerCaseHyphenSeparatedName method"() {
+        expect:
+            DefaultGrailsServices.getClassNameForLowerCaseHyphenSeparatedName(string) == expected
+        where:
+            string          | expected
+            'foo-bar-baz'   | 'FooBarBaz'
+            'foo'           | 'Foo'
+            'Foo'           | 'Foo'
+            ''              | ''
+            null            | null
+            'foo--bar-'     | 'FooBar'
+            '-foo'          | 'Foo'
+            'spring-2-core' | 'Spring2Core'
+            '\u00E4pfel-baum' | '\u00C4pfelBaum'
+    }
+
+    def "names can be converted in bulk"() {
+        expect:
+            DefaultGrailsServices.getLowerCaseHyphenSeparatedNames(['FooBar', null, 'Baz', 'qux']) == ['foo-bar', null, 'baz', 'qux']
+            DefaultGrailsServices.getClassNamesForLowerCaseHyphenSeparatedNames(['foo-bar', '', 'baz']) == ['FooBar', '', 'Baz']
+    }
+
+    def "conversions match the regular expression based implementation"() {
+        given:
+            def random = new Random(42)
+            def alphabet = 'aZbY09-_.'
+            def names = (1..2000).collect {
+                (0..<random.nextInt(12)).collect { alphabet[random.nextInt(alphabet.length())] }.join()
+            }
+
+        expect:
+            names.every { name ->
+                DefaultGrailsServices.getLowerCaseHyphenSeparatedName(name) ==
+                        (name ? name.replaceAll('([a-z0-9])(?=[A-Z])', '$1-').toLowerCase() : name)
+            }
+    }
+
 }
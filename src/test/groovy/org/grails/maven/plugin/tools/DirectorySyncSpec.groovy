@@ -0,0 +1,64 @@
+package org.grails.maven.plugin.tools
+
+class DirectorySyncSpec extends TemporaryDirectorySpec {
+
+    File source
+    File target
+
+    def setup() {
+        source = new File(dir, "stage")
+        target = new File(dir, "app-1.0")
+        new File(source, "WEB-INF/classes").mkdirs()
+        new File(source, "WEB-INF/lib").mkdirs()
+        new File(source, "WEB-INF/classes/Foo.class").text = "foo"
+        new File(source, "WEB-INF/lib/bar.jar").text = "bar"
+        new File(source, "index.gsp").text = "<html/>"
+    }
+
+    def "the first sync copies everything"() {
+        when:
+            def sync = DirectorySync.sync(source, target)
+
+        then:
+            sync.copied == 3
+            new File(target, "WEB-INF/classes/Foo.class").text == "foo"
+            new File(target, "index.gsp").lastModified() == new File(source, "index.gsp").lastModified()
+    }
+
+    def "later syncs only copy what changed and delete stale files"() {
+        given:
+            DirectorySync.sync(source, target)
+            new File(source, "WEB-INF/classes/Foo.class").text = "changed"
+            new File(source, "WEB-INF/lib/bar.jar").delete()
+            new File(source, "WEB-INF/lib/baz.jar").text = "baz"
+            new File(target, "WEB-INF/lib/leftover").mkdirs()
+
+        when:
+            def sync = DirectorySync.sync(source, target)
+
+        then:
+            sync.copied == 2
+            sync.unchanged == 1
+            sync.deleted == 1
+            new File(target, "WEB-INF/classes/Foo.class").text == "changed"
+            !new File(target, "WEB-INF/lib/bar.jar").exists()
+            !new File(target, "WEB-INF/lib/leftover").exists()
+            new File(target, "WEB-INF/lib").list() as Set == ["baz.jar"] as Set
+    }
+
+    def "files re-staged with identical contents are not copied again"() {
+        given:
+            DirectorySync.sync(source, target)
+            def restaged = new File(source, "index.gsp")
+            restaged.text = "<html/>"
+            restaged.setLastModified(restaged.lastModified() + 5000)
+
+        when:
+            def sync = DirectorySync.sync(source, target)
+
+        then:
+            sync.copied == 0
+            sync.unchanged == 3
+            new File(target, "index.gsp").lastModified() == restaged.lastModified()
+    }
+}
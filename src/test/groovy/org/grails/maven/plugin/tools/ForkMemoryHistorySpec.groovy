@@ -0,0 +1,107 @@
+package org.grails.maven.plugin.tools
+
+import spock.lang.Unroll
+
+import static org.grails.maven.plugin.tools.ForkMemoryHistory.Sample
+
+class ForkMemoryHistorySpec extends TemporaryDirectorySpec {
+
+    def "goals without history are not sized"() {
+        expect:
+            new ForkMemoryHistory(new File(dir, "history.properties"), 50).size("War") == null
+    }
+
+    def "the last runs of each goal are kept"() {
+        given:
+            def history = new ForkMemoryHistory(new File(dir, "history.properties"), 50)
+
+        when:
+            (1..7).each { history.record("War", new Sample(it * 100, 1024, 1.5, false)) }
+            history.record("Test", Sample.outOfMemory(512))
+
+        then:
+            history.getSamples("War")*.liveHeapMb == [300, 400, 500, 600, 700]
+            history.getSamples("Test")*.toString() == ["512/512/100.0/oom"]
+    }
+
+    @Unroll
+    def "runs of #samples give -Xmx#max -Xms#min"() {
+        expect:
+            ForkMemoryHistory.size(samples.collect { Sample.parse(it) }, 50) as List == [max, min]
+
+        where:
+            samples                        | max  | min
+            ["300/1024/1.0"]               | 512  | 320
+            ["600/1024/1.0", "200/1024/1"] | 960  | 256
+            ["10/1024/0.1"]                | 64   | 64
+            ["800/1024/1.0/young"]         | 1024 | 832
+            ["950/1024/2.0"]               | 1536 | 960
+            ["500/1024/25.0"]              | 1536 | 512
+            ["1024/1024/100.0/oom"]        | 2048 | 1024
+    }
+
+    @Unroll
+    def "sizing from -Xmx#initial settles on the heap the live data needs"() {
+        given:
+            def history = new ForkMemoryHistory(new File(dir, "history.properties"), 50)
+            def maxMemory = initial
+            def sizes = []
+
+        when:
+            20.times {
+                // 300 MB stay live whatever the heap; below 450 MB the JVM keeps collecting
+                def sample = maxMemory < 300 ? Sample.outOfMemory(maxMemory) : new Sample(300, maxMemory, maxMemory < 450 ? 25 : 1, false)
+                history.record("War", sample)
+                maxMemory = history.size("War")[0]
+                sizes << maxMemory
+            }
+
+        then:
+            sizes[-10..-1].unique() == [512]
+
+        where:
+            initial << [256, 400, 512, 4096]
+    }
+
+    def "unreadable samples are skipped"() {
+        expect:
+            Sample.parse("") == null
+            Sample.parse("a/b/c") == null
+            Sample.parse("1/2/3.5/oom").outOfMemory
+            !Sample.parse("1/2/3.5/young").afterFullGc
+            Sample.parse("1/2/3.5/young").toString() == "1/2/3.5/young"
+    }
+
+    def "the running JVM measures its own heap"() {
+        when:
+            def sample = ForkMemoryHistory.measure()
+
+        then:
+            sample.liveHeapMb > 0
+            sample.maxMemoryMb >= sample.liveHeapMb
+            sample.gcOverheadPercent >= 0
+            !sample.outOfMemory
+    }
+
+    def "the live heap is taken after full collections"() {
+        given:
+            ForkMemoryHistory.trackLiveHeap()
+
+        when:
+            System.gc()
+            def sample = ForkMemoryHistory.measure()
+            for (int i = 0; i < 50 && !sample.afterFullGc; i++) {
+                Thread.sleep(100)
+                sample = ForkMemoryHistory.measure()
+            }
+
+        then:
+            sample.afterFullGc
+            sample.liveHeapMb <= sample.maxMemoryMb
+    }
+
+    def "a missing report is no run"() {
+        expect:
+            ForkMemoryHistory.readReport(new File(dir, "missing.properties")) == null
+    }
+}
@@ -0,0 +1,163 @@
+package org.grails.maven.plugin.tools
+
+import org.apache.maven.plugin.MojoExecutionException
+import org.grails.launcher.RootLoader
+import spock.lang.Unroll
+
+class ForkedGrailsPoolSpec extends TemporaryDirectorySpec {
+
+    ForkedGrailsPool pool
+
+    def setup() {
+        pool = new ForkedGrailsPool(1)
+        pool.workerMainClass = ForkWorkerStub.name
+    }
+
+    def cleanup() {
+        pool.shutdown()
+    }
+
+    def "scripts with the same JVM options share a JVM"() {
+        when:
+            fork("Compile", "0").run()
+            fork("TestApp", "0").run()
+            fork("War", "0").run()
+
+        then:
+            pool.launchCount == 1
+    }
+
+    def "a failing script fails the goal but keeps the JVM"() {
+        when:
+            fork("TestApp", "2").run()
+
+        then:
+            def e = thrown(MojoExecutionException)
+            e.message.startsWith("Forked Grails VM exited with code 2")
+            e.message.contains("stub running TestApp")
+
+        when:
+            fork("War", "0").run()
+
+        then:
+            pool.launchCount == 1
+    }
+
+    def "a script whose output ends without a line separator still ends"() {
+        when:
+            fork("TestApp", "2", 32, ["stub.newline": "false"]).run()
+
+        then:
+            def e = thrown(MojoExecutionException)
+            e.message.startsWith("Forked Grails VM exited with code 2")
+            e.message.contains("stub running TestApp")
+
+        when:
+            fork("War", "0", 32, ["stub.newline": "false"]).run()
+
+        then:
+            pool.launchCount == 1
+    }
+
+    def "a JVM that exits is replaced"() {
+        when:
+            fork("TestApp", "die").run()
+
+        then:
+            def e = thrown(MojoExecutionException)
+            e.message.startsWith("Forked Grails VM exited with code 3")
+
+        when:
+            fork("War", "0").run()
+
+        then:
+            pool.launchCount == 2
+    }
+
+    def "a JVM with other options replaces an idle one beyond the pool size"() {
+        when:
+            fork("Compile", "0").run()
+            fork("Compile", "0", 48).run()
+            fork("Compile", "0").run()
+
+        then:
+            pool.launchCount == 3
+    }
+
+    def "modules in other directories share a JVM"() {
+        given:
+            def module = new File(dir, "module")
+            module.mkdirs()
+
+        when:
+            fork("Compile", "0").run()
+            fork("TestApp", "2", 32, [:], module).run()
+
+        then:
+            def e = thrown(MojoExecutionException)
+            e.message.contains("stub running TestApp in " + module.absolutePath)
+            pool.launchCount == 1
+    }
+
+    def "debugged scripts are not pooled"() {
+        given:
+            def runtime = fork("Compile", "0")
+            runtime.debug = true
+
+        expect:
+            !runtime.pooled
+    }
+
+    def "system properties set by a script are reset for the next one"() {
+        given:
+            def seen = []
+            def input = new BufferedReader(new StringReader("a\nb\n"))
+            def output = new ByteArrayOutputStream()
+
+        when:
+            ForkedGrailsWorker.serve(input, new PrintStream(output, true), { File context ->
+                seen << System.getProperty("pool.spec")
+                System.setProperty("pool.spec", context.name)
+                return context.name == "a" ? 0 : 1
+            } as ForkedGrailsWorker.Runner)
+
+        then:
+            seen == [null, null]
+            output.toString().readLines() == ["", ForkedGrailsWorker.EXIT_MARKER + 0, "", ForkedGrailsWorker.EXIT_MARKER + 1]
+            System.getProperty("pool.spec") == null
+    }
+
+    @Unroll
+    def "-T #threadCount gives #expected threads"() {
+        expect:
+            ForkedGrailsPool.parseThreadCount(threadCount) == expected
+
+        where:
+            threadCount | expected
+            null        | 1
+            "4"         | 4
+            "0"         | 1
+            "1C"        | Runtime.runtime.availableProcessors()
+            "2.5C"      | (int) (2.5 * Runtime.runtime.availableProcessors())
+            "many"      | 1
+    }
+
+    private ForkedGrailsRuntime fork(String script, String exit, int maxMemory = 32, Map<String, String> properties = [:], File baseDir = dir) {
+        def ec = new AbstractGrailsRuntime.ExecutionContext()
+        ec.scriptName = script
+        ec.baseDir = baseDir
+        ec.projectWorkDir = new File(baseDir, "target")
+        // the stub reads the execution context, which refers to the launcher
+        ec.buildDependencies = [ForkWorkerStub, RootLoader].collect { new File(it.protectionDomain.codeSource.location.toURI()) }
+        // MaxPermSize is gone from recent JVMs
+        ec.forkedVmArgs = ["-XX:+IgnoreUnrecognizedVMOptions"]
+        ec.systemProperties.put("stub.exit", exit)
+        ec.systemProperties.putAll(properties)
+
+        def runtime = new ForkedGrailsRuntime(ec)
+        runtime.pool = pool
+        runtime.maxMemory = maxMemory
+        runtime.minMemory = 16
+        runtime
+    }
+}
@@ -0,0 +1,127 @@
+package org.grails.maven.plugin.tools
+
+import org.apache.maven.plugin.MojoExecutionException
+import spock.lang.Unroll
+
+import java.util.concurrent.LinkedBlockingQueue
+
+class ForkedGrailsRuntimeSpec extends TemporaryDirectorySpec {
+
+    def "a fork exiting with 0 succeeds"() {
+        when:
+            fork("0").run()
+
+        then:
+            notThrown(MojoExecutionException)
+    }
+
+    @Unroll
+    def "a fork exiting with #code fails the build"() {
+        when:
+            fork(code).run()
+
+        then:
+            def e = thrown(MojoExecutionException)
+            e.message.startsWith("Forked Grails VM exited with code " + code + description)
+            e.message.contains("stub exiting with " + code)
+
+        where:
+            code  | description
+            "1"   | "\nLast output:"
+            "2"   | "\nLast output:"
+            "137" | " (killed by SIGKILL, possibly by the out-of-memory killer of the operating system)"
+    }
+
+    def "a fork running out of memory is reported with its heap dump"() {
+        when:
+            fork("oom").run()
+
+        then:
+            def e = thrown(MojoExecutionException)
+            e.message.contains("the JVM ran out of heap space, consider raising forkMaxMemory (heap dump: " +
+                    new File(dir, "target/grails-fork-heap-dumps").canonicalPath)
+            new File(dir, "target/grails-fork-heap-dumps").list().any { it.endsWith(".hprof") }
+    }
+
+    @Unroll
+    def "exit code #code is described as #description"() {
+        expect:
+            new ForkExitStatus(code, null, lines).describe() == description
+
+        where:
+            code | lines                                             | description
+            143  | []                                                | "Forked Grails VM exited with code 143 (killed by SIGTERM)"
+            134  | ["java.lang.OutOfMemoryError: Metaspace"]         | "Forked Grails VM exited with code 134 (killed by SIGABRT): the JVM ran out of space for class metadata, consider raising forkPermGen, or -XX:MaxMetaspaceSize in forkedVmArgs from Java 8 on\nLast output:\n  java.lang.OutOfMemoryError: Metaspace"
+            3    | ["Error executing script TestApp"]                | "Forked Grails VM exited with code 3\nLast output:\n  Error executing script TestApp"
+    }
+
+    @Unroll
+    def "#line is taken for #kind"() {
+        given:
+            def status = new ForkExitStatus(1, null, ['Exception in thread "main" ' + line])
+
+        expect:
+            status.getOutOfMemory() == kind
+            status.describe().contains(advice)
+            status.describe().contains("forkMaxMemory") == (kind == ForkExitStatus.OutOfMemory.HEAP)
+
+        where:
+            line                                                                | kind                                         | advice
+            "java.lang.OutOfMemoryError: Java heap space"                       | ForkExitStatus.OutOfMemory.HEAP              | "ran out of heap space, consider raising forkMaxMemory"
+            "java.lang.OutOfMemoryError: GC overhead limit exceeded"            | ForkExitStatus.OutOfMemory.HEAP              | "ran out of heap space, consider raising forkMaxMemory"
+            "java.lang.OutOfMemoryError: PermGen space"                         | ForkExitStatus.OutOfMemory.CLASS_METADATA    | "consider raising forkPermGen"
+            "java.lang.OutOfMemoryError: Metaspace"                             | ForkExitStatus.OutOfMemory.CLASS_METADATA    | "consider raising forkPermGen"
+            "java.lang.OutOfMemoryError: unable to create new native thread"    | ForkExitStatus.OutOfMemory.NATIVE_THREADS    | "ulimit -u"
+            "java.lang.OutOfMemoryError: unable to create native thread: possibly out of memory or process/resource limits reached" | ForkExitStatus.OutOfMemory.NATIVE_THREADS | "ulimit -u"
+            "java.lang.OutOfMemoryError: Direct buffer memory"                  | ForkExitStatus.OutOfMemory.OTHER             | "ran out of memory outside the heap"
+            "java.lang.IllegalStateException: no memory problem"                | null                                         | "exited with code 1"
+    }
+
+    def "a heap dump without output is taken for a full heap"() {
+        given:
+            def heapDump = new File(dir, "java_pid1.hprof")
+
+        expect:
+            new ForkExitStatus(1, heapDump, []).getOutOfMemory() == ForkExitStatus.OutOfMemory.HEAP
+            new ForkExitStatus(1, heapDump, ["java.lang.OutOfMemoryError: Metaspace"]).getOutOfMemory() == ForkExitStatus.OutOfMemory.CLASS_METADATA
+    }
+
+    def "console input is no longer read once forwarding stops"() {
+        given:
+            def console = new LinkedBlockingQueue<Integer>()
+            def input = [available: { console.size() }, read: { -> console.take() }] as InputStream
+            def forwarded = new ByteArrayOutputStream()
+            def forwarder = new ForkedGrailsRuntime.InputForwarder(input, forwarded)
+            def thread = Thread.start { forwarder.run() }
+
+        when:
+            console.addAll("r\n".bytes as List<Integer>)
+            for (int i = 0; i < 50 && forwarded.size() < 2; i++) {
+                Thread.sleep(100)
+            }
+            forwarder.stop()
+            thread.join(5000)
+            console.addAll("mvn\n".bytes as List<Integer>)
+            Thread.sleep(200)
+
+        then:
+            !thread.alive
+            forwarded.toString() == "r\n"
+            console.size() == 4
+    }
+
+    private ForkedGrailsRuntime fork(String exit) {
+        def ec = new AbstractGrailsRuntime.ExecutionContext()
+        ec.baseDir = dir
+        ec.projectWorkDir = new File(dir, "target")
+        ec.buildDependencies = [new File(ForkExitStub.protectionDomain.codeSource.location.toURI())]
+        // MaxPermSize is gone from recent JVMs
+        ec.forkedVmArgs = ["-XX:+IgnoreUnrecognizedVMOptions", "-Dstub.exit=" + exit]
+
+        def runtime = new ForkedGrailsRuntime(ec)
+        runtime.mainClass = ForkExitStub.name
+        runtime.maxMemory = 32
+        runtime.minMemory = 16
+        runtime
+    }
+}
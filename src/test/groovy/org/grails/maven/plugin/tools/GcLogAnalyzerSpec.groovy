@@ -0,0 +1,80 @@
+package org.grails.maven.plugin.tools
+
+import spock.lang.Specification
+
+class GcLogAnalyzerSpec extends Specification {
+
+    def "unified logging pauses are summarized"() {
+        when:
+            def summary = GcLogAnalyzer.analyze(new BufferedReader(new StringReader('''\
+[0.010s][info][gc] Using G1
+[0.100s][info][gc,start] GC(0) Pause Young (Normal) (G1 Evacuation Pause)
+[0.100s][info][gc] GC(0) Pause Young (Normal) (G1 Evacuation Pause) 24M->4M(256M) 2.000ms
+[0.500s][info][gc,phases] GC(1)   Pre Evacuate Collection Set: 0.1ms
+[0.500s][info][gc] GC(1) Pause Young (Normal) (G1 Evacuation Pause) 28M->6M(256M) 4.000ms
+[1.000s][info][gc] GC(2) Pause Full (System.gc()) 30M->10M(128M) 10.000ms
+''')))
+
+        then:
+            summary.pauseCount == 3
+            summary.totalPauseMillis == 16
+            summary.maxPauseMillis == 10
+            summary.peakHeapKb == 30 * 1024
+            summary.maxLiveHeapKb == 10 * 1024
+            summary.committedHeapKb == 256 * 1024
+            summary.allocatedKb == 72 * 1024
+            summary.elapsedSeconds == 1
+            summary.allocationRateMbPerSecond == 72
+            summary.gcOverheadPercent == 1.6d
+            summary.suggestedMaxMemoryMb == 64
+    }
+
+    def "legacy logging pauses are summarized from the whole heap figures"() {
+        when:
+            def summary = GcLogAnalyzer.analyze(new BufferedReader(new StringReader('''\
+1.500: [GC (Allocation Failure) [PSYoungGen: 33280K->5112K(38400K)] 33280K->5120K(125952K), 0.0050000 secs] [Times: user=0.01 sys=0.00, real=0.01 secs]
+2.000: [Full GC (Ergonomics) [PSYoungGen: 5112K->0K(38400K)] [ParOldGen: 8K->40000K(87552K)] 5120K->40000K(125952K), [Metaspace: 3000K->3000K(1056768K)], 0.0200000 secs] [Times: user=0.01 sys=0.00, real=0.02 secs]
+''')))
+
+        then:
+            summary.pauseCount == 2
+            summary.totalPauseMillis == 25
+            summary.maxPauseMillis == 20
+            summary.peakHeapKb == 33280
+            summary.maxLiveHeapKb == 40000
+            summary.committedHeapKb == 125952
+            summary.allocatedKb == 33280
+            summary.elapsedSeconds == 2
+            summary.suggestedMaxMemoryMb == 79
+    }
+
+    def "without full collections the live heap is taken from any collection"() {
+        when:
+            def summary = GcLogAnalyzer.analyze(new BufferedReader(new StringReader('''\
+[0.100s][info][gc] GC(0) Pause Young (Normal) (G1 Evacuation Pause) 300M->120M(512M) 2.000ms
+''')))
+
+        then:
+            summary.maxLiveHeapKb == 120 * 1024
+            summary.suggestedMaxMemoryMb == 240
+    }
+
+    def "an empty log has nothing to suggest"() {
+        when:
+            def summary = GcLogAnalyzer.analyze(new BufferedReader(new StringReader("")))
+
+        then:
+            summary.pauseCount == 0
+            summary.suggestedMaxMemoryMb == 0
+            summary.describe() == "No GC pauses logged."
+    }
+
+    def "the logging options depend on the Java version"() {
+        given:
+            def log = new File("target/gc.log")
+
+        expect:
+            GcLogAnalyzer.gcLogOptions(log, "1.8") as List == ["-Xloggc:" + log.path, "-XX:+PrintGCDetails", "-XX:+PrintGCTimeStamps"]
+            GcLogAnalyzer.gcLogOptions(log, "11") as List == ["-Xlog:gc*:file=" + log.path + ":uptime,level,tags"]
+    }
+}
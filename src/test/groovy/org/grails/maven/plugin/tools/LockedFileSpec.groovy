@@ -0,0 +1,104 @@
+package org.grails.maven.plugin.tools
+
+import java.util.concurrent.Callable
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.ExecutorService
+import java.util.concurrent.Executors
+import java.util.concurrent.Future
+
+class LockedFileSpec extends TemporaryDirectorySpec {
+
+    def "the file and its parent directories are created when missing"() {
+        given:
+            def file = new File(dir, "a/b/application.properties")
+
+        when:
+            def locked = LockedFile.open(file)
+            def properties = locked.readProperties()
+            locked.close()
+
+        then:
+            file.exists()
+            properties.isEmpty()
+    }
+
+    def "written properties replace the previous contents"() {
+        given:
+            def file = new File(dir, "application.properties")
+            file.text = "app.name=a-much-longer-application-name\n"
+
+        when:
+            def locked = LockedFile.open(file)
+            def properties = new Properties()
+            properties.setProperty("app.name", "short")
+            locked.writeProperties(properties, "test")
+            locked.close()
+
+        then:
+            def reloaded = new Properties()
+            file.withInputStream { reloaded.load(it) }
+            reloaded == ["app.name": "short"]
+    }
+
+    def "modules built in parallel do not lose each other's updates"() {
+        given:
+            def file = new File(dir, "application.properties")
+            int modules = 8
+            int updatesPerModule = 25
+            ExecutorService executor = Executors.newFixedThreadPool(modules)
+            CountDownLatch start = new CountDownLatch(1)
+
+        when:
+            List<Future> results = (1..modules).collect { int module ->
+                executor.submit({
+                    start.await()
+                    updatesPerModule.times {
+                        LockedFile locked = LockedFile.open(file)
+                        try {
+                            Properties metadata = locked.readProperties()
+                            int count = (metadata.getProperty("count") ?: "0") as int
+                            metadata.setProperty("count", String.valueOf(count + 1))
+                            metadata.setProperty("module." + module, String.valueOf(it + 1))
+                            locked.writeProperties(metadata, "Grails Metadata file")
+                        } finally {
+                            locked.close()
+                        }
+                    }
+                    return module
+                } as Callable)
+            }
+            start.countDown()
+            results*.get()
+            executor.shutdown()
+
+        then:
+            def metadata = new Properties()
+            file.withInputStream { metadata.load(it) }
+            metadata.getProperty("count") == String.valueOf(modules * updatesPerModule)
+            (1..modules).every { metadata.getProperty("module." + it) == String.valueOf(updatesPerModule) }
+    }
+
+    def "execution system properties are restored after an in-process run"() {
+        given:
+            System.setProperty("grails.maven.spec.existing", "before")
+            System.clearProperty("grails.maven.spec.added")
+
+        when:
+            def previous = AbstractGrailsRuntime.applySystemProperties(
+                    ["grails.maven.spec.existing": "during", "grails.maven.spec.added": "during"])
+
+        then:
+            System.getProperty("grails.maven.spec.existing") == "during"
+            System.getProperty("grails.maven.spec.added") == "during"
+
+        when:
+            AbstractGrailsRuntime.restoreSystemProperties(previous)
+
+        then:
+            System.getProperty("grails.maven.spec.existing") == "before"
+            System.getProperty("grails.maven.spec.added") == null
+
+        cleanup:
+            System.clearProperty("grails.maven.spec.existing")
+    }
+}
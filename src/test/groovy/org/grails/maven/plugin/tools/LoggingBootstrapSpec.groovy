@@ -0,0 +1,41 @@
+package org.grails.maven.plugin.tools
+
+import org.eclipse.aether.artifact.Artifact
+import org.eclipse.aether.artifact.DefaultArtifact
+import spock.lang.Specification
+import spock.lang.Unroll
+
+class LoggingBootstrapSpec extends Specification {
+
+    @Unroll
+    def "the #backend backend is selected for #coordinates"() {
+        when:
+            def selection = LoggingBootstrap.select(artifacts(coordinates))
+
+        then:
+            selection.backend == backend
+
+        where:
+            coordinates                                                                    | backend
+            ["org.slf4j:slf4j-api:1.7.5", "ch.qos.logback:logback-classic:1.0.13"]         | LoggingBootstrap.Backend.LOGBACK
+            ["org.slf4j:slf4j-api:1.7.5", "org.apache.logging.log4j:log4j-slf4j-impl:2.0"] | LoggingBootstrap.Backend.LOG4J2
+            ["org.slf4j:slf4j-log4j12:1.7.5", "log4j:log4j:1.2.17"]                        | LoggingBootstrap.Backend.LOG4J
+            ["org.apache.logging.log4j:log4j-core:2.0"]                                    | LoggingBootstrap.Backend.LOG4J2
+            ["org.springframework:spring-core:3.2.8.RELEASE"]                              | LoggingBootstrap.Backend.NONE
+    }
+
+    def "only jars of the logging libraries are selected"() {
+        when:
+            def selection = LoggingBootstrap.select(artifacts(["org.springframework:spring-core:3.2.8.RELEASE", "log4j:log4j:1.2.17"]))
+
+        then:
+            selection.jars*.name == ["log4j-1.2.17.jar"]
+    }
+
+    private List<Artifact> artifacts(List<String> coordinates) {
+        coordinates.collect { String c ->
+            def artifact = new DefaultArtifact(c)
+            artifact.setFile(new File("/repository/${artifact.artifactId}-${artifact.version}.jar"))
+        }
+    }
+}
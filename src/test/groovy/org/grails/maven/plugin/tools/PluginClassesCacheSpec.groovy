@@ -0,0 +1,81 @@
+package org.grails.maven.plugin.tools
+
+class PluginClassesCacheSpec extends TemporaryDirectorySpec {
+
+    PluginClassesCache cache
+
+    def setup() {
+        cache = new PluginClassesCache(new File(dir, "cache"))
+    }
+
+    def "keys depend on the plugins, class path and versions but not on their order"() {
+        given:
+            def plugins = ["org.grails.plugins:a:zip:1.0", "org.grails.plugins:b:zip:2.0"]
+            def classpath = ["org.example:lib:jar:1.0", "org.example:other:jar:2.0"]
+            def key = PluginClassesCache.key(plugins, classpath, "2.4.4", "2.3.7", "1.7")
+
+        expect:
+            key == PluginClassesCache.key(plugins.reverse(), classpath.reverse(), "2.4.4", "2.3.7", "1.7")
+            key != PluginClassesCache.key(["org.grails.plugins:a:zip:1.0", "org.grails.plugins:b:zip:2.1"], classpath, "2.4.4", "2.3.7", "1.7")
+            key != PluginClassesCache.key(plugins, ["org.example:lib:jar:1.1", "org.example:other:jar:2.0"], "2.4.4", "2.3.7", "1.7")
+            key != PluginClassesCache.key(plugins, classpath, "2.4.5", "2.3.7", "1.7")
+            key != PluginClassesCache.key(plugins, classpath, "2.4.4", "2.3.8", "1.7")
+            key != PluginClassesCache.key(plugins, classpath, "2.4.4", "2.3.7", "1.8")
+            key ==~ /[0-9a-f]{40}/
+    }
+
+    def "compiled plugin classes are restored into a clean build with their time stamps"() {
+        given:
+            def compiled = file("first/plugin-classes/org/example/FooService.class", "foo")
+            file("first/plugin-build-classes/_Events.class", "events")
+            compiled.lastModified = 1400000000000L
+
+        when:
+            def stored = cache.store("key", new File(dir, "first"))
+            def restored = cache.restore("key", new File(dir, "second"))
+
+        then:
+            stored
+            restored
+            new File(dir, "second/plugin-classes/org/example/FooService.class").text == "foo"
+            new File(dir, "second/plugin-classes/org/example/FooService.class").lastModified() == 1400000000000L
+            new File(dir, "second/plugin-build-classes/_Events.class").text == "events"
+            !new File(dir, "second/plugin-provided-classes").exists()
+    }
+
+    def "plugin classes compiled by an earlier build of the project are kept"() {
+        given:
+            file("first/plugin-classes/Foo.class", "cached")
+            cache.store("key", new File(dir, "first"))
+            file("second/plugin-classes/Foo.class", "compiled")
+
+        expect:
+            !cache.restore("key", new File(dir, "second"))
+            new File(dir, "second/plugin-classes/Foo.class").text == "compiled"
+    }
+
+    def "entries are written once"() {
+        given:
+            file("first/plugin-classes/Foo.class", "first")
+            file("second/plugin-classes/Foo.class", "second")
+
+        expect:
+            cache.store("key", new File(dir, "first"))
+            !cache.store("key", new File(dir, "second"))
+            new File(dir, "cache/key/plugin-classes/Foo.class").text == "first"
+            new File(dir, "cache").list() as List == ["key"]
+    }
+
+    def "nothing is cached or restored without compiled plugins"() {
+        expect:
+            !cache.store("key", new File(dir, "empty"))
+            !cache.restore("key", new File(dir, "empty"))
+    }
+
+    private File file(String path, String text) {
+        def file = new File(dir, path)
+        file.parentFile.mkdirs()
+        file.text = text
+        file
+    }
+}
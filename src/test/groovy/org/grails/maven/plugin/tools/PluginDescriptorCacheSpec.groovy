@@ -0,0 +1,66 @@
+package org.grails.maven.plugin.tools
+
+class PluginDescriptorCacheSpec extends TemporaryDirectorySpec {
+
+    File cacheDir
+
+    def setup() {
+        cacheDir = new File(dir, "target/grails-maven")
+        PluginDescriptorCache.clear()
+    }
+
+    def cleanup() {
+        PluginDescriptorCache.clear()
+    }
+
+    def "the version is read from the descriptor and written to the disk cache"() {
+        given:
+            def descriptor = descriptor("0.1")
+
+        when:
+            def version = PluginDescriptorCache.readVersion(descriptor, cacheDir)
+
+        then:
+            version == "0.1"
+            def cached = new Properties()
+            new File(cacheDir, PluginDescriptorCache.CACHE_FILE).withInputStream { cached.load(it) }
+            cached.getProperty("path") == descriptor.canonicalPath
+            cached.getProperty("version") == "0.1"
+    }
+
+    def "an unchanged descriptor is not parsed again"() {
+        given:
+            def descriptor = descriptor("0.1")
+            cacheDir.mkdirs()
+            def cached = new Properties()
+            cached.setProperty("path", descriptor.canonicalPath)
+            cached.setProperty("length", String.valueOf(descriptor.length()))
+            cached.setProperty("lastModified", String.valueOf(descriptor.lastModified()))
+            cached.setProperty("version", "from-cache")
+            new File(cacheDir, PluginDescriptorCache.CACHE_FILE).withOutputStream { cached.store(it, null) }
+
+        expect:
+            PluginDescriptorCache.readVersion(descriptor, cacheDir) == "from-cache"
+    }
+
+    def "a changed descriptor is parsed again"() {
+        given:
+            def descriptor = descriptor("0.1")
+            PluginDescriptorCache.readVersion(descriptor, cacheDir)
+
+        when:
+            descriptor = descriptor("0.10")
+
+        then:
+            PluginDescriptorCache.readVersion(descriptor, cacheDir) == "0.10"
+    }
+
+    private File descriptor(String version) {
+        def file = new File(dir, "FooGrailsPlugin.groovy")
+        file.text = """class FooGrailsPlugin {
+    def version = "${version}"
+}
+"""
+        file
+    }
+}
@@ -0,0 +1,71 @@
+package org.grails.maven.plugin.tools
+
+class ProjectMetadataStoreSpec extends TemporaryDirectorySpec {
+
+    def "a missing metadata file gives an empty snapshot and is not created by reading"() {
+        when:
+            def metadata = ProjectMetadataStore.forProject(dir).snapshot()
+
+        then:
+            !metadata.exists()
+            metadata.properties.isEmpty()
+            !new File(dir, "application.properties").exists()
+    }
+
+    def "snapshots are shared until the file changes on disk"() {
+        given:
+            def file = new File(dir, "application.properties")
+            file.text = "app.name=foo\n"
+            def store = ProjectMetadataStore.forProject(dir)
+
+        when:
+            def first = store.snapshot()
+
+        then:
+            ProjectMetadataStore.forProject(new File(dir, ".")).snapshot().is(first)
+            first.appName == "foo"
+
+        when:
+            file.text = "app.name=foo-bar\n"
+
+        then:
+            store.snapshot().appName == "foo-bar"
+    }
+
+    def "staged changes are written together and keep the other properties"() {
+        given:
+            def file = new File(dir, "application.properties")
+            file.text = "app.name=foo\napp.servlet.version=3.0\n"
+            def store = ProjectMetadataStore.forProject(dir)
+
+        when:
+            store.stage("app.version", "1.0")
+            store.stage("app.grails.version", "2.4.4")
+
+        then:
+            store.snapshot().appVersion == null
+
+        when:
+            def written = store.flush()
+
+        then:
+            written
+            !store.hasPendingChanges()
+            store.snapshot().appVersion == "1.0"
+            def properties = new Properties()
+            file.withInputStream { properties.load(it) }
+            properties == ["app.name": "foo", "app.servlet.version": "3.0", "app.version": "1.0", "app.grails.version": "2.4.4"]
+    }
+
+    def "nothing is written when the staged values are already present"() {
+        given:
+            new File(dir, "application.properties").text = "app.version=1.0\n"
+            def store = ProjectMetadataStore.forProject(dir)
+
+        when:
+            store.stage("app.version", "1.0")
+
+        then:
+            !store.flush()
+    }
+}
@@ -0,0 +1,59 @@
+package org.grails.maven.plugin.tools
+
+import org.apache.maven.artifact.DefaultArtifact
+import org.apache.maven.artifact.handler.DefaultArtifactHandler
+import org.apache.maven.model.Build
+import org.apache.maven.model.Model
+import org.apache.maven.project.MavenProject
+
+class ReactorPluginsSpec extends TemporaryDirectorySpec {
+
+    def "plugin modules the application depends on are found with their packages"() {
+        given:
+            def plugin = project("security-module", "grails-plugin")
+            new File(plugin.basedir, "SpringSecurityCoreGrailsPlugin.groovy").text = "class SpringSecurityCoreGrailsPlugin {}"
+            def unused = project("unused", "grails-plugin")
+            def library = project("library", "jar")
+            def app = project("app", "grails-app")
+            def pluginZip = new File(dir, "security-module-1.0.zip")
+            def libraryJar = new File(dir, "library-1.0.jar")
+            app.artifacts = [artifact("security-module", "zip", pluginZip), artifact("library", "jar", libraryJar)] as Set
+            def reactorPlugins = new ReactorPlugins([plugin, unused, library, app])
+
+        expect:
+            reactorPlugins.getDependencies(app) == ["spring-security-core": plugin]
+            reactorPlugins.getPackages(app) == [pluginZip, new File(plugin.build.outputDirectory)] as Set
+            ReactorPlugins.withoutPackages([pluginZip, libraryJar], reactorPlugins.getPackages(app)) == [libraryJar]
+    }
+
+    def "plugins without a descriptor are named after their artifact"() {
+        expect:
+            ReactorPlugins.getPluginName(project("my-plugin", "grails-plugin")) == "my-plugin"
+    }
+
+    def "inline plugin locations are read from system properties"() {
+        given:
+            def properties = ["grails.plugin.location.b": "/b", "grails.plugin.location.a": "/a", "grails.plugin.location.": "/x", "other": "y"]
+
+        expect:
+            InlinePluginRegistrar.getLocations(properties) == [a: new File("/a"), b: new File("/b")]
+            InlinePluginRegistrar.isRequested(properties)
+            !InlinePluginRegistrar.isRequested([other: "y"])
+    }
+
+    private MavenProject project(String artifactId, String packaging) {
+        def model = new Model(groupId: "org.example", artifactId: artifactId, version: "1.0", packaging: packaging)
+        def basedir = new File(dir, artifactId)
+        basedir.mkdirs()
+        model.build = new Build(outputDirectory: new File(basedir, "target/classes").path)
+        def project = new MavenProject(model)
+        project.file = new File(basedir, "pom.xml")
+        project
+    }
+
+    private DefaultArtifact artifact(String artifactId, String type, File file) {
+        def artifact = new DefaultArtifact("org.example", artifactId, "1.0", "compile", type, null, new DefaultArtifactHandler(type))
+        artifact.file = file
+        artifact
+    }
+}
@@ -0,0 +1,109 @@
+package org.grails.maven.plugin.tools
+
+import spock.lang.Unroll
+
+import java.util.concurrent.Callable
+
+class RunAppSupervisorSpec extends TemporaryDirectorySpec {
+
+    RunAppSupervisor supervisor
+
+    def setup() {
+        supervisor = new RunAppSupervisor(dir, new File(dir, "target"))
+    }
+
+    @Unroll
+    def "changing #path #description a restart"() {
+        expect:
+            supervisor.needsRestart(new File(dir, path)) == restart
+
+        where:
+            path                                           | restart
+            "grails-app/domain/Book.groovy"                | true
+            "grails-app/domain/com/example/Author.groovy"  | true
+            "grails-app/conf/spring/resources.groovy"      | true
+            "grails-app/conf/Config.groovy"                | true
+            "grails-app/conf/BootStrap.groovy"             | true
+            "grails-app/conf/UrlMappings.groovy"           | false
+            "grails-app/conf/com/example/Config.groovy"    | false
+            "grails-app/controllers/BookController.groovy" | false
+            "src/groovy/Helper.groovy"                     | false
+
+            description = restart ? "requires" : "doesn't require"
+    }
+
+    def "the application is launched again until it stops without a restart"() {
+        given:
+            def launches = 0
+            def launch = {
+                launches++
+                // like Grails, run until the kill file shows up
+                while (!new File(dir, RunAppSupervisor.KILL_FILE).exists()) {
+                    Thread.sleep(10)
+                }
+                new File(dir, RunAppSupervisor.KILL_FILE).delete()
+                launches == 1 ? 0 : 3
+            } as Callable<Integer>
+
+        when:
+            Thread.start {
+                supervisor.readCommands(new ByteArrayInputStream("r\n".bytes))
+                while (launches < 2) {
+                    Thread.sleep(10)
+                }
+                supervisor.requestStop()
+            }
+            def exit = supervisor.run(launch)
+
+        then:
+            launches == 2
+            exit == 3
+            !new File(dir, RunAppSupervisor.KILL_FILE).exists()
+            !new File(dir, "target/" + RunAppSupervisor.KILL_FILE).exists()
+    }
+
+    def "a restart launches from a new build class loader with the original system properties"() {
+        given:
+            def ec = new AbstractGrailsRuntime.ExecutionContext()
+            ec.buildDependencies = [new File(RunAppSupervisor.protectionDomain.codeSource.location.toURI())]
+            def launched = []
+            def launch = {
+                def loader = AbstractGrailsRuntime.createLaunchClassLoader(ec)
+                launched << [loader.loadClass(RunAppSupervisor.name), System.getProperty("grails.env")]
+                // like Grails, leave the environment behind
+                System.setProperty("grails.env", "development")
+                if (launched.size() == 1) {
+                    supervisor.requestRestart("Test")
+                }
+                0
+            } as Callable<Integer>
+
+        when:
+            def exit = supervisor.run(launch)
+
+        then:
+            exit == 0
+            launched.size() == 2
+            !launched[0][0].is(launched[1][0])
+            !launched[0][0].is(RunAppSupervisor)
+            launched.collect { it[1] } == [null, null]
+            System.getProperty("grails.env") == null
+    }
+
+    def "changes reloading can handle are passed on"() {
+        given:
+            def reloaded = []
+            def listener = supervisor.restartOrReload({ reloaded << it } as SourceWatcher.Listener)
+            def controller = [(new File(dir, "grails-app/controllers/BookController.groovy")): SourceWatcher.Change.MODIFIED]
+            def domain = [(new File(dir, "grails-app/domain/Book.groovy")): SourceWatcher.Change.MODIFIED]
+
+        when:
+            listener.changed(controller)
+            listener.changed(domain)
+
+        then:
+            reloaded == [controller]
+            new File(dir, RunAppSupervisor.KILL_FILE).exists()
+            new File(dir, "target/" + RunAppSupervisor.KILL_FILE).exists()
+    }
+}
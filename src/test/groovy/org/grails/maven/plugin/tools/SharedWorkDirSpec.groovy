@@ -0,0 +1,113 @@
+package org.grails.maven.plugin.tools
+
+class SharedWorkDirSpec extends TemporaryDirectorySpec {
+
+    File base
+
+    def setup() {
+        base = new File(dir, "base")
+    }
+
+    def "the shared directory is copied into the overlay, except for the project directories"() {
+        given:
+            file("base/ivy-cache/org.example/foo/ivy-1.0.xml", "ivy").lastModified = 1400000000000L
+            file("base/global-plugins/foo.xml", "foo")
+            file("base/projects/other/plugin-classes/Foo.class", "other")
+            file("overlay/stale.txt", "left by a failed build")
+            file("overlay/projects/app/resources.xml", "app")
+
+        when:
+            def copied = new SharedWorkDir(base, new File(dir, "overlay")).checkout()
+
+        then:
+            copied == 2
+            new File(dir, "overlay/ivy-cache/org.example/foo/ivy-1.0.xml").text == "ivy"
+            new File(dir, "overlay/ivy-cache/org.example/foo/ivy-1.0.xml").lastModified() == 1400000000000L
+            new File(dir, "overlay/global-plugins/foo.xml").text == "foo"
+            !new File(dir, "overlay/stale.txt").exists()
+            !new File(dir, "overlay/projects/other").exists()
+            new File(dir, "overlay/projects/app/resources.xml").text == "app"
+            !new File(dir, "overlay/" + SharedWorkDir.LOCK_FILE).exists()
+    }
+
+    def "unchanged files are not copied again"() {
+        given:
+            file("base/ivy-cache/foo.xml", "foo")
+            def workDir = new SharedWorkDir(base, new File(dir, "overlay"))
+            workDir.checkout()
+
+        expect:
+            workDir.checkout() == 0
+    }
+
+    def "new and updated files are published without deleting files of other builds"() {
+        given:
+            file("base/ivy-cache/kept.xml", "kept")
+            file("base/ivy-cache/updated.xml", "old").lastModified = 1400000000000L
+            def workDir = new SharedWorkDir(base, new File(dir, "overlay"))
+            workDir.checkout()
+            new File(dir, "overlay/ivy-cache/kept.xml").delete()
+            file("overlay/ivy-cache/updated.xml", "new").lastModified = 1500000000000L
+            file("overlay/ivy-cache/added.xml", "added")
+            file("overlay/projects/app/plugin-classes/Foo.class", "app")
+
+        when:
+            def published = workDir.publish()
+
+        then:
+            published == 2
+            new File(base, "ivy-cache/kept.xml").text == "kept"
+            new File(base, "ivy-cache/updated.xml").text == "new"
+            new File(base, "ivy-cache/updated.xml").lastModified() == 1500000000000L
+            new File(base, "ivy-cache/added.xml").text == "added"
+            !new File(base, "projects").exists()
+            new File(base, "ivy-cache").list().every { !it.endsWith(".tmp") }
+    }
+
+    def "files updated in the shared directory since the checkout are not overwritten by older copies"() {
+        given:
+            file("base/ivy-cache/foo.xml", "first").lastModified = 1400000000000L
+            def workDir = new SharedWorkDir(base, new File(dir, "overlay"))
+            workDir.checkout()
+            file("base/ivy-cache/foo.xml", "published by another build").lastModified = 1500000000000L
+
+        expect:
+            workDir.publish() == 0
+            new File(base, "ivy-cache/foo.xml").text == "published by another build"
+    }
+
+    def "concurrent builds check out and publish the same shared directory"() {
+        given:
+            file("base/ivy-cache/common.xml", "common")
+            def failures = Collections.synchronizedList([])
+            def threads = (1..4).collect { n ->
+                Thread.start {
+                    try {
+                        def workDir = new SharedWorkDir(base, new File(dir, "overlay-" + n))
+                        3.times { i ->
+                            workDir.checkout()
+                            assert new File(dir, "overlay-" + n + "/ivy-cache/common.xml").text == "common"
+                            file("overlay-" + n + "/ivy-cache/build-" + n + "-" + i + ".xml", "build " + n)
+                            workDir.publish()
+                        }
+                    } catch (Throwable e) {
+                        failures << e
+                    }
+                }
+            }
+
+        when:
+            threads*.join()
+
+        then:
+            failures.empty
+            new File(base, "ivy-cache").list().findAll { it.startsWith("build-") }.size() == 12
+    }
+
+    private File file(String path, String text) {
+        def file = new File(dir, path)
+        file.parentFile.mkdirs()
+        file.text = text
+        file
+    }
+}
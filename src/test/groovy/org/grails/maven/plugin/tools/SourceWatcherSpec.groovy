@@ -0,0 +1,67 @@
+package org.grails.maven.plugin.tools
+
+import spock.lang.Unroll
+
+import java.util.concurrent.LinkedBlockingQueue
+import java.util.concurrent.TimeUnit
+
+import static org.grails.maven.plugin.tools.SourceWatcher.Change.*
+
+class SourceWatcherSpec extends TemporaryDirectorySpec {
+
+    SourceWatcher watcher
+    def batches = new LinkedBlockingQueue<Map<File, SourceWatcher.Change>>()
+
+    def setup() {
+        new File(dir, "grails-app/controllers").mkdirs()
+        watcher = new SourceWatcher([new File(dir, "grails-app/controllers"), new File(dir, "src/groovy")], 200,
+                { batches.add(it) } as SourceWatcher.Listener)
+        watcher.start()
+    }
+
+    def cleanup() {
+        watcher.close()
+    }
+
+    @Unroll
+    def "#first followed by #second is recorded as #result"() {
+        given:
+            def pending = [:]
+            def file = new File("A.groovy")
+
+        when:
+            SourceWatcher.record(pending, file, first)
+            SourceWatcher.record(pending, file, second)
+
+        then:
+            pending == (result ? [(file): result] : [:])
+
+        where:
+            first    | second   | result
+            CREATED  | MODIFIED | CREATED
+            CREATED  | DELETED  | null
+            MODIFIED | MODIFIED | MODIFIED
+            MODIFIED | DELETED  | DELETED
+            DELETED  | CREATED  | MODIFIED
+    }
+
+    def "a burst of changes is delivered as one batch"() {
+        given:
+            def controller = new File(dir, "grails-app/controllers/BookController.groovy")
+            controller.text = "class BookController {}"
+            batches.poll(5, TimeUnit.SECONDS)
+
+        when:
+            5.times {
+                controller.text = "class BookController { def index$it() {} }"
+                Thread.sleep(20)
+            }
+            def service = new File(dir, "grails-app/controllers/books/BookHelper.groovy")
+            service.parentFile.mkdirs()
+            service.text = "class BookHelper {}"
+
+        then:
+            batches.poll(5, TimeUnit.SECONDS) == [(controller): MODIFIED, (service): CREATED]
+            batches.poll(500, TimeUnit.MILLISECONDS) == null
+    }
+}
@@ -0,0 +1,171 @@
+package org.grails.maven.plugin.tools
+
+import spock.lang.Unroll
+
+import java.util.zip.ZipEntry
+import java.util.zip.ZipFile
+import java.util.zip.ZipInputStream
+import java.util.zip.ZipOutputStream
+
+class StandaloneLayersSpec extends TemporaryDirectorySpec {
+
+    @Unroll
+    def "#name belongs to the #layer layer"() {
+        expect:
+            new StandaloneLayers(["bar-1.0.jar"]).layerOf(name) == layer
+
+        where:
+            name                                   | layer
+            "WEB-INF/lib/spring-core-3.2.8.jar"    | StandaloneLayers.DEPENDENCIES
+            "org/eclipse/jetty/Server.class"       | StandaloneLayers.DEPENDENCIES
+            "WEB-INF/lib/bar-1.0.jar"              | StandaloneLayers.PLUGINS
+            "WEB-INF/lib/grails-plugin-foo-1.0.jar" | StandaloneLayers.PLUGINS
+            "plugins/foo-1.0/css/foo.css"          | StandaloneLayers.PLUGINS
+            "WEB-INF/classes/com/example/App.class" | StandaloneLayers.APPLICATION
+            "WEB-INF/grails-app/views/index.gsp"   | StandaloneLayers.APPLICATION
+            "META-INF/MANIFEST.MF"                 | StandaloneLayers.APPLICATION
+            "css/main.css"                         | StandaloneLayers.APPLICATION
+    }
+
+    def "layered jars built from the same content are identical"() {
+        given:
+            def first = jar(new File(dir, "first.jar"), System.currentTimeMillis())
+            def second = jar(new File(dir, "second.jar"), System.currentTimeMillis() - 3600000)
+            def layers = new StandaloneLayers(["bar-1.0.jar"])
+
+        when:
+            def firstLayered = new File(dir, "first-layered.jar")
+            new WarAssembler(-1, 2).assemble(layers.extract(first, new File(dir, "layers")), firstLayered)
+            def secondLayered = new File(dir, "second-layered.jar")
+            new WarAssembler(-1, 2).assemble(layers.extract(second, new File(dir, "layers")), secondLayered)
+
+        then:
+            firstLayered.bytes == secondLayered.bytes
+            new File(dir, "layers/dependencies/WEB-INF/lib/spring-core-3.2.8.jar").lastModified() == StandaloneLayers.REPRODUCIBLE_TIME
+            new File(dir, "layers/application/META-INF/layers.idx").text == '''\
+- "dependencies":
+  - "WEB-INF/lib/spring-core-3.2.8.jar"
+- "plugins":
+  - "WEB-INF/lib/bar-1.0.jar"
+- "application":
+  - "META-INF/MANIFEST.MF"
+  - "WEB-INF/classes/App.class"
+'''
+    }
+
+    def "the embedded WAR of a build-standalone jar is split into the layers"() {
+        when:
+            new StandaloneLayers(["bar-1.0.jar"]).extract(standaloneJar(new File(dir, "app.jar"), "1.0"), new File(dir, "layers"))
+
+        then:
+            new File(dir, "layers/dependencies/grails/plugin/standalone/Launcher.class").text == "grails/plugin/standalone/Launcher.class"
+            new File(dir, "layers/dependencies/embedded.war/WEB-INF/lib/spring-core-3.2.8.jar").text == "WEB-INF/lib/spring-core-3.2.8.jar"
+            new File(dir, "layers/plugins/embedded.war/WEB-INF/lib/bar-1.0.jar").isFile()
+            new File(dir, "layers/plugins/embedded.war/plugins/bar-1.0/css/bar.css").isFile()
+            new File(dir, "layers/application/embedded.war/WEB-INF/classes/App.class").text == "1.0"
+            new File(dir, "layers/application/META-INF/MANIFEST.MF").isFile()
+            !new File(dir, "layers/application/embedded.war").isFile()
+            new File(dir, "layers/application/META-INF/layers.idx").text == '''\
+- "dependencies":
+  - "embedded.war/WEB-INF/lib/spring-core-3.2.8.jar"
+  - "grails/plugin/standalone/Launcher.class"
+- "plugins":
+  - "embedded.war/WEB-INF/lib/bar-1.0.jar"
+  - "embedded.war/plugins/bar-1.0/css/bar.css"
+- "application":
+  - "META-INF/MANIFEST.MF"
+  - "embedded.war/META-INF/MANIFEST.MF"
+  - "embedded.war/WEB-INF/classes/App.class"
+'''
+    }
+
+    def "the embedded WAR is packed again with the dependencies first"() {
+        given:
+            def layers = new StandaloneLayers(["bar-1.0.jar"])
+            def assembled = new File(dir, "assembled.jar")
+
+        when:
+            layers.extract(standaloneJar(new File(dir, "app.jar"), "1.0"), new File(dir, "layers"))
+            layers.assemble(new File(dir, "layers"), new WarAssembler(-1, 2), assembled)
+            def zipFile = new ZipFile(assembled)
+            def entries = zipFile.entries()*.name
+            def war = new ZipInputStream(zipFile.getInputStream(zipFile.getEntry("embedded.war")))
+            def warEntries = []
+            for (def entry = war.nextEntry; entry != null; entry = war.nextEntry) {
+                warEntries << entry.name
+            }
+            zipFile.close()
+
+        then:
+            entries.containsAll(["META-INF/MANIFEST.MF", "grails/plugin/standalone/Launcher.class", "embedded.war"])
+            !entries.any { it.startsWith("embedded.war/") || it.startsWith(".nested-wars") }
+            warEntries.findAll { !it.endsWith("/") } == ["META-INF/MANIFEST.MF", "WEB-INF/lib/spring-core-3.2.8.jar",
+                                                         "WEB-INF/lib/bar-1.0.jar", "plugins/bar-1.0/css/bar.css",
+                                                         "WEB-INF/classes/App.class"]
+            !new File(dir, "layers/.nested-wars").exists()
+    }
+
+    def "a new release of the application leaves the dependency layer of the embedded WAR unchanged"() {
+        given:
+            def layers = new StandaloneLayers(["bar-1.0.jar"])
+
+        when:
+            layers.extract(standaloneJar(new File(dir, "first.jar"), "1.0"), new File(dir, "first"))
+            layers.extract(standaloneJar(new File(dir, "second.jar"), "1.1"), new File(dir, "second"))
+
+        then:
+            tree(new File(dir, "first/dependencies")) == tree(new File(dir, "second/dependencies"))
+            tree(new File(dir, "first/plugins")) == tree(new File(dir, "second/plugins"))
+            tree(new File(dir, "first/application")) != tree(new File(dir, "second/application"))
+    }
+
+    /**
+     * Mirrors the jars of Grails 2's build-standalone: the launcher and server classes next to
+     * the application as embedded.war.
+     */
+    private File standaloneJar(File file, String version) {
+        def war = new ByteArrayOutputStream()
+        def warZip = new ZipOutputStream(war)
+        ["META-INF/MANIFEST.MF": "Manifest-Version: 1.0\r\n\r\n",
+         "WEB-INF/classes/App.class": version,
+         "WEB-INF/lib/spring-core-3.2.8.jar": "WEB-INF/lib/spring-core-3.2.8.jar",
+         "WEB-INF/lib/bar-1.0.jar": "WEB-INF/lib/bar-1.0.jar",
+         "plugins/bar-1.0/css/bar.css": "body {}"].each { name, content ->
+            warZip.putNextEntry(new ZipEntry(name))
+            warZip.write(content.bytes)
+        }
+        warZip.close()
+
+        file.withOutputStream { out ->
+            def zip = new ZipOutputStream(out)
+            ["META-INF/MANIFEST.MF": "Manifest-Version: 1.0\r\nMain-Class: grails.plugin.standalone.Launcher\r\n\r\n".bytes,
+             "grails/plugin/standalone/Launcher.class": "grails/plugin/standalone/Launcher.class".bytes,
+             "embedded.war": war.toByteArray()].each { name, content ->
+                zip.putNextEntry(new ZipEntry(name))
+                zip.write(content)
+            }
+            zip.close()
+        }
+        file
+    }
+
+    private static Map<String, String> tree(File root) {
+        def files = [:]
+        root.eachFileRecurse { if (it.isFile()) files[it.path - root.path] = it.text + "@" + it.lastModified() }
+        files
+    }
+
+    private File jar(File file, long time) {
+        file.withOutputStream { out ->
+            def zip = new ZipOutputStream(out)
+            ["META-INF/MANIFEST.MF", "WEB-INF/lib/spring-core-3.2.8.jar", "WEB-INF/lib/bar-1.0.jar", "WEB-INF/classes/App.class"].each {
+                def entry = new ZipEntry(it)
+                entry.time = time
+                zip.putNextEntry(entry)
+                zip.write(it.bytes)
+            }
+            zip.close()
+        }
+        file
+    }
+}
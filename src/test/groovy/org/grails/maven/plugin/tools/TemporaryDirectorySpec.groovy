@@ -0,0 +1,18 @@
+package org.grails.maven.plugin.tools
+
+import org.junit.Rule
+import org.junit.rules.TemporaryFolder
+import spock.lang.Specification
+
+/**
+ * Gives each feature an empty directory, {@link #getDir()}, deleted after the feature.
+ */
+abstract class TemporaryDirectorySpec extends Specification {
+
+    @Rule
+    TemporaryFolder temporaryFolder = new TemporaryFolder()
+
+    File getDir() {
+        temporaryFolder.root
+    }
+}
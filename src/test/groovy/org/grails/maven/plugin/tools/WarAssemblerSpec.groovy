@@ -0,0 +1,85 @@
+package org.grails.maven.plugin.tools
+
+import java.util.jar.JarInputStream
+import java.util.zip.ZipEntry
+import java.util.zip.ZipFile
+import java.util.zip.ZipOutputStream
+
+class WarAssemblerSpec extends TemporaryDirectorySpec {
+
+    File staging
+
+    def setup() {
+        staging = new File(dir, "stage")
+        new File(staging, "META-INF").mkdirs()
+        new File(staging, "META-INF/MANIFEST.MF").text = "Manifest-Version: 1.0\r\n\r\n"
+        new File(staging, "WEB-INF/lib").mkdirs()
+        new File(staging, "WEB-INF/web.xml").text = "<web-app/>" * 100
+        new File(staging, "css").mkdirs()
+        new File(staging, "css/main.css").text = "body { margin: 0; }\n" * 100
+        new File(staging, "WEB-INF/lib/foo.jar").withOutputStream { out ->
+            def zip = new ZipOutputStream(out)
+            zip.putNextEntry(new ZipEntry("Foo.class"))
+            zip.write(new byte[1000])
+            zip.close()
+        }
+    }
+
+    def "the archive contains the staged files and directories"() {
+        given:
+            def war = new File(dir, "app.war")
+
+        when:
+            new WarAssembler(6, 2).assemble(staging, war)
+            def zip = new ZipFile(war)
+            def entries = zip.entries().toList()
+
+        then:
+            entries*.name == ["META-INF/", "META-INF/MANIFEST.MF", "WEB-INF/", "WEB-INF/lib/", "WEB-INF/lib/foo.jar",
+                              "WEB-INF/web.xml", "css/", "css/main.css"]
+            zip.getInputStream(zip.getEntry("css/main.css")).text == new File(staging, "css/main.css").text
+            zip.getEntry("WEB-INF/lib/foo.jar").method == ZipEntry.STORED
+            zip.getEntry("WEB-INF/web.xml").method == ZipEntry.DEFLATED
+            zip.getInputStream(zip.getEntry("WEB-INF/lib/foo.jar")).bytes == new File(staging, "WEB-INF/lib/foo.jar").bytes
+
+        cleanup:
+            zip?.close()
+    }
+
+    def "the manifest can be read as a jar manifest"() {
+        given:
+            def war = new File(dir, "app.war")
+            new WarAssembler(-1, 1).assemble(staging, war)
+
+        when:
+            def jar = new JarInputStream(new FileInputStream(war))
+
+        then:
+            jar.manifest.mainAttributes.getValue("Manifest-Version") == "1.0"
+
+        cleanup:
+            jar?.close()
+    }
+
+    def "repeated builds produce identical archives"() {
+        given:
+            def first = new File(dir, "first.war")
+            def second = new File(dir, "second.war")
+
+        when:
+            new WarAssembler(9, 4).assemble(staging, first)
+            new File(staging, "css/main.css").setLastModified(System.currentTimeMillis() - 100000)
+            new WarAssembler(9, 1).assemble(staging, second)
+
+        then:
+            first.bytes == second.bytes
+    }
+
+    def "invalid compression levels are rejected"() {
+        when:
+            new WarAssembler(10, 1)
+
+        then:
+            thrown(IllegalArgumentException)
+    }
+}
@@ -134,6 +134,10 @@ public class LoadMojosTest extends AbstractMojoTestCase {
         mojoTest("maven-war/plugin-config.xml", "maven-war", MvnWarMojo.class);
     }
 
+    public void testLoadMavenExplodedWarMojoLookup() throws Exception {
+        mojoTest("maven-exploded-war/plugin-config.xml", "maven-exploded-war", MvnExplodedWarMojo.class);
+    }
+
     public void testLoadGrailsSetVersionMojoLookup() throws Exception {
         mojoTest("grails-set-version/plugin-config.xml", "set-version", GrailsSetVersionMojo.class);
     }
@@ -0,0 +1,23 @@
+package org.grails.maven.plugin.tools;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Stands in for the forked Grails JVM: ends as the {@code stub.exit} system property says,
+ * either with that exit code or, for {@code oom}, by running out of heap.
+ */
+public class ForkExitStub {
+
+    public static void main(String[] args) {
+        String exit = System.getProperty("stub.exit", "0");
+        System.err.println("stub exiting with " + exit);
+        if ("oom".equals(exit)) {
+            List<long[]> memory = new ArrayList<long[]>();
+            while (true) {
+                memory.add(new long[1024 * 1024]);
+            }
+        }
+        System.exit(Integer.parseInt(exit));
+    }
+}
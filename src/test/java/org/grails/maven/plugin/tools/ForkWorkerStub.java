@@ -0,0 +1,41 @@
+package org.grails.maven.plugin.tools;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.ObjectInputStream;
+
+/**
+ * Stands in for a pooled Grails JVM: runs no script, but ends each as the {@code stub.exit}
+ * system property of its execution context says, either with that exit code or, for
+ * {@code die}, by exiting the JVM with code 3.
+ */
+public class ForkWorkerStub {
+
+    public static void main(String[] args) throws IOException {
+        ForkedGrailsWorker.serve(new BufferedReader(new InputStreamReader(System.in)), System.out, new ForkedGrailsWorker.Runner() {
+            public int run(File executionContext) throws Exception {
+                ObjectInputStream in = new ObjectInputStream(new FileInputStream(executionContext));
+                AbstractGrailsRuntime.ExecutionContext ec;
+                try {
+                    ec = (AbstractGrailsRuntime.ExecutionContext) in.readObject();
+                } finally {
+                    in.close();
+                }
+                String exit = ec.getSystemProperties().get("stub.exit");
+                ForkedGrailsWorker.applySystemProperties(ec);
+                if ("false".equals(ec.getSystemProperties().get("stub.newline"))) {
+                    System.out.print("stub running " + ec.getScriptName());
+                } else {
+                    System.out.println("stub running " + ec.getScriptName() + " in " + System.getProperty("user.dir"));
+                }
+                if ("die".equals(exit)) {
+                    System.exit(3);
+                }
+                return Integer.parseInt(exit);
+            }
+        });
+    }
+}